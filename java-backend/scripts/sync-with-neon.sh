@@ -147,20 +147,54 @@ check_initial_consistency() {
     fi
 }
 
-# Function to sync cart items to secondary database
-sync_cart_items() {
-    print_status "Syncing cart items to Neon database..."
+# Function to wait for a background sync job, prints its final state as JSON
+wait_for_sync_job() {
+    local job_id=$1
+    local job_response
+    local status
     
+    while true; do
+        job_response=$(curl -s -X GET \
+            -H "Authorization: Bearer ${JWT_TOKEN}" \
+            "${API_BASE_URL}/admin/database/sync/jobs/${job_id}")
+        status=$(echo "${job_response}" | jq -r '.job.status // "UNKNOWN"')
+        case "${status}" in
+            COMPLETED|FAILED|CANCELLED|UNKNOWN)
+                echo "${job_response}" | jq -c '.job // {}'
+                return
+                ;;
+        esac
+        sleep 2
+    done
+}
+
+# Function to start a background sync job and wait for it, prints the job's final state as JSON
+run_sync_job() {
+    local path=$1
     local sync_response
     sync_response=$(curl -s -X POST \
         -H "Authorization: Bearer ${JWT_TOKEN}" \
-        "${API_BASE_URL}/admin/database/sync/cart-items")
+        "${API_BASE_URL}/admin/database/sync/${path}")
     
     if echo "${sync_response}" | jq -e '.success' > /dev/null 2>&1; then
-        local synced_count=$(echo "${sync_response}" | jq -r '.syncedCount // 0')
+        wait_for_sync_job "$(echo "${sync_response}" | jq -r '.jobId')"
+    else
+        echo "${sync_response}" | jq -c '{status: "FAILED", lastError: (.message // "Unknown error")}'
+    fi
+}
+
+# Function to sync cart items to secondary database
+sync_cart_items() {
+    print_status "Syncing cart items to Neon database..."
+    
+    local job
+    job=$(run_sync_job "cart-items")
+    
+    if [ "$(echo "${job}" | jq -r '.status')" = "COMPLETED" ]; then
+        local synced_count=$(echo "${job}" | jq -r '.rowsCopied // 0')
         print_success "Cart items sync completed. Synced: ${synced_count} items"
     else
-        local error_message=$(echo "${sync_response}" | jq -r '.message // "Unknown error"')
+        local error_message=$(echo "${job}" | jq -r '.lastError // .status // "Unknown error"')
         print_error "Cart items sync failed: ${error_message}"
         return 1
     fi
@@ -170,22 +204,20 @@ sync_cart_items() {
 perform_bidirectional_sync() {
     print_status "Performing bidirectional database synchronization..."
     
-    local sync_response
-    sync_response=$(curl -s -X POST \
-        -H "Authorization: Bearer ${JWT_TOKEN}" \
-        "${API_BASE_URL}/admin/database/sync/bidirectional")
+    local job
+    job=$(run_sync_job "bidirectional")
     
-    if echo "${sync_response}" | jq -e '.success' > /dev/null 2>&1; then
-        local primary_to_secondary=$(echo "${sync_response}" | jq -r '.primaryToSecondaryCount // 0')
-        local secondary_to_primary=$(echo "${sync_response}" | jq -r '.secondaryToPrimaryCount // 0')
-        local timestamp=$(echo "${sync_response}" | jq -r '.timestamp')
+    if [ "$(echo "${job}" | jq -r '.status')" = "COMPLETED" ]; then
+        local copied=$(echo "${job}" | jq -r '.rowsCopied // 0')
+        local summary=$(echo "${job}" | jq -r '.summary // ""')
+        local finished_at=$(echo "${job}" | jq -r '.finishedAt')
         
         print_success "Bidirectional sync completed!"
-        print_status "Primary → Secondary: ${primary_to_secondary} records"
-        print_status "Secondary → Primary: ${secondary_to_primary} records"
-        print_status "Completed at: ${timestamp}"
+        print_status "Copied: ${copied} records"
+        print_status "${summary}"
+        print_status "Completed at: ${finished_at}"
     else
-        local error_message=$(echo "${sync_response}" | jq -r '.message // "Unknown error"')
+        local error_message=$(echo "${job}" | jq -r '.lastError // .status // "Unknown error"')
         print_error "Bidirectional sync failed: ${error_message}"
         return 1
     fi
@@ -1,13 +1,18 @@
 package com.shopper.config;
 
 import com.shopper.repository.primary.PrimaryCartItemRepository;
+import com.shopper.repository.primary.PrimaryOutboxRepository;
 import com.shopper.repository.primary.PrimaryProductRepository;
+import com.shopper.repository.primary.PrimarySyncConflictRepository;
+import com.shopper.repository.primary.PrimarySyncJobRepository;
+import com.shopper.repository.primary.PrimarySyncWatermarkRepository;
 import com.shopper.repository.primary.PrimaryUserRepository;
 import com.shopper.repository.secondary.SecondaryCartItemRepository;
 import com.shopper.repository.secondary.SecondaryProductRepository;
 import com.shopper.repository.secondary.SecondaryUserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
@@ -16,9 +21,12 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypesScanner;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
@@ -32,6 +40,10 @@ import java.util.Map;
 @Slf4j
 public class DatabaseConfig {
 
+    private static final String ENTITY_PACKAGE = "com.shopper.entity";
+    // Outbox and sync bookkeeping, kept on the primary only
+    private static final String PRIMARY_ONLY_ENTITY_PACKAGE = ENTITY_PACKAGE + ".primary";
+
     // Primary Database (SQLite) Configuration
     @Configuration
     @EnableJpaRepositories(
@@ -53,16 +65,21 @@ public class DatabaseConfig {
         @Bean
         @Primary
         public LocalContainerEntityManagerFactoryBean primaryEntityManagerFactory(
-                @Qualifier("primaryDataSource") DataSource dataSource) {
+                @Qualifier("primaryDataSource") DataSource dataSource,
+                @Value("${app.dual-database.batch.primary-chunk-size:500}") int batchSize) {
             
             LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
             em.setDataSource(dataSource);
-            em.setPackagesToScan("com.shopper.entity");
+            em.setPackagesToScan(ENTITY_PACKAGE);
             em.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
 
             Map<String, Object> properties = new HashMap<>();
             properties.put("hibernate.hbm2ddl.auto", "update");
             properties.put("hibernate.dialect", "org.hibernate.community.dialect.SQLiteDialect");
+            // Send chunked saves as JDBC batches
+            properties.put("hibernate.jdbc.batch_size", batchSize);
+            properties.put("hibernate.order_inserts", true);
+            properties.put("hibernate.order_updates", true);
             em.setJpaPropertyMap(properties);
 
             return em;
@@ -94,16 +111,27 @@ public class DatabaseConfig {
 
         @Bean
         public LocalContainerEntityManagerFactoryBean secondaryEntityManagerFactory(
-                @Qualifier("secondaryDataSource") DataSource dataSource) {
+                @Qualifier("secondaryDataSource") DataSource dataSource,
+                @Value("${app.dual-database.batch.secondary-chunk-size:500}") int batchSize,
+                ResourceLoader resourceLoader) {
             
             LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
             em.setDataSource(dataSource);
-            em.setPackagesToScan("com.shopper.entity");
+            // Only replicated tables: hbm2ddl must not create the primary-only tables on Neon
+            PersistenceManagedTypes scanned = new PersistenceManagedTypesScanner(resourceLoader).scan(ENTITY_PACKAGE);
+            em.setManagedTypes(PersistenceManagedTypes.of(
+                    scanned.getManagedClassNames().stream()
+                            .filter(className -> !className.startsWith(PRIMARY_ONLY_ENTITY_PACKAGE + "."))
+                            .toList(),
+                    scanned.getManagedPackages()));
             em.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
 
             Map<String, Object> properties = new HashMap<>();
             properties.put("hibernate.hbm2ddl.auto", "update");
             properties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+            properties.put("hibernate.jdbc.batch_size", batchSize);
+            properties.put("hibernate.order_inserts", true);
+            properties.put("hibernate.order_updates", true);
             em.setJpaPropertyMap(properties);
 
             return em;
@@ -124,6 +152,10 @@ public class DatabaseConfig {
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimaryProductRepository.class),
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimaryUserRepository.class),
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimaryCartItemRepository.class),
+                    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimaryOutboxRepository.class),
+                    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimarySyncWatermarkRepository.class),
+                    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimarySyncJobRepository.class),
+                    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = PrimarySyncConflictRepository.class),
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = SecondaryProductRepository.class),
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = SecondaryUserRepository.class),
                     @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = SecondaryCartItemRepository.class)
@@ -1,5 +1,6 @@
 package com.shopper.config;
 
+import com.shopper.interceptor.CatalogAvailabilityInterceptor;
 import com.shopper.interceptor.LoggingInterceptor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
@@ -11,9 +12,14 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final LoggingInterceptor loggingInterceptor;
+    private final CatalogAvailabilityInterceptor catalogAvailabilityInterceptor;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(loggingInterceptor);
+        // Admin endpoints stay reachable, they report on and repair the catalog
+        registry.addInterceptor(catalogAvailabilityInterceptor)
+                .addPathPatterns("/products", "/products/**")
+                .excludePathPatterns("/products/admin/**");
     }
 }
\ No newline at end of file
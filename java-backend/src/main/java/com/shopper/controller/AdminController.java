@@ -1,8 +1,16 @@
 package com.shopper.controller;
 
+import com.shopper.entity.primary.SyncJob;
+import com.shopper.repository.BulkDeleteMonitor;
 import com.shopper.service.AdminService;
 import com.shopper.service.DatabaseSyncService;
 import com.shopper.service.FeatureFlagService;
+import com.shopper.service.replication.ChangeLogTailer;
+import com.shopper.service.replication.OutboxService;
+import com.shopper.service.routing.ShadowReadComparator;
+import com.shopper.service.sync.ConflictResolver;
+import com.shopper.service.sync.RangeHashVerifier;
+import com.shopper.service.sync.SyncJobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -25,6 +33,12 @@ public class AdminController {
     
     private final AdminService adminService;
     private final FeatureFlagService featureFlagService;
+    private final OutboxService outboxService;
+    private final ChangeLogTailer changeLogTailer;
+    private final ShadowReadComparator shadowReadComparator;
+    private final BulkDeleteMonitor bulkDeleteMonitor;
+    private final SyncJobService syncJobService;
+    private final ConflictResolver conflictResolver;
     
     @Autowired(required = false)
     private DatabaseSyncService databaseSyncService;
@@ -93,64 +107,271 @@ public class AdminController {
         }
     }
     
-    // Database sync endpoints
-    @PostMapping("/database/sync/products")
-    @Operation(summary = "Sync products from primary to secondary database")
-    public ResponseEntity<Map<String, Object>> syncProductsToSecondary() {
-        if (databaseSyncService == null) {
-            return ResponseEntity.status(503).body(Map.of(
+    @GetMapping("/replication/outbox")
+    @Operation(summary = "Get replication outbox status")
+    public ResponseEntity<Map<String, Object>> getOutboxStatus() {
+        try {
+            return ResponseEntity.ok(outboxService.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get outbox status: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
                 "success", false,
-                "message", "Database sync service not available (secondary database not enabled)"
+                "message", "Failed to retrieve outbox status",
+                "error", e.getMessage()
             ));
         }
-        
+    }
+    
+    @PostMapping("/replication/outbox/retry-dead")
+    @Operation(summary = "Retry dead-lettered replication events")
+    public ResponseEntity<Map<String, Object>> retryDeadOutboxEvents() {
         try {
-            int syncedCount = databaseSyncService.syncProductsToSecondary();
+            int requeued = outboxService.requeueDeadEvents();
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "message", "Products synced to secondary database",
-                "syncedCount", syncedCount
+                "requeued", requeued
             ));
         } catch (Exception e) {
-            log.error("Failed to sync products to secondary: {}", e.getMessage());
+            log.error("Failed to requeue dead outbox events: {}", e.getMessage());
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
-                "message", "Sync failed",
+                "message", "Failed to requeue dead outbox events",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @GetMapping("/replication/cdc")
+    @Operation(summary = "Get change data capture status")
+    public ResponseEntity<Map<String, Object>> getChangeDataCaptureStatus() {
+        try {
+            return ResponseEntity.ok(changeLogTailer.getStatus());
+        } catch (Exception e) {
+            log.error("Failed to get change data capture status: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to retrieve change data capture status",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @PostMapping("/replication/cdc/retry-dead")
+    @Operation(summary = "Retry dead-lettered change log entries")
+    public ResponseEntity<Map<String, Object>> retryDeadChangeLogEntries() {
+        try {
+            int requeued = changeLogTailer.requeueDeadEntries();
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "requeued", requeued
+            ));
+        } catch (Exception e) {
+            log.error("Failed to requeue dead change log entries: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to requeue dead change log entries",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @GetMapping("/replication/shadow-reads")
+    @Operation(summary = "Get shadow read comparison results for the secondary database")
+    public ResponseEntity<Map<String, Object>> getShadowReadReport() {
+        try {
+            return ResponseEntity.ok(shadowReadComparator.getReport());
+        } catch (Exception e) {
+            log.error("Failed to get shadow read report: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to retrieve shadow read report",
                 "error", e.getMessage()
             ));
         }
     }
+    
+    @DeleteMapping("/replication/shadow-reads")
+    @Operation(summary = "Reset shadow read comparison results")
+    public ResponseEntity<Map<String, Object>> resetShadowReadReport() {
+        shadowReadComparator.reset();
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "message", "Shadow read results reset"
+        ));
+    }
+    
+    @GetMapping("/database/bulk-deletes")
+    @Operation(summary = "Get progress of recent chunked bulk deletes")
+    public ResponseEntity<Map<String, Object>> getBulkDeleteProgress() {
+        try {
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "runs", bulkDeleteMonitor.getReport()
+            ));
+        } catch (Exception e) {
+            log.error("Failed to get bulk delete progress: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to retrieve bulk delete progress",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    // Database sync endpoints, each run as a background sync job
+    @PostMapping("/database/sync/products")
+    @Operation(summary = "Start a background job copying products missing in the secondary database")
+    public ResponseEntity<Map<String, Object>> syncProductsToSecondary() {
+        return startSyncJob(SyncJob.Kind.PRODUCTS, true, false);
+    }
 
     @PostMapping("/database/sync/cart-items")
-    @Operation(summary = "Sync cart items from primary to secondary database")
+    @Operation(summary = "Start a background job copying cart items missing in the secondary database")
     public ResponseEntity<Map<String, Object>> syncCartItemsToSecondary() {
-        if (databaseSyncService == null) {
+        return startSyncJob(SyncJob.Kind.CART_ITEMS, true, false);
+    }
+    
+    @PostMapping("/database/sync/bidirectional")
+    @Operation(summary = "Start a background bidirectional database synchronization")
+    public ResponseEntity<Map<String, Object>> performBidirectionalSync() {
+        return startSyncJob(SyncJob.Kind.BIDIRECTIONAL, true, false);
+    }
+
+    @PostMapping("/database/sync/incremental")
+    @Operation(summary = "Start a background sync of rows changed since the last incremental run in both directions")
+    public ResponseEntity<Map<String, Object>> performIncrementalSync() {
+        return startSyncJob(SyncJob.Kind.INCREMENTAL, true, true);
+    }
+    
+    @PostMapping("/database/sync/full-resync")
+    @Operation(summary = "Start a background job streaming every table from one database to the other")
+    public ResponseEntity<Map<String, Object>> performFullResync(
+            @RequestParam(defaultValue = "primary-to-secondary") String direction,
+            @RequestParam(defaultValue = "true") boolean overwrite) {
+        return startSyncJob(SyncJob.Kind.FULL_RESYNC, !"secondary-to-primary".equalsIgnoreCase(direction), overwrite);
+    }
+    
+    private ResponseEntity<Map<String, Object>> startSyncJob(SyncJob.Kind kind, boolean toSecondary, boolean overwrite) {
+        if (!syncJobService.isAvailable(kind)) {
             return ResponseEntity.status(503).body(Map.of(
                 "success", false,
-                "message", "Database sync service not available (secondary database not enabled)"
+                "message", "Sync jobs not available (secondary database not enabled)"
             ));
         }
         
         try {
-            int syncedCount = databaseSyncService.syncCartItemsToSecondary();
+            SyncJob job = syncJobService.submit(kind, toSecondary, overwrite);
+            return ResponseEntity.accepted().body(Map.of(
+                "success", true,
+                "message", "Sync job started",
+                "jobId", job.getId(),
+                "statusUrl", "/api/admin/database/sync/jobs/" + job.getId()
+            ));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("Failed to start {} sync job: {}", kind, e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to start sync job",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @GetMapping("/database/sync/jobs")
+    @Operation(summary = "Get the most recent sync jobs")
+    public ResponseEntity<Map<String, Object>> getSyncJobs() {
+        try {
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "message", "Cart items synced to secondary database",
-                "syncedCount", syncedCount
+                "jobs", syncJobService.getRecentJobs().stream().map(syncJobService::describe).toList()
             ));
         } catch (Exception e) {
-            log.error("Failed to sync cart items to secondary: {}", e.getMessage());
+            log.error("Failed to get sync jobs: {}", e.getMessage());
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
-                "message", "Sync failed",
+                "message", "Failed to retrieve sync jobs",
                 "error", e.getMessage()
             ));
         }
     }
     
-    @PostMapping("/database/sync/bidirectional")
-    @Operation(summary = "Perform bidirectional database synchronization")
-    public ResponseEntity<Map<String, Object>> performBidirectionalSync() {
+    @GetMapping("/database/sync/jobs/{id}")
+    @Operation(summary = "Get progress, throughput and ETA of a sync job")
+    public ResponseEntity<Map<String, Object>> getSyncJob(@PathVariable Long id) {
+        try {
+            return syncJobService.getJob(id)
+                .map(job -> ResponseEntity.ok(Map.<String, Object>of(
+                    "success", true,
+                    "job", syncJobService.describe(job)
+                )))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of(
+                    "success", false,
+                    "message", "Sync job not found: " + id
+                )));
+        } catch (Exception e) {
+            log.error("Failed to get sync job {}: {}", id, e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to retrieve sync job",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @PostMapping("/database/sync/jobs/{id}/cancel")
+    @Operation(summary = "Stop a copy job after the page it is writing")
+    public ResponseEntity<Map<String, Object>> cancelSyncJob(@PathVariable Long id) {
+        boolean cancelled = syncJobService.cancel(id);
+        return ResponseEntity.status(cancelled ? 202 : 409).body(Map.of(
+            "success", cancelled,
+            "message", cancelled ? "Cancellation requested"
+                : "Sync job not found, already finished, or a bidirectional or incremental run, which cannot be stopped"
+        ));
+    }
+    
+    @PostMapping("/database/sync/jobs/{id}/resume")
+    @Operation(summary = "Continue a failed or cancelled copy job from its checkpoint")
+    public ResponseEntity<Map<String, Object>> resumeSyncJob(@PathVariable Long id) {
+        boolean resumed = syncJobService.resume(id);
+        return ResponseEntity.status(resumed ? 202 : 409).body(Map.of(
+            "success", resumed,
+            "message", resumed ? "Sync job resumed"
+                : "Sync job not found, not stopped, without a checkpoint, or another job of its kind is active"
+        ));
+    }
+    
+    @GetMapping("/database/sync/conflicts")
+    @Operation(summary = "Get recently resolved sync conflicts")
+    public ResponseEntity<Map<String, Object>> getSyncConflicts(@RequestParam(required = false) String table) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "policy", conflictResolver.getPolicy().getName(),
+                "conflicts", conflictResolver.getRecentConflicts(table)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("Failed to get sync conflicts: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Failed to retrieve sync conflicts",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
+    @GetMapping("/database/sync/watermarks")
+    @Operation(summary = "Get incremental sync watermarks")
+    public ResponseEntity<Map<String, Object>> getSyncWatermarks() {
         if (databaseSyncService == null) {
             return ResponseEntity.status(503).body(Map.of(
                 "success", false,
@@ -159,24 +380,37 @@ public class AdminController {
         }
         
         try {
-            DatabaseSyncService.SyncResult result = databaseSyncService.performBidirectionalSync();
             return ResponseEntity.ok(Map.of(
-                "success", result.success,
-                "message", result.message,
-                "primaryToSecondaryCount", result.primaryToSecondaryCount,
-                "secondaryToPrimaryCount", result.secondaryToPrimaryCount,
-                "timestamp", result.timestamp
+                "success", true,
+                "watermarks", databaseSyncService.getWatermarks()
             ));
         } catch (Exception e) {
-            log.error("Failed to perform bidirectional sync: {}", e.getMessage());
+            log.error("Failed to get sync watermarks: {}", e.getMessage());
             return ResponseEntity.status(500).body(Map.of(
                 "success", false,
-                "message", "Bidirectional sync failed",
+                "message", "Failed to retrieve sync watermarks",
                 "error", e.getMessage()
             ));
         }
     }
-
+    
+    @DeleteMapping("/database/sync/watermarks")
+    @Operation(summary = "Reset incremental sync watermarks so the next run copies every row")
+    public ResponseEntity<Map<String, Object>> resetSyncWatermarks() {
+        if (databaseSyncService == null) {
+            return ResponseEntity.status(503).body(Map.of(
+                "success", false,
+                "message", "Database sync service not available (secondary database not enabled)"
+            ));
+        }
+        
+        databaseSyncService.resetWatermarks();
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "message", "Sync watermarks reset"
+        ));
+    }
+    
     @PostMapping("/database/fix-postgresql-schema")
     @Operation(summary = "Fix PostgreSQL schema to use proper UUID columns")
     public ResponseEntity<Map<String, Object>> fixPostgreSQLSchema() {
@@ -235,6 +469,37 @@ public class AdminController {
         }
     }
     
+    @GetMapping("/database/consistency/{table}")
+    @Operation(summary = "Verify the content of one table and list its divergent rows")
+    public ResponseEntity<Map<String, Object>> verifyTableConsistency(@PathVariable String table) {
+        if (databaseSyncService == null) {
+            return ResponseEntity.status(503).body(Map.of(
+                "success", false,
+                "message", "Database sync service not available (secondary database not enabled)"
+            ));
+        }
+        
+        try {
+            RangeHashVerifier.TableReport report = databaseSyncService.verifyTable(table);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("report", report);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("Failed to verify table {}: {}", table, e.getMessage());
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Consistency check failed",
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
     // Feature flag endpoints
     @GetMapping("/feature-flags")
     @Operation(summary = "Get all feature flags for admin user")
@@ -3,6 +3,7 @@ package com.shopper.controller;
 import com.shopper.entity.CartItem;
 import com.shopper.repository.primary.PrimaryCartItemRepository;
 import com.shopper.repository.secondary.SecondaryCartItemRepository;
+import com.shopper.service.DualDatabaseStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +21,8 @@ import java.util.Map;
 @Slf4j
 public class HealthController {
 
+    private final DualDatabaseStrategy dualDatabaseStrategy;
+
     // Add this for debugging the sync issue
     @Autowired
     private PrimaryCartItemRepository primaryCartItemRepository;
@@ -32,6 +35,7 @@ public class HealthController {
         Map<String, Object> result = new HashMap<>();
         result.put("status", "UP");
         result.put("timestamp", System.currentTimeMillis());
+        result.put("datasources", dualDatabaseStrategy.getDatasourceStatus());
         return result;
     }
     
@@ -8,6 +8,10 @@ import com.shopper.repository.primary.PrimaryCartItemRepository;
 import com.shopper.repository.secondary.SecondaryCartItemRepository;
 import com.shopper.service.FeatureFlagService;
 import com.shopper.service.ProductService;
+import com.shopper.service.catalog.CatalogAggregates;
+import com.shopper.service.catalog.ProductCatalogVersion;
+import com.shopper.service.catalog.ProductPage;
+import com.shopper.service.catalog.ProductPageQuery;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -17,12 +21,16 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -40,6 +48,7 @@ public class ProductController {
     
     private final ProductService productService;
     private final FeatureFlagService featureFlagService;
+    private final ProductCatalogVersion productCatalogVersion;
     
     // Add this for debugging the sync issue
     @Autowired
@@ -49,15 +58,65 @@ public class ProductController {
     private SecondaryCartItemRepository secondaryCartItemRepository;
     
     @GetMapping
-    @Operation(summary = "Get all products")
+    @Operation(summary = "Get all products, or one page of them",
+               description = "Without parameters all products are returned as a list. With any parameter the response is one page "
+                       + "sorted by name, price or createdAt, with cursors for the next and previous pages. "
+                       + "Filters must be repeated with a cursor.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Returns all products successfully"),
+        @ApiResponse(responseCode = "304", description = "The catalog has not changed since the given ETag or date; "
+                + "the in-stock list of the new flow is validated by its ETag only"),
+        @ApiResponse(responseCode = "400", description = "Invalid paging parameters or cursor"),
+        @ApiResponse(responseCode = "503", description = "The catalog is being replaced, or its last replacement failed"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(
+            @Parameter(description = "Page size, 1 to 100, default 20") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor or previousCursor of a previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "name, price or createdAt") @RequestParam(required = false) String sort,
+            @Parameter(description = "asc or desc") @RequestParam(required = false) String direction,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            WebRequest webRequest) {
         String username = getCurrentUsername();
-        List<Product> products = productService.findAll(username);
-        return ResponseEntity.ok(products);
+        
+        // The plain list stays for existing clients
+        if (limit == null && cursor == null && sort == null && direction == null && category == null
+                && minPrice == null && maxPrice == null && inStock == null) {
+            // The new flow lists only products in stock, a different representation of the same version
+            String variant = featureFlagService.getBooleanValue(username, "new-flow", false) ? "in-stock" : null;
+            if (isNotModified(webRequest, productCatalogVersion.current(), variant)) {
+                return notModified();
+            }
+            List<Product> products = productService.findAll(username);
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(products);
+        }
+        
+        ProductPageQuery query;
+        try {
+            query = ProductPageQuery.of(sort, direction, cursor, category, minPrice, maxPrice, inStock, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", "Invalid page request",
+                "message", e.getMessage()
+            ));
+        }
+        if (isNotModified(webRequest)) {
+            return notModified();
+        }
+        
+        ProductPage page = productService.findPage(query, username);
+        Map<String, Object> response = new HashMap<>();
+        response.put("products", page.products());
+        response.put("count", page.products().size());
+        response.put("limit", query.limit());
+        response.put("sort", query.sortKey().property());
+        response.put("direction", query.direction().name().toLowerCase());
+        response.put("nextCursor", page.nextCursor());
+        response.put("previousCursor", page.previousCursor());
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
     }
     
     @GetMapping("/with-feature-flag")
@@ -113,10 +172,19 @@ public class ProductController {
     
     @GetMapping("/{id}")
     @Operation(summary = "Get product by ID")
-    public ResponseEntity<Product> getProductById(@Parameter(description = "Product ID") @PathVariable UUID id) {
+    public ResponseEntity<Product> getProductById(@Parameter(description = "Product ID") @PathVariable UUID id,
+                                                  WebRequest webRequest) {
+        ProductCatalogVersion.Snapshot version = productCatalogVersion.current();
         String username = getCurrentUsername();
+        // Looked up first, so an unknown ID is a 404 whatever validators the request carries
         Optional<Product> product = productService.findById(id, username);
-        return product.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+        if (product.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (isNotModified(webRequest, version, null)) {
+            return notModified();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(product.get());
     }
     
     @PostMapping
@@ -157,14 +225,26 @@ public class ProductController {
     
     @GetMapping("/categories")
     @Operation(summary = "Get all product categories")
-    public ResponseEntity<List<String>> getCategories() {
+    public ResponseEntity<List<String>> getCategories(WebRequest webRequest) {
+        if (isNotModified(webRequest)) {
+            return notModified();
+        }
         List<String> categories = productService.findAllCategories();
-        return ResponseEntity.ok(categories);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(categories);
     }
     
     @GetMapping("/search")
-    @Operation(summary = "Search products by name")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String name) {
+    @Operation(summary = "Search products by name, or by name and description with q, best matches first",
+               description = "Once the search index is built, returns at most app.catalog-search.max-results "
+                       + "products (50 by default), the best matches; refine the query to find others")
+    public ResponseEntity<List<Product>> searchProducts(@RequestParam(required = false) String name,
+                                                        @RequestParam(required = false) String q) {
+        if (q != null) {
+            return ResponseEntity.ok(productService.search(q));
+        }
+        if (name == null) {
+            return ResponseEntity.badRequest().build();
+        }
         List<Product> products = productService.searchByName(name);
         return ResponseEntity.ok(products);
     }
@@ -235,11 +315,16 @@ public class ProductController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Get product statistics (Admin only)")
     public ResponseEntity<Map<String, Object>> getProductStats() {
+        CatalogAggregates.Stats catalog = productService.getCatalogStats();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalProducts", productService.getProductCount());
-        stats.put("inStockProducts", productService.countInStockProducts());
-        stats.put("outOfStockProducts", productService.countOutOfStockProducts());
-        stats.put("categories", productService.findAllCategories());
+        stats.put("totalProducts", catalog.totalProducts());
+        stats.put("inStockProducts", catalog.inStockProducts());
+        stats.put("outOfStockProducts", catalog.outOfStockProducts());
+        stats.put("stockValue", catalog.stockValue());
+        stats.put("categories", catalog.categoryNames());
+        stats.put("productsByCategory", catalog.categories());
+        stats.put("catalogCache", productService.getCatalogCacheStats());
+        stats.put("catalogVersion", productCatalogVersion.getStats());
         stats.put("timestamp", LocalDateTime.now());
         
         return ResponseEntity.ok(stats);
@@ -277,6 +362,34 @@ public class ProductController {
         return result;
     }
     
+    /**
+     * Check the request's If-None-Match or If-Modified-Since against the catalog version, before
+     * anything is read from the database. Either way the response carries the version's ETag and
+     * Last-Modified.
+     */
+    private boolean isNotModified(WebRequest webRequest) {
+        return isNotModified(webRequest, productCatalogVersion.current(), null);
+    }
+    
+    /**
+     * @param version Catalog version taken before the data of the response was read
+     * @param variant Representation other than the default one, validated by its ETag only since
+     *                Last-Modified cannot tell representations apart; null for the default one
+     */
+    private boolean isNotModified(WebRequest webRequest, ProductCatalogVersion.Snapshot version, String variant) {
+        String etag = productCatalogVersion.etag(version, variant);
+        boolean notModified = variant != null
+                ? webRequest.checkNotModified(etag)
+                : webRequest.checkNotModified(etag, version.changedAt());
+        productCatalogVersion.recordConditionalRequest(notModified);
+        return notModified;
+    }
+    
+    // no-cache lets browsers and the CDN keep responses as long as they revalidate them
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+    }
+    
     private String getCurrentUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
@@ -17,7 +17,15 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "products")
+// Each listing sort key ends in the id, so keyset pages are index range scans
+@Table(name = "products", indexes = {
+    @Index(name = "idx_products_name", columnList = "name, id"),
+    @Index(name = "idx_products_price", columnList = "price, id"),
+    @Index(name = "idx_products_created_at", columnList = "created_at, id"),
+    @Index(name = "idx_products_category_name", columnList = "category, name, id"),
+    // Latest update lookups of the catalog version check and incremental sync
+    @Index(name = "idx_products_updated_at", columnList = "updated_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
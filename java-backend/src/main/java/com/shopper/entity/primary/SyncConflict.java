@@ -0,0 +1,62 @@
+package com.shopper.entity.primary;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Audit record of a row that both databases had with different content, and how the sync resolved it
+ */
+@Entity
+@Table(name = "sync_conflicts", indexes = {
+    @Index(name = "idx_sync_conflicts_row", columnList = "table_name, row_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncConflict {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "table_name", nullable = false, length = 100)
+    private String tableName;
+
+    @Column(name = "row_id", nullable = false, columnDefinition = "VARCHAR(36)")
+    private String rowId;
+
+    @Column(nullable = false, length = 30)
+    private String policy;
+
+    /**
+     * primary, secondary or merged
+     */
+    @Column(nullable = false, length = 20)
+    private String winner;
+
+    @Column(name = "differing_columns", length = 500)
+    private String differingColumns;
+
+    @Column(name = "primary_values", length = 2000)
+    private String primaryValues;
+
+    @Column(name = "secondary_values", length = 2000)
+    private String secondaryValues;
+
+    @Column(name = "primary_updated_at")
+    private LocalDateTime primaryUpdatedAt;
+
+    @Column(name = "secondary_updated_at")
+    private LocalDateTime secondaryUpdatedAt;
+
+    @CreationTimestamp
+    @Column(name = "resolved_at", nullable = false, updatable = false)
+    private LocalDateTime resolvedAt;
+}
@@ -0,0 +1,119 @@
+package com.shopper.entity.primary;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Background sync run. Copy jobs stream their tables in one direction; the checkpoint is the table being
+ * copied and the last ID whose page was committed, so an interrupted job continues after that ID.
+ * A cancel request is stored on the row, so it reaches the job whichever instance runs it and survives a restart.
+ */
+@Entity
+@Table(name = "sync_jobs", indexes = {
+    @Index(name = "idx_sync_jobs_status", columnList = "status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    @Builder.Default
+    private Kind kind = Kind.FULL_RESYNC;
+
+    @Column(nullable = false, length = 30)
+    private String direction;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean overwrite = true;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(name = "checkpoint_table", length = 100)
+    private String checkpointTable;
+
+    @Column(name = "checkpoint_id", columnDefinition = "VARCHAR(36)")
+    private String checkpointId;
+
+    @Column(name = "total_rows")
+    private Long totalRows;
+
+    @Column(name = "rows_scanned", nullable = false)
+    @Builder.Default
+    private Long rowsScanned = 0L;
+
+    @Column(name = "rows_copied", nullable = false)
+    @Builder.Default
+    private Long rowsCopied = 0L;
+
+    @Column(name = "rows_failed", nullable = false)
+    @Builder.Default
+    private Long rowsFailed = 0L;
+
+    // Only set through PrimarySyncJobRepository.setCancelRequested, saving the job must not undo a request
+    @Column(name = "cancel_requested", updatable = false)
+    @Builder.Default
+    private Boolean cancelRequested = false;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(length = 1000)
+    private String summary;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum Kind {
+        /** Every synced table, in foreign key order */
+        FULL_RESYNC,
+        /** Products missing in the secondary */
+        PRODUCTS,
+        /** Cart items missing in the secondary */
+        CART_ITEMS,
+        /** Missing rows in both directions with conflict resolution, see SyncPipeline */
+        BIDIRECTIONAL,
+        /** Rows changed since the last incremental run, in both directions */
+        INCREMENTAL
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+}
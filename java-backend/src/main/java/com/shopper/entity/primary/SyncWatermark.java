@@ -0,0 +1,41 @@
+package com.shopper.entity.primary;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * High-water mark of an incremental sync: the newest updated_at value copied so far
+ * for one entity and direction, such as "products:primary-to-secondary".
+ */
+@Entity
+@Table(name = "sync_watermarks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncWatermark {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(name = "high_water_mark")
+    private LocalDateTime highWaterMark;
+
+    @Column(name = "last_run_rows", nullable = false)
+    @Builder.Default
+    private Integer lastRunRows = 0;
+
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,39 @@
+package com.shopper.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopper.service.catalog.CatalogAvailability;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+
+/**
+ * Answers catalog reads with 503 while the catalog is unavailable, see {@link CatalogAvailability}
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogAvailabilityInterceptor implements HandlerInterceptor {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final CatalogAvailability catalogAvailability;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!"GET".equals(request.getMethod()) || catalogAvailability.isAvailable()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), catalogAvailability.getStatus());
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package com.shopper.repository;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Progress of chunked bulk deletes, kept for the most recent runs so a long delete
+ * can be followed from the admin API while it is still removing rows.
+ */
+@Component
+public class BulkDeleteMonitor {
+
+    private static final int MAX_RECENT_RUNS = 10;
+
+    private final Deque<Progress> recentRuns = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Start tracking a bulk delete
+     * @param operation Name of the delete, such as the table or service method
+     * @return Progress to record chunks into
+     */
+    public Progress start(String operation) {
+        Progress progress = new Progress(operation);
+        recentRuns.addFirst(progress);
+        while (recentRuns.size() > MAX_RECENT_RUNS) {
+            recentRuns.pollLast();
+        }
+        return progress;
+    }
+
+    public List<Map<String, Object>> getReport() {
+        List<Map<String, Object>> report = new ArrayList<>();
+        recentRuns.forEach(progress -> report.add(progress.toMap()));
+        return report;
+    }
+
+    public static final class Progress {
+        private final String operation;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final Map<String, AtomicLong> deletedByTarget = new ConcurrentHashMap<>();
+        private final AtomicLong chunks = new AtomicLong();
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Progress(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * @param datasource "primary" or "secondary"
+         * @param table Table the rows are deleted from
+         * @return Callback receiving the row count of each deleted chunk
+         */
+        public IntConsumer chunkListener(String datasource, String table) {
+            AtomicLong deleted = deletedByTarget.computeIfAbsent(datasource + "." + table, key -> new AtomicLong());
+            return rows -> {
+                deleted.addAndGet(rows);
+                chunks.incrementAndGet();
+            };
+        }
+
+        public void finish() {
+            finishedAt = LocalDateTime.now();
+        }
+
+        public void fail(Exception e) {
+            error = e.getMessage();
+            finishedAt = LocalDateTime.now();
+        }
+
+        public long getDeleted(String datasource, String table) {
+            AtomicLong deleted = deletedByTarget.get(datasource + "." + table);
+            return deleted != null ? deleted.get() : 0;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("operation", operation);
+            map.put("startedAt", startedAt);
+            map.put("chunks", chunks.get());
+            Map<String, Long> deleted = new TreeMap<>();
+            deletedByTarget.forEach((target, count) -> deleted.put(target, count.get()));
+            map.put("deleted", deleted);
+            LocalDateTime end = finishedAt;
+            map.put("status", error != null ? "FAILED" : end != null ? "FINISHED" : "RUNNING");
+            map.put("elapsedMs", Duration.between(startedAt, end != null ? end : LocalDateTime.now()).toMillis());
+            if (end != null) {
+                map.put("finishedAt", end);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
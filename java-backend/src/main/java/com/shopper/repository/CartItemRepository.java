@@ -1,6 +1,7 @@
 package com.shopper.repository;
 
 import com.shopper.entity.CartItem;
+import com.shopper.entity.primary.OutboxEvent;
 import com.shopper.repository.primary.PrimaryCartItemRepository;
 import com.shopper.repository.secondary.SecondaryCartItemRepository;
 import lombok.RequiredArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,6 +21,10 @@ import java.util.UUID;
 @Slf4j
 public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     
+    private static final List<String> BATCH_COLUMNS = List.of(
+        "id", "user_id", "product_id", "quantity", "created_at", "updated_at"
+    );
+    
     private final PrimaryCartItemRepository primaryRepository;
     
     @Autowired(required = false)
@@ -37,6 +43,7 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public List<CartItem> findByUserIdWithProduct(UUID userId) {
         return executeReadOperation(
             userId.toString(),
+            "findByUserIdWithProduct",
             () -> primaryRepository.findByUserIdWithProduct(userId),
             () -> secondaryRepository != null ? secondaryRepository.findByUserIdWithProduct(userId) : List.of()
         );
@@ -45,6 +52,7 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public List<CartItem> findByUserId(UUID userId) {
         return executeReadOperation(
             userId.toString(),
+            "findByUserId",
             () -> primaryRepository.findByUserId(userId),
             () -> secondaryRepository != null ? secondaryRepository.findByUserId(userId) : List.of()
         );
@@ -53,14 +61,23 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public Optional<CartItem> findByUserIdAndProductId(UUID userId, UUID productId) {
         return executeReadOperation(
             userId.toString(),
+            "findByUserIdAndProductId",
             () -> primaryRepository.findByUserIdAndProductId(userId, productId),
             () -> secondaryRepository != null ? secondaryRepository.findByUserIdAndProductId(userId, productId) : Optional.empty()
         );
     }
     
+    @Transactional
     public void deleteByUserId(UUID userId) {
-        executeWriteOperation(
+        if (isOutboxActive()) {
+            List<CartItem> items = primaryRepository.findByUserId(userId);
+            primaryRepository.deleteByUserId(userId);
+            recordDeletes(userId, items);
+            return;
+        }
+        dualDatabaseStrategy.executeWriteWithUser(
             userId.toString(),
+            cartKey(userId),
             () -> {
                 primaryRepository.deleteByUserId(userId);
                 return null;
@@ -74,9 +91,17 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
         );
     }
     
+    @Transactional
     public void deleteByUserIdAndProductId(UUID userId, UUID productId) {
-        executeWriteOperation(
+        if (isOutboxActive()) {
+            Optional<CartItem> item = primaryRepository.findByUserIdAndProductId(userId, productId);
+            primaryRepository.deleteByUserIdAndProductId(userId, productId);
+            recordDeletes(userId, item.stream().toList());
+            return;
+        }
+        dualDatabaseStrategy.executeWriteWithUser(
             userId.toString(),
+            cartKey(userId),
             () -> {
                 primaryRepository.deleteByUserIdAndProductId(userId, productId);
                 return null;
@@ -93,6 +118,7 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public long countByUserId(UUID userId) {
         return executeReadOperation(
             userId.toString(),
+            "countByUserId",
             () -> primaryRepository.countByUserId(userId),
             () -> secondaryRepository != null ? secondaryRepository.countByUserId(userId) : 0L
         );
@@ -101,12 +127,14 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public Integer sumQuantityByUserId(UUID userId) {
         return executeReadOperation(
             userId.toString(),
+            "sumQuantityByUserId",
             () -> primaryRepository.sumQuantityByUserId(userId),
             () -> secondaryRepository != null ? secondaryRepository.sumQuantityByUserId(userId) : 0
         );
     }
     
     // Standard JpaRepository methods using dual database strategy with ID synchronization
+    @Transactional
     public CartItem save(CartItem cartItem) {
         return saveDualWithIdSync(cartItem.getUserId().toString(), cartItem);
     }
@@ -119,31 +147,65 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
         
         // Then save to secondary database with the same ID if available
         if (isSecondaryAvailable()) {
-            try {
-                // Ensure timestamps are set
-                LocalDateTime now = LocalDateTime.now();
-                LocalDateTime createdAt = savedPrimary.getCreatedAt() != null ? savedPrimary.getCreatedAt() : now;
-                LocalDateTime updatedAt = savedPrimary.getUpdatedAt() != null ? savedPrimary.getUpdatedAt() : now;
-                
-                // Use native SQL to insert with the exact same ID
-                secondaryRepository.saveWithSpecificId(
-                    savedPrimary.getId().toString(),
-                    savedPrimary.getUserId().toString(),
-                    savedPrimary.getProductId().toString(),
-                    savedPrimary.getQuantity(),
-                    createdAt,
-                    updatedAt
-                );
-                log.debug("CartItem saved to secondary database with ID: {}", savedPrimary.getId());
-            } catch (Exception e) {
-                log.error("Failed to save cart item to secondary database for user {}: {}", userId, e.getMessage());
-                // Don't fail the operation, just log the error
-            }
+            replicateSave(userId, cartKey(savedPrimary.getUserId()), savedPrimary.getId(), savedPrimary);
         }
         
         return savedPrimary;
     }
     
+    @Override
+    protected Runnable secondaryUpsert(CartItem cartItem) {
+        // Ensure timestamps are set
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdAt = cartItem.getCreatedAt() != null ? cartItem.getCreatedAt() : now;
+        LocalDateTime updatedAt = cartItem.getUpdatedAt() != null ? cartItem.getUpdatedAt() : now;
+        
+        // Capture the values now, the write may run after the entity has changed again
+        String id = cartItem.getId().toString();
+        String itemUserId = cartItem.getUserId().toString();
+        String productId = cartItem.getProductId().toString();
+        Integer quantity = cartItem.getQuantity();
+        
+        // Use native SQL to insert with the exact same ID
+        return () -> {
+            secondaryRepository.saveWithSpecificId(id, itemUserId, productId, quantity, createdAt, updatedAt);
+            log.debug("CartItem saved to secondary database with ID: {}", id);
+        };
+    }
+    
+    @Override
+    protected UUID parseId(String aggregateId) {
+        return UUID.fromString(aggregateId);
+    }
+    
+    @Override
+    protected UUID getEntityId(CartItem cartItem) {
+        return cartItem.getId();
+    }
+    
+    @Override
+    protected List<String> batchColumns() {
+        return BATCH_COLUMNS;
+    }
+    
+    @Override
+    protected Object[] batchRow(CartItem cartItem) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Object[] {
+            cartItem.getId(),
+            cartItem.getUserId(),
+            cartItem.getProductId(),
+            cartItem.getQuantity(),
+            cartItem.getCreatedAt() != null ? cartItem.getCreatedAt() : now,
+            cartItem.getUpdatedAt() != null ? cartItem.getUpdatedAt() : now
+        };
+    }
+    
+    @Override
+    public String getAggregateType() {
+        return "cart_items";
+    }
+    
     public Optional<CartItem> findById(UUID id) {
         // For findById without user context, we use system as userId
         return findByIdDual("system", id);
@@ -154,17 +216,20 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
         return findAllDual("system");
     }
     
+    @Transactional
     public void deleteById(UUID id) {
         deleteByIdDual("system", id);
     }
     
+    @Transactional
     public void delete(CartItem cartItem) {
-        deleteByIdDual(cartItem.getUserId().toString(), cartItem.getId());
+        deleteByIdDual(cartItem.getUserId().toString(), cartKey(cartItem.getUserId()), cartItem.getId());
     }
 
     public long count() {
         return executeReadOperation(
             "system",
+            "count",
             () -> primaryRepository.count(),
             () -> secondaryRepository != null ? secondaryRepository.count() : 0L
         );
@@ -173,4 +238,47 @@ public class CartItemRepository extends DualDatabaseRepository<CartItem, UUID> {
     public void deleteAll() {
         deleteAllDual();
     }
+    
+    public long deleteAll(BulkDeleteMonitor.Progress progress) {
+        return deleteAllDual(progress);
+    }
+    
+    /**
+     * IDs of the cart items whose product no order item references, read from the primary
+     * @return Cart item IDs
+     */
+    public List<UUID> findIdsOfUnorderedProducts() {
+        return primaryRepository.findIdsOfUnorderedProducts();
+    }
+    
+    // Batch methods, one round trip per chunk on each database
+    public List<CartItem> findAllById(List<UUID> ids) {
+        return findAllByIdDual("system", ids);
+    }
+    
+    @Transactional
+    public void deleteAllById(List<UUID> ids) {
+        deleteAllByIdDual(ids);
+    }
+    
+    public int copyMissingToSecondary(List<CartItem> cartItems) {
+        return copyMissingToSecondaryDual(cartItems);
+    }
+    
+    @Transactional
+    public int copyMissingToPrimary(List<CartItem> cartItems) {
+        return copyMissingToPrimaryDual(cartItems);
+    }
+    
+    // Bulk deletes remove rows by query, so each removed item gets its own outbox event
+    private void recordDeletes(UUID userId, List<CartItem> items) {
+        for (CartItem item : items) {
+            outboxService.record(getAggregateType(), item.getId(), OutboxEvent.Operation.DELETE, userId.toString());
+        }
+    }
+    
+    // Cart writes are ordered per user so bulk deletes never overtake a pending item save
+    private String cartKey(UUID userId) {
+        return "cart:" + userId;
+    }
 }
\ No newline at end of file
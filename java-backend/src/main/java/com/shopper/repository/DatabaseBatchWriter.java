@@ -0,0 +1,422 @@
+package com.shopper.repository;
+
+import com.shopper.service.sync.UuidSet;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes rows in chunks with one round trip per chunk: JDBC statement batches on the primary
+ * (SQLite has no cheaper multi-row form) and multi-row INSERT ... ON CONFLICT statements on the
+ * secondary (Postgres). Rows are given as column values with the ID first.
+ * Bulk deletes are set-based statements limited to one chunk each, and ID sets are read
+ * in keyset-ordered chunks for set-based diffs.
+ */
+@Component
+@Slf4j
+public class DatabaseBatchWriter {
+
+    // Postgres accepts at most 65535 bind parameters per statement
+    private static final int MAX_POSTGRES_PARAMETERS = 65535;
+
+    // How long a table found without uuid IDs is not asked again
+    private static final long ID_TYPE_RECHECK_MS = 60_000;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired(required = false)
+    @Qualifier("secondaryDataSource")
+    private DataSource secondaryDataSource;
+
+    @Value("${app.dual-database.batch.primary-chunk-size:500}")
+    private int primaryChunkSize;
+
+    @Value("${app.dual-database.batch.secondary-chunk-size:500}")
+    private int secondaryChunkSize;
+
+    private JdbcTemplate primaryJdbcTemplate;
+    private JdbcTemplate secondaryJdbcTemplate;
+    private final Set<String> secondaryUuidIdTables = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> secondaryNonUuidIdCheckedAt = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        secondaryJdbcTemplate = secondaryDataSource != null ? new JdbcTemplate(secondaryDataSource) : null;
+    }
+
+    public int getPrimaryChunkSize() {
+        return Math.max(1, primaryChunkSize);
+    }
+
+    public int getSecondaryChunkSize() {
+        return Math.max(1, secondaryChunkSize);
+    }
+
+    /**
+     * Split a list into consecutive chunks
+     * @param items Items to split
+     * @param chunkSize Maximum chunk length
+     * @param <E> Item type
+     * @return Views of the list, each at most chunkSize long
+     */
+    public static <E> List<List<E>> chunks(List<E> items, int chunkSize) {
+        List<List<E>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            chunks.add(items.subList(start, Math.min(items.size(), start + chunkSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Insert rows into the primary database, skipping IDs that already exist
+     * @param table Table name
+     * @param columns Column names, ID first
+     * @param rows Column values per row
+     * @return Number of rows inserted
+     */
+    public int insertMissingIntoPrimary(String table, List<String> columns, List<Object[]> rows) {
+        return writePrimary(table, rows, "INSERT OR IGNORE INTO " + table + " (" + String.join(", ", columns)
+                + ") VALUES (" + placeholders(columns.size()) + ")");
+    }
+
+    /**
+     * Insert or update rows in the primary database
+     * @param table Table name
+     * @param columns Column names, ID first
+     * @param rows Column values per row
+     * @return Number of rows written
+     */
+    public int upsertIntoPrimary(String table, List<String> columns, List<Object[]> rows) {
+        return writePrimary(table, rows, "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + placeholders(columns.size()) + ") ON CONFLICT (" + columns.get(0) + ") DO UPDATE SET "
+                + excludedAssignments(columns));
+    }
+
+    /**
+     * Update primary rows that have not changed since they were read. A row whose updated_at is now
+     * later than the version read, or that has been deleted meanwhile, is left as it is.
+     * @param table Table name
+     * @param columns Column names, ID first, including updated_at
+     * @param rows Column values per row
+     * @param seenUpdatedAt updated_at of each row as it was read from the primary, in the order of rows
+     * @return Number of rows written
+     */
+    public int updateUnchangedInPrimary(String table, List<String> columns, List<Object[]> rows,
+                                        List<LocalDateTime> seenUpdatedAt) {
+        return updateUnchanged(primaryJdbcTemplate, "primary", getPrimaryChunkSize(), true,
+                table, columns, rows, seenUpdatedAt);
+    }
+
+    private int writePrimary(String table, List<Object[]> rows, String sql) {
+        int written = 0;
+        for (List<Object[]> chunk : chunks(rows, getPrimaryChunkSize())) {
+            // SQLite stores IDs as text
+            List<Object[]> arguments = chunk.stream().map(row -> bindRow(row, true)).toList();
+            written += Arrays.stream(primaryJdbcTemplate.batchUpdate(sql, arguments))
+                    .filter(count -> count > 0)
+                    .sum();
+        }
+        log.debug("Wrote {} of {} rows into primary {}", written, rows.size(), table);
+        return written;
+    }
+
+    /**
+     * Insert or update rows in the secondary database
+     * @param table Table name
+     * @param columns Column names, ID first
+     * @param rows Column values per row
+     * @return Number of rows written
+     */
+    public int upsertIntoSecondary(String table, List<String> columns, List<Object[]> rows) {
+        return writeSecondary(table, columns, rows,
+                "ON CONFLICT (" + columns.get(0) + ") DO UPDATE SET " + excludedAssignments(columns));
+    }
+
+    /**
+     * Update secondary rows that have not changed since they were read
+     * @param table Table name
+     * @param columns Column names, ID first, including updated_at
+     * @param rows Column values per row
+     * @param seenUpdatedAt updated_at of each row as it was read from the secondary, in the order of rows
+     * @return Number of rows written
+     * @see #updateUnchangedInPrimary(String, List, List, List)
+     */
+    public int updateUnchangedInSecondary(String table, List<String> columns, List<Object[]> rows,
+                                          List<LocalDateTime> seenUpdatedAt) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        return updateUnchanged(secondaryJdbcTemplate, "secondary", getSecondaryChunkSize(), false,
+                table, columns, rows, seenUpdatedAt);
+    }
+
+    /**
+     * Insert rows into the secondary database, skipping IDs that already exist
+     * @param table Table name
+     * @param columns Column names, ID first
+     * @param rows Column values per row
+     * @return Number of rows inserted
+     */
+    public int insertMissingIntoSecondary(String table, List<String> columns, List<Object[]> rows) {
+        return writeSecondary(table, columns, rows, "ON CONFLICT (" + columns.get(0) + ") DO NOTHING");
+    }
+
+    /**
+     * Delete every row of a primary table, one chunk per statement. Outside a transaction each chunk
+     * commits on its own, so readers and other writers get the SQLite lock between chunks; inside one,
+     * the delete commits or rolls back with the caller's other writes.
+     * @param table Table name
+     * @param onChunk Receives the row count of each deleted chunk
+     * @return Number of rows deleted
+     */
+    public long deleteAllFromPrimary(String table, IntConsumer onChunk) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.debug("Bulk delete of primary {} joins the caller's transaction and holds the write lock until it commits", table);
+        }
+        return deleteInChunks(primaryJdbcTemplate, "primary", table,
+                "DELETE FROM " + table + " WHERE rowid IN (SELECT rowid FROM " + table + " LIMIT ?)",
+                getPrimaryChunkSize(), onChunk);
+    }
+
+    /**
+     * Delete every row of a secondary table, one chunk per statement
+     * @param table Table name
+     * @param onChunk Receives the row count of each deleted chunk
+     * @return Number of rows deleted
+     */
+    public long deleteAllFromSecondary(String table, IntConsumer onChunk) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        // ARRAY(...) lets Postgres find the chunk's rows with a TID scan
+        return deleteInChunks(secondaryJdbcTemplate, "secondary", table,
+                "DELETE FROM " + table + " WHERE ctid = ANY(ARRAY(SELECT ctid FROM " + table + " LIMIT ?))",
+                getSecondaryChunkSize(), onChunk);
+    }
+
+    /**
+     * Delete rows of a secondary table by ID, one chunk per statement
+     * @param table Table name
+     * @param ids IDs of the rows to delete
+     * @return Number of rows deleted
+     */
+    public int deleteByIdsFromSecondary(String table, List<UUID> ids) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        int deleted = 0;
+        for (List<UUID> chunk : chunks(ids, getSecondaryChunkSize())) {
+            deleted += secondaryJdbcTemplate.update("DELETE FROM " + table + " WHERE id IN ("
+                    + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+        log.debug("Deleted {} of {} rows from secondary {}", deleted, ids.size(), table);
+        return deleted;
+    }
+
+    private long deleteInChunks(JdbcTemplate jdbcTemplate, String datasource, String table, String sql,
+                                int chunkSize, IntConsumer onChunk) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, chunkSize);
+            if (deleted > 0) {
+                total += deleted;
+                onChunk.accept(deleted);
+                log.debug("Deleted {} rows from {} {} so far", total, datasource, table);
+            }
+        } while (deleted > 0);
+        log.info("Deleted {} rows from {} {}", total, datasource, table);
+        return total;
+    }
+
+    /**
+     * Read every ID of a primary table in keyset-ordered chunks
+     * @param table Table name
+     * @return IDs of the table
+     */
+    public UuidSet readPrimaryIds(String table) {
+        return readIds(primaryJdbcTemplate, table, getPrimaryChunkSize(), true);
+    }
+
+    /**
+     * Read every ID of a secondary table in keyset-ordered chunks
+     * @param table Table name
+     * @return IDs of the table
+     */
+    public UuidSet readSecondaryIds(String table) {
+        requireSecondaryUuidIds(table);
+        return readIds(secondaryJdbcTemplate, table, getSecondaryChunkSize(), false);
+    }
+
+    /**
+     * Check whether a secondary table's ID column is a uuid. Tables created before the PostgreSQL
+     * schema fix keep varchar IDs, which Postgres will not compare with the uuid keys bound by keyset reads.
+     * A uuid column is remembered, anything else is asked again after a minute so the schema fix is picked up.
+     * @param table Table name
+     * @return true if the secondary table exists and its IDs are uuids
+     */
+    public boolean hasSecondaryUuidIds(String table) {
+        if (secondaryJdbcTemplate == null) {
+            return false;
+        }
+        if (secondaryUuidIdTables.contains(table)) {
+            return true;
+        }
+        Long checkedAt = secondaryNonUuidIdCheckedAt.get(table);
+        if (checkedAt != null && System.currentTimeMillis() - checkedAt < ID_TYPE_RECHECK_MS) {
+            return false;
+        }
+        List<String> types = secondaryJdbcTemplate.queryForList("SELECT data_type FROM information_schema.columns "
+                + "WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'id'", String.class, table);
+        if (types.size() == 1 && "uuid".equals(types.get(0))) {
+            secondaryUuidIdTables.add(table);
+            secondaryNonUuidIdCheckedAt.remove(table);
+            return true;
+        }
+        log.warn("Secondary {}.id is {}, not uuid; keyset reads of the table need the PostgreSQL schema fix",
+                table, types.isEmpty() ? "missing" : types.get(0));
+        secondaryNonUuidIdCheckedAt.put(table, System.currentTimeMillis());
+        return false;
+    }
+
+    /**
+     * Fail fast instead of part way through a sync when a secondary table still has varchar IDs
+     * @param table Table name
+     * @throws IllegalStateException If the secondary is unavailable or its IDs are not uuids
+     */
+    public void requireSecondaryUuidIds(String table) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        if (!hasSecondaryUuidIds(table)) {
+            throw new IllegalStateException("Secondary " + table + ".id is not a uuid column, "
+                    + "run POST /api/admin/database/fix-postgresql-schema first");
+        }
+    }
+
+    private UuidSet readIds(JdbcTemplate jdbcTemplate, String table, int chunkSize, boolean uuidAsText) {
+        UuidSet.Builder ids = UuidSet.builder();
+        String firstChunk = "SELECT id FROM " + table + " ORDER BY id LIMIT ?";
+        String nextChunk = "SELECT id FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?";
+        List<String> chunk = jdbcTemplate.queryForList(firstChunk, String.class, chunkSize);
+        while (!chunk.isEmpty()) {
+            chunk.forEach(id -> ids.add(UUID.fromString(id)));
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            // Continue after the last ID read, as the database orders it
+            String lastId = chunk.get(chunk.size() - 1);
+            Object after = uuidAsText ? lastId : UUID.fromString(lastId);
+            chunk = jdbcTemplate.queryForList(nextChunk, String.class, after, chunkSize);
+        }
+        return ids.build();
+    }
+
+    private int writeSecondary(String table, List<String> columns, List<Object[]> rows, String conflictClause) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        int rowsPerStatement = Math.min(getSecondaryChunkSize(), MAX_POSTGRES_PARAMETERS / columns.size());
+        String rowPlaceholder = "(" + placeholders(columns.size()) + ")";
+        int written = 0;
+        for (List<Object[]> chunk : chunks(rows, rowsPerStatement)) {
+            String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES "
+                    + String.join(", ", Collections.nCopies(chunk.size(), rowPlaceholder))
+                    + " " + conflictClause;
+            Object[] arguments = chunk.stream()
+                    .flatMap(row -> Arrays.stream(bindRow(row, false)))
+                    .toArray();
+            written += secondaryJdbcTemplate.update(sql, arguments);
+        }
+        log.debug("Wrote {} of {} rows into secondary {}", written, rows.size(), table);
+        return written;
+    }
+
+    private int updateUnchanged(JdbcTemplate jdbcTemplate, String datasource, int chunkSize, boolean uuidAsText,
+                                String table, List<String> columns, List<Object[]> rows,
+                                List<LocalDateTime> seenUpdatedAt) {
+        String update = "UPDATE " + table + " SET " + columns.subList(1, columns.size()).stream()
+                .map(column -> column + " = ?")
+                .collect(Collectors.joining(", ")) + " WHERE " + columns.get(0) + " = ?";
+        // A row never updated before has no timestamp to compare, it must still have none
+        List<Object[]> seenAt = new ArrayList<>();
+        List<Object[]> neverUpdated = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] bound = bindRow(rows.get(i), uuidAsText);
+            LocalDateTime seen = seenUpdatedAt.get(i);
+            // SET values first, then the ID and the timestamp read
+            Object[] arguments = new Object[bound.length + (seen != null ? 1 : 0)];
+            System.arraycopy(bound, 1, arguments, 0, bound.length - 1);
+            arguments[bound.length - 1] = bound[0];
+            if (seen != null) {
+                arguments[bound.length] = Timestamp.valueOf(seen);
+                seenAt.add(arguments);
+            } else {
+                neverUpdated.add(arguments);
+            }
+        }
+        int written = 0;
+        for (List<Object[]> chunk : chunks(seenAt, chunkSize)) {
+            written += Arrays.stream(jdbcTemplate.batchUpdate(update + " AND updated_at <= ?", chunk))
+                    .filter(count -> count > 0)
+                    .sum();
+        }
+        for (List<Object[]> chunk : chunks(neverUpdated, chunkSize)) {
+            written += Arrays.stream(jdbcTemplate.batchUpdate(update + " AND updated_at IS NULL", chunk))
+                    .filter(count -> count > 0)
+                    .sum();
+        }
+        log.debug("Updated {} of {} unchanged rows in {} {}", written, rows.size(), datasource, table);
+        return written;
+    }
+
+    private Object[] bindRow(Object[] row, boolean uuidAsText) {
+        Object[] bound = new Object[row.length];
+        for (int i = 0; i < row.length; i++) {
+            Object value = row[i];
+            if (value instanceof UUID uuid && uuidAsText) {
+                bound[i] = uuid.toString();
+            } else if (value instanceof LocalDateTime dateTime) {
+                // Bound like Hibernate binds it, so both drivers store their usual timestamp format
+                bound[i] = Timestamp.valueOf(dateTime);
+            } else if (value instanceof Enum<?> constant) {
+                bound[i] = constant.name();
+            } else {
+                bound[i] = value;
+            }
+        }
+        return bound;
+    }
+
+    private String excludedAssignments(List<String> columns) {
+        return columns.stream().skip(1)
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    private String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
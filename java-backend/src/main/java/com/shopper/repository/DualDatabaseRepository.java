@@ -1,12 +1,18 @@
 package com.shopper.repository;
 
+import com.shopper.entity.primary.OutboxEvent;
 import com.shopper.service.DualDatabaseStrategy;
+import com.shopper.service.replication.OutboxService;
+import com.shopper.service.replication.ReplicationTarget;
+import com.shopper.service.replication.SecondaryWriteQueue;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -17,11 +23,23 @@ import java.util.function.Supplier;
  * with feature flag controlled routing.
  */
 @Slf4j
-public abstract class DualDatabaseRepository<T, ID> {
+public abstract class DualDatabaseRepository<T, ID> implements ReplicationTarget {
     
     @Autowired
     protected DualDatabaseStrategy dualDatabaseStrategy;
     
+    @Autowired
+    protected OutboxService outboxService;
+    
+    @Autowired
+    protected DatabaseBatchWriter batchWriter;
+    
+    @Autowired
+    protected BulkDeleteMonitor bulkDeleteMonitor;
+    
+    @Autowired
+    protected SecondaryWriteQueue secondaryWriteQueue;
+    
     @Autowired
     @Qualifier("primaryDataSource")
     protected DataSource primaryDataSource;
@@ -42,6 +60,40 @@ public abstract class DualDatabaseRepository<T, ID> {
      */
     protected abstract JpaRepository<T, ID> getSecondaryRepository();
     
+    /**
+     * Build the secondary write for an entity, capturing its current values
+     * @param entity Entity as saved in the primary database
+     * @return Operation that writes the captured values to the secondary database
+     */
+    protected abstract Runnable secondaryUpsert(T entity);
+    
+    /**
+     * Parse an ID as recorded in the outbox
+     * @param aggregateId ID in string form
+     * @return Entity ID
+     */
+    protected abstract ID parseId(String aggregateId);
+    
+    /**
+     * Get the ID of an entity
+     * @param entity Entity
+     * @return Entity ID, null if not yet saved
+     */
+    protected abstract ID getEntityId(T entity);
+    
+    /**
+     * Columns written by batch copies and upserts, ID first
+     * @return Column names of the entity table
+     */
+    protected abstract List<String> batchColumns();
+    
+    /**
+     * Capture the column values of an entity for a batch write
+     * @param entity Entity
+     * @return Values in the order of {@link #batchColumns()}
+     */
+    protected abstract Object[] batchRow(T entity);
+    
     /**
      * Find entity by ID using dual database strategy
      * @param userId User ID for feature flag evaluation
@@ -49,8 +101,10 @@ public abstract class DualDatabaseRepository<T, ID> {
      * @return Optional containing the entity if found
      */
     protected Optional<T> findByIdDual(String userId, ID id) {
-        return dualDatabaseStrategy.executeRead(
+        return dualDatabaseStrategy.executeEntityRead(
             userId,
+            orderingKey(id),
+            readOperationName("findById"),
             () -> getPrimaryRepository().findById(id),
             () -> getSecondaryRepository() != null ? getSecondaryRepository().findById(id) : Optional.empty()
         );
@@ -64,6 +118,7 @@ public abstract class DualDatabaseRepository<T, ID> {
     protected List<T> findAllDual(String userId) {
         return dualDatabaseStrategy.executeRead(
             userId,
+            readOperationName("findAll"),
             () -> getPrimaryRepository().findAll(),
             () -> getSecondaryRepository() != null ? getSecondaryRepository().findAll() : List.of()
         );
@@ -101,8 +156,24 @@ public abstract class DualDatabaseRepository<T, ID> {
      * @param id Entity ID to delete
      */
     protected void deleteByIdDual(String userId, ID id) {
+        deleteByIdDual(userId, orderingKey(id), id);
+    }
+    
+    /**
+     * Delete entity from both databases, ordering the secondary delete under the given key
+     * @param userId User ID for feature flag evaluation
+     * @param orderingKey Key the secondary delete is ordered under
+     * @param id Entity ID to delete
+     */
+    protected void deleteByIdDual(String userId, String orderingKey, ID id) {
+        if (isOutboxActive()) {
+            getPrimaryRepository().deleteById(id);
+            outboxService.record(getAggregateType(), id, OutboxEvent.Operation.DELETE, userId);
+            return;
+        }
         dualDatabaseStrategy.executeWriteWithUser(
             userId,
+            orderingKey,
             () -> {
                 getPrimaryRepository().deleteById(id);
                 return null;
@@ -121,20 +192,183 @@ public abstract class DualDatabaseRepository<T, ID> {
      * @param id Entity ID to delete
      */
     protected void deleteByIdDual(ID id) {
-        dualDatabaseStrategy.executeWrite(
-            () -> {
-                getPrimaryRepository().deleteById(id);
-                return null;
-            },
-            () -> {
-                if (getSecondaryRepository() != null) {
-                    getSecondaryRepository().deleteById(id);
-                }
-                return null;
+        deleteByIdDual("system", orderingKey(id), id);
+    }
+    
+    /**
+     * Replicate an entity already saved in the primary database. With the outbox enabled the change
+     * is recorded in the caller's transaction and applied by the relay, otherwise it is written directly.
+     * @param userId User ID for feature flag evaluation
+     * @param orderingKey Key the secondary write is ordered under
+     * @param id Entity ID
+     * @param savedPrimary Entity as saved in the primary database
+     */
+    protected void replicateSave(String userId, String orderingKey, ID id, T savedPrimary) {
+        if (isOutboxActive()) {
+            outboxService.record(getAggregateType(), id, OutboxEvent.Operation.UPSERT, userId);
+            return;
+        }
+        dualDatabaseStrategy.executeSecondaryWrite(userId, orderingKey, secondaryUpsert(savedPrimary));
+    }
+    
+    /**
+     * Save entities to both databases in chunks. The primary flushes each chunk as one JDBC batch;
+     * the secondary receives multi-row upserts, or one outbox event per entity when the outbox is enabled.
+     * The secondary rows are written once per write-behind lane, ordered with the single-row writes
+     * to the same entities.
+     * @param userId User ID for feature flag evaluation
+     * @param entities Entities to save
+     * @return Saved entities
+     */
+    protected List<T> saveAllDual(String userId, List<T> entities) {
+        List<T> saved = new ArrayList<>(entities.size());
+        for (List<T> chunk : DatabaseBatchWriter.chunks(entities, batchWriter.getPrimaryChunkSize())) {
+            saved.addAll(getPrimaryRepository().saveAll(chunk));
+            getPrimaryRepository().flush();
+        }
+        log.info("Saved {} {} to primary database in batches", saved.size(), getAggregateType());
+        
+        if (isOutboxActive()) {
+            outboxService.recordAll(getAggregateType(), saved.stream().map(this::getEntityId).toList(),
+                    OutboxEvent.Operation.UPSERT, userId);
+        } else if (isSecondaryAvailable() && !saved.isEmpty()) {
+            for (List<T> lane : secondaryWriteQueue.groupByLane(saved, entity -> orderingKey(getEntityId(entity)))) {
+                // Capture the values now, the write may run after the entities have changed again
+                List<Object[]> rows = lane.stream().map(this::batchRow).toList();
+                dualDatabaseStrategy.executeSecondaryWrite(userId, orderingKey(getEntityId(lane.get(0))),
+                        () -> batchWriter.upsertIntoSecondary(getAggregateType(), batchColumns(), rows));
+            }
+        }
+        return saved;
+    }
+    
+    /**
+     * Save entities to both databases in chunks (system operation)
+     * @param entities Entities to save
+     * @return Saved entities
+     */
+    protected List<T> saveAllDual(List<T> entities) {
+        return saveAllDual("system", entities);
+    }
+    
+    /**
+     * Delete entities from both databases with one statement per chunk of IDs.
+     * Rows are removed by query, so JPA cascades do not run; dependent rows must be deleted first.
+     * The secondary deletes are ordered with the single-row writes to the same entities, as in {@link #saveAllDual(String, List)}.
+     * @param userId User ID for feature flag evaluation
+     * @param ids IDs of the entities to delete
+     */
+    protected void deleteAllByIdDual(String userId, List<ID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (List<ID> chunk : DatabaseBatchWriter.chunks(ids, batchWriter.getPrimaryChunkSize())) {
+            getPrimaryRepository().deleteAllByIdInBatch(chunk);
+        }
+        log.info("Deleted {} {} from primary database in batches", ids.size(), getAggregateType());
+        
+        if (isOutboxActive()) {
+            outboxService.recordAll(getAggregateType(), ids, OutboxEvent.Operation.DELETE, userId);
+        } else if (isSecondaryAvailable()) {
+            for (List<ID> lane : secondaryWriteQueue.groupByLane(List.copyOf(ids), this::orderingKey)) {
+                dualDatabaseStrategy.executeSecondaryWrite(userId, orderingKey(lane.get(0)), () -> {
+                    for (List<ID> chunk : DatabaseBatchWriter.chunks(lane, batchWriter.getSecondaryChunkSize())) {
+                        getSecondaryRepository().deleteAllByIdInBatch(chunk);
+                    }
+                });
             }
+        }
+    }
+    
+    /**
+     * Delete entities from both databases in chunks (system operation)
+     * @param ids IDs of the entities to delete
+     */
+    protected void deleteAllByIdDual(List<ID> ids) {
+        deleteAllByIdDual("system", ids);
+    }
+    
+    /**
+     * Find entities by ID using dual database strategy, one query per chunk of IDs
+     * @param userId User ID for feature flag evaluation
+     * @param ids Entity IDs
+     * @return Entities found, in no particular order
+     */
+    protected List<T> findAllByIdDual(String userId, List<ID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return dualDatabaseStrategy.executeRead(
+            userId,
+            readOperationName("findAllById"),
+            () -> findAllByIdChunked(getPrimaryRepository(), ids, batchWriter.getPrimaryChunkSize()),
+            () -> getSecondaryRepository() != null
+                    ? findAllByIdChunked(getSecondaryRepository(), ids, batchWriter.getSecondaryChunkSize())
+                    : List.of()
         );
     }
     
+    /**
+     * Find entities by ID in the primary database only, one query per chunk
+     * @param ids Entity IDs
+     * @return Entities found
+     */
+    protected List<T> findAllByIdInPrimary(List<ID> ids) {
+        return findAllByIdChunked(getPrimaryRepository(), ids, batchWriter.getPrimaryChunkSize());
+    }
+    
+    private List<T> findAllByIdChunked(JpaRepository<T, ID> repository, List<ID> ids, int chunkSize) {
+        List<T> found = new ArrayList<>(ids.size());
+        for (List<ID> chunk : DatabaseBatchWriter.chunks(ids, chunkSize)) {
+            found.addAll(repository.findAllById(chunk));
+        }
+        return found;
+    }
+    
+    /**
+     * Copy entities to the secondary database, leaving rows that already exist untouched
+     * @param entities Entities read from the primary database
+     * @return Number of rows inserted
+     */
+    protected int copyMissingToSecondaryDual(List<T> entities) {
+        if (!isSecondaryAvailable()) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        return batchWriter.insertMissingIntoSecondary(getAggregateType(), batchColumns(),
+                entities.stream().map(this::batchRow).toList());
+    }
+    
+    /**
+     * Copy entities to the primary database, leaving rows that already exist untouched
+     * @param entities Entities read from the secondary database
+     * @return Number of rows inserted
+     */
+    protected int copyMissingToPrimaryDual(List<T> entities) {
+        return batchWriter.insertMissingIntoPrimary(getAggregateType(), batchColumns(),
+                entities.stream().map(this::batchRow).toList());
+    }
+    
+    @Override
+    public void replicateToSecondary(String aggregateId) {
+        replicateByIdToSecondary(parseId(aggregateId));
+    }
+    
+    /**
+     * Copy the current primary state of an entity to the secondary database
+     * @param id Entity ID
+     */
+    protected void replicateByIdToSecondary(ID id) {
+        if (!isSecondaryAvailable()) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        Optional<T> current = getPrimaryRepository().findById(id);
+        if (current.isPresent()) {
+            secondaryUpsert(current.get()).run();
+        } else {
+            getSecondaryRepository().deleteById(id);
+        }
+    }
+    
     /**
      * Execute a custom read operation using dual database strategy
      * @param userId User ID for feature flag evaluation
@@ -147,6 +381,28 @@ public abstract class DualDatabaseRepository<T, ID> {
         return dualDatabaseStrategy.executeRead(userId, primaryOperation, secondaryOperation);
     }
     
+    /**
+     * Execute a named custom read operation using dual database strategy
+     * @param userId User ID for feature flag evaluation
+     * @param method Repository method name, used to label hedging metrics
+     * @param primaryOperation Operation to execute on primary database
+     * @param secondaryOperation Operation to execute on secondary database
+     * @param <R> Return type
+     * @return Operation result
+     */
+    protected <R> R executeReadOperation(String userId, String method, Supplier<R> primaryOperation, Supplier<R> secondaryOperation) {
+        return dualDatabaseStrategy.executeRead(userId, readOperationName(method), primaryOperation, secondaryOperation);
+    }
+    
+    /**
+     * Name of a read for metrics, qualified with the repository name
+     * @param method Repository method name
+     * @return Operation name such as "ProductRepository.findById"
+     */
+    protected String readOperationName(String method) {
+        return getClass().getSimpleName() + "." + method;
+    }
+    
     /**
      * Execute a custom write operation using dual database strategy
      * @param userId User ID for feature flag evaluation
@@ -160,21 +416,36 @@ public abstract class DualDatabaseRepository<T, ID> {
     }
     
     /**
-     * Delete all entities from both databases
+     * Delete all entities from both databases with set-based statements, one chunk at a time.
+     * Call outside a transaction so each chunk commits on its own; JPA cascades do not run.
+     * @return Number of rows deleted from the primary database
      */
-    protected void deleteAllDual() {
-        dualDatabaseStrategy.executeWrite(
-            () -> {
-                getPrimaryRepository().deleteAll();
-                return null;
-            },
-            () -> {
-                if (getSecondaryRepository() != null) {
-                    getSecondaryRepository().deleteAll();
-                }
-                return null;
-            }
-        );
+    protected long deleteAllDual() {
+        BulkDeleteMonitor.Progress progress = bulkDeleteMonitor.start(getAggregateType());
+        try {
+            long deleted = deleteAllDual(progress);
+            progress.finish();
+            return deleted;
+        } catch (RuntimeException e) {
+            progress.fail(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Delete all entities from both databases as part of a larger bulk delete
+     * @param progress Progress the deleted chunks are reported to
+     * @return Number of rows deleted from the primary database
+     */
+    protected long deleteAllDual(BulkDeleteMonitor.Progress progress) {
+        String table = getAggregateType();
+        long deleted = batchWriter.deleteAllFromPrimary(table, progress.chunkListener(DatasourceCircuitBreakers.PRIMARY, table));
+        if (isSecondaryAvailable()) {
+            // Ordered per table; the table is only cleared as a whole while its rows are being replaced
+            dualDatabaseStrategy.executeSecondaryWrite("system", table,
+                    () -> batchWriter.deleteAllFromSecondary(table, progress.chunkListener(DatasourceCircuitBreakers.SECONDARY, table)));
+        }
+        return deleted;
     }
     
     /**
@@ -184,11 +455,22 @@ public abstract class DualDatabaseRepository<T, ID> {
     protected long countDual() {
         return dualDatabaseStrategy.executeRead(
             "system",
+            readOperationName("count"),
             () -> getPrimaryRepository().count(),
             () -> getSecondaryRepository() != null ? getSecondaryRepository().count() : 0L
         );
     }
     
+    /**
+     * Key used to order secondary writes for a single entity, and to track system writes to it until
+     * the secondary has applied them
+     * @param id Entity ID
+     * @return Ordering key unique to this entity type and ID
+     */
+    protected String orderingKey(Object id) {
+        return getAggregateType() + ":" + id;
+    }
+    
     /**
      * Check if secondary database is available
      * @return true if secondary database is available
@@ -196,4 +478,12 @@ public abstract class DualDatabaseRepository<T, ID> {
     protected boolean isSecondaryAvailable() {
         return dualDatabaseStrategy.isSecondaryDatabaseEnabled() && getSecondaryRepository() != null;
     }
+    
+    /**
+     * Check if secondary writes go through the outbox
+     * @return true if the outbox is enabled and the secondary database is available
+     */
+    protected boolean isOutboxActive() {
+        return outboxService.isEnabled() && isSecondaryAvailable();
+    }
 } 
\ No newline at end of file
@@ -16,6 +16,9 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, UUID> {
     
     List<OrderItem> findByProductId(UUID productId);
     
+    @Query("SELECT DISTINCT oi.productId FROM OrderItem oi")
+    List<UUID> findDistinctProductIds();
+    
     @Query("SELECT oi FROM OrderItem oi WHERE oi.orderId = :orderId")
     List<OrderItem> findItemsByOrderId(@Param("orderId") UUID orderId);
     
@@ -3,13 +3,22 @@ package com.shopper.repository;
 import com.shopper.entity.Product;
 import com.shopper.repository.primary.PrimaryProductRepository;
 import com.shopper.repository.secondary.SecondaryProductRepository;
+import com.shopper.service.catalog.ProductCursor;
+import com.shopper.service.catalog.ProductPageQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +28,10 @@ import java.util.UUID;
 @Slf4j
 public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     
+    private static final List<String> BATCH_COLUMNS = List.of(
+        "id", "name", "description", "price", "image_url", "category", "stock_quantity", "created_at", "updated_at"
+    );
+    
     private final PrimaryProductRepository primaryRepository;
     
     @Autowired(required = false)
@@ -37,6 +50,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public List<Product> findByCategory(String category) {
         return executeReadOperation(
             "system",
+            "findByCategory",
             () -> primaryRepository.findByCategory(category),
             () -> secondaryRepository != null ? secondaryRepository.findByCategory(category) : List.of()
         );
@@ -45,6 +59,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public List<Product> findByNameContainingIgnoreCase(String name) {
         return executeReadOperation(
             "system",
+            "findByNameContainingIgnoreCase",
             () -> primaryRepository.findByNameContainingIgnoreCase(name),
             () -> secondaryRepository != null ? secondaryRepository.findByNameContainingIgnoreCase(name) : List.of()
         );
@@ -61,6 +76,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public List<Product> findInStockProducts() {
         return executeReadOperation(
             "system",
+            "findInStockProducts",
             () -> primaryRepository.findInStockProducts(),
             () -> secondaryRepository != null ? secondaryRepository.findInStock() : List.of()
         );
@@ -69,11 +85,68 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public List<Product> findInStockProductsByCategory(String category) {
         return executeReadOperation(
             "system",
+            "findInStockProductsByCategory",
             () -> primaryRepository.findInStockProductsByCategory(category),
             () -> secondaryRepository != null ? secondaryRepository.findByCategoryAndInStock(category) : List.of()
         );
     }
     
+    /**
+     * Read one page of the product listing, one row more than the limit to tell whether another follows
+     * @param query Filters, sort and cursor of the page
+     * @param userId User ID for feature flag evaluation
+     * @return Rows in the order of {@link ProductPageQuery#sort()}
+     */
+    public List<Product> findPage(ProductPageQuery query, String userId) {
+        Specification<Product> specification = pageSpecification(query);
+        Sort sort = query.sort();
+        int rows = query.limit() + 1;
+        if (query.cursor() != null && isSecondaryAvailable() && !batchWriter.hasSecondaryUuidIds(getAggregateType())) {
+            // The cursor binds a uuid, which Postgres cannot compare with the varchar IDs of an unfixed schema
+            return primaryRepository.findBy(specification, q -> q.sortBy(sort).limit(rows).all());
+        }
+        return executeReadOperation(
+            userId,
+            "findPage",
+            () -> primaryRepository.findBy(specification, q -> q.sortBy(sort).limit(rows).all()),
+            () -> secondaryRepository != null ? secondaryRepository.findBy(specification, q -> q.sortBy(sort).limit(rows).all()) : List.of()
+        );
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Specification<Product> pageSpecification(ProductPageQuery query) {
+        return (root, criteriaQuery, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (query.category() != null) {
+                predicates.add(cb.equal(root.get("category"), query.category()));
+            }
+            if (query.minPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("price"), query.minPrice()));
+            }
+            if (query.maxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("price"), query.maxPrice()));
+            }
+            if (query.inStockOnly()) {
+                predicates.add(cb.greaterThan(root.get("stockQuantity"), 0));
+            }
+            ProductCursor cursor = query.cursor();
+            if (cursor != null) {
+                // Rows past (value, id) in read order. The redundant bound on the key alone lets
+                // both databases start a range scan of the (key, id) index instead of filtering it.
+                Expression<Comparable> key = root.get(query.sortKey().property());
+                Expression<UUID> id = root.get("id");
+                Comparable value = cursor.value();
+                boolean ascending = query.sort().getOrderFor(query.sortKey().property()).isAscending();
+                predicates.add(ascending ? cb.greaterThanOrEqualTo(key, value) : cb.lessThanOrEqualTo(key, value));
+                predicates.add(cb.or(
+                    ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value),
+                    cb.and(cb.equal(key, value), ascending ? cb.greaterThan(id, cursor.id()) : cb.lessThan(id, cursor.id()))
+                ));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+    
     public List<String> findAllCategories() {
         return executeReadOperation(
             "system",
@@ -82,6 +155,53 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
         );
     }
     
+    /**
+     * ID and name of every product, read from the primary that a catalog import writes to
+     * @return Rows of id and name
+     */
+    public List<Object[]> findIdsAndNames() {
+        return primaryRepository.findIdsAndNames();
+    }
+    
+    /**
+     * Products by ID, read from the primary that a catalog import writes to
+     * @param ids Product IDs
+     * @return Products found
+     */
+    public List<Product> findAllByIdInPrimary(List<UUID> ids) {
+        return super.findAllByIdInPrimary(ids);
+    }
+    
+    /**
+     * IDs of the products no order item references, read from the primary
+     * @return Product IDs
+     */
+    public List<UUID> findUnorderedProductIds() {
+        return primaryRepository.findUnorderedIds();
+    }
+    
+    /**
+     * Number of products and their latest update time, read from the primary. Together they change with
+     * every insert, delete and timestamped update, whoever makes it.
+     * @return Count and latest update time as one comparable value
+     */
+    public String readChangeFingerprint() {
+        return primaryRepository.count() + "@" + primaryRepository.findLatestUpdatedAt();
+    }
+    
+    /**
+     * Category, stock quantity and price of every product, from whichever database serves reads
+     * @return Rows of id, category, stock quantity, price and last update
+     */
+    public List<Object[]> findStockLevels() {
+        return executeReadOperation(
+            "system",
+            "findStockLevels",
+            () -> primaryRepository.findStockLevels(),
+            () -> secondaryRepository != null ? secondaryRepository.findStockLevels() : List.of()
+        );
+    }
+    
     public long countInStockProducts() {
         return executeReadOperation(
             "system",
@@ -107,11 +227,13 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
         return findByIdDual(userId, id);
     }
     
+    @Transactional
     public Product save(Product product, String userId) {
         return saveDualWithIdSync(userId, product);
     }
     
     // Standard JpaRepository methods using dual database strategy (with system context)
+    @Transactional
     public Product save(Product product) {
         return saveDualWithIdSync("system", product);
     }
@@ -125,29 +247,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
         // Then save to secondary database with the same ID if available
         if (isSecondaryAvailable()) {
             log.info("Secondary database is available, attempting to sync product {}", savedPrimary.getId());
-            try {
-                // Ensure timestamps are set
-                LocalDateTime now = LocalDateTime.now();
-                LocalDateTime createdAt = savedPrimary.getCreatedAt() != null ? savedPrimary.getCreatedAt() : now;
-                LocalDateTime updatedAt = savedPrimary.getUpdatedAt() != null ? savedPrimary.getUpdatedAt() : now;
-                
-                // Use native SQL to insert with the exact same ID
-                secondaryRepository.saveWithSpecificId(
-                    savedPrimary.getId().toString(),
-                    savedPrimary.getName(),
-                    savedPrimary.getDescription(),
-                    savedPrimary.getPrice(),
-                    savedPrimary.getImageUrl(),
-                    savedPrimary.getCategory(),
-                    savedPrimary.getStockQuantity(),
-                    createdAt,
-                    updatedAt
-                );
-                log.info("Product {} saved to secondary database with ID: {}", savedPrimary.getName(), savedPrimary.getId());
-            } catch (Exception e) {
-                log.error("Failed to save product to secondary database for user {}: {}", userId, e.getMessage());
-                // Don't fail the operation, just log the error
-            }
+            replicateSave(userId, orderingKey(savedPrimary.getId()), savedPrimary.getId(), savedPrimary);
         } else {
             log.info("Secondary database is not available, skipping sync for product {}", savedPrimary.getId());
         }
@@ -155,6 +255,67 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
         return savedPrimary;
     }
     
+    @Override
+    protected Runnable secondaryUpsert(Product product) {
+        // Ensure timestamps are set
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdAt = product.getCreatedAt() != null ? product.getCreatedAt() : now;
+        LocalDateTime updatedAt = product.getUpdatedAt() != null ? product.getUpdatedAt() : now;
+        
+        // Capture the values now, the write may run after the entity has changed again
+        String id = product.getId().toString();
+        String name = product.getName();
+        String description = product.getDescription();
+        BigDecimal price = product.getPrice();
+        String imageUrl = product.getImageUrl();
+        String category = product.getCategory();
+        Integer stockQuantity = product.getStockQuantity();
+        
+        // Use native SQL to insert with the exact same ID
+        return () -> {
+            secondaryRepository.saveWithSpecificId(
+                id, name, description, price, imageUrl, category, stockQuantity, createdAt, updatedAt
+            );
+            log.info("Product {} saved to secondary database with ID: {}", name, id);
+        };
+    }
+    
+    @Override
+    protected UUID parseId(String aggregateId) {
+        return UUID.fromString(aggregateId);
+    }
+    
+    @Override
+    protected UUID getEntityId(Product product) {
+        return product.getId();
+    }
+    
+    @Override
+    protected List<String> batchColumns() {
+        return BATCH_COLUMNS;
+    }
+    
+    @Override
+    protected Object[] batchRow(Product product) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Object[] {
+            product.getId(),
+            product.getName(),
+            product.getDescription(),
+            product.getPrice(),
+            product.getImageUrl(),
+            product.getCategory(),
+            product.getStockQuantity(),
+            product.getCreatedAt() != null ? product.getCreatedAt() : now,
+            product.getUpdatedAt() != null ? product.getUpdatedAt() : now
+        };
+    }
+    
+    @Override
+    public String getAggregateType() {
+        return "products";
+    }
+    
     public Optional<Product> findById(UUID id) {
         return findByIdDual("system", id);
     }
@@ -163,10 +324,36 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
         return findAllDual("system");
     }
     
+    @Transactional
     public void deleteById(UUID id) {
         deleteByIdDual("system", id);
     }
     
+    // Batch methods, one round trip per chunk on each database
+    @Transactional
+    public List<Product> saveAll(List<Product> products) {
+        return saveAllDual(products);
+    }
+    
+    public List<Product> findAllById(List<UUID> ids) {
+        return findAllByIdDual("system", ids);
+    }
+    
+    @Transactional
+    public void deleteAllById(List<UUID> ids) {
+        deleteAllByIdDual(ids);
+    }
+    
+    public int copyMissingToSecondary(List<Product> products) {
+        return copyMissingToSecondaryDual(products);
+    }
+    
+    @Transactional
+    public int copyMissingToPrimary(List<Product> products) {
+        return copyMissingToPrimaryDual(products);
+    }
+    
+    @Transactional
     public void delete(Product product) {
         deleteByIdDual("system", product.getId());
     }
@@ -174,6 +361,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public long count() {
         return executeReadOperation(
             "system",
+            "count",
             () -> primaryRepository.count(),
             () -> secondaryRepository != null ? secondaryRepository.count() : 0L
         );
@@ -182,6 +370,7 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public boolean existsById(UUID id) {
         return executeReadOperation(
             "system",
+            "existsById",
             () -> primaryRepository.existsById(id),
             () -> secondaryRepository != null ? secondaryRepository.existsById(id) : false
         );
@@ -190,4 +379,8 @@ public class ProductRepository extends DualDatabaseRepository<Product, UUID> {
     public void deleteAll() {
         deleteAllDual();
     }
+    
+    public long deleteAll(BulkDeleteMonitor.Progress progress) {
+        return deleteAllDual(progress);
+    }
 }
\ No newline at end of file
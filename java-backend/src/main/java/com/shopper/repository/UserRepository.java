@@ -8,8 +8,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,6 +20,10 @@ import java.util.UUID;
 @Slf4j
 public class UserRepository extends DualDatabaseRepository<User, UUID> {
     
+    private static final List<String> BATCH_COLUMNS = List.of(
+        "id", "username", "email", "password", "role", "created_at", "updated_at"
+    );
+    
     private final PrimaryUserRepository primaryRepository;
     
     @Autowired(required = false)
@@ -36,6 +42,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public Optional<User> findByUsername(String username) {
         return executeReadOperation(
             "system", // Using system context for user lookups
+            "findByUsername",
             () -> primaryRepository.findByUsername(username),
             () -> secondaryRepository != null ? secondaryRepository.findByUsername(username) : Optional.empty()
         );
@@ -44,6 +51,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public Optional<User> findByEmail(String email) {
         return executeReadOperation(
             "system",
+            "findByEmail",
             () -> primaryRepository.findByEmail(email),
             () -> secondaryRepository != null ? secondaryRepository.findByEmail(email) : Optional.empty()
         );
@@ -52,6 +60,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public boolean existsByUsername(String username) {
         return executeReadOperation(
             "system",
+            "existsByUsername",
             () -> primaryRepository.existsByUsername(username),
             () -> secondaryRepository != null ? secondaryRepository.existsByUsername(username) : false
         );
@@ -60,6 +69,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public boolean existsByEmail(String email) {
         return executeReadOperation(
             "system",
+            "existsByEmail",
             () -> primaryRepository.existsByEmail(email),
             () -> secondaryRepository != null ? secondaryRepository.existsByEmail(email) : false
         );
@@ -68,6 +78,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public long countAdmins() {
         return executeReadOperation(
             "system",
+            "countAdmins",
             () -> primaryRepository.countAdmins(),
             () -> secondaryRepository != null ? secondaryRepository.countAdmins() : 0L
         );
@@ -76,12 +87,14 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public long countUsers() {
         return executeReadOperation(
             "system",
+            "countUsers",
             () -> primaryRepository.countUsers(),
             () -> secondaryRepository != null ? secondaryRepository.countUsers() : 0L
         );
     }
     
     // Standard JpaRepository methods using dual database strategy with ID synchronization
+    @Transactional
     public User save(User user) {
         return saveDualWithIdSync("system", user);
     }
@@ -95,48 +108,77 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
         // Then save to secondary database with the same ID if available
         if (isSecondaryAvailable()) {
             log.info("Secondary database is available, attempting to sync user {}", savedPrimary.getId());
-            try {
-                // Ensure timestamps are set
-                LocalDateTime now = LocalDateTime.now();
-                LocalDateTime createdAt = savedPrimary.getCreatedAt() != null ? savedPrimary.getCreatedAt() : now;
-                LocalDateTime updatedAt = savedPrimary.getUpdatedAt() != null ? savedPrimary.getUpdatedAt() : now;
-                
-                // First delete any existing user with the same email or username to avoid conflicts
-                // Delete related cart items first to avoid foreign key constraints
-                secondaryRepository.deleteCartItemsByUserEmail(savedPrimary.getEmail());
-                secondaryRepository.deleteCartItemsByUserUsername(savedPrimary.getUsername());
-                
-                // Then delete the user
-                secondaryRepository.deleteByEmail(savedPrimary.getEmail());
-                secondaryRepository.deleteByUsername(savedPrimary.getUsername());
-                
-                // Then insert with the specific ID
-                secondaryRepository.saveWithSpecificId(
-                    savedPrimary.getId().toString(),
-                    savedPrimary.getUsername(),
-                    savedPrimary.getEmail(),
-                    savedPrimary.getPassword(),
-                    savedPrimary.getRole().name(),
-                    createdAt,
-                    updatedAt
-                );
-                log.info("User {} saved to secondary database with ID: {}", savedPrimary.getEmail(), savedPrimary.getId());
-            } catch (Exception e) {
-                log.error("Failed to save user to secondary database for user {}: {}", userId, e.getMessage());
-            }
+            replicateSave(userId, orderingKey(savedPrimary.getId()), savedPrimary.getId(), savedPrimary);
         }
         
         return savedPrimary;
     }
     
+    @Override
+    protected Runnable secondaryUpsert(User user) {
+        // Ensure timestamps are set
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdAt = user.getCreatedAt() != null ? user.getCreatedAt() : now;
+        LocalDateTime updatedAt = user.getUpdatedAt() != null ? user.getUpdatedAt() : now;
+        
+        // Capture the values now, the write may run after the entity has changed again
+        String id = user.getId().toString();
+        String username = user.getUsername();
+        String email = user.getEmail();
+        String password = user.getPassword();
+        String role = user.getRole().name();
+        
+        return () -> {
+            // One round trip: upsert by ID, clearing only a stale row that holds the email or username
+            secondaryRepository.upsertWithSpecificId(id, username, email, password, role, createdAt, updatedAt);
+            log.info("User {} saved to secondary database with ID: {}", email, id);
+        };
+    }
+    
+    @Override
+    protected UUID parseId(String aggregateId) {
+        return UUID.fromString(aggregateId);
+    }
+    
+    @Override
+    protected UUID getEntityId(User user) {
+        return user.getId();
+    }
+    
+    @Override
+    protected List<String> batchColumns() {
+        return BATCH_COLUMNS;
+    }
+    
+    @Override
+    protected Object[] batchRow(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Object[] {
+            user.getId(),
+            user.getUsername(),
+            user.getEmail(),
+            user.getPassword(),
+            user.getRole(),
+            user.getCreatedAt() != null ? user.getCreatedAt() : now,
+            user.getUpdatedAt() != null ? user.getUpdatedAt() : now
+        };
+    }
+    
+    @Override
+    public String getAggregateType() {
+        return "users";
+    }
+    
     public Optional<User> findById(UUID id) {
         return findByIdDual("system", id);
     }
     
+    @Transactional
     public void deleteById(UUID id) {
         deleteByIdDual("system", id);
     }
     
+    @Transactional
     public void delete(User user) {
         deleteByIdDual("system", user.getId());
     }
@@ -144,6 +186,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public long count() {
         return executeReadOperation(
             "system",
+            "count",
             () -> primaryRepository.count(),
             () -> secondaryRepository != null ? secondaryRepository.count() : 0L
         );
@@ -152,6 +195,7 @@ public class UserRepository extends DualDatabaseRepository<User, UUID> {
     public boolean existsById(UUID id) {
         return executeReadOperation(
             "system",
+            "existsById",
             () -> primaryRepository.existsById(id),
             () -> secondaryRepository != null ? secondaryRepository.existsById(id) : false
         );
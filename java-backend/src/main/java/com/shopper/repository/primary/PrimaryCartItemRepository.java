@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -34,4 +35,12 @@ public interface PrimaryCartItemRepository extends JpaRepository<CartItem, UUID>
     
     @Query("SELECT SUM(ci.quantity) FROM CartItem ci WHERE ci.userId = :userId")
     Integer sumQuantityByUserId(@Param("userId") UUID userId);
+    
+    // Cart items of products no order item references, deleted along with those products by a catalog import
+    @Query("SELECT ci.id FROM CartItem ci WHERE ci.productId NOT IN (SELECT oi.productId FROM OrderItem oi)")
+    List<UUID> findIdsOfUnorderedProducts();
+    
+    // Rows changed since an incremental sync watermark
+    @Query("SELECT ci FROM CartItem ci LEFT JOIN FETCH ci.product WHERE ci.updatedAt >= :since ORDER BY ci.updatedAt")
+    List<CartItem> findChangedSince(@Param("since") LocalDateTime since);
 } 
\ No newline at end of file
@@ -2,15 +2,17 @@ package com.shopper.repository.primary;
 
 import com.shopper.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface PrimaryProductRepository extends JpaRepository<Product, UUID> {
+public interface PrimaryProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
     
     List<Product> findByCategory(String category);
     
@@ -29,4 +31,24 @@ public interface PrimaryProductRepository extends JpaRepository<Product, UUID> {
     
     @Query("SELECT COUNT(p) FROM Product p WHERE p.stockQuantity > 0")
     long countInStockProducts();
+    
+    // Inputs of the catalog aggregates, one row of id, category, stock quantity, price and last update per product
+    @Query("SELECT p.id, p.category, p.stockQuantity, p.price, p.updatedAt FROM Product p")
+    List<Object[]> findStockLevels();
+    
+    // One row of id and name per product, for matching imported products by name
+    @Query("SELECT p.id, p.name FROM Product p")
+    List<Object[]> findIdsAndNames();
+    
+    // Products no order item references, the ones a catalog import may delete
+    @Query("SELECT p.id FROM Product p WHERE p.id NOT IN (SELECT oi.productId FROM OrderItem oi)")
+    List<UUID> findUnorderedIds();
+    
+    // Latest update of any product, one index lookup on updated_at
+    @Query("SELECT MAX(p.updatedAt) FROM Product p")
+    LocalDateTime findLatestUpdatedAt();
+    
+    // Rows changed since an incremental sync watermark
+    @Query("SELECT p FROM Product p WHERE p.updatedAt >= :since ORDER BY p.updatedAt")
+    List<Product> findChangedSince(@Param("since") LocalDateTime since);
 } 
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.shopper.repository.primary;
+
+import com.shopper.entity.primary.SyncConflict;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PrimarySyncConflictRepository extends JpaRepository<SyncConflict, Long> {
+
+    List<SyncConflict> findTop100ByOrderByIdDesc();
+
+    List<SyncConflict> findTop100ByTableNameOrderByIdDesc(String tableName);
+}
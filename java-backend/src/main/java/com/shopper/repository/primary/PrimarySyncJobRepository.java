@@ -0,0 +1,28 @@
+package com.shopper.repository.primary;
+
+import com.shopper.entity.primary.SyncJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PrimarySyncJobRepository extends JpaRepository<SyncJob, Long> {
+
+    List<SyncJob> findByStatusInOrderByIdAsc(Collection<SyncJob.Status> statuses);
+
+    List<SyncJob> findTop20ByOrderByIdDesc();
+
+    @Query("SELECT COALESCE(j.cancelRequested, false) FROM SyncJob j WHERE j.id = :id")
+    boolean isCancelRequested(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SyncJob j SET j.cancelRequested = :requested WHERE j.id = :id")
+    int setCancelRequested(@Param("id") Long id, @Param("requested") boolean requested);
+}
@@ -0,0 +1,9 @@
+package com.shopper.repository.primary;
+
+import com.shopper.entity.primary.SyncWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PrimarySyncWatermarkRepository extends JpaRepository<SyncWatermark, String> {
+}
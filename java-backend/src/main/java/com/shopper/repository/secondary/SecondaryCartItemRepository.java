@@ -48,4 +48,8 @@ public interface SecondaryCartItemRepository extends JpaRepository<CartItem, UUI
                           @Param("quantity") Integer quantity,
                           @Param("createdAt") LocalDateTime createdAt,
                           @Param("updatedAt") LocalDateTime updatedAt);
+    
+    // Rows changed since an incremental sync watermark
+    @Query("SELECT ci FROM CartItem ci LEFT JOIN FETCH ci.product WHERE ci.updatedAt >= :since ORDER BY ci.updatedAt")
+    List<CartItem> findChangedSince(@Param("since") LocalDateTime since);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.shopper.repository.secondary;
 
 import com.shopper.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,7 +15,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface SecondaryProductRepository extends JpaRepository<Product, UUID> {
+public interface SecondaryProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
     
     List<Product> findByCategory(String category);
     
@@ -27,6 +28,10 @@ public interface SecondaryProductRepository extends JpaRepository<Product, UUID>
     @Query("SELECT p FROM Product p WHERE p.category = :category AND p.stockQuantity > 0")
     List<Product> findByCategoryAndInStock(@Param("category") String category);
     
+    // Inputs of the catalog aggregates, one row of id, category, stock quantity, price and last update per product
+    @Query("SELECT p.id, p.category, p.stockQuantity, p.price, p.updatedAt FROM Product p")
+    List<Object[]> findStockLevels();
+    
     @Modifying
     @Transactional
     @Query(value = "MERGE INTO products (id, name, description, price, image_url, category, stock_quantity, created_at, updated_at) " +
@@ -41,4 +46,8 @@ public interface SecondaryProductRepository extends JpaRepository<Product, UUID>
                           @Param("stockQuantity") Integer stockQuantity,
                           @Param("createdAt") LocalDateTime createdAt,
                           @Param("updatedAt") LocalDateTime updatedAt);
+    
+    // Rows changed since an incremental sync watermark
+    @Query("SELECT p FROM Product p WHERE p.updatedAt >= :since ORDER BY p.updatedAt")
+    List<Product> findChangedSince(@Param("since") LocalDateTime since);
 } 
\ No newline at end of file
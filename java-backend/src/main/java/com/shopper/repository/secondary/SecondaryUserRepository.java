@@ -29,36 +29,33 @@ public interface SecondaryUserRepository extends JpaRepository<User, UUID> {
     @Query("SELECT COUNT(u) FROM User u WHERE u.role = 'USER'")
     long countUsers();
     
+    /**
+     * Insert or update a user under the primary's ID in one statement. A different row already holding
+     * the email or username is a stale copy of a recreated user; it is removed together with its cart
+     * items in the same statement, while the cart of the user itself is never touched.
+     * The insert reads the delete results so they run before its unique keys are checked;
+     * Postgres would otherwise run unreferenced data-modifying CTEs after the insert.
+     */
     @Modifying
     @Transactional
-    @Query(value = "DELETE FROM cart_items WHERE user_id = (SELECT id FROM users WHERE email = :email)", nativeQuery = true)
-    void deleteCartItemsByUserEmail(@Param("email") String email);
-    
-    @Modifying
-    @Transactional
-    @Query(value = "DELETE FROM cart_items WHERE user_id = (SELECT id FROM users WHERE username = :username)", nativeQuery = true)
-    void deleteCartItemsByUserUsername(@Param("username") String username);
-
-    @Modifying
-    @Transactional
-    @Query(value = "DELETE FROM users WHERE email = :email", nativeQuery = true)
-    void deleteByEmail(@Param("email") String email);
-    
-    @Modifying
-    @Transactional
-    @Query(value = "DELETE FROM users WHERE username = :username", nativeQuery = true)
-    void deleteByUsername(@Param("username") String username);
-    
-    @Modifying
-    @Transactional
-    @Query(value = "INSERT INTO users (id, username, email, password, role, created_at, updated_at) " +
-                   "VALUES (:id, :username, :email, :password, :role, :createdAt, :updatedAt)", 
+    @Query(value = "WITH stale_users AS (" +
+                   "    SELECT id FROM users WHERE (email = :email OR username = :username) AND CAST(id AS text) <> :id" +
+                   "), removed_cart_items AS (" +
+                   "    DELETE FROM cart_items WHERE user_id IN (SELECT id FROM stale_users) RETURNING 1" +
+                   "), removed_users AS (" +
+                   "    DELETE FROM users WHERE id IN (SELECT id FROM stale_users) RETURNING 1" +
+                   ") " +
+                   "INSERT INTO users (id, username, email, password, role, created_at, updated_at) " +
+                   "SELECT CAST(:id AS uuid), :username, :email, :password, :role, :createdAt, :updatedAt " +
+                   "FROM (SELECT COUNT(*) FROM removed_cart_items) AS cart_cleanup, (SELECT COUNT(*) FROM removed_users) AS user_cleanup " +
+                   "ON CONFLICT (id) DO UPDATE SET username = EXCLUDED.username, email = EXCLUDED.email, " +
+                   "password = EXCLUDED.password, role = EXCLUDED.role, updated_at = EXCLUDED.updated_at",
            nativeQuery = true)
-    void saveWithSpecificId(@Param("id") String id,
-                          @Param("username") String username,
-                          @Param("email") String email,
-                          @Param("password") String password,
-                          @Param("role") String role,
-                          @Param("createdAt") LocalDateTime createdAt,
-                          @Param("updatedAt") LocalDateTime updatedAt);
+    void upsertWithSpecificId(@Param("id") String id,
+                              @Param("username") String username,
+                              @Param("email") String email,
+                              @Param("password") String password,
+                              @Param("role") String role,
+                              @Param("createdAt") LocalDateTime createdAt,
+                              @Param("updatedAt") LocalDateTime updatedAt);
 } 
\ No newline at end of file
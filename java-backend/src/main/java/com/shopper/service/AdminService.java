@@ -1,6 +1,8 @@
 package com.shopper.service;
 
-import com.shopper.repository.*;
+import com.shopper.service.sync.RowCountCache;
+import com.shopper.service.sync.SyncPipeline;
+import com.shopper.service.sync.SyncTable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -14,80 +16,81 @@ import java.util.Map;
 @Slf4j
 public class AdminService {
     
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
-    private final CartItemRepository cartItemRepository;
-    private final OrderRepository orderRepository;
-    private final OrderItemRepository orderItemRepository;
+    private final RowCountCache rowCountCache;
+    private final SyncPipeline syncPipeline;
     
     public Map<String, Object> syncAllData() {
         log.info("Starting sync of all data...");
         
+        SyncPipeline.PipelineResult pipelineResult = runPipeline(null);
+        
         Map<String, Object> result = new HashMap<>();
-        result.put("success", true);
-        result.put("message", "Database sync completed");
+        result.put("success", pipelineResult.success);
+        result.put("message", pipelineResult.success ? "Database sync completed" : "Database sync failed: " + pipelineResult.failure);
         result.put("timestamp", LocalDateTime.now());
+        result.put("tables", pipelineResult.tables);
+        result.put("conflicts", pipelineResult.conflicts);
+        result.put("conflictsResolved", pipelineResult.resolvedConflicts());
+        result.put("elapsedMs", pipelineResult.elapsedMs);
+        result.put("data", getDatabaseStats());
         
-        // For this implementation, we'll just return current stats
-        // In a real scenario, this would sync between SQLite and PostgreSQL
-        Map<String, Object> stats = getDatabaseStats();
-        result.put("data", stats);
-        
-        log.info("Sync completed successfully");
+        log.info("Sync finished in {} ms", pipelineResult.elapsedMs);
         return result;
     }
     
     public Map<String, Object> syncSpecificEntity(String entity) {
         log.info("Starting sync for entity: {}", entity);
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("success", true);
-        result.put("message", "Sync completed for " + entity);
-        result.put("timestamp", LocalDateTime.now());
-        
-        long count = 0;
-        switch (entity.toLowerCase()) {
-            case "users":
-                count = userRepository.count();
-                break;
-            case "products":
-                count = productRepository.count();
-                break;
-            case "cart_items":
-                count = cartItemRepository.count();
-                break;
-            case "orders":
-                count = orderRepository.count();
-                break;
-            case "order_items":
-                count = orderItemRepository.count();
-                break;
-            default:
-                throw new RuntimeException("Unknown entity: " + entity);
+        SyncTable table;
+        try {
+            table = SyncTable.fromTableName(entity);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown entity: " + entity);
         }
+        SyncPipeline.PipelineResult pipelineResult = runPipeline(table);
+        long synced = pipelineResult.copiedRows("primary-to-secondary") + pipelineResult.copiedRows("secondary-to-primary");
         
-        result.put("synced", count);
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", pipelineResult.success);
+        result.put("message", pipelineResult.success ? "Sync completed for " + entity : "Sync failed for " + entity + ": " + pipelineResult.failure);
+        result.put("timestamp", LocalDateTime.now());
+        result.put("synced", synced);
         result.put("entity", entity);
+        result.put("tables", pipelineResult.tables);
+        result.put("conflicts", pipelineResult.conflicts);
         
-        log.info("Sync completed for entity: {} with {} records", entity, count);
+        log.info("Sync completed for entity: {} with {} records", entity, synced);
         return result;
     }
     
+    private SyncPipeline.PipelineResult runPipeline(SyncTable table) {
+        if (!syncPipeline.isAvailable()) {
+            throw new IllegalStateException("Secondary database not enabled");
+        }
+        try {
+            return table == null ? syncPipeline.run() : syncPipeline.run(table);
+        } finally {
+            rowCountCache.invalidate();
+        }
+    }
+    
     public Map<String, Object> getDatabaseStats() {
         Map<String, Object> stats = new HashMap<>();
         
-        // Primary database stats (SQLite)
-        Map<String, Object> primaryStats = new HashMap<>();
-        primaryStats.put("users", userRepository.count());
-        primaryStats.put("products", productRepository.count());
-        primaryStats.put("cart_items", cartItemRepository.count());
-        primaryStats.put("orders", orderRepository.count());
-        primaryStats.put("order_items", orderItemRepository.count());
+        // Counted on each datasource directly, served from a snapshot at most a few seconds old
+        RowCountCache.Snapshot counts = rowCountCache.get();
+        Map<String, Object> primaryStats = new HashMap<>(counts.primary);
+        Map<String, Object> secondaryStats = new HashMap<>();
+        for (String table : counts.primary.keySet()) {
+            secondaryStats.put(table, counts.secondary.getOrDefault(table, 0L));
+        }
         
-        // For this implementation, we'll use the same stats for both databases
-        // In a real scenario, this would query both SQLite and PostgreSQL
         stats.put("sqlite", primaryStats);
-        stats.put("postgres", primaryStats); // Would be different in real implementation
+        stats.put("postgres", secondaryStats);
+        stats.put("postgresAvailable", counts.secondaryAvailable);
+        stats.put("countedAt", counts.timestamp);
+        stats.put("countAgeMs", counts.getAgeMs());
+        stats.put("countElapsedMs", counts.elapsedMs);
         
         stats.put("success", true);
         stats.put("message", "Database statistics retrieved");
@@ -121,7 +124,7 @@ public class AdminService {
             entityStatus.put("sqlite", sqliteCount);
             entityStatus.put("postgres", postgresCount);
             entityStatus.put("inSync", inSync);
-            entityStatus.put("difference", 0); // Same in this implementation
+            entityStatus.put("difference", (Long) sqliteCount - (Long) postgresCount);
             
             syncStatus.put(entity, entityStatus);
         }
@@ -131,6 +134,7 @@ public class AdminService {
         response.put("timestamp", LocalDateTime.now());
         response.put("overallStatus", allInSync ? "IN_SYNC" : "OUT_OF_SYNC");
         response.put("entities", syncStatus);
+        // Equal counts can still hide divergent rows, see /admin/database/consistency for content checks
         
         return response;
     }
@@ -2,6 +2,7 @@ package com.shopper.service;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -23,6 +24,34 @@ public interface DualDatabaseStrategy {
      */
     <T> T executeRead(String userId, Supplier<T> primaryOperation, Supplier<T> secondaryOperation);
     
+    /**
+     * Execute a named read operation; the name identifies the read for hedging and metrics.
+     * Only named reads are hedged, so reads whose secondary side is a placeholder must stay unnamed.
+     * A hedged read runs on a pool thread and returns detached entities, so a named read must return
+     * fully loaded results; lazy associations of its entities cannot be initialised by the caller.
+     * @param userId User ID for feature flag evaluation
+     * @param operationName Repository method performing the read, e.g. "ProductRepository.findByCategory"
+     * @param primaryOperation Function to execute on primary database
+     * @param secondaryOperation Function to execute on secondary database
+     * @param <T> Return type
+     * @return Result from the appropriate database
+     */
+    <T> T executeRead(String userId, String operationName, Supplier<T> primaryOperation, Supplier<T> secondaryOperation);
+    
+    /**
+     * Execute a named read of a single entity. Besides the user's own pending writes, a system write to
+     * the entity that the secondary has not applied yet keeps the read on the primary.
+     * @param userId User ID for feature flag evaluation
+     * @param entityKey Key of the entity being read, the ordering key its writes use
+     * @param operationName Repository method performing the read
+     * @param primaryOperation Function to execute on primary database
+     * @param secondaryOperation Function to execute on secondary database
+     * @param <T> Return type
+     * @return Result from the appropriate database
+     */
+    <T> T executeEntityRead(String userId, String entityKey, String operationName,
+                            Supplier<T> primaryOperation, Supplier<T> secondaryOperation);
+    
     /**
      * Execute a write operation on both databases
      * @param primaryOperation Function to execute on primary database
@@ -42,6 +71,33 @@ public interface DualDatabaseStrategy {
      */
     <T> T executeWriteWithUser(String userId, Supplier<T> primaryOperation, Supplier<T> secondaryOperation);
     
+    /**
+     * Execute a write operation on both databases with user context and an explicit ordering key
+     * @param userId User ID for feature flag evaluation
+     * @param orderingKey Key of the entity being written; secondary writes with equal keys are applied in order
+     * @param primaryOperation Function to execute on primary database
+     * @param secondaryOperation Function to execute on secondary database
+     * @param <T> Return type
+     * @return Result from the primary database
+     */
+    <T> T executeWriteWithUser(String userId, String orderingKey, Supplier<T> primaryOperation, Supplier<T> secondaryOperation);
+    
+    /**
+     * Replicate a primary write to the secondary database once the surrounding transaction commits,
+     * or at once outside a transaction. Runs on the committing thread, or on the write-behind queue
+     * when enabled; a rolled back write is never replicated. Failures are logged and never propagate.
+     * @param userId User ID the write belongs to
+     * @param orderingKey Key of the entity being written; writes with equal keys are applied in order
+     * @param secondaryOperation Operation to execute on secondary database
+     */
+    void executeSecondaryWrite(String userId, String orderingKey, Runnable secondaryOperation);
+    
+    /**
+     * Circuit breaker state per datasource and the number of parked secondary writes
+     * @return Status map keyed by datasource
+     */
+    Map<String, Object> getDatasourceStatus();
+    
     /**
      * Check if secondary database is enabled and available
      * @return true if secondary database is available
@@ -5,12 +5,30 @@ import com.dynatrace.oneagent.sdk.api.infos.DatabaseInfo;
 import com.dynatrace.oneagent.sdk.api.DatabaseRequestTracer;
 import com.dynatrace.oneagent.sdk.api.enums.ChannelType;
 import com.dynatrace.oneagent.sdk.api.enums.DatabaseVendor;
+import com.shopper.service.replication.ReplicationConsistencyTracker;
+import com.shopper.service.replication.SecondaryWriteQueue;
+import com.shopper.service.routing.AdaptiveReadRouter;
+import com.shopper.service.routing.DatasourceCircuitBreaker;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import com.shopper.service.routing.HedgedReadExecutor;
+import com.shopper.service.routing.ShadowReadComparator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /**
@@ -23,6 +41,14 @@ import java.util.function.Supplier;
 public class DualDatabaseStrategyImpl implements DualDatabaseStrategy {
     
     private final FeatureFlagService featureFlagService;
+    private final RequestEvaluationContext requestEvaluationContext;
+    private final SecondaryWriteQueue secondaryWriteQueue;
+    private final HedgedReadExecutor hedgedReadExecutor;
+    private final DatasourceCircuitBreakers circuitBreakers;
+    private final AdaptiveReadRouter adaptiveReadRouter;
+    private final ReplicationConsistencyTracker consistencyTracker;
+    private final ShadowReadComparator shadowReadComparator;
+    private final MeterRegistry meterRegistry;
     
     @Autowired
     private OneAgentSDK oneAgentSDK;
@@ -30,29 +56,117 @@ public class DualDatabaseStrategyImpl implements DualDatabaseStrategy {
     @Value("${secondary.datasource.enabled:true}")
     private boolean secondaryDatabaseEnabled;
     
+    @Value("${app.dual-database.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+    
+    @Value("${app.dual-database.circuit-breaker.parked-writes-capacity:10000}")
+    private int parkedWritesCapacity;
+    
+    @Value("${app.dual-database.adaptive-routing.default-max-shift:0.5}")
+    private double adaptiveDefaultMaxShift;
+    
     private static final String USE_NEON_FLAG = "use-neon";
+    private static final String ADAPTIVE_MAX_SHIFT_FLAG = "adaptive-read-max-shift";
+    private static final String PRIMARY = DatasourceCircuitBreakers.PRIMARY;
+    private static final String SECONDARY = DatasourceCircuitBreakers.SECONDARY;
+    
+    private final Deque<SecondaryWrite> parkedWrites = new ArrayDeque<>();
+    private final ReentrantLock replayLock = new ReentrantLock();
+    
+    private record SecondaryWrite(String userId, String orderingKey, Runnable operation, long sequence) {
+    }
     
     @Override
     public <T> T executeRead(String userId, Supplier<T> primaryOperation, Supplier<T> secondaryOperation) {
+        return executeRead(userId, null, primaryOperation, secondaryOperation);
+    }
+    
+    @Override
+    public <T> T executeRead(String userId, String operationName, Supplier<T> primaryOperation, Supplier<T> secondaryOperation) {
         if (!isSecondaryDatabaseEnabled()) {
             log.debug("Secondary database not enabled, using primary for read operation");
             return primaryOperation.get();
         }
         
-        boolean useNeon = shouldUseSecondaryForRead(userId);
+        boolean useNeon = chooseReadDatabase(userId, operationName);
+        
+        // Shadow mode: serve from the primary and compare the secondary's answer in the background
+        if (!useNeon && operationName != null && shadowReadComparator.shouldSample()
+                && consistencyTracker.isCaughtUp(userId) && circuitBreakers.secondary().isCallPermitted()) {
+            long start = System.nanoTime();
+            T result = readDatabase("SELECT", PRIMARY, operationName, primaryOperation);
+            // Shadow reads are diagnostics: they neither take a breaker's trial calls nor count towards it
+            shadowReadComparator.submit(operationName, result, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    () -> traceDatabaseOperation("SELECT (shadow)", SECONDARY, secondaryOperation));
+            return result;
+        }
+        
+        // Don't let a slow database stall the request: race the other one after a short delay
+        // A user still waiting for replication must not be hedged onto the lagging secondary
+        if (operationName != null && hedgedReadExecutor.canHedge() && consistencyTracker.isCaughtUp(userId)) {
+            DatasourceCircuitBreaker alternate = circuitBreakers.get(useNeon ? PRIMARY : SECONDARY);
+            if (alternate.isCallPermitted()) {
+                Supplier<T> guardedPrimary = () -> readDatabase("SELECT", PRIMARY, operationName, primaryOperation);
+                Supplier<T> guardedSecondary = () -> readDatabase("SELECT", SECONDARY, operationName, secondaryOperation);
+                // The hedge takes its own permission when it is sent, so a half-open breaker counts it as a trial call
+                return useNeon
+                        ? hedgedReadExecutor.execute(operationName, SECONDARY, guardedSecondary, PRIMARY, guardedPrimary,
+                                alternate::tryAcquirePermission)
+                        : hedgedReadExecutor.execute(operationName, PRIMARY, guardedPrimary, SECONDARY, guardedSecondary,
+                                alternate::tryAcquirePermission);
+            }
+        }
         
         if (useNeon) {
             try {
                 log.debug("Using secondary (Neon) database for read operation for user: {}", userId);
-                return traceDatabaseOperation("SELECT", "secondary", secondaryOperation);
+                return readDatabase("SELECT", SECONDARY, operationName, secondaryOperation);
             } catch (Exception e) {
                 log.warn("Error reading from secondary database for user {}, falling back to primary: {}", userId, e.getMessage());
-                return traceDatabaseOperation("SELECT (fallback)", "primary", primaryOperation);
+                return readDatabase("SELECT (fallback)", PRIMARY, operationName, primaryOperation);
             }
         } else {
             log.debug("Using primary database for read operation for user: {}", userId);
-            return traceDatabaseOperation("SELECT", "primary", primaryOperation);
+            return readDatabase("SELECT", PRIMARY, operationName, primaryOperation);
+        }
+    }
+    
+    @Override
+    public <T> T executeEntityRead(String userId, String entityKey, String operationName,
+                                   Supplier<T> primaryOperation, Supplier<T> secondaryOperation) {
+        if (isSecondaryDatabaseEnabled() && !consistencyTracker.isCaughtUp(entityKey)) {
+            log.debug("Secondary has not applied the latest write to {}, reading from primary", entityKey);
+            return readDatabase("SELECT", PRIMARY, operationName, primaryOperation);
+        }
+        return executeRead(userId, operationName, primaryOperation, secondaryOperation);
+    }
+    
+    /**
+     * Pick the database for a read: the feature flag decides, the adaptive router may move a bounded
+     * share of named reads to the faster database, a user whose writes the secondary has not applied yet
+     * stays on the primary, and an open breaker routes reads away
+     * @return true to read from the secondary database
+     */
+    private boolean chooseReadDatabase(String userId, String operationName) {
+        boolean useNeon = shouldUseSecondaryForRead(userId);
+        if (operationName != null && adaptiveReadRouter.isEnabled()) {
+            useNeon = adaptiveReadRouter.routeToSecondary(operationName, useNeon, getAdaptiveMaxShift(userId));
         }
+        if (useNeon && !consistencyTracker.isCaughtUp(userId)) {
+            log.debug("Secondary has not applied the latest writes of user {}, reading from primary", userId);
+            return false;
+        }
+        if (useNeon && !circuitBreakers.secondary().tryAcquirePermission()) {
+            log.debug("Secondary circuit is open, reading from primary for user: {}", userId);
+            return false;
+        }
+        if (!useNeon && !circuitBreakers.primary().tryAcquirePermission()
+                && consistencyTracker.isCaughtUp(userId)
+                && circuitBreakers.secondary().tryAcquirePermission()) {
+            log.debug("Primary circuit is open, reading from secondary for user: {}", userId);
+            return true;
+        }
+        return useNeon;
     }
     
     @Override
@@ -62,30 +176,26 @@ public class DualDatabaseStrategyImpl implements DualDatabaseStrategy {
     
     @Override
     public <T> T executeWriteWithUser(String userId, Supplier<T> primaryOperation, Supplier<T> secondaryOperation) {
+        return executeWriteWithUser(userId, userId, primaryOperation, secondaryOperation);
+    }
+    
+    @Override
+    public <T> T executeWriteWithUser(String userId, String orderingKey, Supplier<T> primaryOperation, Supplier<T> secondaryOperation) {
         T primaryResult = null;
-        T secondaryResult = null;
         Exception primaryException = null;
-        Exception secondaryException = null;
         
         // Always execute primary operation first to get the generated ID
         try {
-            primaryResult = traceDatabaseOperation("INSERT/UPDATE", "primary", primaryOperation);
+            primaryResult = callDatabase("INSERT/UPDATE", PRIMARY, primaryOperation);
             log.debug("Primary database write completed successfully for user: {}", userId);
         } catch (Exception e) {
             primaryException = e;
             log.error("Primary database write failed for user {}: {}", userId, e.getMessage());
         }
         
-        // Execute secondary operation if enabled and primary succeeded
+        // Inline, or on the write-behind queue; a secondary failure never fails the operation
         if (isSecondaryDatabaseEnabled() && primaryResult != null) {
-            try {
-                secondaryResult = traceDatabaseOperation("INSERT/UPDATE", "secondary", secondaryOperation);
-                log.debug("Secondary database write completed successfully for user: {}", userId);
-            } catch (Exception e) {
-                secondaryException = e;
-                log.error("Secondary database write failed for user {}: {}", userId, e.getMessage());
-                // Don't fail the entire operation if secondary fails, just log it
-            }
+            executeSecondaryWrite(userId, orderingKey, secondaryOperation::get);
         }
         
         // Always return the primary result since it's the source of truth for IDs
@@ -99,17 +209,177 @@ public class DualDatabaseStrategyImpl implements DualDatabaseStrategy {
         throw new RuntimeException("Primary database operation failed");
     }
     
+    @Override
+    public void executeSecondaryWrite(String userId, String orderingKey, Runnable secondaryOperation) {
+        if (!isSecondaryDatabaseEnabled()) {
+            return;
+        }
+        
+        // Reads of this user, or of this entity for a system write, stay on the primary until the secondary has applied it
+        long sequence = consistencyTracker.begin(userId, orderingKey);
+        SecondaryWrite write = new SecondaryWrite(userId, orderingKey, secondaryOperation, sequence);
+        
+        Runnable dispatch = !writeBehindEnabled ? () -> applySecondaryWrite(write) : () -> {
+            if (!secondaryWriteQueue.submit(orderingKey, () -> applySecondaryWrite(write))) {
+                log.error("Secondary write for {} dropped, write-behind queue is full", orderingKey);
+                consistencyTracker.fail(sequence);
+            }
+        };
+        
+        // Only replicate once the primary write is durable: a rolled back write must not reach Neon,
+        // and an inline write must not hold SQLite's write lock for a Neon round trip
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch.run();
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        // Nothing to replicate, so nothing for the user's reads to wait for
+                        consistencyTracker.complete(sequence);
+                    }
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+    }
+    
+    private void applySecondaryWrite(SecondaryWrite write) {
+        // Park while Neon's circuit is open, and behind earlier parked writes so per-key order holds
+        if (hasParkedWrites() || !circuitBreakers.secondary().tryAcquirePermission()) {
+            parkSecondaryWrite(write);
+            return;
+        }
+        try {
+            callDatabase("INSERT/UPDATE", SECONDARY, () -> {
+                write.operation().run();
+                return null;
+            });
+            consistencyTracker.complete(write.sequence());
+            log.debug("Secondary database write completed successfully for user: {}", write.userId());
+        } catch (Exception e) {
+            consistencyTracker.fail(write.sequence());
+            log.error("Secondary database write failed for user {}: {}", write.userId(), e.getMessage());
+        }
+    }
+    
+    private boolean hasParkedWrites() {
+        synchronized (parkedWrites) {
+            return !parkedWrites.isEmpty();
+        }
+    }
+    
+    private void parkSecondaryWrite(SecondaryWrite write) {
+        synchronized (parkedWrites) {
+            if (parkedWrites.size() >= parkedWritesCapacity) {
+                SecondaryWrite dropped = parkedWrites.pollFirst();
+                consistencyTracker.fail(dropped.sequence());
+                parkedCounter("dropped").increment();
+                log.error("Parked secondary writes full, dropped write for {}; run a sync once Neon recovers",
+                        dropped.orderingKey());
+            }
+            parkedWrites.addLast(write);
+        }
+        parkedCounter("parked").increment();
+        log.debug("Secondary write for {} parked while the secondary circuit is open", write.orderingKey());
+    }
+    
+    /**
+     * Replay writes parked while the secondary circuit was open, oldest first.
+     * Each replayed write doubles as a trial call for a half-open breaker.
+     */
+    @Scheduled(fixedDelayString = "${app.dual-database.circuit-breaker.replay-interval-ms:5000}")
+    public void replayParkedWrites() {
+        if (!hasParkedWrites() || !replayLock.tryLock()) {
+            return;
+        }
+        try {
+            while (true) {
+                SecondaryWrite write;
+                synchronized (parkedWrites) {
+                    write = parkedWrites.peekFirst();
+                }
+                if (write == null || !circuitBreakers.secondary().tryAcquirePermission()) {
+                    return;
+                }
+                try {
+                    callDatabase("INSERT/UPDATE (replay)", SECONDARY, () -> {
+                        write.operation().run();
+                        return null;
+                    });
+                    consistencyTracker.complete(write.sequence());
+                    parkedCounter("replayed").increment();
+                } catch (Exception e) {
+                    if (circuitBreakers.secondary().getState() == DatasourceCircuitBreaker.State.OPEN) {
+                        // Neon is still down; keep the write at the head and try again later
+                        return;
+                    }
+                    consistencyTracker.fail(write.sequence());
+                    parkedCounter("failed").increment();
+                    log.error("Replaying parked secondary write for {} failed: {}", write.orderingKey(), e.getMessage());
+                }
+                // Only remove once applied, so new writes keep parking behind it until the replay is done
+                synchronized (parkedWrites) {
+                    parkedWrites.remove(write);
+                }
+            }
+        } finally {
+            replayLock.unlock();
+        }
+    }
+    
+    @Override
+    public Map<String, Object> getDatasourceStatus() {
+        Map<String, Object> status = new HashMap<>(circuitBreakers.getStatus());
+        synchronized (parkedWrites) {
+            status.put("parkedSecondaryWrites", parkedWrites.size());
+        }
+        status.put("adaptiveRouting", adaptiveReadRouter.getStatus());
+        status.put("readYourWrites", consistencyTracker.getStatus());
+        return status;
+    }
+    
+    private Counter parkedCounter(String outcome) {
+        return Counter.builder("shopper.replication.parked")
+                .description("Secondary writes parked while the secondary circuit was open")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
     @Override
     public boolean isSecondaryDatabaseEnabled() {
         return secondaryDatabaseEnabled;
     }
     
+    /**
+     * Largest share of a user's reads the adaptive router may move off the flag-selected database
+     */
+    private double getAdaptiveMaxShift(String userId) {
+        try {
+            Number maxShift = featureFlagService.getNumberValue(userId, ADAPTIVE_MAX_SHIFT_FLAG, adaptiveDefaultMaxShift);
+            return maxShift != null ? maxShift.doubleValue() : adaptiveDefaultMaxShift;
+        } catch (Exception e) {
+            log.warn("Error evaluating feature flag '{}' for user '{}', using {}: {}",
+                    ADAPTIVE_MAX_SHIFT_FLAG, userId, adaptiveDefaultMaxShift, e.getMessage());
+            return adaptiveDefaultMaxShift;
+        }
+    }
+    
     @Override
     public boolean shouldUseSecondaryForRead(String userId) {
         if (!isSecondaryDatabaseEnabled()) {
             return false;
         }
         
+        // Route every repository call of one request the same way
+        return requestEvaluationContext.computeIfAbsent("route:" + userId, () -> evaluateUseNeon(userId));
+    }
+    
+    private boolean evaluateUseNeon(String userId) {
         try {
             boolean useNeon = featureFlagService.getBooleanValue(userId, USE_NEON_FLAG, false);
             log.debug("Feature flag '{}' for user '{}': {}", USE_NEON_FLAG, userId, useNeon);
@@ -121,6 +391,47 @@ public class DualDatabaseStrategyImpl implements DualDatabaseStrategy {
         }
     }
     
+    /**
+     * Execute a read and feed its latency to the adaptive router under the operation name
+     */
+    private <T> T readDatabase(String operationType, String databaseType, String operationName, Supplier<T> operation) {
+        if (operationName == null) {
+            return callDatabase(operationType, databaseType, operation);
+        }
+        long start = System.nanoTime();
+        try {
+            T result = callDatabase(operationType, databaseType, operation);
+            adaptiveReadRouter.record(databaseType, operationName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+            return result;
+        } catch (RuntimeException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                adaptiveReadRouter.record(databaseType, operationName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Execute a traced database operation and feed its outcome and latency to the datasource's breaker
+     */
+    private <T> T callDatabase(String operationType, String databaseType, Supplier<T> operation) {
+        DatasourceCircuitBreaker breaker = circuitBreakers.get(databaseType);
+        long start = System.nanoTime();
+        try {
+            T result = traceDatabaseOperation(operationType, databaseType, operation);
+            breaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        } catch (RuntimeException e) {
+            // A read interrupted because the application is shutting down says nothing about the database's health
+            if (Thread.currentThread().isInterrupted()) {
+                breaker.releasePermission();
+            } else {
+                breaker.onError(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Execute database operation with OneAgent SDK tracing
      */
@@ -21,6 +21,7 @@ public class FeatureFlagService {
     private String devCycleServerSdkKey;
     
     private final DevCycleLocalClient devCycleLocalClient;
+    private final RequestEvaluationContext requestEvaluationContext;
     private final Map<String, Object> fallbackFlags = new ConcurrentHashMap<>();
     private boolean initialized = false;
     
@@ -43,6 +44,13 @@ public class FeatureFlagService {
     }
 
     public boolean getBooleanValue(String userId, String key, boolean defaultValue) {
+        // Evaluate once per request; later repository calls in the same request reuse the answer
+        return requestEvaluationContext.computeIfAbsent(
+                "flag:" + key + ":" + userId + ":" + defaultValue,
+                () -> evaluateBooleanValue(userId, key, defaultValue));
+    }
+    
+    private boolean evaluateBooleanValue(String userId, String key, boolean defaultValue) {
         ensureInitialized();
         
         if (devCycleLocalClient == null) {
@@ -68,6 +76,13 @@ public class FeatureFlagService {
     }
     
     public String getStringValue(String userId, String key, String defaultValue) {
+        // Evaluate once per request; later repository calls in the same request reuse the answer
+        return requestEvaluationContext.computeIfAbsent(
+                "flag:" + key + ":" + userId + ":" + defaultValue,
+                () -> evaluateStringValue(userId, key, defaultValue));
+    }
+    
+    private String evaluateStringValue(String userId, String key, String defaultValue) {
         ensureInitialized();
         
         if (devCycleLocalClient == null) {
@@ -92,6 +107,13 @@ public class FeatureFlagService {
     }
     
     public Number getNumberValue(String userId, String key, Number defaultValue) {
+        // Evaluate once per request; later repository calls in the same request reuse the answer
+        return requestEvaluationContext.computeIfAbsent(
+                "flag:" + key + ":" + userId + ":" + defaultValue,
+                () -> evaluateNumberValue(userId, key, defaultValue));
+    }
+    
+    private Number evaluateNumberValue(String userId, String key, Number defaultValue) {
         ensureInitialized();
 
         if (devCycleLocalClient == null) {
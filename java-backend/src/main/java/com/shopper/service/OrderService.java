@@ -9,12 +9,15 @@ import com.shopper.repository.CartItemRepository;
 import com.shopper.repository.OrderItemRepository;
 import com.shopper.repository.OrderRepository;
 import com.shopper.repository.ProductRepository;
+import com.shopper.service.catalog.ProductChangedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -28,6 +31,7 @@ public class OrderService {
     private final OrderItemRepository orderItemRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Transactional
     public Order createOrder(UUID userId, CreateOrderDto createOrderDto) {
@@ -65,6 +69,7 @@ public class OrderService {
         Order savedOrder = orderRepository.save(order);
         
         // Create order items and update product stock
+        List<Product> updatedProducts = new ArrayList<>();
         for (CartItem cartItem : cartItems) {
             Product product = productRepository.findById(cartItem.getProductId())
                     .orElseThrow(() -> new RuntimeException("Product not found"));
@@ -81,8 +86,9 @@ public class OrderService {
             
             // Update product stock
             product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
-            productRepository.save(product);
+            updatedProducts.add(productRepository.save(product));
         }
+        eventPublisher.publishEvent(ProductChangedEvent.saved(updatedProducts, List.of(), false));
         
         // Clear cart
         cartItemRepository.deleteByUserId(userId);
@@ -3,13 +3,23 @@ package com.shopper.service;
 import com.shopper.dto.CreateProductDto;
 import com.shopper.dto.UpdateProductDto;
 import com.shopper.entity.Product;
+import com.shopper.repository.BulkDeleteMonitor;
+import com.shopper.repository.DatabaseBatchWriter;
 import com.shopper.repository.ProductRepository;
 import com.shopper.repository.CartItemRepository;
-import com.shopper.repository.OrderItemRepository;
+import com.shopper.service.catalog.CatalogAggregates;
+import com.shopper.service.catalog.CatalogAvailability;
+import com.shopper.service.catalog.ProductCatalogCache;
+import com.shopper.service.catalog.ProductChangedEvent;
+import com.shopper.service.catalog.ProductPage;
+import com.shopper.service.catalog.ProductPageQuery;
+import com.shopper.service.catalog.ProductSearchIndex;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,9 +27,14 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,8 +43,14 @@ public class ProductService {
     
     private final ProductRepository productRepository;
     private final CartItemRepository cartItemRepository;
-    private final OrderItemRepository orderItemRepository;
     private final FeatureFlagService featureFlagService;
+    private final DatabaseBatchWriter batchWriter;
+    private final BulkDeleteMonitor bulkDeleteMonitor;
+    private final CatalogAvailability catalogAvailability;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final CatalogAggregates catalogAggregates;
+    private final ApplicationEventPublisher eventPublisher;
     
     public List<Product> findAll(String username) {
         // Check feature flag for new flow
@@ -45,7 +66,14 @@ public class ProductService {
         }
         
         // Use user-context-aware method for feature flag evaluation
-        return productRepository.findAll(username);
+        return productCatalogCache.getAllProducts(() -> productRepository.findAll(username));
+    }
+    
+    /**
+     * One page of the catalog, read with an index range scan from the cursor instead of an offset
+     */
+    public ProductPage findPage(ProductPageQuery query, String username) {
+        return ProductPage.of(query, productRepository.findPage(query, username));
     }
     
     public Optional<Product> findById(UUID id, String username) {
@@ -57,7 +85,7 @@ public class ProductService {
         }
         
         // Use user-context-aware method for feature flag evaluation
-        return productRepository.findById(id, username);
+        return productCatalogCache.getProduct(id, () -> productRepository.findById(id, username));
     }
     
     @Transactional
@@ -72,13 +100,16 @@ public class ProductService {
                 .build();
         
         log.info("Creating product: {} (will be saved to both databases)", product.getName());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(List.of(saved), List.of(), true));
+        return saved;
     }
     
     @Transactional
     public Product update(UUID id, UpdateProductDto updateProductDto, String username) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
+        String previousCategory = product.getCategory();
         
         // Update only non-null fields
         if (updateProductDto.getName() != null) {
@@ -100,7 +131,10 @@ public class ProductService {
             product.setStockQuantity(updateProductDto.getStockQuantity());
         }
         
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(List.of(saved), List.of(previousCategory),
+                !Objects.equals(previousCategory, saved.getCategory())));
+        return saved;
     }
     
     @Transactional
@@ -109,10 +143,11 @@ public class ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
         productRepository.delete(product);
+        eventPublisher.publishEvent(ProductChangedEvent.removed(product));
     }
     
     public List<Product> findByCategory(String category) {
-        return productRepository.findByCategory(category);
+        return productCatalogCache.getProductsByCategory(category, () -> productRepository.findByCategory(category));
     }
     
     public List<Product> findInStockProducts() {
@@ -124,23 +159,48 @@ public class ProductService {
     }
     
     public List<String> findAllCategories() {
-        return productRepository.findAllCategories();
+        return productCatalogCache.getCategories(productRepository::findAllCategories);
     }
     
     public List<Product> searchByName(String name) {
+        if (productSearchIndex.isReady()) {
+            return productSearchIndex.search(name, ProductSearchIndex.Field.NAME);
+        }
         return productRepository.findByNameContainingIgnoreCase(name);
     }
     
     public List<Product> searchByDescription(String description) {
+        if (productSearchIndex.isReady()) {
+            return productSearchIndex.search(description, ProductSearchIndex.Field.DESCRIPTION);
+        }
         return productRepository.findByDescriptionContainingIgnoreCase(description);
     }
     
+    /**
+     * Search names and descriptions, best matches first
+     * @param query Words to find; the last may be the start of a word
+     * @return Best matching products, at most app.catalog-search.max-results; until the search index
+     *         is built, a plain name search
+     */
+    public List<Product> search(String query) {
+        return productSearchIndex.isReady()
+                ? productSearchIndex.search(query, ProductSearchIndex.Field.ALL)
+                : searchByName(query);
+    }
+    
     public long countInStockProducts() {
-        return productRepository.countInStockProducts();
+        return catalogAggregates.current().inStockProducts();
     }
     
     public long countOutOfStockProducts() {
-        return productRepository.countOutOfStockProducts();
+        return catalogAggregates.current().outOfStockProducts();
+    }
+    
+    /**
+     * Counts and stock value of the whole catalog, kept current by product writes instead of queried
+     */
+    public CatalogAggregates.Stats getCatalogStats() {
+        return catalogAggregates.current();
     }
     
     public List<Product> getPremiumProducts(String username) {
@@ -158,7 +218,41 @@ public class ProductService {
     @Transactional
     public List<Product> bulkImportProducts(String jsonFilePath, boolean clearExisting) {
         log.info("Starting bulk import of products from file: {}", jsonFilePath);
+        List<Product> parsedProducts = readProductsFile(jsonFilePath);
         
+        try {
+            // Clear existing products if requested (with constraint handling)
+            if (clearExisting) {
+                log.info("Clearing existing products before import");
+                // Ordered products are retained, order items keep referencing them; only IDs are read
+                List<UUID> productIdsToDelete = productRepository.findUnorderedProductIds();
+                
+                // Batch deletes do not cascade, so cart items of deleted products go first
+                cartItemRepository.deleteAllById(cartItemRepository.findIdsOfUnorderedProducts());
+                productRepository.deleteAllById(productIdsToDelete);
+                log.info("Cleared {} existing products, products with orders retained", productIdsToDelete.size());
+            }
+            
+            List<Product> importedProducts = productRepository.saveAll(
+                    matchCatalog(parsedProducts, productRepository.findIdsAndNames()));
+            eventPublisher.publishEvent(ProductChangedEvent.catalogReplaced());
+            log.info("Bulk import completed successfully. Imported {} products", importedProducts.size());
+            return importedProducts;
+            
+        } catch (Exception e) {
+            log.error("Failed to import products from file: {}", jsonFilePath, e);
+            throw new RuntimeException("Failed to import products", e);
+        }
+    }
+    
+    /**
+     * Read and validate a products file without touching the catalog.
+     * Entries missing a required field are skipped; a file without a single valid product is rejected.
+     * @param jsonFilePath Path of the products file
+     * @return Unsaved products of the file
+     */
+    private List<Product> readProductsFile(String jsonFilePath) {
+        JsonNode productsNode;
         try {
             File jsonFile = new File(jsonFilePath);
             log.info("File path resolved to: {}", jsonFile.getAbsolutePath());
@@ -172,163 +266,202 @@ public class ProductService {
             JsonNode rootNode = objectMapper.readTree(jsonFile);
             log.info("JSON parsed successfully, root node: {}", rootNode != null);
             
-            JsonNode productsNode = rootNode.get("products");
+            productsNode = rootNode.get("products");
             log.info("Products node found: {}, Is array: {}", productsNode != null, 
                     productsNode != null && productsNode.isArray());
-            
-            if (productsNode == null || !productsNode.isArray()) {
-                throw new RuntimeException("Invalid JSON structure: 'products' array not found");
+        } catch (IOException e) {
+            log.error("Failed to read JSON file: {}", jsonFilePath, e);
+            throw new RuntimeException("Failed to read products JSON file", e);
+        }
+        
+        if (productsNode == null || !productsNode.isArray()) {
+            throw new RuntimeException("Invalid JSON structure: 'products' array not found");
+        }
+        
+        List<Product> products = new ArrayList<>();
+        for (JsonNode productNode : productsNode) {
+            try {
+                String imageUrl = productNode.has("image_url") && !productNode.get("image_url").isNull() 
+                    ? productNode.get("image_url").asText() : null;
+                Product product = Product.builder()
+                        .name(productNode.get("name").asText())
+                        .description(productNode.get("description").asText())
+                        .price(BigDecimal.valueOf(productNode.get("price").asDouble()))
+                        .imageUrl(imageUrl)
+                        .category(productNode.get("category").asText())
+                        .stockQuantity(productNode.get("stock_quantity").asInt())
+                        .build();
+                log.info("Parsing product: {} with imageUrl: {}", product.getName(), imageUrl);
+                products.add(product);
+            } catch (Exception e) {
+                log.error("Failed to import product: {}", productNode, e);
+                // Continue with other products instead of failing the entire import
             }
+        }
+        
+        if (products.isEmpty()) {
+            throw new RuntimeException("No valid products found in JSON file: " + jsonFilePath);
+        }
+        return products;
+    }
+    
+    /**
+     * Match parsed products against the catalog by name. Only the IDs and names of the catalog are
+     * read up front; the products a file entry updates are then loaded by ID.
+     * @param parsedProducts Unsaved products read from a file
+     * @param catalog Rows of id and name of the products currently in the catalog
+     * @return Products to save, updated existing ones and new ones, in file order
+     */
+    private List<Product> matchCatalog(List<Product> parsedProducts, List<Object[]> catalog) {
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (Object[] row : catalog) {
+            entries.add(new CatalogEntry((UUID) row[0], (String) row[1], null));
+        }
+        List<CatalogEntry> touchedEntries = new ArrayList<>();
+        Set<CatalogEntry> pendingEntries = new HashSet<>();
+        for (Product parsed : parsedProducts) {
+            // Check if product with this name already exists
+            String lowerCaseName = parsed.getName().toLowerCase();
+            Optional<CatalogEntry> existingEntry = entries.stream()
+                    .filter(candidate -> candidate.name != null
+                            && candidate.name.toLowerCase().contains(lowerCaseName))
+                    .findFirst();
+            CatalogEntry entry;
             
-            List<Product> importedProducts = new ArrayList<>();
-            
-            // Clear existing products if requested (with constraint handling)
-            if (clearExisting) {
-                log.info("Clearing existing products before import");
-                List<Product> existingProducts = productRepository.findAll();
-                int successfulDeletes = 0;
-                int constraintViolations = 0;
-                
-                for (Product product : existingProducts) {
-                    try {
-                        productRepository.delete(product);
-                        successfulDeletes++;
-                    } catch (Exception e) {
-                        // Handle foreign key constraint violations gracefully
-                        log.warn("Could not delete product '{}' (ID: {}) due to foreign key constraints: {}", 
-                                product.getName(), product.getId(), e.getMessage());
-                        constraintViolations++;
-                    }
-                }
-                log.info("Cleared {} existing products, {} products retained due to constraints", 
-                        successfulDeletes, constraintViolations);
+            if (existingEntry.isPresent()) {
+                // Update existing product
+                entry = existingEntry.get();
+                entry.updates.add(parsed);
+                log.info("Updating existing product: {}", parsed.getName());
+            } else {
+                // Create new product
+                entry = new CatalogEntry(null, parsed.getName(), parsed);
+                entries.add(entry);
+                log.info("Creating new product: {}", parsed.getName());
             }
             
-            // Import new products (with upsert logic)
-            for (JsonNode productNode : productsNode) {
-                try {
-                    String productName = productNode.get("name").asText();
-                    String description = productNode.get("description").asText();
-                    BigDecimal price = BigDecimal.valueOf(productNode.get("price").asDouble());
-                    String imageUrl = productNode.has("image_url") && !productNode.get("image_url").isNull() 
-                        ? productNode.get("image_url").asText() : null;
-                    String category = productNode.get("category").asText();
-                    int stockQuantity = productNode.get("stock_quantity").asInt();
-                    
-                    log.info("Parsing product: {} with imageUrl: {}", productName, imageUrl);
-                    
-                    // Check if product with this name already exists
-                    List<Product> existingProducts = productRepository.findByNameContainingIgnoreCase(productName);
-                    Product product;
-                    
-                    if (!existingProducts.isEmpty()) {
-                        // Update existing product
-                        product = existingProducts.get(0);
-                        product.setDescription(description);
-                        product.setPrice(price);
-                        product.setImageUrl(imageUrl);
-                        product.setCategory(category);
-                        product.setStockQuantity(stockQuantity);
-                        log.info("Updating existing product: {}", productName);
-                    } else {
-                        // Create new product
-                        product = Product.builder()
-                                .name(productName)
-                                .description(description)
-                                .price(price)
-                                .imageUrl(imageUrl)
-                                .category(category)
-                                .stockQuantity(stockQuantity)
-                                .build();
-                        log.info("Creating new product: {}", productName);
-                    }
-                    
-                    Product savedProduct = productRepository.save(product);
-                    importedProducts.add(savedProduct);
-                    log.info("Imported product: {} (ID: {})", savedProduct.getName(), savedProduct.getId());
-                    
-                } catch (Exception e) {
-                    log.error("Failed to import product: {}", productNode, e);
-                    // Continue with other products instead of failing the entire import
-                }
+            if (pendingEntries.add(entry)) {
+                touchedEntries.add(entry);
             }
-            
-            log.info("Bulk import completed successfully. Imported {} products", importedProducts.size());
-            return importedProducts;
-            
-        } catch (IOException e) {
-            log.error("Failed to read JSON file: {}", jsonFilePath, e);
-            throw new RuntimeException("Failed to read products JSON file", e);
-        } catch (Exception e) {
-            log.error("Failed to import products from file: {}", jsonFilePath, e);
-            throw new RuntimeException("Failed to import products", e);
         }
+        
+        List<UUID> updatedIds = touchedEntries.stream()
+                .map(entry -> entry.id)
+                .filter(Objects::nonNull)
+                .toList();
+        Map<UUID, Product> updatedProducts = productRepository.findAllByIdInPrimary(updatedIds).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        List<Product> productsToSave = new ArrayList<>();
+        for (CatalogEntry entry : touchedEntries) {
+            Product product = entry.product != null ? entry.product : updatedProducts.get(entry.id);
+            if (product == null) {
+                // Deleted since the catalog was read
+                continue;
+            }
+            for (Product update : entry.updates) {
+                product.setDescription(update.getDescription());
+                product.setPrice(update.getPrice());
+                product.setImageUrl(update.getImageUrl());
+                product.setCategory(update.getCategory());
+                product.setStockQuantity(update.getStockQuantity());
+            }
+            productsToSave.add(product);
+        }
+        return productsToSave;
     }
     
-    @Transactional
+    /**
+     * A catalog product matched by name: an existing one known by ID until it is loaded, or a new one
+     */
+    private static final class CatalogEntry {
+        private final UUID id;
+        private final String name;
+        private final Product product;
+        // Later file entries whose name matched this product, applied in file order
+        private final List<Product> updates = new ArrayList<>();
+        
+        private CatalogEntry(UUID id, String name, Product product) {
+            this.id = id;
+            this.name = name;
+            this.product = product;
+        }
+    }
+    
+    /**
+     * Replace the whole catalog with the products of a JSON file.
+     * The file is read and validated before anything is deleted, so a bad file leaves the old catalog
+     * in place. The catalog is unavailable while it is replaced, see {@link #completeProductReplacement}.
+     * @param jsonFilePath Path of the products file
+     * @return Imported products
+     */
     public List<Product> forceUpdateProductsFromJson(String jsonFilePath) {
         log.info("Force updating products from JSON file: {}", jsonFilePath);
         return completeProductReplacement(jsonFilePath);
     }
     
-    @Transactional
+    /**
+     * Delete all cart items, order items and products with chunked set-based deletes, then import the file
+     * in chunks. Each chunk commits in its own short primary transaction, so SQLite's write lock is released
+     * between chunks and other writers are not stalled for the whole replacement. Readers never see the
+     * catalog half replaced instead: it is marked unavailable until the import has committed, and stays
+     * unavailable if the replacement fails part way, until a replacement succeeds.
+     * The secondary is cleared and refilled as each chunk commits.
+     * Deletion progress is reported to the bulk delete monitor.
+     * @param jsonFilePath Path of the products file
+     * @return Imported products
+     */
     public List<Product> completeProductReplacement(String jsonFilePath) {
         log.info("Starting complete product replacement from JSON file: {}", jsonFilePath);
+        // Step 1: Read the new catalog first, a bad file must not cost the old one
+        List<Product> parsedProducts = readProductsFile(jsonFilePath);
         
+        if (!catalogAvailability.beginReplacement()) {
+            throw new IllegalStateException("A catalog replacement is already running");
+        }
+        BulkDeleteMonitor.Progress progress = bulkDeleteMonitor.start("completeProductReplacement");
         try {
-            // Step 1: Delete all cart items using individual deletion (safer approach)
-            log.info("Deleting all cart items to remove foreign key constraints...");
-            List<com.shopper.entity.CartItem> cartItems = cartItemRepository.findAll();
-            log.info("Found {} cart items to delete", cartItems.size());
-            for (com.shopper.entity.CartItem cartItem : cartItems) {
-                try {
-                    cartItemRepository.delete(cartItem);
-                } catch (Exception e) {
-                    log.warn("Failed to delete cart item {}: {}", cartItem.getId(), e.getMessage());
-                }
-            }
-            log.info("Deleted cart items");
+            // Step 2: Delete all cart items to remove foreign key constraints
+            long cartItemsDeleted = cartItemRepository.deleteAll(progress);
+            log.info("Deleted {} cart items", cartItemsDeleted);
             
-            // Step 2: Delete all order items using individual deletion
-            log.info("Deleting all order items to remove foreign key constraints...");
-            List<com.shopper.entity.OrderItem> orderItems = orderItemRepository.findAll();
-            log.info("Found {} order items to delete", orderItems.size());
-            for (com.shopper.entity.OrderItem orderItem : orderItems) {
-                try {
-                    orderItemRepository.delete(orderItem);
-                } catch (Exception e) {
-                    log.warn("Failed to delete order item {}: {}", orderItem.getId(), e.getMessage());
-                }
-            }
-            log.info("Deleted order items");
+            // Step 3: Delete all order items (primary database only)
+            long orderItemsDeleted = batchWriter.deleteAllFromPrimary("order_items",
+                    progress.chunkListener(DatasourceCircuitBreakers.PRIMARY, "order_items"));
+            log.info("Deleted {} order items", orderItemsDeleted);
             
-            // Step 3: Delete all products using individual deletion
-            log.info("Deleting all existing products...");
-            List<Product> products = productRepository.findAll();
-            log.info("Found {} products to delete", products.size());
-            for (Product product : products) {
-                try {
-                    productRepository.delete(product);
-                } catch (Exception e) {
-                    log.warn("Failed to delete product {}: {}", product.getId(), e.getMessage());
-                }
-            }
-            log.info("Deleted all products");
+            // Step 4: Delete all products
+            long productsDeleted = productRepository.deleteAll(progress);
+            log.info("Deleted {} products", productsDeleted);
             
-            // Step 4: Import new products (with clearExisting=false since we already cleared everything)
+            // Step 5: Import new products into the now empty catalog, one transaction per chunk
             log.info("Importing new products from JSON...");
-            List<Product> importedProducts = bulkImportProducts(jsonFilePath, false);
+            List<Product> importedProducts = new ArrayList<>(parsedProducts.size());
+            for (List<Product> chunk : DatabaseBatchWriter.chunks(matchCatalog(parsedProducts, List.of()),
+                    batchWriter.getPrimaryChunkSize())) {
+                importedProducts.addAll(productRepository.saveAll(chunk));
+            }
+            eventPublisher.publishEvent(ProductChangedEvent.catalogReplaced());
+            progress.finish();
+            catalogAvailability.replacementSucceeded();
             
             log.info("Complete product replacement finished successfully. Imported {} new products", importedProducts.size());
             return importedProducts;
             
         } catch (Exception e) {
+            progress.fail(e);
+            catalogAvailability.replacementFailed(e);
+            // Caches may hold products deleted before the failure
+            eventPublisher.publishEvent(ProductChangedEvent.catalogReplaced());
             log.error("Failed to perform complete product replacement: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to perform complete product replacement", e);
         }
     }
     
+    public Map<String, Object> getCatalogCacheStats() {
+        return productCatalogCache.getStats();
+    }
+    
     public long getProductCount() {
-        return productRepository.count();
+        return catalogAggregates.current().totalProducts();
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.shopper.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes flag evaluations and routing decisions for the duration of one HTTP request,
+ * so every repository call in a request sees the same answer and the flag is evaluated once.
+ * Outside a request (scheduled jobs, worker threads) values are computed on every call.
+ */
+@Component
+public class RequestEvaluationContext {
+
+    private static final String ATTRIBUTE = RequestEvaluationContext.class.getName() + ".values";
+
+    /**
+     * Return the value memoized under the key in the current request, computing it on first use
+     * @param key Cache key, unique per flag, user and default value
+     * @param loader Computes the value
+     * @param <T> Value type
+     * @return Memoized or freshly computed value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(String key, Supplier<T> loader) {
+        Map<String, Object> values = currentValues();
+        if (values == null) {
+            return loader.get();
+        }
+        Object value = values.get(key);
+        if (value == null) {
+            value = loader.get();
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return (T) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> currentValues() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        // Servlet request attributes are per request and a request is handled by one thread at a time
+        Map<String, Object> values = (Map<String, Object>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (values == null) {
+            values = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, values, RequestAttributes.SCOPE_REQUEST);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,242 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Product counts and stock value of the catalog, kept in memory so the statistics are read without
+ * a query. The aggregates are computed once from the category, stock and price of every product;
+ * each committed {@link ProductChangedEvent} then takes the previous values of the changed products
+ * out and their new values in. They are recomputed periodically to pick up writes that bypass the
+ * application. Changes committed while a recomputation reads the catalog are applied again on top
+ * of it; events carry whole products, so applying one twice does no harm, and a product version older
+ * than the one already counted, from an event delivered late, is ignored.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogAggregates {
+
+    private final ProductRepository productRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Serializes recomputations; taken before this, never while holding it
+    private final Object rebuildLock = new Object();
+
+    // Guarded by this
+    private Totals totals = new Totals();
+    private Stats stats;
+    private boolean built;
+    // Events committed while a recomputation reads the catalog, null otherwise
+    private List<ProductChangedEvent> pending;
+
+    /**
+     * @param totalProducts Number of products
+     * @param inStockProducts Products with a positive stock quantity
+     * @param outOfStockProducts Products with no stock
+     * @param stockValue Sum of price times stock quantity over the products in stock
+     * @param categories Product and in-stock counts per category, by category name
+     * @param timestamp When these figures were taken
+     */
+    public record Stats(long totalProducts,
+                        long inStockProducts,
+                        long outOfStockProducts,
+                        BigDecimal stockValue,
+                        Map<String, CategoryCounts> categories,
+                        long timestamp) {
+
+        public List<String> categoryNames() {
+            return List.copyOf(categories.keySet());
+        }
+    }
+
+    public record CategoryCounts(long products, long inStock) {
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("shopper.catalog.products", this, aggregates -> aggregates.gauge(true))
+                .description("Products in the catalog by stock state")
+                .tag("stock", "in")
+                .register(meterRegistry);
+        Gauge.builder("shopper.catalog.products", this, aggregates -> aggregates.gauge(false))
+                .description("Products in the catalog by stock state")
+                .tag("stock", "out")
+                .register(meterRegistry);
+        Gauge.builder("shopper.catalog.stock.value", this, CatalogAggregates::stockValueGauge)
+                .description("Value of the catalog's stock at current prices")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Current aggregates; the first call computes them if the startup computation has not finished
+     * @throws IllegalStateException If they could not be computed
+     */
+    public Stats current() {
+        if (!isBuilt()) {
+            rebuild();
+        }
+        synchronized (this) {
+            if (!built) {
+                throw new IllegalStateException("Catalog aggregates are not available");
+            }
+            if (stats == null) {
+                stats = totals.toStats();
+            }
+            return stats;
+        }
+    }
+
+    public synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Recompute the aggregates from the catalog, see {@link ProductRepository#findStockLevels()}
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.catalog-aggregates.rebuild-interval-ms:300000}",
+               fixedDelayString = "${app.catalog-aggregates.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Totals rebuilt = new Totals();
+                for (Object[] row : productRepository.findStockLevels()) {
+                    rebuilt.put((UUID) row[0], new Entry((String) row[1], row[2] != null ? ((Number) row[2]).intValue() : 0,
+                            (BigDecimal) row[3], (LocalDateTime) row[4]));
+                }
+                synchronized (this) {
+                    pending.forEach(rebuilt::apply);
+                    totals = rebuilt;
+                    stats = null;
+                    built = true;
+                }
+                log.info("Catalog aggregates computed: {} products in {} categories in {} ms", rebuilt.entries.size(),
+                        rebuilt.categories.size(), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.error("Failed to compute catalog aggregates: {}", e.getMessage(), e);
+            } finally {
+                synchronized (this) {
+                    pending = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a committed product change to the aggregates
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.wholeCatalog()) {
+            rebuild();
+            return;
+        }
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(event);
+            }
+            totals.apply(event);
+            stats = null;
+        }
+    }
+
+    private synchronized double gauge(boolean inStock) {
+        return inStock ? totals.inStock : totals.entries.size() - totals.inStock;
+    }
+
+    private synchronized double stockValueGauge() {
+        return totals.stockValue.doubleValue();
+    }
+
+    private record Entry(String category, int stock, BigDecimal price, LocalDateTime updatedAt) {
+
+        boolean inStock() {
+            return stock > 0;
+        }
+
+        BigDecimal value() {
+            return inStock() && price != null ? price.multiply(BigDecimal.valueOf(stock)) : BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Running totals and the values they were built from; not thread safe, guarded by the owner
+     */
+    private static final class Totals {
+        private final Map<UUID, Entry> entries = new HashMap<>();
+        private final Map<String, long[]> categories = new TreeMap<>();
+        private long inStock;
+        private BigDecimal stockValue = BigDecimal.ZERO;
+
+        void apply(ProductChangedEvent event) {
+            event.removedIds().forEach(this::remove);
+            for (Product product : event.saved()) {
+                Entry known = entries.get(product.getId());
+                if (known != null && ProductChangedEvent.isOlder(product.getUpdatedAt(), known.updatedAt())) {
+                    continue;
+                }
+                put(product.getId(), new Entry(product.getCategory(),
+                        product.getStockQuantity() != null ? product.getStockQuantity() : 0, product.getPrice(),
+                        product.getUpdatedAt()));
+            }
+        }
+
+        void put(UUID id, Entry entry) {
+            remove(id);
+            entries.put(id, entry);
+            add(entry, 1);
+        }
+
+        void remove(UUID id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                add(previous, -1);
+            }
+        }
+
+        private void add(Entry entry, int sign) {
+            long[] counts = categories.computeIfAbsent(entry.category(), key -> new long[2]);
+            counts[0] += sign;
+            if (entry.inStock()) {
+                counts[1] += sign;
+                inStock += sign;
+                stockValue = sign > 0 ? stockValue.add(entry.value()) : stockValue.subtract(entry.value());
+            }
+            if (counts[0] == 0) {
+                categories.remove(entry.category());
+            }
+        }
+
+        Stats toStats() {
+            Map<String, CategoryCounts> byCategory = new TreeMap<>();
+            categories.forEach((category, counts) -> byCategory.put(category, new CategoryCounts(counts[0], counts[1])));
+            return new Stats(entries.size(), inStock, entries.size() - inStock, stockValue,
+                    Collections.unmodifiableMap(byCategory), System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.shopper.service.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Whether the catalog may be read. A complete replacement deletes and imports the catalog chunk by chunk,
+ * each chunk in its own short primary transaction, so it marks the catalog unavailable for its whole run
+ * instead of holding one transaction open: readers are turned away rather than shown a half-deleted or
+ * half-imported catalog. A failed replacement leaves the catalog unavailable until a replacement succeeds.
+ */
+@Component
+@Slf4j
+public class CatalogAvailability {
+
+    public enum State {
+        AVAILABLE,
+        REPLACING,
+        FAILED
+    }
+
+    // Guarded by this
+    private State state = State.AVAILABLE;
+    private String message;
+    private LocalDateTime since;
+
+    /**
+     * Mark the catalog unavailable for a replacement
+     * @return false if another replacement is already running
+     */
+    public synchronized boolean beginReplacement() {
+        if (state == State.REPLACING) {
+            return false;
+        }
+        update(State.REPLACING, "The catalog is being replaced");
+        return true;
+    }
+
+    /**
+     * The replacement imported the new catalog; reads are served again
+     */
+    public synchronized void replacementSucceeded() {
+        update(State.AVAILABLE, null);
+    }
+
+    /**
+     * The replacement stopped part way; the catalog stays unavailable until a replacement succeeds
+     */
+    public synchronized void replacementFailed(Exception e) {
+        update(State.FAILED, "The last catalog replacement failed and must be run again: " + e.getMessage());
+        log.error("Catalog replacement failed, the catalog stays unavailable until a replacement succeeds");
+    }
+
+    public synchronized boolean isAvailable() {
+        return state == State.AVAILABLE;
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("state", state.name());
+        status.put("message", message);
+        status.put("since", since);
+        return status;
+    }
+
+    private void update(State state, String message) {
+        this.state = state;
+        this.message = message;
+        this.since = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,243 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of catalog reads: single products, the full list, the lists per category
+ * and the category names. Entries expire after a fixed time and the least recently used entry is
+ * evicted when the cache is full. Product writes publish a {@link ProductChangedEvent}; once the
+ * transaction has committed, the entries it touched are refreshed or dropped; a cached product is
+ * not replaced by an older version from an event delivered late. Writes that bypass
+ * the application, such as sync copies or scripts, show up when their entries expire.
+ * Products are mutable entities, so the cache stores its own copies and hands every reader fresh
+ * copies: a caller changing a returned product cannot change what later readers are served.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductCatalogCache {
+
+    static final String ALL_PRODUCTS = "products";
+    static final String CATEGORIES = "categories";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.catalog-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.catalog-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${app.catalog-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    // Access ordered, the eldest entry is the least recently used; guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Bumped by every invalidation, a load that overlapped one is not stored
+    private long generation;
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        hits = requests("hit");
+        misses = requests("miss");
+        Gauge.builder("shopper.catalog.cache.size", this, ProductCatalogCache::size)
+                .description("Entries in the product catalog cache")
+                .register(meterRegistry);
+    }
+
+    public Optional<Product> getProduct(UUID id, Supplier<Optional<Product>> loader) {
+        // Absent products are not cached, a later create must not be hidden
+        Product product = get(productKey(id), () -> loader.get().orElse(null));
+        return Optional.ofNullable(product);
+    }
+
+    public List<Product> getAllProducts(Supplier<List<Product>> loader) {
+        return get(ALL_PRODUCTS, () -> List.copyOf(loader.get()));
+    }
+
+    public List<Product> getProductsByCategory(String category, Supplier<List<Product>> loader) {
+        return get(categoryKey(category), () -> List.copyOf(loader.get()));
+    }
+
+    public List<String> getCategories(Supplier<List<String>> loader) {
+        return get(CATEGORIES, () -> List.copyOf(loader.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                return (T) copyOf(entry.value);
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions("expired").increment();
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+
+        // Loaded outside the lock, concurrent misses of one key may both query the database
+        T value = loader.get();
+        if (value != null) {
+            Object snapshot = copyOf(value);
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    store(key, snapshot);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Refresh the saved products and drop every entry the change made stale
+     */
+    // Before the catalog version moves on, see ProductCatalogVersion
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            generation++;
+            if (event.wholeCatalog()) {
+                int dropped = entries.size();
+                entries.clear();
+                evictions("invalidated").increment(dropped);
+                log.debug("Product catalog cache cleared, {} entries dropped", dropped);
+                return;
+            }
+            invalidate(ALL_PRODUCTS);
+            if (event.categoryListChanged()) {
+                invalidate(CATEGORIES);
+            }
+            event.categories().forEach(category -> invalidate(categoryKey(category)));
+            event.removedIds().forEach(id -> invalidate(productKey(id)));
+            // The committed state is known, so single products are replaced rather than reloaded
+            for (Product product : event.saved()) {
+                String key = productKey(product.getId());
+                Entry cached = entries.get(key);
+                if (cached != null && cached.value() instanceof Product known
+                        && ProductChangedEvent.isOlder(product.getUpdatedAt(), known.getUpdatedAt())) {
+                    log.debug("Keeping cached product {}, the event carries an older version", product.getId());
+                    continue;
+                }
+                store(key, copy(product));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "enabled", enabled,
+            "size", size(),
+            "maxEntries", maxEntries,
+            "ttlMs", ttlMs,
+            "hits", (long) hits.count(),
+            "misses", (long) misses.count()
+        );
+    }
+
+    private void store(String key, Object value) {
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMs));
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions("size").increment();
+        }
+    }
+
+    private void invalidate(String key) {
+        if (entries.remove(key) != null) {
+            evictions("invalidated").increment();
+        }
+    }
+
+    /**
+     * @return A copy of a cached value: products are copied, lists of them copied element by element
+     */
+    private static Object copyOf(Object value) {
+        if (value instanceof Product product) {
+            return copy(product);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(ProductCatalogCache::copyOf).toList();
+        }
+        return value;
+    }
+
+    // Lazy associations are left out, they are never serialized and would tie the copy to a session
+    private static Product copy(Product product) {
+        return Product.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .description(product.getDescription())
+                .price(product.getPrice())
+                .imageUrl(product.getImageUrl())
+                .category(product.getCategory())
+                .stockQuantity(product.getStockQuantity())
+                .createdAt(product.getCreatedAt())
+                .updatedAt(product.getUpdatedAt())
+                .build();
+    }
+
+    static String productKey(UUID id) {
+        return "product:" + id;
+    }
+
+    static String categoryKey(String category) {
+        return "category:" + category;
+    }
+
+    private Counter requests(String result) {
+        return Counter.builder("shopper.catalog.cache.requests")
+                .description("Product catalog cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter evictions(String cause) {
+        return Counter.builder("shopper.catalog.cache.evictions")
+                .description("Entries removed from the product catalog cache")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    private record Entry(Object value, long expiresAt) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.shopper.service.catalog;
+
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+
+/**
+ * Version of the product catalog behind the ETag and Last-Modified validators of the catalog
+ * endpoints. Every committed {@link ProductChangedEvent} moves it on, after the catalog cache has
+ * dropped what the change made stale, so a response tagged with a version never holds older data.
+ * Writes that bypass the application do not publish events; a periodic check compares the number of
+ * products and their latest update time on the primary and moves the version on only when they differ.
+ * A write made through the application is usually seen by the next check too and moves the version once
+ * more, which costs clients one extra full response, never a stale one. Time alone never changes the version.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductCatalogVersion {
+
+    private final MeterRegistry meterRegistry;
+    private final ProductRepository productRepository;
+
+    @Value("${app.catalog-version.bypass-check-ms:10000}")
+    private long bypassCheckMs;
+
+    // Distinguishes versions of earlier runs, the counter starts over on restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private volatile Snapshot snapshot = new Snapshot(1, System.currentTimeMillis());
+    // Product count and latest update seen by the last bypass check, null before the first; guarded by this
+    private String lastFingerprint;
+
+    private Counter notModified;
+    private Counter modified;
+
+    /**
+     * Catalog version at one point in time
+     * @param version Increasing counter
+     * @param changedAt When the version was taken, in epoch milliseconds; Last-Modified has whole
+     *                  seconds, so changes within one second are told apart by the ETag only
+     */
+    public record Snapshot(long version, long changedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        notModified = requests("not_modified");
+        modified = requests("modified");
+    }
+
+    /**
+     * Read before the catalog data, so a change made meanwhile can only make the response newer
+     * than its validators, never older
+     */
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Strong validator for a representation of the given version
+     */
+    public String etag(Snapshot version) {
+        return etag(version, null);
+    }
+
+    /**
+     * Strong validator for one of several representations of the given version
+     * @param variant Name of the representation, null for the default one
+     */
+    public String etag(Snapshot version, String variant) {
+        return "\"" + epoch + "-" + version.version() + (variant != null ? "-" + variant : "") + "\"";
+    }
+
+    // After the catalog cache listener, see ProductCatalogCache#onProductChanged
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        advance();
+    }
+
+    /**
+     * Move the version on if products were created, deleted or updated since the last check without
+     * an event, e.g. by sync copies or scripts
+     */
+    @Scheduled(initialDelayString = "${app.catalog-version.bypass-check-ms:10000}",
+               fixedDelayString = "${app.catalog-version.bypass-check-ms:10000}")
+    public void checkForBypassWrites() {
+        String fingerprint;
+        try {
+            fingerprint = productRepository.readChangeFingerprint();
+        } catch (DataAccessException e) {
+            log.warn("Product catalog bypass write check failed: {}", e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (lastFingerprint != null && !lastFingerprint.equals(fingerprint)) {
+                advance();
+            }
+            lastFingerprint = fingerprint;
+        }
+    }
+
+    public void recordConditionalRequest(boolean wasNotModified) {
+        (wasNotModified ? notModified : modified).increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        return Map.of(
+            "version", current.version(),
+            "etag", etag(current),
+            "changedAt", current.changedAt(),
+            "bypassCheckMs", bypassCheckMs,
+            "notModified", (long) notModified.count(),
+            "modified", (long) modified.count()
+        );
+    }
+
+    private synchronized void advance() {
+        snapshot = new Snapshot(snapshot.version() + 1, System.currentTimeMillis());
+        log.debug("Product catalog version advanced to {}", snapshot.version());
+    }
+
+    private Counter requests(String result) {
+        return Counter.builder("shopper.catalog.conditional.requests")
+                .description("Catalog reads by whether the client's copy was still current")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Published when products are written, so caches of the catalog can drop or refresh exactly the
+ * entries the change touched. Listeners act once the writing transaction has committed.
+ * @param saved Current state of inserted or updated products
+ * @param removedIds IDs of deleted products
+ * @param categories Categories whose product lists changed, including a product's previous category
+ * @param categoryListChanged true if a category may have appeared or disappeared
+ * @param wholeCatalog true if the whole catalog was rewritten and nothing cached is valid
+ */
+public record ProductChangedEvent(List<Product> saved, Set<UUID> removedIds, Set<String> categories,
+                                  boolean categoryListChanged, boolean wholeCatalog) {
+
+    /**
+     * @param products Inserted or updated products
+     * @param previousCategories Categories the products had before the change
+     * @param categoryListChanged true if a product is new or moved to another category
+     */
+    public static ProductChangedEvent saved(Collection<Product> products, Collection<String> previousCategories,
+                                            boolean categoryListChanged) {
+        Set<String> categories = new LinkedHashSet<>(previousCategories);
+        products.forEach(product -> categories.add(product.getCategory()));
+        return new ProductChangedEvent(List.copyOf(products), Set.of(), categories, categoryListChanged, false);
+    }
+
+    public static ProductChangedEvent removed(Product product) {
+        return new ProductChangedEvent(List.of(), Set.of(product.getId()), Set.of(product.getCategory()), true, false);
+    }
+
+    public static ProductChangedEvent catalogReplaced() {
+        return new ProductChangedEvent(List.of(), Set.of(), Set.of(), true, true);
+    }
+
+    /**
+     * Whether a saved product is an older version than one already known. Listeners receive events
+     * after their transactions commit, but concurrent commits may deliver them out of order.
+     * @param updatedAt Last update of the saved product
+     * @param knownUpdatedAt Last update of the version already known
+     * @return true if both are set and the saved product predates the known version
+     */
+    static boolean isOlder(LocalDateTime updatedAt, LocalDateTime knownUpdatedAt) {
+        return updatedAt != null && knownUpdatedAt != null && updatedAt.isBefore(knownUpdatedAt);
+    }
+}
@@ -0,0 +1,54 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the sorted product listing: the sort key value and id of the product a page starts
+ * after, or ends before when paging backward. Encoded as an opaque URL safe token.
+ */
+public record ProductCursor(ProductPageQuery.SortKey sortKey,
+                            Sort.Direction direction,
+                            boolean backward,
+                            Comparable<?> value,
+                            UUID id) {
+
+    private static final String AFTER = "after";
+    private static final String BEFORE = "before";
+
+    static ProductCursor after(ProductPageQuery query, Product product) {
+        return new ProductCursor(query.sortKey(), query.direction(), false, query.sortKey().valueOf(product), product.getId());
+    }
+
+    static ProductCursor before(ProductPageQuery query, Product product) {
+        return new ProductCursor(query.sortKey(), query.direction(), true, query.sortKey().valueOf(product), product.getId());
+    }
+
+    public String encode() {
+        // The value goes last, it is the only part that may contain the separator
+        String token = String.join(":", sortKey.name(), direction.name(), backward ? BEFORE : AFTER,
+                id.toString(), sortKey.format(value));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException If the token was not produced by {@link #encode()}
+     */
+    public static ProductCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 5);
+            if (parts.length != 5 || !(parts[2].equals(AFTER) || parts[2].equals(BEFORE))) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ProductPageQuery.SortKey sortKey = ProductPageQuery.SortKey.valueOf(parts[0]);
+            return new ProductCursor(sortKey, Sort.Direction.valueOf(parts[1]), parts[2].equals(BEFORE),
+                    sortKey.parse(parts[4]), UUID.fromString(parts[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
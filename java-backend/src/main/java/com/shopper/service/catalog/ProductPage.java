@@ -0,0 +1,40 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Products of one page in the requested order, with cursors for the pages on either side.
+ * A cursor is null when there is no page in that direction.
+ */
+public record ProductPage(List<Product> products, String nextCursor, String previousCursor) {
+
+    /**
+     * @param query Query the rows were read for
+     * @param rows Rows in the order the database read them, one more than the limit when the
+     *             listing continues past this page
+     */
+    public static ProductPage of(ProductPageQuery query, List<Product> rows) {
+        boolean more = rows.size() > query.limit();
+        List<Product> products = new ArrayList<>(more ? rows.subList(0, query.limit()) : rows);
+        if (products.isEmpty()) {
+            return new ProductPage(List.of(), null, null);
+        }
+        boolean hasNext;
+        boolean hasPrevious;
+        if (query.isBackward()) {
+            Collections.reverse(products);
+            hasNext = true;
+            hasPrevious = more;
+        } else {
+            hasNext = more;
+            hasPrevious = query.cursor() != null;
+        }
+        String next = hasNext ? ProductCursor.after(query, products.get(products.size() - 1)).encode() : null;
+        String previous = hasPrevious ? ProductCursor.before(query, products.get(0)).encode() : null;
+        return new ProductPage(List.copyOf(products), next, previous);
+    }
+}
@@ -0,0 +1,113 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * One page of the product listing: filters, a sort key and the cursor to continue from. Products
+ * are ordered by the sort key and then by id, so products with equal keys keep a fixed order and
+ * a page boundary never skips or repeats a product, even while products are added or removed.
+ */
+public record ProductPageQuery(SortKey sortKey,
+                               Sort.Direction direction,
+                               String category,
+                               BigDecimal minPrice,
+                               BigDecimal maxPrice,
+                               boolean inStockOnly,
+                               int limit,
+                               ProductCursor cursor) {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    /**
+     * Columns a page can be sorted by, each backed by an index ending in the id
+     */
+    public enum SortKey {
+        NAME("name", Product::getName, text -> text),
+        PRICE("price", Product::getPrice, BigDecimal::new),
+        CREATED_AT("createdAt", Product::getCreatedAt, LocalDateTime::parse);
+
+        private final String property;
+        private final Function<Product, Comparable<?>> extractor;
+        private final Function<String, Comparable<?>> parser;
+
+        SortKey(String property, Function<Product, Comparable<?>> extractor, Function<String, Comparable<?>> parser) {
+            this.property = property;
+            this.extractor = extractor;
+            this.parser = parser;
+        }
+
+        public String property() {
+            return property;
+        }
+
+        Comparable<?> valueOf(Product product) {
+            return extractor.apply(product);
+        }
+
+        Comparable<?> parse(String text) {
+            return parser.apply(text);
+        }
+
+        String format(Comparable<?> value) {
+            return value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        }
+
+        public static SortKey fromName(String name) {
+            for (SortKey key : values()) {
+                if (key.property.equalsIgnoreCase(name) || key.name().equalsIgnoreCase(name)) {
+                    return key;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort key: " + name + " (expected name, price or createdAt)");
+        }
+    }
+
+    public ProductPageQuery {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        if (cursor != null && (cursor.sortKey() != sortKey || cursor.direction() != direction)) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort");
+        }
+    }
+
+    /**
+     * Build a query from request parameters. A cursor carries its sort, so sort and direction may be
+     * left out when continuing; filters must be repeated with every page.
+     * @param limit Page size, at most {@link #MAX_LIMIT}, default {@link #DEFAULT_LIMIT}
+     * @throws IllegalArgumentException If a parameter is invalid or contradicts the cursor
+     */
+    public static ProductPageQuery of(String sort, String direction, String cursor, String category,
+                                      BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock, Integer limit) {
+        ProductCursor decoded = cursor != null ? ProductCursor.decode(cursor) : null;
+        SortKey sortKey = sort != null ? SortKey.fromName(sort) : decoded != null ? decoded.sortKey() : SortKey.NAME;
+        Sort.Direction sortDirection = direction != null ? Sort.Direction.fromString(direction)
+                : decoded != null ? decoded.direction() : Sort.Direction.ASC;
+        return new ProductPageQuery(sortKey, sortDirection, category, minPrice, maxPrice,
+                Boolean.TRUE.equals(inStock), limit != null ? limit : DEFAULT_LIMIT, decoded);
+    }
+
+    public boolean isBackward() {
+        return cursor != null && cursor.backward();
+    }
+
+    /**
+     * Order the database reads in: the requested one, reversed when paging backward so the rows
+     * nearest the cursor come first
+     */
+    public Sort sort() {
+        Sort.Direction read = isBackward()
+                ? (direction.isAscending() ? Sort.Direction.DESC : Sort.Direction.ASC)
+                : direction;
+        return Sort.by(read, sortKey.property(), "id");
+    }
+}
@@ -0,0 +1,339 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of the product catalog. Names and descriptions are split into normalized
+ * terms; the sorted term dictionary answers prefix queries with one range lookup, and matches are
+ * ranked by BM25 with names weighted above descriptions. Every query word must match, the last one
+ * typically as a prefix of a longer word. The index is loaded once, kept current from
+ * {@link ProductChangedEvent}s and rebuilt periodically to pick up writes that bypass the
+ * application. Changes committed while a rebuild reads the catalog are applied again on top of it
+ * before it is swapped in. Results do not depend on which database serves the catalog.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // A word that only starts with the query word counts for less than the word itself
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final ProductRepository productRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.catalog-search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.catalog-search.name-weight:3.0}")
+    private double nameWeight;
+
+    @Value("${app.catalog-search.max-results:50}")
+    private int maxResults;
+
+    // Serializes rebuilds; taken before lock, never while holding it
+    private final Object rebuildLock = new Object();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private Index index = new Index();
+    // Events committed while a rebuild reads the catalog, null otherwise; guarded by lock
+    private List<ProductChangedEvent> pending;
+    private volatile boolean ready;
+    private Timer searchTimer;
+
+    public enum Field {
+        NAME,
+        DESCRIPTION,
+        ALL
+    }
+
+    @PostConstruct
+    public void init() {
+        searchTimer = Timer.builder("shopper.catalog.search.duration")
+                .description("Time to answer a product search from the index")
+                .register(meterRegistry);
+        Gauge.builder("shopper.catalog.search.documents", this, ProductSearchIndex::size)
+                .description("Products in the search index")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Load the whole catalog into a new index and swap it in
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.catalog-search.rebuild-interval-ms:300000}",
+               fixedDelayString = "${app.catalog-search.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Index rebuilt = new Index();
+                productRepository.findAll().forEach(rebuilt::add);
+                lock.writeLock().lock();
+                try {
+                    pending.forEach(rebuilt::apply);
+                    index = rebuilt;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                ready = true;
+                log.info("Product search index built: {} products, {} terms in {} ms", rebuilt.documents.size(),
+                        rebuilt.terms.size(), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.error("Failed to build the product search index: {}", e.getMessage(), e);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a committed product change to the index
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.wholeCatalog()) {
+            rebuild();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(event);
+            }
+            index.apply(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param query Words to find, in any order
+     * @param field Field the words must appear in
+     * @return Matching products, best first, at most max-results
+     */
+    public List<Product> search(String query, Field field) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return index.search(words, field, nameWeight, maxResults);
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower case words without diacritics, split at anything that is not a letter or digit
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Occurrences of one term in one product
+     */
+    private static final class Posting {
+        int name;
+        int description;
+
+        int frequency(Field field) {
+            return switch (field) {
+                case NAME -> name;
+                case DESCRIPTION -> description;
+                case ALL -> name + description;
+            };
+        }
+    }
+
+    private record Document(Product product, Collection<String> terms, int nameLength, int descriptionLength) {
+    }
+
+    /**
+     * Term dictionary and documents; not thread safe, guarded by the owner's lock
+     */
+    static final class Index {
+        private final NavigableMap<String, Map<UUID, Posting>> terms = new TreeMap<>();
+        private final Map<UUID, Document> documents = new HashMap<>();
+        private long totalNameLength;
+        private long totalDescriptionLength;
+
+        void apply(ProductChangedEvent event) {
+            event.removedIds().forEach(this::remove);
+            for (Product product : event.saved()) {
+                // A rebuild may have read a newer version than a replayed event carries
+                Document known = documents.get(product.getId());
+                if (known == null || !ProductChangedEvent.isOlder(product.getUpdatedAt(), known.product().getUpdatedAt())) {
+                    add(product);
+                }
+            }
+        }
+
+        void add(Product product) {
+            remove(product.getId());
+            List<String> nameTokens = tokenize(product.getName());
+            List<String> descriptionTokens = tokenize(product.getDescription());
+            Map<String, Posting> postings = new HashMap<>();
+            nameTokens.forEach(token -> postings.computeIfAbsent(token, key -> new Posting()).name++);
+            descriptionTokens.forEach(token -> postings.computeIfAbsent(token, key -> new Posting()).description++);
+            postings.forEach((term, posting) -> terms.computeIfAbsent(term, key -> new HashMap<>()).put(product.getId(), posting));
+            documents.put(product.getId(), new Document(product, List.copyOf(postings.keySet()),
+                    nameTokens.size(), descriptionTokens.size()));
+            totalNameLength += nameTokens.size();
+            totalDescriptionLength += descriptionTokens.size();
+        }
+
+        void remove(UUID id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms()) {
+                Map<UUID, Posting> postings = terms.get(term);
+                postings.remove(id);
+                if (postings.isEmpty()) {
+                    terms.remove(term);
+                }
+            }
+            totalNameLength -= document.nameLength();
+            totalDescriptionLength -= document.descriptionLength();
+        }
+
+        List<Product> search(List<String> words, Field field, double nameWeight, int limit) {
+            int count = documents.size();
+            if (count == 0) {
+                return List.of();
+            }
+            double averageName = Math.max(1.0, (double) totalNameLength / count);
+            double averageDescription = Math.max(1.0, (double) totalDescriptionLength / count);
+
+            Map<UUID, Double> scores = null;
+            for (String word : words) {
+                // Best matching term per product, so a short prefix expanding to many terms is not over-counted
+                Map<UUID, Double> wordScores = new HashMap<>();
+                for (Map.Entry<String, Map<UUID, Posting>> term : terms.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+                    Map<UUID, Posting> postings = term.getValue();
+                    double idf = Math.log(1 + (count - postings.size() + 0.5) / (postings.size() + 0.5));
+                    double weight = term.getKey().equals(word) ? 1.0 : PREFIX_WEIGHT;
+                    for (Map.Entry<UUID, Posting> posting : postings.entrySet()) {
+                        if (posting.getValue().frequency(field) == 0 || (scores != null && !scores.containsKey(posting.getKey()))) {
+                            continue;
+                        }
+                        Document document = documents.get(posting.getKey());
+                        double score = 0;
+                        if (field != Field.DESCRIPTION) {
+                            score += nameWeight * bm25(posting.getValue().name, document.nameLength(), averageName);
+                        }
+                        if (field != Field.NAME) {
+                            score += bm25(posting.getValue().description, document.descriptionLength(), averageDescription);
+                        }
+                        wordScores.merge(posting.getKey(), idf * weight * score, Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    // Every word must match
+                    Map<UUID, Double> previous = scores;
+                    wordScores.replaceAll((id, score) -> score + previous.get(id));
+                    scores = wordScores;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<UUID, Double>comparingByValue().reversed()
+                            .thenComparing(entry -> documents.get(entry.getKey()).product().getName(),
+                                    Comparator.nullsLast(Comparator.naturalOrder())))
+                    .limit(limit)
+                    .map(entry -> documents.get(entry.getKey()).product())
+                    .toList();
+        }
+
+        private static double bm25(int frequency, int length, double averageLength) {
+            if (frequency == 0) {
+                return 0;
+            }
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.shopper.service.replication;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import com.shopper.service.DualDatabaseStrategy;
+import com.shopper.service.routing.DatasourceCircuitBreaker;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import com.shopper.service.sync.StreamingTableCopier;
+import com.shopper.service.sync.SyncTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Change data capture on the SQLite primary. Triggers on the synced tables append every inserted,
+ * updated or deleted row ID to the change_log table, whoever writes it, including scripts that bypass
+ * the application. The tailer reads the log in sequence order, copies the current primary state of
+ * the changed rows to the secondary and deletes rows the primary no longer has, then prunes the
+ * applied entries. Like the outbox relay it is state based, so replaying an entry is harmless.
+ * When the secondary refuses a batch because of its data, the rows are applied one by one and the entries
+ * of refused rows move to a dead letter table instead of blocking the log.
+ */
+@Component
+@Slf4j
+public class ChangeLogTailer {
+
+    static final String CHANGE_LOG_TABLE = "change_log";
+
+    // AUTOINCREMENT keeps sequence numbers increasing even after the log has been pruned empty
+    static final String CHANGE_LOG_DDL = "CREATE TABLE IF NOT EXISTS " + CHANGE_LOG_TABLE + " ("
+            + "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "table_name TEXT NOT NULL, "
+            + "row_id TEXT NOT NULL, "
+            + "operation TEXT NOT NULL, "
+            + "changed_at INTEGER NOT NULL DEFAULT (CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)))";
+
+    static final String CHANGE_LOG_DEAD_TABLE = "change_log_dead";
+
+    static final String CHANGE_LOG_DEAD_DDL = "CREATE TABLE IF NOT EXISTS " + CHANGE_LOG_DEAD_TABLE + " ("
+            + "seq INTEGER PRIMARY KEY, "
+            + "table_name TEXT NOT NULL, "
+            + "row_id TEXT NOT NULL, "
+            + "operation TEXT NOT NULL, "
+            + "changed_at INTEGER NOT NULL, "
+            + "error TEXT)";
+
+    // Parents before children so upserts satisfy foreign keys, deletes run first and in the reverse order
+    private static final List<SyncTable> TABLES = List.of(
+        SyncTable.USERS, SyncTable.PRODUCTS, SyncTable.CART_ITEMS, SyncTable.ORDERS, SyncTable.ORDER_ITEMS
+    );
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private StreamingTableCopier streamingTableCopier;
+
+    @Autowired
+    private DatabaseBatchWriter batchWriter;
+
+    @Autowired
+    private DualDatabaseStrategy dualDatabaseStrategy;
+
+    @Autowired
+    private DatasourceCircuitBreakers circuitBreakers;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.cdc.enabled:false}")
+    private boolean cdcEnabled;
+
+    @Value("${app.dual-database.cdc.batch-size:500}")
+    private int batchSize;
+
+    private JdbcTemplate primaryJdbcTemplate;
+    private final ReentrantLock tailLock = new ReentrantLock();
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lastAppliedSeq = new AtomicLong();
+    private volatile boolean triggersInstalled;
+
+    @PostConstruct
+    public void init() {
+        primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        Gauge.builder("shopper.cdc.backlog", backlog, AtomicLong::get)
+                .description("Change log entries not yet applied to the secondary")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Install the triggers once Hibernate has created the tables; without CDC they are dropped again
+     * so the primary does not keep logging changes nobody prunes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void installTriggers() {
+        try {
+            if (!cdcEnabled) {
+                for (SyncTable table : TABLES) {
+                    for (String operation : List.of("insert", "update", "delete")) {
+                        primaryJdbcTemplate.execute("DROP TRIGGER IF EXISTS " + triggerName(table, operation));
+                    }
+                }
+                return;
+            }
+            primaryJdbcTemplate.execute(CHANGE_LOG_DDL);
+            primaryJdbcTemplate.execute(CHANGE_LOG_DEAD_DDL);
+            for (SyncTable table : TABLES) {
+                if (!tableExists(table.getTableName())) {
+                    log.warn("Not capturing changes of {}, the table does not exist", table.getTableName());
+                    continue;
+                }
+                for (String statement : triggerStatements(table.getTableName(), triggerName(table, "insert"),
+                        triggerName(table, "update"), triggerName(table, "delete"))) {
+                    primaryJdbcTemplate.execute(statement);
+                }
+            }
+            triggersInstalled = true;
+            log.info("Change data capture triggers installed on {}", TABLES.stream().map(SyncTable::getTableName).toList());
+        } catch (Exception e) {
+            log.error("Failed to install change data capture triggers: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.dual-database.cdc.poll-interval-ms:1000}")
+    public void tail() {
+        if (!cdcEnabled || !triggersInstalled || !dualDatabaseStrategy.isSecondaryDatabaseEnabled()
+                || !streamingTableCopier.isSecondaryAvailable()) {
+            return;
+        }
+        // Entries stay in the log while Neon's circuit is open
+        if (!circuitBreakers.secondary().isCallPermitted()) {
+            return;
+        }
+        if (!tailLock.tryLock()) {
+            return;
+        }
+        try {
+            int applied;
+            do {
+                applied = applyBatch();
+            } while (applied == batchSize);
+            backlog.set(countPending());
+        } catch (Exception e) {
+            log.error("Change log tailer failed: {}", e.getMessage(), e);
+        } finally {
+            tailLock.unlock();
+        }
+    }
+
+    /**
+     * Apply the oldest batch of change log entries and prune them
+     * @return Number of entries applied, 0 if none were pending or the secondary refused the batch
+     */
+    private int applyBatch() {
+        List<Map<String, Object>> entries = primaryJdbcTemplate.queryForList(
+                "SELECT seq, table_name, row_id FROM " + CHANGE_LOG_TABLE + " ORDER BY seq LIMIT ?", batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        // Several changes of one row collapse into one copy of its current state
+        Map<SyncTable, Set<UUID>> changedIds = new EnumMap<>(SyncTable.class);
+        long maxSeq = 0;
+        for (Map<String, Object> entry : entries) {
+            maxSeq = Math.max(maxSeq, ((Number) entry.get("seq")).longValue());
+            try {
+                SyncTable table = SyncTable.fromTableName((String) entry.get("table_name"));
+                changedIds.computeIfAbsent(table, key -> new LinkedHashSet<>())
+                        .add(UUID.fromString((String) entry.get("row_id")));
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping change log entry {}: {}", entry.get("seq"), e.getMessage());
+            }
+        }
+
+        DatasourceCircuitBreaker breaker = circuitBreakers.secondary();
+        if (!breaker.tryAcquirePermission()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            try {
+                apply(changedIds, null);
+            } catch (DataAccessException e) {
+                if (!isRowFailure(e)) {
+                    throw e;
+                }
+                log.warn("Secondary refused change log entries up to {}, applying their rows one by one: {}",
+                        maxSeq, e.getMessage());
+                long lastSeq = maxSeq;
+                apply(changedIds, (table, id, rowError) -> deadLetter(table, id, lastSeq, rowError));
+            }
+            breaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            breaker.onError(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.warn("Failed to apply change log entries up to {}, retrying on the next poll: {}", maxSeq, e.getMessage());
+            return 0;
+        }
+
+        primaryJdbcTemplate.update("DELETE FROM " + CHANGE_LOG_TABLE + " WHERE seq <= ?", maxSeq);
+        lastAppliedSeq.set(maxSeq);
+        log.debug("Applied {} change log entries up to {}", entries.size(), maxSeq);
+        return entries.size();
+    }
+
+    /**
+     * Copy the current primary state of the changed rows to the secondary. Rows the primary no longer has
+     * are deleted first, so a row re-created under a new ID cannot collide with its old copy on a unique column.
+     * @param changedIds Changed row IDs by table
+     * @param onRowFailure null to write each table in one go, otherwise rows are written one by one and
+     * those the secondary refuses are handed to it
+     */
+    private void apply(Map<SyncTable, Set<UUID>> changedIds, RowFailureHandler onRowFailure) {
+        Map<SyncTable, Map<UUID, Object[]>> current = new EnumMap<>(SyncTable.class);
+        for (SyncTable table : TABLES) {
+            Set<UUID> ids = changedIds.get(table);
+            if (ids != null) {
+                // Rows are bound as uuids on the secondary
+                batchWriter.requireSecondaryUuidIds(table.getTableName());
+                current.put(table, streamingTableCopier.readRows(table, new ArrayList<>(ids), true));
+            }
+        }
+
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            SyncTable table = TABLES.get(i);
+            Map<UUID, Object[]> rows = current.get(table);
+            if (rows == null) {
+                continue;
+            }
+            List<UUID> gone = changedIds.get(table).stream().filter(id -> !rows.containsKey(id)).toList();
+            if (gone.isEmpty()) {
+                continue;
+            }
+            if (onRowFailure == null) {
+                batchWriter.deleteByIdsFromSecondary(table.getTableName(), gone);
+            } else {
+                for (UUID id : gone) {
+                    writeRow(table, id, onRowFailure,
+                            () -> batchWriter.deleteByIdsFromSecondary(table.getTableName(), List.of(id)));
+                }
+            }
+        }
+
+        for (SyncTable table : TABLES) {
+            Map<UUID, Object[]> rows = current.get(table);
+            if (rows == null) {
+                continue;
+            }
+            if (onRowFailure == null) {
+                if (!rows.isEmpty()) {
+                    batchWriter.upsertIntoSecondary(table.getTableName(), table.getColumnNames(), new ArrayList<>(rows.values()));
+                }
+            } else {
+                rows.forEach((id, row) -> writeRow(table, id, onRowFailure, () -> batchWriter.upsertIntoSecondary(
+                        table.getTableName(), table.getColumnNames(), Collections.singletonList(row))));
+            }
+            changesCounter(table).increment(changedIds.get(table).size());
+        }
+    }
+
+    private void writeRow(SyncTable table, UUID id, RowFailureHandler onRowFailure, Runnable write) {
+        try {
+            write.run();
+        } catch (DataAccessException e) {
+            if (!isRowFailure(e)) {
+                throw e;
+            }
+            onRowFailure.rowFailed(table, id, e);
+        }
+    }
+
+    /**
+     * @return true if the secondary refused the data, such as a duplicate unique value or a missing parent row
+     */
+    private static boolean isRowFailure(DataAccessException e) {
+        return e instanceof DataIntegrityViolationException;
+    }
+
+    /**
+     * Move the entries of a refused row out of the log
+     */
+    private void deadLetter(SyncTable table, UUID id, long maxSeq, DataAccessException e) {
+        String error = String.valueOf(e.getMostSpecificCause().getMessage());
+        primaryJdbcTemplate.update("INSERT OR REPLACE INTO " + CHANGE_LOG_DEAD_TABLE
+                        + " (seq, table_name, row_id, operation, changed_at, error)"
+                        + " SELECT seq, table_name, row_id, operation, changed_at, ? FROM " + CHANGE_LOG_TABLE
+                        + " WHERE table_name = ? AND lower(row_id) = ? AND seq <= ?",
+                error.length() > 1000 ? error.substring(0, 1000) : error, table.getTableName(), id.toString(), maxSeq);
+        deadCounter().increment();
+        log.error("Change log entries of {} {} moved to dead letter: {}", table.getTableName(), id, error);
+    }
+
+    /**
+     * Put dead-lettered entries back into the log, for after the cause has been fixed
+     * @return Number of entries requeued
+     */
+    public int requeueDeadEntries() {
+        if (!triggersInstalled) {
+            return 0;
+        }
+        int requeued = primaryJdbcTemplate.update("INSERT INTO " + CHANGE_LOG_TABLE + " (table_name, row_id, operation)"
+                + " SELECT table_name, row_id, operation FROM " + CHANGE_LOG_DEAD_TABLE + " ORDER BY seq");
+        primaryJdbcTemplate.update("DELETE FROM " + CHANGE_LOG_DEAD_TABLE);
+        log.info("Requeued {} dead change log entries", requeued);
+        return requeued;
+    }
+
+    @FunctionalInterface
+    private interface RowFailureHandler {
+        void rowFailed(SyncTable table, UUID id, DataAccessException e);
+    }
+
+    private long countPending() {
+        return count(CHANGE_LOG_TABLE);
+    }
+
+    private long count(String table) {
+        Long rows = primaryJdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    private boolean tableExists(String tableName) {
+        Integer found = primaryJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?", Integer.class, tableName);
+        return found != null && found > 0;
+    }
+
+    /**
+     * @return Statements creating the insert, update and delete triggers of a table. An update that
+     * changes the ID also logs the old ID, so the tailer removes the row under its old key.
+     */
+    static List<String> triggerStatements(String tableName, String insertTrigger, String updateTrigger,
+                                          String deleteTrigger) {
+        String log = "INSERT INTO " + CHANGE_LOG_TABLE + " (table_name, row_id, operation) ";
+        return List.of(
+            "CREATE TRIGGER IF NOT EXISTS " + insertTrigger + " AFTER INSERT ON " + tableName + " BEGIN "
+                + log + "VALUES ('" + tableName + "', NEW.id, 'INSERT'); END",
+            "CREATE TRIGGER IF NOT EXISTS " + updateTrigger + " AFTER UPDATE ON " + tableName + " BEGIN "
+                + log + "VALUES ('" + tableName + "', NEW.id, 'UPDATE'); "
+                + log + "SELECT '" + tableName + "', OLD.id, 'DELETE' WHERE OLD.id IS NOT NEW.id; END",
+            "CREATE TRIGGER IF NOT EXISTS " + deleteTrigger + " AFTER DELETE ON " + tableName + " BEGIN "
+                + log + "VALUES ('" + tableName + "', OLD.id, 'DELETE'); END"
+        );
+    }
+
+    private static String triggerName(SyncTable table, String operation) {
+        return "cdc_" + table.getTableName() + "_" + operation;
+    }
+
+    private Counter deadCounter() {
+        return Counter.builder("shopper.cdc.dead")
+                .description("Change log entries moved to dead letter")
+                .register(meterRegistry);
+    }
+
+    private Counter changesCounter(SyncTable table) {
+        return Counter.builder("shopper.cdc.changes")
+                .description("Changed rows replicated from the change log")
+                .tag("table", table.getTableName())
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", cdcEnabled);
+        status.put("triggersInstalled", triggersInstalled);
+        status.put("pending", triggersInstalled ? countPending() : 0L);
+        status.put("dead", triggersInstalled ? count(CHANGE_LOG_DEAD_TABLE) : 0L);
+        status.put("lastAppliedSeq", lastAppliedSeq.get());
+        Map<String, Long> replicated = new HashMap<>();
+        for (SyncTable table : TABLES) {
+            replicated.put(table.getTableName(), (long) changesCounter(table).count());
+        }
+        status.put("replicatedChanges", replicated);
+        return status;
+    }
+}
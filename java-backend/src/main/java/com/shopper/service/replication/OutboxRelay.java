@@ -0,0 +1,206 @@
+package com.shopper.service.replication;
+
+import com.shopper.entity.primary.OutboxEvent;
+import com.shopper.repository.primary.PrimaryOutboxRepository;
+import com.shopper.service.DualDatabaseStrategy;
+import com.shopper.service.routing.DatasourceCircuitBreaker;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies pending outbox events to the secondary database in batches.
+ * Replication is state based: the relay copies the current primary row, so retries are
+ * idempotent and several events for the same row collapse into one write.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final PrimaryOutboxRepository outboxRepository;
+    private final ObjectProvider<ReplicationTarget> replicationTargets;
+    private final DualDatabaseStrategy dualDatabaseStrategy;
+    private final MeterRegistry meterRegistry;
+    private final DatasourceCircuitBreakers circuitBreakers;
+    private final ReplicationConsistencyTracker consistencyTracker;
+
+    @Value("${app.dual-database.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    @Value("${app.dual-database.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.dual-database.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.dual-database.outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${app.dual-database.outbox.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final ExecutorService nudgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<String, ReplicationTarget> targetsByType;
+
+    /**
+     * Ask the relay to drain soon. Requests made while a drain is queued are coalesced.
+     */
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            nudgeExecutor.execute(() -> {
+                drainRequested.set(false);
+                drain();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.dual-database.outbox.poll-interval-ms:1000}")
+    public void drain() {
+        if (!outboxEnabled || !dualDatabaseStrategy.isSecondaryDatabaseEnabled()) {
+            return;
+        }
+        // Events stay pending while Neon's circuit is open instead of burning retry attempts
+        if (!circuitBreakers.secondary().isCallPermitted()) {
+            return;
+        }
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            int processed;
+            do {
+                processed = relayBatch();
+            } while (processed == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay failed: {}", e.getMessage(), e);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> due = outboxRepository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<OutboxEvent>> eventsByRow = new LinkedHashMap<>();
+        for (OutboxEvent event : due) {
+            eventsByRow.computeIfAbsent(event.getAggregateType() + ":" + event.getAggregateId(), key -> new ArrayList<>())
+                    .add(event);
+        }
+
+        DatasourceCircuitBreaker breaker = circuitBreakers.secondary();
+        List<OutboxEvent> applied = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        boolean paused = false;
+        for (List<OutboxEvent> events : eventsByRow.values()) {
+            if (!breaker.tryAcquirePermission()) {
+                paused = true;
+                break;
+            }
+            OutboxEvent latest = events.get(events.size() - 1);
+            long start = System.nanoTime();
+            try {
+                ReplicationTarget target = targets().get(latest.getAggregateType());
+                if (target == null) {
+                    throw new IllegalStateException("No replication target for " + latest.getAggregateType());
+                }
+                target.replicateToSecondary(latest.getAggregateId());
+                breaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                applied.addAll(events);
+            } catch (Exception e) {
+                breaker.onError(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                log.warn("Failed to replicate {} {}: {}", latest.getAggregateType(), latest.getAggregateId(), e.getMessage());
+                events.forEach(event -> markFailed(event, e));
+                failed.addAll(events);
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            outboxRepository.deleteAllInBatch(applied);
+            applied.forEach(event -> consistencyTracker.completeOutboxEvent(event.getId()));
+            counter("applied").increment(applied.size());
+        }
+        if (!failed.isEmpty()) {
+            outboxRepository.saveAll(failed);
+        }
+        log.debug("Outbox relay applied {} and deferred {} of {} events", applied.size(), failed.size(), due.size());
+        return paused ? 0 : due.size();
+    }
+
+    private void markFailed(OutboxEvent event, Exception error) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(StringUtils.abbreviate(error.getMessage(), 1000));
+
+        if (attempts >= maxAttempts) {
+            event.setStatus(OutboxEvent.Status.DEAD);
+            consistencyTracker.failOutboxEvent(event.getId());
+            counter("dead").increment();
+            log.error("Outbox event {} for {} {} moved to dead letter after {} attempts",
+                    event.getId(), event.getAggregateType(), event.getAggregateId(), attempts);
+        } else {
+            long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+            event.setNextAttemptAt(LocalDateTime.now().plusNanos(backoff * 1_000_000));
+            counter("retried").increment();
+        }
+    }
+
+    private Map<String, ReplicationTarget> targets() {
+        if (targetsByType == null) {
+            Map<String, ReplicationTarget> targets = new HashMap<>();
+            replicationTargets.orderedStream().forEach(target -> targets.put(target.getAggregateType(), target));
+            targetsByType = targets;
+        }
+        return targetsByType;
+    }
+
+    private Counter counter(String outcome) {
+        return Counter.builder("shopper.outbox.events")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("applied", (long) counter("applied").count());
+        stats.put("retried", (long) counter("retried").count());
+        stats.put("dead", (long) counter("dead").count());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        nudgeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.shopper.service.replication;
+
+import com.shopper.entity.primary.OutboxEvent;
+import com.shopper.repository.primary.PrimaryOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records primary-to-secondary replication in the transactional outbox table.
+ * Events are written inside the caller's primary transaction, so they commit or roll back
+ * together with the entity change they describe.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    private final PrimaryOutboxRepository outboxRepository;
+    private final OutboxRelay outboxRelay;
+    private final ReplicationConsistencyTracker consistencyTracker;
+
+    @Value("${app.dual-database.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    public boolean isEnabled() {
+        return outboxEnabled;
+    }
+
+    /**
+     * Record that a primary row changed and must be replicated
+     * @param aggregateType Table of the changed row
+     * @param aggregateId ID of the changed row
+     * @param operation Kind of change
+     * @param userId User the change was made for
+     * @return The stored outbox event
+     */
+    @Transactional
+    public OutboxEvent record(String aggregateType, Object aggregateId, OutboxEvent.Operation operation, String userId) {
+        return recordAll(aggregateType, List.of(aggregateId), operation, userId).get(0);
+    }
+
+    /**
+     * Record that several primary rows changed in the same way
+     * @param aggregateType Table of the changed rows
+     * @param aggregateIds IDs of the changed rows
+     * @param operation Kind of change
+     * @param userId User the change was made for
+     * @return The stored outbox events, one per ID
+     */
+    @Transactional
+    public List<OutboxEvent> recordAll(String aggregateType, Collection<?> aggregateIds, OutboxEvent.Operation operation, String userId) {
+        if (aggregateIds.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxRepository.saveAll(aggregateIds.stream()
+                .map(aggregateId -> OutboxEvent.builder()
+                        .aggregateType(aggregateType)
+                        .aggregateId(aggregateId.toString())
+                        .operation(operation)
+                        .userId(userId)
+                        .nextAttemptAt(now)
+                        .build())
+                .toList());
+        List<Long> eventIds = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            consistencyTracker.bindOutboxEvent(event.getId(),
+                    consistencyTracker.begin(userId, aggregateType + ":" + event.getAggregateId()));
+            eventIds.add(event.getId());
+        }
+        log.debug("Recorded {} outbox events for {} starting at {}", events.size(), aggregateType, eventIds.get(0));
+
+        // Wake the relay as soon as the change is visible instead of waiting for the next poll
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxRelay.requestDrain();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        eventIds.forEach(consistencyTracker::completeOutboxEvent);
+                    }
+                }
+            });
+        }
+        return events;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", outboxEnabled);
+        status.put("pending", outboxRepository.countByStatus(OutboxEvent.Status.PENDING));
+        status.put("dead", outboxRepository.countByStatus(OutboxEvent.Status.DEAD));
+        outboxRepository.findFirstByStatusOrderByIdAsc(OutboxEvent.Status.PENDING).ifPresent(oldest -> {
+            status.put("oldestPendingAt", oldest.getCreatedAt());
+            status.put("oldestPendingAgeMs", Duration.between(oldest.getCreatedAt(), LocalDateTime.now()).toMillis());
+        });
+        status.put("relay", outboxRelay.getStats());
+        return status;
+    }
+
+    /**
+     * Move dead-lettered events back to pending so the relay retries them
+     * @return Number of requeued events
+     */
+    public int requeueDeadEvents() {
+        int requeued = outboxRepository.requeueDead(LocalDateTime.now());
+        log.info("Requeued {} dead outbox events", requeued);
+        if (requeued > 0) {
+            outboxRelay.requestDrain();
+        }
+        return requeued;
+    }
+}
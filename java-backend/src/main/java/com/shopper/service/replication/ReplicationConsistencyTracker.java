@@ -0,0 +1,227 @@
+package com.shopper.service.replication;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-your-writes bookkeeping for asynchronous secondary replication.
+ * Every secondary write takes a sequence number and stays pending under its scope until the secondary
+ * has applied it; reads of a scope may go to the secondary only while none of its writes is pending.
+ * A write made for a user is scoped to that user, a system write to the entity it changes, so writes
+ * nobody in particular made never hold back every system read. A write that could not be replicated,
+ * or stayed pending longer than the maximum hold, pins its scope to the primary until the pin expires,
+ * so one stuck write never holds anyone else back.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicationConsistencyTracker {
+
+    /**
+     * User of writes and reads made on behalf of no particular user
+     */
+    public static final String SYSTEM_USER = "system";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.read-your-writes.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.dual-database.read-your-writes.pin-on-failure-ms:300000}")
+    private long pinOnFailureMs;
+
+    @Value("${app.dual-database.read-your-writes.max-hold-ms:30000}")
+    private long maxHoldMs;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, PendingWrite> pendingWrites = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<Long>> pendingWritesByUser = new ConcurrentHashMap<>();
+    private final Map<String, Long> pinnedUntilByUser = new ConcurrentHashMap<>();
+    private final Map<Long, Long> sequenceByOutboxEvent = new ConcurrentHashMap<>();
+
+    private record PendingWrite(String scope, long startedAt) {
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("shopper.replication.pending", pendingWrites, Map::size)
+                .description("Secondary writes not yet applied")
+                .register(meterRegistry);
+        Gauge.builder("shopper.replication.watermark.lag", this, tracker -> tracker.sequence.get() - tracker.getWatermark())
+                .description("Sequences between the latest write and the secondary watermark")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a secondary write that is about to be applied
+     * @param userId User the write belongs to
+     * @return Sequence number of the write
+     */
+    public long begin(String userId) {
+        return begin(userId, null);
+    }
+
+    /**
+     * Register a secondary write that is about to be applied, scoped to its user or, for a system
+     * write, to the entity it changes
+     * @param userId User the write belongs to
+     * @param entityKey Key of the changed entity, its table and ID; null if unknown
+     * @return Sequence number of the write
+     */
+    public long begin(String userId, String entityKey) {
+        long writeSequence = sequence.incrementAndGet();
+        if (!enabled) {
+            return writeSequence;
+        }
+        String scope = SYSTEM_USER.equals(userId) && entityKey != null ? entityKey : userId;
+        pendingWrites.put(writeSequence, new PendingWrite(scope, System.currentTimeMillis()));
+        pendingWritesByUser.compute(scope, (key, sequences) -> {
+            Set<Long> pending = sequences != null ? sequences : ConcurrentHashMap.newKeySet();
+            pending.add(writeSequence);
+            return pending;
+        });
+        return writeSequence;
+    }
+
+    /**
+     * The write was applied to the secondary, or turned out to be unnecessary (rolled back)
+     */
+    public void complete(long writeSequence) {
+        remove(writeSequence);
+    }
+
+    /**
+     * The write will not reach the secondary; keep its scope on the primary until a resync can have run.
+     * The pin expires after pin-on-failure-ms, even if the write is never replicated.
+     */
+    public void fail(long writeSequence) {
+        PendingWrite write = remove(writeSequence);
+        if (write != null) {
+            pinnedUntilByUser.put(write.scope(), System.currentTimeMillis() + pinOnFailureMs);
+            log.warn("Secondary write {} for {} failed, reading from primary for the next {} ms",
+                    writeSequence, write.scope(), pinOnFailureMs);
+        }
+    }
+
+    private PendingWrite remove(long writeSequence) {
+        PendingWrite write = pendingWrites.remove(writeSequence);
+        if (write != null) {
+            // Drop the scope's entry with its last pending write so the map only holds scopes with writes in flight
+            pendingWritesByUser.computeIfPresent(write.scope(), (key, sequences) -> {
+                sequences.remove(writeSequence);
+                return sequences.isEmpty() ? null : sequences;
+            });
+        }
+        return write;
+    }
+
+    public void bindOutboxEvent(long eventId, long writeSequence) {
+        if (enabled) {
+            sequenceByOutboxEvent.put(eventId, writeSequence);
+        }
+    }
+
+    public void completeOutboxEvent(long eventId) {
+        Long writeSequence = sequenceByOutboxEvent.remove(eventId);
+        if (writeSequence != null) {
+            complete(writeSequence);
+        }
+    }
+
+    public void failOutboxEvent(long eventId) {
+        Long writeSequence = sequenceByOutboxEvent.remove(eventId);
+        if (writeSequence != null) {
+            fail(writeSequence);
+        }
+    }
+
+    /**
+     * @return Highest sequence at or below which every secondary write has been applied
+     */
+    public long getWatermark() {
+        Map.Entry<Long, PendingWrite> oldestPending = pendingWrites.firstEntry();
+        return oldestPending != null ? oldestPending.getKey() - 1 : sequence.get();
+    }
+
+    /**
+     * Check whether the secondary already reflects everything written in a scope
+     * @param scope User about to read, or key of the entity about to be read
+     * @return true if reads of the scope may go to the secondary
+     */
+    public boolean isCaughtUp(String scope) {
+        if (!enabled) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Set<Long> pending = pendingWritesByUser.get(scope);
+        if (pending != null) {
+            pending.forEach(writeSequence -> expireIfOverdue(writeSequence, now));
+        }
+        return !pendingWritesByUser.containsKey(scope) && !isPinned(scope, now);
+    }
+
+    private boolean isPinned(String scope, long now) {
+        Long pinnedUntil = pinnedUntilByUser.get(scope);
+        if (pinnedUntil == null) {
+            return false;
+        }
+        if (pinnedUntil > now) {
+            return true;
+        }
+        pinnedUntilByUser.remove(scope, pinnedUntil);
+        return false;
+    }
+
+    private boolean expireIfOverdue(long writeSequence, long now) {
+        PendingWrite write = pendingWrites.get(writeSequence);
+        if (write == null || now - write.startedAt() < maxHoldMs) {
+            return false;
+        }
+        log.warn("Secondary write {} for {} still pending after {} ms, giving up waiting for it",
+                writeSequence, write.scope(), maxHoldMs);
+        fail(writeSequence);
+        return true;
+    }
+
+    /**
+     * Give up on writes pending past the maximum hold and forget expired pins, also for users who stopped reading
+     */
+    @Scheduled(fixedDelayString = "${app.dual-database.read-your-writes.sweep-interval-ms:5000}")
+    public void expireOverdueWrites() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Sequences are taken in start order, so the overdue writes are at the head
+        for (Long writeSequence : pendingWrites.keySet()) {
+            if (!expireIfOverdue(writeSequence, now) && pendingWrites.containsKey(writeSequence)) {
+                break;
+            }
+        }
+        pinnedUntilByUser.entrySet().removeIf(pin -> pin.getValue() <= now);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("sequence", sequence.get());
+        status.put("watermark", getWatermark());
+        status.put("pendingWrites", pendingWrites.size());
+        status.put("usersWaiting", pendingWritesByUser.size());
+        status.put("usersPinned", pinnedUntilByUser.size());
+        return status;
+    }
+}
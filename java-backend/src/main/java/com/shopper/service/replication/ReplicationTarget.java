@@ -0,0 +1,19 @@
+package com.shopper.service.replication;
+
+/**
+ * A dual-database repository that can bring one secondary row in line with the primary.
+ */
+public interface ReplicationTarget {
+
+    /**
+     * @return Aggregate type recorded in the outbox, matching the table name
+     */
+    String getAggregateType();
+
+    /**
+     * Copy the current primary state of a row to the secondary database,
+     * deleting it there if it no longer exists in the primary.
+     * @param aggregateId ID of the row to replicate
+     */
+    void replicateToSecondary(String aggregateId);
+}
@@ -0,0 +1,198 @@
+package com.shopper.service.replication;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process queue that drains secondary (Neon) writes on a dedicated worker pool.
+ * Operations sharing an ordering key always land on the same single-threaded lane, so writes
+ * to one entity are applied in the order they were submitted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SecondaryWriteQueue {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.write-behind.workers:4}")
+    private int workers;
+
+    @Value("${app.dual-database.write-behind.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.dual-database.write-behind.offer-timeout-ms:250}")
+    private long offerTimeoutMs;
+
+    @Value("${app.dual-database.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private ThreadPoolExecutor[] lanes;
+    private Counter submittedCounter;
+    private Counter completedCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+    private Timer lagTimer;
+
+    @PostConstruct
+    public void start() {
+        int laneCount = Math.max(1, workers);
+        int laneCapacity = Math.max(1, (queueCapacity + laneCount - 1) / laneCount);
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(laneCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "secondary-writer-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            lanes[i].prestartAllCoreThreads();
+        }
+
+        Gauge.builder("shopper.replication.queue.depth", this, SecondaryWriteQueue::getQueueDepth)
+                .description("Secondary writes waiting to be applied")
+                .register(meterRegistry);
+        submittedCounter = taskCounter("submitted");
+        completedCounter = taskCounter("completed");
+        failedCounter = taskCounter("failed");
+        rejectedCounter = taskCounter("rejected");
+        lagTimer = Timer.builder("shopper.replication.lag")
+                .description("Time from enqueue until the secondary write completed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        log.info("Secondary write-behind queue started with {} lanes of capacity {}", laneCount, laneCapacity);
+    }
+
+    /**
+     * Enqueue a secondary write. Blocks for at most the configured offer timeout when the lane
+     * is full, which pushes back on callers instead of growing memory without bound.
+     * @param orderingKey Key identifying the entity; writes with equal keys are applied in order
+     * @param task Secondary write to run
+     * @return true if the write was accepted, false if it was rejected because the lane stayed full
+     */
+    public boolean submit(String orderingKey, Runnable task) {
+        ThreadPoolExecutor lane = lanes[laneIndex(orderingKey)];
+        if (lane.isShutdown()) {
+            rejectedCounter.increment();
+            return false;
+        }
+
+        long enqueuedAt = System.nanoTime();
+        Runnable timedTask = () -> {
+            try {
+                task.run();
+                completedCounter.increment();
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.error("Write-behind task for key {} failed: {}", orderingKey, e.getMessage());
+            } finally {
+                lagTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        try {
+            if (lane.getQueue().offer(timedTask, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                submittedCounter.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejectedCounter.increment();
+        log.warn("Write-behind queue full, rejected secondary write for key {}", orderingKey);
+        return false;
+    }
+
+    /**
+     * Split the items of a batch write into groups that each fall on one lane. A group submitted
+     * under the ordering key of any of its items stays in order with the single writes to each of them.
+     * @param items Items of the batch
+     * @param orderingKey Ordering key of an item
+     * @param <E> Item type
+     * @return Groups of items, each in the order of the batch
+     */
+    public <E> Collection<List<E>> groupByLane(List<E> items, Function<E, String> orderingKey) {
+        Map<Integer, List<E>> groups = new LinkedHashMap<>();
+        for (E item : items) {
+            groups.computeIfAbsent(laneIndex(orderingKey.apply(item)), lane -> new ArrayList<>()).add(item);
+        }
+        return groups.values();
+    }
+
+    private int laneIndex(String orderingKey) {
+        return Math.floorMod(orderingKey.hashCode(), lanes.length);
+    }
+
+    /**
+     * @return Number of secondary writes waiting across all lanes
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("lanes", lanes.length);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("submitted", (long) submittedCounter.count());
+        stats.put("completed", (long) completedCounter.count());
+        stats.put("failed", (long) failedCounter.count());
+        stats.put("rejected", (long) rejectedCounter.count());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Draining secondary write-behind queue ({} pending)", getQueueDepth());
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (!lane.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    log.warn("Write-behind lane did not drain in time, {} writes dropped", lane.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    private Counter taskCounter(String outcome) {
+        return Counter.builder("shopper.replication.tasks")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,173 @@
+package com.shopper.service.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Moves a bounded share of named reads to whichever database is currently faster for that query.
+ * Keeps an exponentially weighted moving average of latency and error rate per datasource and
+ * operation; the flag-selected database stays the default and at most {@code maxShiftShare} of its
+ * reads are moved. A small exploration rate keeps the estimate of the other database fresh.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveReadRouter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.adaptive-routing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.dual-database.adaptive-routing.alpha:0.2}")
+    private double alpha;
+
+    @Value("${app.dual-database.adaptive-routing.error-penalty:10}")
+    private double errorPenalty;
+
+    @Value("${app.dual-database.adaptive-routing.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.dual-database.adaptive-routing.min-improvement:0.2}")
+    private double minImprovement;
+
+    @Value("${app.dual-database.adaptive-routing.explore-rate:0.02}")
+    private double exploreRate;
+
+    @Value("${app.dual-database.adaptive-routing.stale-after-ms:60000}")
+    private long staleAfterMs;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record the outcome of a read
+     * @param datasource "primary" or "secondary"
+     * @param operationName Repository method performing the read
+     * @param latencyMs Time the read took
+     * @param failed Whether the read threw
+     */
+    public void record(String datasource, String operationName, long latencyMs, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        estimates.computeIfAbsent(key(datasource, operationName), key -> new Estimate())
+                .update(latencyMs, failed, alpha);
+    }
+
+    /**
+     * Decide where a read goes
+     * @param operationName Repository method performing the read
+     * @param flagPrefersSecondary Database selected by the use-neon flag
+     * @param maxShiftShare Largest share of reads (0 to 1) that may leave the flag-selected database
+     * @return true to read from the secondary database
+     */
+    public boolean routeToSecondary(String operationName, boolean flagPrefersSecondary, double maxShiftShare) {
+        if (!enabled || maxShiftShare <= 0) {
+            return flagPrefersSecondary;
+        }
+        double shiftCap = Math.min(1.0, maxShiftShare);
+        String preferred = flagPrefersSecondary ? DatasourceCircuitBreakers.SECONDARY : DatasourceCircuitBreakers.PRIMARY;
+        String other = flagPrefersSecondary ? DatasourceCircuitBreakers.PRIMARY : DatasourceCircuitBreakers.SECONDARY;
+
+        Estimate preferredEstimate = estimates.get(key(preferred, operationName));
+        Estimate otherEstimate = estimates.get(key(other, operationName));
+        double roll = ThreadLocalRandom.current().nextDouble();
+
+        if (!isUsable(otherEstimate)) {
+            // Nothing recent known about the other database: sample it occasionally
+            boolean explore = roll < Math.min(exploreRate, shiftCap);
+            decisionCounter(operationName, explore ? "explored" : "flag").increment();
+            return explore != flagPrefersSecondary;
+        }
+        if (!isUsable(preferredEstimate)) {
+            decisionCounter(operationName, "flag").increment();
+            return flagPrefersSecondary;
+        }
+
+        double preferredScore = preferredEstimate.score(errorPenalty);
+        double otherScore = otherEstimate.score(errorPenalty);
+        double improvement = preferredScore <= 0 ? 0 : (preferredScore - otherScore) / preferredScore;
+        if (improvement >= minImprovement && roll < Math.min(shiftCap, improvement)) {
+            decisionCounter(operationName, "shifted").increment();
+            return !flagPrefersSecondary;
+        }
+        decisionCounter(operationName, "flag").increment();
+        return flagPrefersSecondary;
+    }
+
+    private boolean isUsable(Estimate estimate) {
+        return estimate != null && estimate.samples() >= minSamples
+                && System.currentTimeMillis() - estimate.lastUpdated() < staleAfterMs;
+    }
+
+    private String key(String datasource, String operationName) {
+        return datasource + ":" + operationName;
+    }
+
+    private Counter decisionCounter(String operationName, String decision) {
+        return Counter.builder("shopper.read.routing")
+                .description("Read routing decisions of the adaptive router")
+                .tag("operation", operationName)
+                .tag("decision", decision)
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new TreeMap<>();
+        estimates.forEach((key, estimate) -> status.put(key, estimate.toMap()));
+        return status;
+    }
+
+    private static final class Estimate {
+        private double latencyMs;
+        private double errorRate;
+        private long samples;
+        private long lastUpdated;
+
+        synchronized void update(long sampleLatencyMs, boolean failed, double alpha) {
+            double error = failed ? 1.0 : 0.0;
+            if (samples == 0) {
+                latencyMs = sampleLatencyMs;
+                errorRate = error;
+            } else {
+                latencyMs = alpha * sampleLatencyMs + (1 - alpha) * latencyMs;
+                errorRate = alpha * error + (1 - alpha) * errorRate;
+            }
+            samples++;
+            lastUpdated = System.currentTimeMillis();
+        }
+
+        synchronized double score(double errorPenalty) {
+            return latencyMs * (1 + errorPenalty * errorRate);
+        }
+
+        synchronized long samples() {
+            return samples;
+        }
+
+        synchronized long lastUpdated() {
+            return lastUpdated;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            return Map.of(
+                    "latencyMs", Math.round(latencyMs * 10) / 10.0,
+                    "errorRate", Math.round(errorRate * 1000) / 1000.0,
+                    "samples", samples
+            );
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.shopper.service.routing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Count-based circuit breaker for one datasource.
+ * The breaker opens when, over the last {@code windowSize} calls, either the failure rate or the
+ * share of slow calls crosses its threshold. After {@code openDurationMs} it lets a few trial calls
+ * through (half-open) and closes again if they succeed.
+ */
+@Slf4j
+public class DatasourceCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdMs;
+    private final double slowCallRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenCalls;
+    private final Consumer<State> onTransition;
+
+    // Ring buffer of outcomes: bit 0 = failed, bit 1 = slow
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenResults;
+    private int halfOpenFailures;
+
+    public DatasourceCircuitBreaker(String name, boolean enabled, int windowSize, int minimumCalls,
+                                    double failureRateThreshold, long slowCallThresholdMs,
+                                    double slowCallRateThreshold, long openDurationMs, int halfOpenCalls,
+                                    Consumer<State> onTransition) {
+        this.name = name;
+        this.enabled = enabled;
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdMs = slowCallThresholdMs;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.onTransition = onTransition;
+        this.outcomes = new byte[this.windowSize];
+    }
+
+    /**
+     * Ask whether a call may be made now. An open breaker moves to half-open once its wait is over,
+     * and a half-open breaker hands out a limited number of trial calls.
+     * @return true if the call may go to this datasource
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!enabled) {
+            return true;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                // fall through to hand out the first trial call
+            case HALF_OPEN:
+            default:
+                if (halfOpenPermits >= halfOpenCalls) {
+                    return false;
+                }
+                halfOpenPermits++;
+                return true;
+        }
+    }
+
+    /**
+     * Give back a permission whose call ended without an outcome, such as a read cancelled because
+     * the other database answered first, so a half-open breaker does not wait for it forever
+     */
+    public synchronized void releasePermission() {
+        if (enabled && state == State.HALF_OPEN && halfOpenPermits > halfOpenResults) {
+            halfOpenPermits--;
+        }
+    }
+
+    /**
+     * @return true if a call would currently be permitted, without taking a trial slot
+     */
+    public synchronized boolean isCallPermitted() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            return System.currentTimeMillis() - openedAt >= openDurationMs;
+        }
+        return halfOpenPermits < halfOpenCalls;
+    }
+
+    public void onSuccess(long durationMs) {
+        record(false, durationMs);
+    }
+
+    public void onError(long durationMs) {
+        record(true, durationMs);
+    }
+
+    private synchronized void record(boolean failed, long durationMs) {
+        if (!enabled) {
+            return;
+        }
+        boolean slow = durationMs >= slowCallThresholdMs;
+        switch (state) {
+            case OPEN:
+                // Calls that started before the breaker opened don't count
+                return;
+            case HALF_OPEN:
+                halfOpenResults++;
+                if (failed || slow) {
+                    halfOpenFailures++;
+                }
+                if (halfOpenResults >= halfOpenCalls) {
+                    double failureRate = 100.0 * halfOpenFailures / halfOpenResults;
+                    transitionTo(failureRate >= failureRateThreshold ? State.OPEN : State.CLOSED);
+                }
+                return;
+            case CLOSED:
+            default:
+                if (recorded == windowSize) {
+                    byte evicted = outcomes[next];
+                    failures -= evicted & 1;
+                    slowCalls -= (evicted >> 1) & 1;
+                } else {
+                    recorded++;
+                }
+                outcomes[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+                failures += failed ? 1 : 0;
+                slowCalls += slow ? 1 : 0;
+                next = (next + 1) % windowSize;
+
+                if (recorded >= minimumCalls
+                        && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+                    transitionTo(State.OPEN);
+                }
+        }
+    }
+
+    private void transitionTo(State newState) {
+        if (state == newState) {
+            return;
+        }
+        State previous = state;
+        state = newState;
+        if (newState == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (newState != State.CLOSED || previous != State.CLOSED) {
+            halfOpenPermits = 0;
+            halfOpenResults = 0;
+            halfOpenFailures = 0;
+        }
+        if (newState == State.CLOSED) {
+            resetWindow();
+        }
+        log.warn("Circuit breaker for {} datasource changed from {} to {} (failure rate {}%, slow call rate {}%)",
+                name, previous, newState, Math.round(getFailureRate()), Math.round(getSlowCallRate()));
+        if (onTransition != null) {
+            onTransition.accept(newState);
+        }
+    }
+
+    private void resetWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : 100.0 * failures / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0.0 : 100.0 * slowCalls / recorded;
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("state", state.name());
+        status.put("enabled", enabled);
+        status.put("bufferedCalls", recorded);
+        status.put("failureRate", getFailureRate());
+        status.put("slowCallRate", getSlowCallRate());
+        if (state == State.OPEN) {
+            status.put("retryInMs", Math.max(0, openDurationMs - (System.currentTimeMillis() - openedAt)));
+        }
+        return status;
+    }
+}
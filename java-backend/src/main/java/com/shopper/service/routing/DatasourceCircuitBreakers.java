@@ -0,0 +1,94 @@
+package com.shopper.service.routing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds one circuit breaker per datasource ("primary" and "secondary").
+ */
+@Component
+@RequiredArgsConstructor
+public class DatasourceCircuitBreakers {
+
+    public static final String PRIMARY = "primary";
+    public static final String SECONDARY = "secondary";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.circuit-breaker.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.dual-database.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.dual-database.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.dual-database.circuit-breaker.failure-rate-threshold:50}")
+    private double failureRateThreshold;
+
+    @Value("${app.dual-database.circuit-breaker.slow-call-threshold-ms:2000}")
+    private long slowCallThresholdMs;
+
+    @Value("${app.dual-database.circuit-breaker.slow-call-rate-threshold:80}")
+    private double slowCallRateThreshold;
+
+    @Value("${app.dual-database.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${app.dual-database.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private final Map<String, DatasourceCircuitBreaker> breakers = new LinkedHashMap<>();
+    private final List<BiConsumer<String, DatasourceCircuitBreaker.State>> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String datasource : List.of(PRIMARY, SECONDARY)) {
+            DatasourceCircuitBreaker breaker = new DatasourceCircuitBreaker(datasource, enabled, windowSize, minimumCalls,
+                    failureRateThreshold, slowCallThresholdMs, slowCallRateThreshold, openDurationMs, halfOpenCalls,
+                    state -> listeners.forEach(listener -> listener.accept(datasource, state)));
+            breakers.put(datasource, breaker);
+            Gauge.builder("shopper.datasource.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .tag("datasource", datasource)
+                    .register(meterRegistry);
+        }
+    }
+
+    public DatasourceCircuitBreaker get(String datasource) {
+        return breakers.get(datasource);
+    }
+
+    public DatasourceCircuitBreaker primary() {
+        return breakers.get(PRIMARY);
+    }
+
+    public DatasourceCircuitBreaker secondary() {
+        return breakers.get(SECONDARY);
+    }
+
+    /**
+     * Register a callback for state changes. Callbacks run while the breaker is locked and must not block.
+     * @param listener Receives the datasource name and its new state
+     */
+    public void addListener(BiConsumer<String, DatasourceCircuitBreaker.State> listener) {
+        listeners.add(listener);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        breakers.forEach((datasource, breaker) -> status.put(datasource, breaker.getStatus()));
+        return status;
+    }
+}
@@ -0,0 +1,27 @@
+package com.shopper.service.routing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports datasource circuit breaker state on the actuator health endpoint.
+ * An open secondary breaker only degrades replication and reads fall back to the primary,
+ * so the application stays UP; an open primary breaker reports DOWN.
+ */
+@Component("datasourceCircuits")
+@RequiredArgsConstructor
+public class DatasourceCircuitHealthIndicator implements HealthIndicator {
+
+    private final DatasourceCircuitBreakers circuitBreakers;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = circuitBreakers.primary().getState() == DatasourceCircuitBreaker.State.OPEN
+                ? Health.down()
+                : Health.up();
+        circuitBreakers.getStatus().forEach(builder::withDetail);
+        return builder.build();
+    }
+}
@@ -0,0 +1,319 @@
+package com.shopper.service.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read on the preferred database on a pool thread and, if it has not answered within a delay
+ * derived from that operation's recent latency percentile, sends the same read to the other database
+ * on another pool thread. The caller waits for the first successful result. The losing read is never
+ * interrupted, since an interrupt does not stop a blocked JDBC call and can leave a pooled connection
+ * in a broken state; it runs to completion and its result is dropped. When the pool is full the read
+ * runs unhedged on the calling thread.
+ * <p>
+ * Results are read outside the caller's persistence context and come back detached, so hedged reads
+ * must return fully loaded results: a lazy association of a returned entity cannot be initialised.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HedgedReadExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.hedged-reads.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.dual-database.hedged-reads.percentile:95}")
+    private double percentile;
+
+    @Value("${app.dual-database.hedged-reads.default-delay-ms:50}")
+    private long defaultDelayMs;
+
+    @Value("${app.dual-database.hedged-reads.min-delay-ms:5}")
+    private long minDelayMs;
+
+    @Value("${app.dual-database.hedged-reads.max-delay-ms:1000}")
+    private long maxDelayMs;
+
+    @Value("${app.dual-database.hedged-reads.min-samples:20}")
+    private int minSamples;
+
+    @Value("${app.dual-database.hedged-reads.window-size:256}")
+    private int windowSize;
+
+    @Value("${app.dual-database.hedged-reads.pool-size:16}")
+    private int poolSize;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ScheduledThreadPoolExecutor timer;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // No queue: when every thread is busy the read is simply not hedged
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hedged-read-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Fires the hedges; most reads answer in time and cancel theirs, so drop cancelled timers at once
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "hedged-read-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads inside a transaction are not hedged, since a hedge runs outside the transaction's
+     * connection and persistence context.
+     * @return true if the current read may be hedged
+     */
+    public boolean canHedge() {
+        return enabled && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * Execute a hedged read
+     * @param operationName Repository method performing the read
+     * @param preferredDatabase Database chosen for this read
+     * @param preferredOperation Read on the chosen database
+     * @param alternateDatabase Database used for the hedge
+     * @param alternateOperation Same read on the other database
+     * @param alternatePermission Asked right before the other database is called; false leaves the read
+     *                            to the preferred database
+     * @param <T> Return type
+     * @return Result of whichever database answered successfully first
+     */
+    public <T> T execute(String operationName,
+                         String preferredDatabase, Supplier<T> preferredOperation,
+                         String alternateDatabase, Supplier<T> alternateOperation,
+                         BooleanSupplier alternatePermission) {
+        CompletableFuture<T> preferred = new CompletableFuture<>();
+        Supplier<T> timedPreferred = timed(operationName, preferredDatabase, preferredOperation);
+        try {
+            executor.execute(() -> complete(preferred, timedPreferred));
+        } catch (RejectedExecutionException e) {
+            log.debug("Hedged read pool saturated, not hedging {}", operationName);
+            return unhedged(operationName, preferredDatabase, timedPreferred, alternateDatabase, alternateOperation,
+                    alternatePermission);
+        }
+
+        Hedge<T> hedge = new Hedge<>();
+        ScheduledFuture<?> trigger = timer.schedule(
+                () -> launch(hedge, operationName, alternateDatabase, alternateOperation, alternatePermission),
+                hedgeDelayMs(operationName, preferredDatabase), TimeUnit.MILLISECONDS);
+        try {
+            CompletableFuture.anyOf(preferred, hedge.answer).get();
+        } catch (ExecutionException e) {
+            // The preferred read failed; handled below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            trigger.cancel(false);
+            synchronized (hedge) {
+                hedge.callerDone = true;
+            }
+            throw new IllegalStateException("Interrupted during hedged read " + operationName, e);
+        }
+        trigger.cancel(false);
+
+        boolean hedgeSent;
+        CompletableFuture<T> pending;
+        synchronized (hedge) {
+            hedge.callerDone = true;
+            hedgeSent = hedge.sent;
+            pending = hedge.future;
+        }
+
+        // The losing read is left to finish on its pool thread and its result dropped, so its JDBC
+        // statement completes normally and its connection goes back to the pool clean
+        if (preferred.isDone() && !preferred.isCompletedExceptionally()) {
+            if (hedgeSent) {
+                winCounter(operationName, preferredDatabase).increment();
+            }
+            return preferred.join();
+        }
+        if (hedge.answer.isDone()) {
+            winCounter(operationName, alternateDatabase).increment();
+            return hedge.answer.join();
+        }
+
+        RuntimeException failure = cause(preferred, operationName);
+        log.warn("Hedged read {} failed on {}: {}", operationName, preferredDatabase, failure.getMessage());
+        // A failure on the preferred database falls back to the other one, as unhedged reads do
+        if (pending == null) {
+            if (!alternatePermission.getAsBoolean()) {
+                throw failure;
+            }
+            return timed(operationName, alternateDatabase, alternateOperation).get();
+        }
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HedgeNotPermittedException) {
+                throw failure;
+            }
+            throw cause(pending, operationName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during hedged read " + operationName, e);
+        }
+    }
+
+    /**
+     * State shared by a read's caller and its hedge
+     */
+    private static final class Hedge<T> {
+        // Completed only by a hedge that answered successfully
+        private final CompletableFuture<T> answer = new CompletableFuture<>();
+        // Guarded by this
+        private boolean callerDone;
+        private boolean sent;
+        private CompletableFuture<T> future;
+    }
+
+    private <T> void launch(Hedge<T> hedge, String operationName, String database, Supplier<T> operation,
+                            BooleanSupplier permission) {
+        Supplier<T> timedOperation = timed(operationName, database, operation);
+        synchronized (hedge) {
+            if (hedge.callerDone) {
+                return;
+            }
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    // Asked on the pool thread, so a permission is never taken for a hedge that is not sent
+                    if (!permission.getAsBoolean()) {
+                        future.completeExceptionally(new HedgeNotPermittedException());
+                        return;
+                    }
+                    synchronized (hedge) {
+                        hedge.sent = true;
+                    }
+                    hedgeCounter(operationName).increment();
+                    log.debug("Hedging {} to {} after no answer from the preferred database", operationName, database);
+                    complete(future, timedOperation);
+                    future.thenAccept(hedge.answer::complete);
+                });
+                hedge.future = future;
+            } catch (RejectedExecutionException e) {
+                log.debug("Hedged read pool saturated, not hedging {}", operationName);
+            }
+        }
+    }
+
+    /**
+     * Read without a hedge on the calling thread, falling back to the other database on failure
+     */
+    private <T> T unhedged(String operationName, String preferredDatabase, Supplier<T> preferredOperation,
+                           String alternateDatabase, Supplier<T> alternateOperation,
+                           BooleanSupplier alternatePermission) {
+        try {
+            return preferredOperation.get();
+        } catch (RuntimeException e) {
+            log.warn("Hedged read {} failed on {}: {}", operationName, preferredDatabase, e.getMessage());
+            if (!alternatePermission.getAsBoolean()) {
+                throw e;
+            }
+            return timed(operationName, alternateDatabase, alternateOperation).get();
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> operation) {
+        try {
+            future.complete(operation.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static RuntimeException cause(CompletableFuture<?> future, String operationName) {
+        try {
+            future.join();
+            throw new IllegalStateException("Hedged read " + operationName + " did not fail");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                return runtimeException;
+            }
+            return new IllegalStateException("Hedged read " + operationName + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * The other database may not be called now, typically because its circuit is open
+     */
+    private static final class HedgeNotPermittedException extends RuntimeException {
+        private HedgeNotPermittedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private <T> Supplier<T> timed(String operationName, String database, Supplier<T> operation) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = operation.get();
+            window(operationName, database).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        };
+    }
+
+    long hedgeDelayMs(String operationName, String database) {
+        LatencyWindow window = window(operationName, database);
+        if (window.size() < minSamples) {
+            return defaultDelayMs;
+        }
+        return Math.max(minDelayMs, Math.min(maxDelayMs, window.percentile(percentile)));
+    }
+
+    private LatencyWindow window(String operationName, String database) {
+        return latencies.computeIfAbsent(operationName + "@" + database, key -> new LatencyWindow(windowSize));
+    }
+
+    private Counter hedgeCounter(String operationName) {
+        return Counter.builder("shopper.read.hedges")
+                .description("Reads that were hedged to the other database")
+                .tag("operation", operationName)
+                .register(meterRegistry);
+    }
+
+    private Counter winCounter(String operationName, String winner) {
+        return Counter.builder("shopper.read.hedge.wins")
+                .description("Hedged reads answered first by the given database")
+                .tag("operation", operationName)
+                .tag("winner", winner)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,277 @@
+package com.shopper.service.routing;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Shadow mode for the secondary database: a sample of reads served from the primary is repeated
+ * against the secondary on a background executor and the two results are compared structurally.
+ * The user request never waits for the shadow read; when the executor is busy the sample is skipped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShadowReadComparator {
+
+    private static final Pattern TIMESTAMP = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}.*");
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.shadow-reads.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.dual-database.shadow-reads.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Value("${app.dual-database.shadow-reads.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.dual-database.shadow-reads.queue-capacity:100}")
+    private int queueCapacity;
+
+    private ObjectMapper comparisonMapper;
+    private ThreadPoolExecutor executor;
+    private final Map<String, OperationStats> statsByOperation = new ConcurrentHashMap<>();
+
+    /**
+     * Relationships are lazy and not part of the row being compared
+     */
+    @JsonIgnoreProperties({"cartItems", "orderItems", "orders", "user", "authorities",
+            "hibernateLazyInitializer", "handler"})
+    private abstract static class IgnoreRelationshipsMixin {
+    }
+
+    @PostConstruct
+    public void start() {
+        comparisonMapper = objectMapper.copy()
+                .addMixIn(Object.class, IgnoreRelationshipsMixin.class)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-read-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return true if the current read should be shadowed
+     */
+    public boolean shouldSample() {
+        return enabled && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Repeat a read on the secondary in the background and compare it with the primary result.
+     * The primary result is snapshotted on the calling thread: it may hold managed entities that the
+     * caller goes on to change, and their lazy state belongs to the caller's persistence context.
+     * @param operationName Repository method performing the read
+     * @param primaryResult Result served to the user
+     * @param primaryLatencyMs Time the primary read took
+     * @param secondaryOperation Same read on the secondary database
+     */
+    public void submit(String operationName, Object primaryResult, long primaryLatencyMs, Supplier<?> secondaryOperation) {
+        JsonNode expected;
+        try {
+            expected = normalize(comparisonMapper.valueToTree(primaryResult));
+        } catch (Exception e) {
+            log.debug("Shadow read {} skipped, primary result not comparable: {}", operationName, e.getMessage());
+            outcomeCounter(operationName, "skipped").increment();
+            return;
+        }
+        try {
+            executor.execute(() -> compare(operationName, expected, primaryLatencyMs, secondaryOperation));
+        } catch (RejectedExecutionException e) {
+            outcomeCounter(operationName, "skipped").increment();
+        }
+    }
+
+    private void compare(String operationName, JsonNode expected, long primaryLatencyMs, Supplier<?> secondaryOperation) {
+        OperationStats stats = statsByOperation.computeIfAbsent(operationName, key -> new OperationStats());
+        long start = System.nanoTime();
+        Object secondaryResult;
+        try {
+            secondaryResult = secondaryOperation.get();
+        } catch (Exception e) {
+            stats.errors.increment();
+            outcomeCounter(operationName, "error").increment();
+            log.debug("Shadow read {} failed on secondary: {}", operationName, e.getMessage());
+            return;
+        }
+        long secondaryLatencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        stats.recordLatency(primaryLatencyMs, secondaryLatencyMs);
+
+        Set<String> differences = new LinkedHashSet<>();
+        diff("$", expected, normalize(comparisonMapper.valueToTree(secondaryResult)), differences);
+        if (differences.isEmpty()) {
+            stats.matches.increment();
+            outcomeCounter(operationName, "match").increment();
+        } else {
+            stats.mismatches.increment();
+            differences.forEach(path -> stats.fieldDiffs.computeIfAbsent(path, key -> new LongAdder()).increment());
+            outcomeCounter(operationName, "mismatch").increment();
+            log.debug("Shadow read {} differs at {}", operationName, differences);
+        }
+    }
+
+    /**
+     * Neither database guarantees row order without ORDER BY, so arrays of rows are sorted by id
+     */
+    private JsonNode normalize(JsonNode node) {
+        if (node instanceof ArrayNode array) {
+            List<JsonNode> elements = new ArrayList<>();
+            array.forEach(element -> elements.add(normalize(element)));
+            if (elements.stream().allMatch(element -> element.hasNonNull("id"))) {
+                elements.sort(Comparator.comparing(element -> element.get("id").asText()));
+            }
+            ArrayNode normalized = comparisonMapper.createArrayNode();
+            elements.forEach(normalized::add);
+            return normalized;
+        }
+        return node;
+    }
+
+    private void diff(String path, JsonNode expected, JsonNode actual, Set<String> differences) {
+        if (expected == null || actual == null || expected.isNull() || actual.isNull()) {
+            if (!isNullish(expected) || !isNullish(actual)) {
+                differences.add(path);
+            }
+            return;
+        }
+        if (expected.isObject() && actual.isObject()) {
+            Set<String> fields = new LinkedHashSet<>();
+            expected.fieldNames().forEachRemaining(fields::add);
+            actual.fieldNames().forEachRemaining(fields::add);
+            for (String field : fields) {
+                diff(path + "." + field, expected.get(field), actual.get(field), differences);
+            }
+        } else if (expected.isArray() && actual.isArray()) {
+            if (expected.size() != actual.size()) {
+                differences.add(path + ".length");
+            }
+            Iterator<JsonNode> expectedElements = expected.elements();
+            Iterator<JsonNode> actualElements = actual.elements();
+            // Report element paths without indexes so diffs of list reads aggregate per field
+            while (expectedElements.hasNext() && actualElements.hasNext()) {
+                diff(path + "[]", expectedElements.next(), actualElements.next(), differences);
+            }
+        } else if (expected.isNumber() && actual.isNumber()) {
+            if (expected.decimalValue().compareTo(actual.decimalValue()) != 0) {
+                differences.add(path);
+            }
+        } else if (expected.isTextual() && actual.isTextual()
+                && TIMESTAMP.matcher(expected.asText()).matches() && TIMESTAMP.matcher(actual.asText()).matches()) {
+            // SQLite keeps milliseconds, Postgres microseconds
+            if (!truncateToMillis(expected.asText()).equals(truncateToMillis(actual.asText()))) {
+                differences.add(path);
+            }
+        } else if (!expected.equals(actual)) {
+            differences.add(path);
+        }
+    }
+
+    private boolean isNullish(JsonNode node) {
+        return node == null || node.isNull() || node.isMissingNode();
+    }
+
+    private String truncateToMillis(String timestamp) {
+        return timestamp.length() > 23 ? timestamp.substring(0, 23) : timestamp;
+    }
+
+    private Counter outcomeCounter(String operationName, String outcome) {
+        return Counter.builder("shopper.shadow.reads")
+                .description("Shadow reads on the secondary database by comparison outcome")
+                .tag("operation", operationName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getReport() {
+        Map<String, Object> report = new HashMap<>();
+        report.put("enabled", enabled);
+        report.put("sampleRate", sampleRate);
+        report.put("queued", executor.getQueue().size());
+        Map<String, Object> operations = new TreeMap<>();
+        statsByOperation.forEach((operation, stats) -> operations.put(operation, stats.toMap()));
+        report.put("operations", operations);
+        return report;
+    }
+
+    public void reset() {
+        statsByOperation.clear();
+    }
+
+    private static final class OperationStats {
+        private final LongAdder matches = new LongAdder();
+        private final LongAdder mismatches = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder compared = new LongAdder();
+        private final LongAdder primaryLatencyTotalMs = new LongAdder();
+        private final LongAdder secondaryLatencyTotalMs = new LongAdder();
+        private final Map<String, LongAdder> fieldDiffs = new ConcurrentHashMap<>();
+
+        void recordLatency(long primaryMs, long secondaryMs) {
+            compared.increment();
+            primaryLatencyTotalMs.add(primaryMs);
+            secondaryLatencyTotalMs.add(secondaryMs);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            long samples = compared.sum();
+            map.put("matches", matches.sum());
+            map.put("mismatches", mismatches.sum());
+            map.put("errors", errors.sum());
+            if (samples > 0) {
+                double primaryAvg = (double) primaryLatencyTotalMs.sum() / samples;
+                double secondaryAvg = (double) secondaryLatencyTotalMs.sum() / samples;
+                map.put("avgPrimaryLatencyMs", primaryAvg);
+                map.put("avgSecondaryLatencyMs", secondaryAvg);
+                map.put("avgLatencyDeltaMs", secondaryAvg - primaryAvg);
+            }
+            Map<String, Long> fields = new TreeMap<>();
+            fieldDiffs.forEach((field, count) -> fields.put(field, count.sum()));
+            map.put("fieldDiffs", fields);
+            return map;
+        }
+    }
+}
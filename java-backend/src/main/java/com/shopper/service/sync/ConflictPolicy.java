@@ -0,0 +1,50 @@
+package com.shopper.service.sync;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How the sync settles a row that both databases have with different content
+ */
+public enum ConflictPolicy {
+
+    /**
+     * The side with the later updated_at wins, the primary on a tie or a missing timestamp
+     */
+    LAST_WRITER_WINS("last-writer-wins"),
+
+    /**
+     * The primary always wins
+     */
+    PRIMARY_WINS("primary-wins"),
+
+    /**
+     * Last writer wins except for product stock, which takes the lower of both quantities. Without
+     * the common ancestor the sales made on each side cannot be added up, so the merge never
+     * offers stock that one database has already sold.
+     */
+    MERGE_STOCK("merge-stock");
+
+    private final String name;
+
+    ConflictPolicy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name Policy name as configured, e.g. last-writer-wins
+     * @return The matching policy
+     * @throws IllegalArgumentException if no policy has that name
+     */
+    public static ConflictPolicy fromName(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT).replace('_', '-');
+        return Arrays.stream(values())
+                .filter(policy -> policy.name.equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown conflict policy: " + name));
+    }
+}
@@ -0,0 +1,330 @@
+package com.shopper.service.sync;
+
+import com.shopper.entity.primary.SyncConflict;
+import com.shopper.repository.DatabaseBatchWriter;
+import com.shopper.repository.primary.PrimarySyncConflictRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles rows that exist in both databases with different content. The range hash verifier finds
+ * the divergent rows without reading whole tables, both versions of each are read and settled by the
+ * configured {@link ConflictPolicy}, and the winning versions are written back in batches, each only
+ * over a row that has not been updated since it was read. Every resolved conflict is recorded in the
+ * sync_conflicts table for audit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConflictResolver {
+
+    // Kept out of the audit log, a differing value is shown masked
+    private static final Set<String> MASKED_COLUMNS = Set.of("password", "card_number");
+
+    private final RangeHashVerifier rangeHashVerifier;
+    private final StreamingTableCopier streamingTableCopier;
+    private final DatabaseBatchWriter batchWriter;
+    private final PrimarySyncConflictRepository conflictRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.sync.conflict-policy:last-writer-wins}")
+    private String conflictPolicy;
+
+    @Value("${app.dual-database.copy.page-size:1000}")
+    private int batchSize;
+
+    public ConflictPolicy getPolicy() {
+        return ConflictPolicy.fromName(conflictPolicy);
+    }
+
+    public List<SyncConflict> getRecentConflicts(String table) {
+        return table == null
+                ? conflictRepository.findTop100ByOrderByIdDesc()
+                : conflictRepository.findTop100ByTableNameOrderByIdDesc(SyncTable.fromTableName(table).getTableName());
+    }
+
+    /**
+     * Find and settle the rows of a table whose content differs between the databases. Rows missing
+     * on one side are left to the copy; divergent rows beyond the verifier's report limit, and rows
+     * updated again while they were being settled, are settled by the next run.
+     * @param table Table to reconcile
+     * @return Number of conflicts and where the winning versions were written
+     */
+    public Resolution resolve(SyncTable table) {
+        ConflictPolicy policy = getPolicy();
+        long start = System.currentTimeMillis();
+        RangeHashVerifier.TableReport report = rangeHashVerifier.verify(table.getTableName());
+        List<UUID> ids = report.contentMismatch.stream().map(UUID::fromString).toList();
+        long unlisted = report.divergentRows - report.missingInSecondary.size() - report.missingInPrimary.size()
+                - report.contentMismatch.size();
+
+        Tally tally = new Tally();
+        for (List<UUID> chunk : DatabaseBatchWriter.chunks(ids, Math.max(1, batchSize))) {
+            settle(table, policy, chunk, null, tally);
+        }
+
+        Resolution resolution = new Resolution(table.getTableName(), policy.getName(), tally.conflicts,
+                tally.writtenToPrimary, tally.writtenToSecondary, tally.skipped, Math.max(0, unlisted),
+                System.currentTimeMillis() - start, null);
+        if (tally.conflicts > 0 || unlisted > 0) {
+            log.info("Resolved {} conflicts in {} by {}: {} written to primary, {} to secondary, {} skipped as changed "
+                            + "since read, {} left for the next run",
+                    tally.conflicts, resolution.table, resolution.policy, tally.writtenToPrimary,
+                    tally.writtenToSecondary, tally.skipped, resolution.unlisted);
+        }
+        return resolution;
+    }
+
+    /**
+     * Carry rows changed in one database over to the other. A row the target lacks is inserted; a row
+     * both databases have is settled by the configured policy like any divergent row, so a change is
+     * only carried over if it wins against the target's version. Only rows the policy decides against
+     * the source's version are recorded as conflicts, carrying a newer version over is plain sync.
+     * @param table Table of the rows
+     * @param ids IDs of the rows changed in the source
+     * @param toSecondary true if the rows changed in the primary, false for the secondary
+     * @return Number of conflicts and where rows were written
+     */
+    public Resolution reconcileChanged(SyncTable table, List<UUID> ids, boolean toSecondary) {
+        ConflictPolicy policy = getPolicy();
+        long start = System.currentTimeMillis();
+        Tally tally = new Tally();
+        for (List<UUID> chunk : DatabaseBatchWriter.chunks(ids, Math.max(1, batchSize))) {
+            settle(table, policy, chunk, toSecondary, tally);
+        }
+        return new Resolution(table.getTableName(), policy.getName(), tally.conflicts, tally.writtenToPrimary,
+                tally.writtenToSecondary, tally.skipped, 0, System.currentTimeMillis() - start, null);
+    }
+
+    /**
+     * Read both versions of a chunk of rows and write the winners
+     * @param changedInPrimary null to settle divergent rows, leaving missing rows to the copy; otherwise the
+     *                         side the rows changed in, whose rows are inserted where the other side lacks them
+     */
+    private void settle(SyncTable table, ConflictPolicy policy, List<UUID> chunk, Boolean changedInPrimary,
+                        Tally tally) {
+        Map<UUID, Object[]> primaryRows = streamingTableCopier.readRows(table, chunk, true);
+        Map<UUID, Object[]> secondaryRows = streamingTableCopier.readRows(table, chunk, false);
+        List<Object[]> primaryInserts = new ArrayList<>();
+        List<Object[]> secondaryInserts = new ArrayList<>();
+        List<Object[]> primaryWrites = new ArrayList<>();
+        List<Object[]> secondaryWrites = new ArrayList<>();
+        List<LocalDateTime> primarySeen = new ArrayList<>();
+        List<LocalDateTime> secondarySeen = new ArrayList<>();
+        List<SyncConflict> records = new ArrayList<>();
+        for (UUID id : chunk) {
+            Object[] primaryRow = primaryRows.get(id);
+            Object[] secondaryRow = secondaryRows.get(id);
+            if (changedInPrimary != null && changedInPrimary && primaryRow != null && secondaryRow == null) {
+                secondaryInserts.add(primaryRow);
+                continue;
+            }
+            if (changedInPrimary != null && !changedInPrimary && secondaryRow != null && primaryRow == null) {
+                primaryInserts.add(secondaryRow);
+                continue;
+            }
+            if (primaryRow == null || secondaryRow == null) {
+                // Deleted since the verification or the change
+                continue;
+            }
+            Decision decision = decide(table, policy, primaryRow, secondaryRow);
+            if (decision == null) {
+                continue;
+            }
+            if (decision.primaryRow() != null) {
+                primaryWrites.add(decision.primaryRow());
+                primarySeen.add(decision.primaryUpdatedAt());
+            }
+            if (decision.secondaryRow() != null) {
+                secondaryWrites.add(decision.secondaryRow());
+                secondarySeen.add(decision.secondaryUpdatedAt());
+            }
+            if (changedInPrimary == null || !decision.winner().equals(changedInPrimary ? "primary" : "secondary")) {
+                records.add(record(table, policy, id, decision, primaryRow, secondaryRow));
+                conflictCounter(table, decision.winner()).increment();
+            }
+        }
+        // Rows inserted on the other side meanwhile are left alone, they are compared again by the next run
+        if (!primaryInserts.isEmpty()) {
+            tally.writtenToPrimary += batchWriter.insertMissingIntoPrimary(table.getTableName(),
+                    table.getColumnNames(), primaryInserts);
+        }
+        if (!secondaryInserts.isEmpty()) {
+            tally.writtenToSecondary += batchWriter.insertMissingIntoSecondary(table.getTableName(),
+                    table.getColumnNames(), secondaryInserts);
+        }
+        // A row updated since it was read keeps the newer write, it is compared again by the next run
+        if (!primaryWrites.isEmpty()) {
+            int written = batchWriter.updateUnchangedInPrimary(table.getTableName(), table.getColumnNames(),
+                    primaryWrites, primarySeen);
+            tally.writtenToPrimary += written;
+            tally.skipped += primaryWrites.size() - written;
+        }
+        if (!secondaryWrites.isEmpty()) {
+            int written = batchWriter.updateUnchangedInSecondary(table.getTableName(), table.getColumnNames(),
+                    secondaryWrites, secondarySeen);
+            tally.writtenToSecondary += written;
+            tally.skipped += secondaryWrites.size() - written;
+        }
+        conflictRepository.saveAll(records);
+        tally.conflicts += records.size();
+    }
+
+    /**
+     * Settle one conflicting row
+     * @param table Table of the row
+     * @param policy Resolution policy
+     * @param primaryRow Primary version, columns in the order of {@link SyncTable#getColumns()}
+     * @param secondaryRow Secondary version
+     * @return The winning version and the sides it must be written to, null if the versions agree
+     */
+    static Decision decide(SyncTable table, ConflictPolicy policy, Object[] primaryRow, Object[] secondaryRow) {
+        List<SyncTable.Column> columns = table.getColumns();
+        List<String> differing = differingColumns(columns, primaryRow, secondaryRow);
+        if (differing.isEmpty()) {
+            return null;
+        }
+
+        List<String> columnNames = table.getColumnNames();
+        int updatedAt = columnNames.indexOf("updated_at");
+        LocalDateTime primaryUpdatedAt = updatedAt >= 0 ? (LocalDateTime) primaryRow[updatedAt] : null;
+        LocalDateTime secondaryUpdatedAt = updatedAt >= 0 ? (LocalDateTime) secondaryRow[updatedAt] : null;
+        boolean secondaryWins = policy != ConflictPolicy.PRIMARY_WINS && secondaryUpdatedAt != null
+                && (primaryUpdatedAt == null || secondaryUpdatedAt.isAfter(primaryUpdatedAt));
+
+        Object[] resolved = (secondaryWins ? secondaryRow : primaryRow).clone();
+        String winner = secondaryWins ? "secondary" : "primary";
+        int stock = columnNames.indexOf("stock_quantity");
+        if (policy == ConflictPolicy.MERGE_STOCK && stock >= 0
+                && primaryRow[stock] != null && secondaryRow[stock] != null) {
+            int lower = Math.min((Integer) primaryRow[stock], (Integer) secondaryRow[stock]);
+            if (!Objects.equals(resolved[stock], lower)) {
+                resolved[stock] = lower;
+                winner = "merged";
+            }
+        }
+
+        return new Decision(winner, differing,
+                differingColumns(columns, resolved, primaryRow).isEmpty() ? null : resolved,
+                differingColumns(columns, resolved, secondaryRow).isEmpty() ? null : resolved,
+                primaryUpdatedAt, secondaryUpdatedAt);
+    }
+
+    /**
+     * Columns whose values differ, ignoring timestamps as the verifier does
+     */
+    private static List<String> differingColumns(List<SyncTable.Column> columns, Object[] left, Object[] right) {
+        List<String> differing = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            SyncTable.Column column = columns.get(i);
+            if (column.type() != SyncTable.ColumnType.TIMESTAMP && !sameValue(column.type(), left[i], right[i])) {
+                differing.add(column.name());
+            }
+        }
+        return differing;
+    }
+
+    private static boolean sameValue(SyncTable.ColumnType type, Object left, Object right) {
+        if (type == SyncTable.ColumnType.DECIMAL && left != null && right != null) {
+            // Compared as whole cents, SQLite keeps prices as floating point
+            return ((BigDecimal) left).setScale(2, RoundingMode.HALF_UP)
+                    .compareTo(((BigDecimal) right).setScale(2, RoundingMode.HALF_UP)) == 0;
+        }
+        return Objects.equals(left, right);
+    }
+
+    private static SyncConflict record(SyncTable table, ConflictPolicy policy, UUID id, Decision decision,
+                                       Object[] primaryRow, Object[] secondaryRow) {
+        return SyncConflict.builder()
+                .tableName(table.getTableName())
+                .rowId(id.toString())
+                .policy(policy.getName())
+                .winner(decision.winner())
+                .differingColumns(StringUtils.abbreviate(String.join(", ", decision.differingColumns()), 500))
+                .primaryValues(describe(table, decision.differingColumns(), primaryRow))
+                .secondaryValues(describe(table, decision.differingColumns(), secondaryRow))
+                .primaryUpdatedAt(decision.primaryUpdatedAt())
+                .secondaryUpdatedAt(decision.secondaryUpdatedAt())
+                .build();
+    }
+
+    private static String describe(SyncTable table, List<String> columnNames, Object[] row) {
+        List<String> names = table.getColumnNames();
+        return StringUtils.abbreviate(columnNames.stream()
+                .map(name -> name + "=" + (MASKED_COLUMNS.contains(name) ? "***" : row[names.indexOf(name)]))
+                .collect(Collectors.joining(", ")), 2000);
+    }
+
+    private Counter conflictCounter(SyncTable table, String winner) {
+        return Counter.builder("shopper.sync.conflicts")
+                .description("Rows resolved because both databases had different content")
+                .tag("table", table.getTableName())
+                .tag("winner", winner)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Outcome for one conflicting row
+     * @param winner primary, secondary or merged
+     * @param differingColumns Columns whose values differed
+     * @param primaryRow Version to write to the primary, null if it already has it
+     * @param secondaryRow Version to write to the secondary, null if it already has it
+     */
+    record Decision(String winner, List<String> differingColumns, Object[] primaryRow, Object[] secondaryRow,
+                    LocalDateTime primaryUpdatedAt, LocalDateTime secondaryUpdatedAt) {
+    }
+
+    private static class Tally {
+        long conflicts;
+        long writtenToPrimary;
+        long writtenToSecondary;
+        long skipped;
+    }
+
+    /**
+     * Result of reconciling one table
+     */
+    public static class Resolution {
+        public final String table;
+        public final String policy;
+        public final long conflicts;
+        public final long writtenToPrimary;
+        public final long writtenToSecondary;
+        /** Winning versions not written because the target row was updated after it was read */
+        public final long skipped;
+        public final long unlisted;
+        public final long elapsedMs;
+        public final String error;
+        public final LocalDateTime timestamp;
+
+        public Resolution(String table, String policy, long conflicts, long writtenToPrimary, long writtenToSecondary,
+                          long skipped, long unlisted, long elapsedMs, String error) {
+            this.table = table;
+            this.policy = policy;
+            this.conflicts = conflicts;
+            this.writtenToPrimary = writtenToPrimary;
+            this.writtenToSecondary = writtenToSecondary;
+            this.skipped = skipped;
+            this.unlisted = unlisted;
+            this.elapsedMs = elapsedMs;
+            this.error = error;
+            this.timestamp = LocalDateTime.now();
+        }
+    }
+}
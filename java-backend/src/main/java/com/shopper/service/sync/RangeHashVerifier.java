@@ -0,0 +1,340 @@
+package com.shopper.service.sync;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Content verification of the dual databases by ID range. Each database hashes its rows and sums
+ * the hashes per ID prefix, so only a count and a digest per range cross the network. Ranges whose
+ * digests differ are split by the next ID character until they are small enough to compare row by row.
+ * The cost therefore follows the amount of drift rather than the table size.
+ * Timestamps are left out of the digest: the two drivers store them in different representations.
+ */
+@Component
+@Slf4j
+public class RangeHashVerifier {
+
+    private static final String MIN_ID = "00000000-0000-0000-0000-000000000000";
+    private static final String MAX_ID = "ffffffff-ffff-ffff-ffff-ffffffffffff";
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired(required = false)
+    @Qualifier("secondaryDataSource")
+    private DataSource secondaryDataSource;
+
+    @Autowired
+    private DatabaseBatchWriter batchWriter;
+
+    @Value("${app.dual-database.verify.leaf-size:64}")
+    private int leafSize;
+
+    @Value("${app.dual-database.verify.max-reported-rows:1000}")
+    private int maxReportedRows;
+
+    private JdbcTemplate primaryJdbcTemplate;
+    private JdbcTemplate secondaryJdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        secondaryJdbcTemplate = secondaryDataSource != null ? new JdbcTemplate(secondaryDataSource) : null;
+    }
+
+    public Set<String> getVerifiableTables() {
+        return Arrays.stream(SyncTable.values())
+                .map(SyncTable::getTableName)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    public boolean isSecondaryAvailable() {
+        return secondaryJdbcTemplate != null;
+    }
+
+    /**
+     * @param table Table name
+     * @return Number of rows in the primary table
+     */
+    public long countPrimaryRows(String table) {
+        return primaryJdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    /**
+     * @param table Table name
+     * @return Number of rows in the secondary table
+     */
+    public long countSecondaryRows(String table) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        return secondaryJdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    /**
+     * Compare the content of a table in both databases
+     * @param table One of {@link #getVerifiableTables()}
+     * @return Counts and the IDs of divergent rows
+     */
+    public TableReport verify(String table) {
+        SyncTable syncTable = SyncTable.fromTableName(table);
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        // Range bounds are bound as uuids on the secondary
+        batchWriter.requireSecondaryUuidIds(syncTable.getTableName());
+        String rowText = syncTable.getColumns().stream()
+                .filter(column -> column.type() != SyncTable.ColumnType.TIMESTAMP)
+                .map(RangeHashVerifier::hashedExpression)
+                .collect(Collectors.joining(" || '|' || "));
+
+        // The primary needs the hash function registered on the connection that runs the queries
+        TableReport report = primaryJdbcTemplate.execute((ConnectionCallback<TableReport>) connection -> {
+            Function.create(connection.unwrap(SQLiteConnection.class), "row_hash", new RowHashFunction());
+            JdbcTemplate primary = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            return compare(syncTable.getTableName(),
+                    new Side(primary, "id", "row_hash(" + rowText + ")", true),
+                    new Side(secondaryJdbcTemplate, "CAST(id AS text)",
+                            "CAST(CAST('x' || substr(md5(" + rowText + "), 1, 8) AS bit(32)) AS bigint)", false));
+        });
+        log.info("Verified {}: {} primary rows, {} secondary rows, {} divergent, {} range queries in {} ms",
+                table, report.primaryCount, report.secondaryCount, report.divergentRows, report.rangeQueries,
+                report.elapsedMs);
+        return report;
+    }
+
+    /**
+     * Compare a table between two sides, splitting the ranges that differ from the empty prefix down
+     */
+    TableReport compare(String table, Side primary, Side secondary) {
+        long start = System.currentTimeMillis();
+        Verification verification = new Verification(table, primary, secondary);
+        verification.compareChildren("");
+        return verification.toReport(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * First 32 bits of the MD5 of the row text, the same value Postgres computes from md5()
+     */
+    static long rowHash(String rowText) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(rowText.getBytes(StandardCharsets.UTF_8));
+            return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    static final class RowHashFunction extends Function {
+        @Override
+        protected void xFunc() throws SQLException {
+            String rowText = value_text(0);
+            result(rowText != null ? rowHash(rowText) : 0L);
+        }
+    }
+
+    /**
+     * Render a column the same way in SQLite and Postgres
+     */
+    private static String hashedExpression(SyncTable.Column column) {
+        if (column.type() == SyncTable.ColumnType.DECIMAL) {
+            // Hashed as whole cents, SQLite keeps prices as floating point
+            return "COALESCE(CAST(CAST(ROUND(" + column.name() + " * 100) AS bigint) AS text), '')";
+        }
+        return "COALESCE(CAST(" + column.name() + " AS text), '')";
+    }
+
+    private record Digest(long count, long hashSum) {
+    }
+
+    record Side(JdbcTemplate jdbcTemplate, String idText, String hash, boolean uuidAsText) {
+        Object bound(String id) {
+            return uuidAsText ? id : UUID.fromString(id);
+        }
+    }
+
+    /**
+     * State of one verification run
+     */
+    private final class Verification {
+        private final String table;
+        private final Side primary;
+        private final Side secondary;
+        private long primaryCount;
+        private long secondaryCount;
+        private int rangeQueries;
+        private long rowsCompared;
+        private long divergentRows;
+        private final List<String> missingInSecondary = new ArrayList<>();
+        private final List<String> missingInPrimary = new ArrayList<>();
+        private final List<String> contentMismatch = new ArrayList<>();
+
+        Verification(String table, Side primary, Side secondary) {
+            this.table = table;
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+
+        void compareChildren(String prefix) {
+            int childLength = childPrefix(prefix, '0').length();
+            Map<String, Digest> primaryDigests = digests(primary, prefix, childLength);
+            Map<String, Digest> secondaryDigests = digests(secondary, prefix, childLength);
+            if (prefix.isEmpty()) {
+                primaryCount = primaryDigests.values().stream().mapToLong(Digest::count).sum();
+                secondaryCount = secondaryDigests.values().stream().mapToLong(Digest::count).sum();
+            }
+
+            Set<String> children = new TreeSet<>(primaryDigests.keySet());
+            children.addAll(secondaryDigests.keySet());
+            for (String child : children) {
+                Digest primaryDigest = primaryDigests.getOrDefault(child, new Digest(0, 0));
+                Digest secondaryDigest = secondaryDigests.getOrDefault(child, new Digest(0, 0));
+                if (primaryDigest.equals(secondaryDigest)) {
+                    continue;
+                }
+                if (Math.max(primaryDigest.count(), secondaryDigest.count()) <= leafSize || child.length() == MAX_ID.length()) {
+                    compareRows(child);
+                } else {
+                    compareChildren(child);
+                }
+            }
+        }
+
+        private Map<String, Digest> digests(Side side, String prefix, int childLength) {
+            rangeQueries++;
+            Map<String, Digest> digests = new HashMap<>();
+            side.jdbcTemplate().query(
+                    "SELECT substr(" + side.idText() + ", 1, " + childLength + ") AS bucket, COUNT(*), SUM(" + side.hash() + ")"
+                            + " FROM " + table + " WHERE id BETWEEN ? AND ? GROUP BY bucket",
+                    resultSet -> {
+                        digests.put(resultSet.getString(1), new Digest(resultSet.getLong(2), resultSet.getLong(3)));
+                    },
+                    side.bound(lowerBound(prefix)), side.bound(upperBound(prefix)));
+            return digests;
+        }
+
+        private void compareRows(String prefix) {
+            Map<String, Long> primaryRows = rows(primary, prefix);
+            Map<String, Long> secondaryRows = rows(secondary, prefix);
+            rowsCompared += Math.max(primaryRows.size(), secondaryRows.size());
+
+            Set<String> ids = new TreeSet<>(primaryRows.keySet());
+            ids.addAll(secondaryRows.keySet());
+            for (String id : ids) {
+                Long primaryHash = primaryRows.get(id);
+                Long secondaryHash = secondaryRows.get(id);
+                if (secondaryHash == null) {
+                    report(missingInSecondary, id);
+                } else if (primaryHash == null) {
+                    report(missingInPrimary, id);
+                } else if (!Objects.equals(primaryHash, secondaryHash)) {
+                    report(contentMismatch, id);
+                }
+            }
+        }
+
+        private Map<String, Long> rows(Side side, String prefix) {
+            rangeQueries++;
+            Map<String, Long> rows = new HashMap<>();
+            side.jdbcTemplate().query(
+                    "SELECT " + side.idText() + ", " + side.hash() + " FROM " + table + " WHERE id BETWEEN ? AND ?",
+                    resultSet -> {
+                        rows.put(resultSet.getString(1), resultSet.getLong(2));
+                    },
+                    side.bound(lowerBound(prefix)), side.bound(upperBound(prefix)));
+            return rows;
+        }
+
+        private void report(List<String> ids, String id) {
+            divergentRows++;
+            // Counted in full, listed only up to the limit
+            if (missingInSecondary.size() + missingInPrimary.size() + contentMismatch.size() < maxReportedRows) {
+                ids.add(id);
+            }
+        }
+
+        TableReport toReport(long elapsedMs) {
+            return new TableReport(table, primaryCount, secondaryCount, divergentRows, missingInSecondary,
+                    missingInPrimary, contentMismatch, rangeQueries, rowsCompared, elapsedMs);
+        }
+    }
+
+    /**
+     * Next ID prefix, keeping the dashes of the canonical UUID text in place
+     */
+    static String childPrefix(String prefix, char digit) {
+        String child = prefix + digit;
+        return child.length() < MAX_ID.length() && MAX_ID.charAt(child.length()) == '-' ? child + '-' : child;
+    }
+
+    static String lowerBound(String prefix) {
+        return prefix + MIN_ID.substring(prefix.length());
+    }
+
+    static String upperBound(String prefix) {
+        return prefix + MAX_ID.substring(prefix.length());
+    }
+
+    /**
+     * Result of verifying one table
+     */
+    public static class TableReport {
+        public final String table;
+        public final long primaryCount;
+        public final long secondaryCount;
+        public final long divergentRows;
+        public final List<String> missingInSecondary;
+        public final List<String> missingInPrimary;
+        public final List<String> contentMismatch;
+        public final int rangeQueries;
+        public final long rowsCompared;
+        public final long elapsedMs;
+        public final boolean isConsistent;
+        public final LocalDateTime timestamp;
+
+        public TableReport(String table, long primaryCount, long secondaryCount, long divergentRows,
+                           List<String> missingInSecondary, List<String> missingInPrimary, List<String> contentMismatch,
+                           int rangeQueries, long rowsCompared, long elapsedMs) {
+            this.table = table;
+            this.primaryCount = primaryCount;
+            this.secondaryCount = secondaryCount;
+            this.divergentRows = divergentRows;
+            this.missingInSecondary = missingInSecondary;
+            this.missingInPrimary = missingInPrimary;
+            this.contentMismatch = contentMismatch;
+            this.rangeQueries = rangeQueries;
+            this.rowsCompared = rowsCompared;
+            this.elapsedMs = elapsedMs;
+            this.isConsistent = divergentRows == 0;
+            this.timestamp = LocalDateTime.now();
+        }
+    }
+}
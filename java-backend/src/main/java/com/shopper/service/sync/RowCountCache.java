@@ -0,0 +1,199 @@
+package com.shopper.service.sync;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Row counts of every synced table in both databases, for the admin statistics. The counts run
+ * directly against each datasource, all at once on a small bounded executor. A snapshot younger than
+ * the fresh period is served as is; up to the stale limit it is still served while one background
+ * refresh replaces it, so polling dashboards neither wait for nor multiply the count queries.
+ * Invalidation starts a new generation: counts from a refresh that began before it are not cached.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RowCountCache {
+
+    private final RangeHashVerifier rangeHashVerifier;
+
+    @Value("${app.dual-database.stats.threads:4}")
+    private int threads;
+
+    @Value("${app.dual-database.stats.fresh-ms:5000}")
+    private long freshMs;
+
+    @Value("${app.dual-database.stats.stale-ms:60000}")
+    private long staleMs;
+
+    private ThreadPoolExecutor executor;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Cached> snapshot = new AtomicReference<>();
+    private final AtomicReference<Refresh> refreshing = new AtomicReference<>();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "row-count-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return Counts no older than the stale limit; waits for a refresh only when there are none
+     */
+    public Snapshot get() {
+        Cached cached = snapshot.get();
+        Snapshot current = cached != null && cached.generation() == generation.get() ? cached.snapshot() : null;
+        long age = current != null ? System.currentTimeMillis() - current.takenAtMs : Long.MAX_VALUE;
+        if (age <= freshMs) {
+            return current;
+        }
+        CompletableFuture<Snapshot> refresh = refresh();
+        if (age <= staleMs) {
+            return current;
+        }
+        try {
+            return refresh.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Drop the cached counts, e.g. after a sync changed them
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    /**
+     * Start a refresh unless one of the current generation is running
+     * @return The running refresh
+     */
+    private CompletableFuture<Snapshot> refresh() {
+        long current = generation.get();
+        Refresh running = refreshing.get();
+        if (running != null && running.generation() == current) {
+            return running.counts();
+        }
+        // A refresh started before an invalidation may have counted before the change, it is left to finish
+        Refresh started = new Refresh(current, new CompletableFuture<>());
+        if (!refreshing.compareAndSet(running, started)) {
+            return refresh();
+        }
+        count().whenComplete((counted, error) -> {
+            if (error != null) {
+                log.warn("Failed to count table rows: {}", error.getMessage());
+            } else if (started.generation() == generation.get()) {
+                snapshot.set(new Cached(started.generation(), counted));
+            } else {
+                log.debug("Discarding row counts started before an invalidation");
+            }
+            refreshing.compareAndSet(started, null);
+            if (error == null) {
+                started.counts().complete(counted);
+            } else {
+                started.counts().completeExceptionally(error);
+            }
+        });
+        return started.counts();
+    }
+
+    private CompletableFuture<Snapshot> count() {
+        boolean secondaryAvailable = rangeHashVerifier.isSecondaryAvailable();
+        List<String> tables = new ArrayList<>();
+        List<CompletableFuture<Long>> primaryCounts = new ArrayList<>();
+        List<CompletableFuture<Long>> secondaryCounts = new ArrayList<>();
+        for (SyncTable table : SyncTable.values()) {
+            String name = table.getTableName();
+            tables.add(name);
+            primaryCounts.add(CompletableFuture.supplyAsync(() -> rangeHashVerifier.countPrimaryRows(name), executor));
+            if (secondaryAvailable) {
+                // An unreachable secondary leaves its counts out instead of failing the statistics
+                secondaryCounts.add(CompletableFuture.supplyAsync(() -> rangeHashVerifier.countSecondaryRows(name), executor)
+                        .exceptionally(error -> {
+                            log.warn("Failed to count secondary {}: {}", name, error.getMessage());
+                            return null;
+                        }));
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Long>> all = new ArrayList<>(primaryCounts);
+        all.addAll(secondaryCounts);
+        return CompletableFuture.allOf(all.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<String, Long> primary = new LinkedHashMap<>();
+            Map<String, Long> secondary = new LinkedHashMap<>();
+            for (int i = 0; i < tables.size(); i++) {
+                primary.put(tables.get(i), primaryCounts.get(i).join());
+                Long secondaryCount = secondaryAvailable ? secondaryCounts.get(i).join() : null;
+                if (secondaryCount != null) {
+                    secondary.put(tables.get(i), secondaryCount);
+                }
+            }
+            return new Snapshot(primary, secondary, secondaryAvailable && secondary.size() == tables.size(),
+                    System.currentTimeMillis() - start);
+        });
+    }
+
+    private record Cached(long generation, Snapshot snapshot) {
+    }
+
+    private record Refresh(long generation, CompletableFuture<Snapshot> counts) {
+    }
+
+    /**
+     * Row counts taken at one point in time
+     */
+    public static class Snapshot {
+        public final Map<String, Long> primary;
+        public final Map<String, Long> secondary;
+        public final boolean secondaryAvailable;
+        public final long elapsedMs;
+        public final LocalDateTime timestamp;
+        private final long takenAtMs;
+
+        public Snapshot(Map<String, Long> primary, Map<String, Long> secondary, boolean secondaryAvailable, long elapsedMs) {
+            this.primary = Collections.unmodifiableMap(primary);
+            this.secondary = Collections.unmodifiableMap(secondary);
+            this.secondaryAvailable = secondaryAvailable;
+            this.elapsedMs = elapsedMs;
+            this.timestamp = LocalDateTime.now();
+            this.takenAtMs = System.currentTimeMillis();
+        }
+
+        public long getAgeMs() {
+            return System.currentTimeMillis() - takenAtMs;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.shopper.service.sync;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Copies whole tables between the databases without materializing them: the source is read in
+ * keyset-ordered pages through plain JDBC into one reused page buffer, and each page is written
+ * through the batch writer before the next one is read. Memory stays at one page however large the table is.
+ */
+@Component
+@Slf4j
+public class StreamingTableCopier {
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired(required = false)
+    @Qualifier("secondaryDataSource")
+    private DataSource secondaryDataSource;
+
+    @Autowired
+    private DatabaseBatchWriter batchWriter;
+
+    @Value("${app.dual-database.copy.page-size:1000}")
+    private int pageSize;
+
+    private JdbcTemplate primaryJdbcTemplate;
+    private JdbcTemplate secondaryJdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        secondaryJdbcTemplate = secondaryDataSource != null ? new JdbcTemplate(secondaryDataSource) : null;
+    }
+
+    public boolean isSecondaryAvailable() {
+        return secondaryJdbcTemplate != null;
+    }
+
+    /**
+     * Copy the rows of a table that the other database lacks. The ID sets of both sides are diffed
+     * first, then only the missing rows are read, one page of IDs per query.
+     * @param table Table to copy
+     * @param toSecondary true to copy primary to secondary, false for the reverse
+     * @return Statistics of the copy
+     */
+    public CopyResult copyMissing(SyncTable table, boolean toSecondary) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        // Secondary keys are read and bound as uuids
+        batchWriter.requireSecondaryUuidIds(table.getTableName());
+        long start = System.currentTimeMillis();
+        UuidSet primaryIds = batchWriter.readPrimaryIds(table.getTableName());
+        UuidSet secondaryIds = batchWriter.readSecondaryIds(table.getTableName());
+        List<UUID> missingIds = toSecondary ? primaryIds.minus(secondaryIds) : secondaryIds.minus(primaryIds);
+
+        JdbcTemplate source = toSecondary ? primaryJdbcTemplate : secondaryJdbcTemplate;
+        List<SyncTable.Column> columns = table.getColumns();
+        int size = Math.max(1, pageSize);
+        Object[][] page = new Object[size][columns.size()];
+        long written = 0;
+        int pages = 0;
+        for (List<UUID> ids : DatabaseBatchWriter.chunks(missingIds, size)) {
+            String sql = "SELECT " + String.join(", ", table.getColumnNames()) + " FROM " + table.getTableName()
+                    + " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+            Object[] arguments = ids.stream().map(id -> toSecondary ? id.toString() : id).toArray();
+            int filled = readPage(source, sql, arguments, columns, page);
+            written += write(table, table.getColumnNames(), Arrays.asList(page).subList(0, filled), toSecondary, false);
+            pages++;
+        }
+
+        CopyResult result = new CopyResult(table.getTableName(), toSecondary ? "primary-to-secondary" : "secondary-to-primary",
+                missingIds.size(), written, 0, pages, System.currentTimeMillis() - start, true);
+        log.info("Copied missing {} {}: {} missing rows, wrote {} rows in {} ms", result.table, result.direction,
+                result.rowsRead, result.rowsWritten, result.elapsedMs);
+        return result;
+    }
+
+    /**
+     * Copy the current state of the given rows, inserting or updating them in the target
+     * @param table Table of the rows
+     * @param ids IDs of the rows
+     * @param toSecondary true to copy primary to secondary, false for the reverse
+     * @return IDs the source no longer has, for the caller to delete from the target
+     */
+    public List<UUID> upsertByIds(SyncTable table, List<UUID> ids, boolean toSecondary) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        // Secondary keys are read and bound as uuids
+        batchWriter.requireSecondaryUuidIds(table.getTableName());
+        JdbcTemplate source = toSecondary ? primaryJdbcTemplate : secondaryJdbcTemplate;
+        List<SyncTable.Column> columns = table.getColumns();
+        int size = Math.max(1, Math.min(pageSize, ids.size()));
+        Object[][] page = new Object[size][columns.size()];
+        Set<UUID> found = new HashSet<>();
+        for (List<UUID> chunk : DatabaseBatchWriter.chunks(ids, size)) {
+            String sql = "SELECT " + String.join(", ", table.getColumnNames()) + " FROM " + table.getTableName()
+                    + " WHERE id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            Object[] arguments = chunk.stream().map(id -> toSecondary ? id.toString() : id).toArray();
+            int filled = readPage(source, sql, arguments, columns, page);
+            for (int i = 0; i < filled; i++) {
+                found.add((UUID) page[i][0]);
+            }
+            write(table, table.getColumnNames(), Arrays.asList(page).subList(0, filled), toSecondary, true);
+        }
+        return ids.stream().filter(id -> !found.contains(id)).toList();
+    }
+
+    /**
+     * Read the given rows from one database
+     * @param table Table of the rows
+     * @param ids IDs of the rows
+     * @param fromPrimary true to read the primary, false for the secondary
+     * @return Column values by ID, in the order of {@link SyncTable#getColumns()}; absent IDs are left out
+     */
+    public Map<UUID, Object[]> readRows(SyncTable table, List<UUID> ids, boolean fromPrimary) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        if (!fromPrimary) {
+            // Secondary keys are bound as uuids
+            batchWriter.requireSecondaryUuidIds(table.getTableName());
+        }
+        JdbcTemplate source = fromPrimary ? primaryJdbcTemplate : secondaryJdbcTemplate;
+        List<SyncTable.Column> columns = table.getColumns();
+        int size = Math.max(1, Math.min(pageSize, ids.size()));
+        Object[][] page = new Object[size][columns.size()];
+        Map<UUID, Object[]> rows = new HashMap<>();
+        for (List<UUID> chunk : DatabaseBatchWriter.chunks(ids, size)) {
+            String sql = "SELECT " + String.join(", ", table.getColumnNames()) + " FROM " + table.getTableName()
+                    + " WHERE id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            Object[] arguments = chunk.stream().map(id -> fromPrimary ? id.toString() : id).toArray();
+            int filled = readPage(source, sql, arguments, columns, page);
+            for (int i = 0; i < filled; i++) {
+                // Copied out of the reused buffer, the caller keeps the rows
+                rows.put((UUID) page[i][0], page[i].clone());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Read one keyset-ordered page of a table's IDs
+     * @param table Table to read
+     * @param fromPrimary true to read the primary, false for the secondary
+     * @param startAfter Last ID of the previous page, null for the first page
+     * @return Up to one page of IDs in ascending order, empty after the last page
+     */
+    public List<UUID> readIdPage(SyncTable table, boolean fromPrimary, UUID startAfter) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        if (!fromPrimary) {
+            // Secondary keys are read and bound as uuids
+            batchWriter.requireSecondaryUuidIds(table.getTableName());
+        }
+        JdbcTemplate source = fromPrimary ? primaryJdbcTemplate : secondaryJdbcTemplate;
+        SyncTable.ColumnType idType = table.getColumns().get(0).type();
+        int size = Math.max(1, pageSize);
+        return startAfter == null
+                ? source.query("SELECT id FROM " + table.getTableName() + " ORDER BY id LIMIT ?",
+                        (resultSet, row) -> (UUID) idType.read(resultSet, 1), size)
+                : source.query("SELECT id FROM " + table.getTableName() + " WHERE id > ? ORDER BY id LIMIT ?",
+                        (resultSet, row) -> (UUID) idType.read(resultSet, 1),
+                        fromPrimary ? startAfter.toString() : startAfter, size);
+    }
+
+    /**
+     * Copy every row of a table from one database to the other
+     * @param table Table to copy
+     * @param toSecondary true to copy primary to secondary, false for the reverse
+     * @param overwrite true to update rows the target already has, false to only insert missing rows
+     * @return Statistics of the copy
+     */
+    public CopyResult copy(SyncTable table, boolean toSecondary, boolean overwrite) {
+        return copy(table, toSecondary, overwrite, null, (lastId, rowsRead, rowsWritten, rowsFailed) -> true);
+    }
+
+    /**
+     * Copy the rows of a table that come after a checkpoint. Rows of a page that fail to write are
+     * retried one by one, so a bad row is counted as failed without stopping the copy.
+     * @param table Table to copy
+     * @param toSecondary true to copy primary to secondary, false for the reverse
+     * @param overwrite true to update rows the target already has, false to only insert missing rows
+     * @param startAfter Last ID already copied, null to start at the beginning
+     * @param listener Told about every written page, may stop the copy
+     * @return Statistics of the copy
+     */
+    public CopyResult copy(SyncTable table, boolean toSecondary, boolean overwrite, UUID startAfter,
+                           PageListener listener) {
+        if (secondaryJdbcTemplate == null) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        // Secondary keys are read and bound as uuids
+        batchWriter.requireSecondaryUuidIds(table.getTableName());
+        JdbcTemplate source = toSecondary ? primaryJdbcTemplate : secondaryJdbcTemplate;
+        // SQLite compares its text IDs with text, Postgres its uuid IDs with uuids
+        boolean sourceKeysAsText = toSecondary;
+        List<SyncTable.Column> columns = table.getColumns();
+        List<String> columnNames = table.getColumnNames();
+        String selectList = String.join(", ", columnNames);
+        String firstPage = "SELECT " + selectList + " FROM " + table.getTableName() + " ORDER BY id LIMIT ?";
+        String nextPage = "SELECT " + selectList + " FROM " + table.getTableName() + " WHERE id > ? ORDER BY id LIMIT ?";
+        int size = Math.max(1, pageSize);
+
+        // Reused for every page, rows are overwritten in place
+        Object[][] page = new Object[size][columns.size()];
+        long start = System.currentTimeMillis();
+        long read = 0;
+        long written = 0;
+        long failed = 0;
+        int pages = 0;
+        boolean stopped = false;
+        UUID lastId = startAfter;
+
+        while (true) {
+            Object[] arguments = lastId == null
+                    ? new Object[] {size}
+                    : new Object[] {sourceKeysAsText ? lastId.toString() : lastId, size};
+            int filled = readPage(source, lastId == null ? firstPage : nextPage, arguments, columns, page);
+            if (filled == 0) {
+                break;
+            }
+
+            List<Object[]> rows = Arrays.asList(page).subList(0, filled);
+            int[] outcome = writeIsolatingFailures(table, columnNames, rows, toSecondary, overwrite);
+            written += outcome[0];
+            failed += outcome[1];
+            read += filled;
+            pages++;
+            lastId = (UUID) page[filled - 1][0];
+            if (!listener.pageWritten(lastId, filled, outcome[0], outcome[1])) {
+                stopped = true;
+                break;
+            }
+            if (filled < size) {
+                break;
+            }
+        }
+
+        CopyResult result = new CopyResult(table.getTableName(), toSecondary ? "primary-to-secondary" : "secondary-to-primary",
+                read, written, failed, pages, System.currentTimeMillis() - start, !stopped);
+        log.info("Copied {} {}: read {} rows in {} pages, wrote {} rows, {} failed in {} ms", result.table,
+                result.direction, result.rowsRead, result.pages, result.rowsWritten, result.rowsFailed, result.elapsedMs);
+        return result;
+    }
+
+    /**
+     * Read rows into the page buffer
+     * @return Number of rows read
+     */
+    private int readPage(JdbcTemplate source, String sql, Object[] arguments, List<SyncTable.Column> columns, Object[][] page) {
+        int[] filled = new int[1];
+        source.query(sql, resultSet -> {
+            Object[] row = page[filled[0]++];
+            for (int i = 0; i < columns.size(); i++) {
+                row[i] = columns.get(i).type().read(resultSet, i + 1);
+            }
+        }, arguments);
+        return filled[0];
+    }
+
+    /**
+     * @return Rows written and rows that failed
+     */
+    private int[] writeIsolatingFailures(SyncTable table, List<String> columnNames, List<Object[]> rows,
+                                         boolean toSecondary, boolean overwrite) {
+        try {
+            return new int[] {write(table, columnNames, rows, toSecondary, overwrite), 0};
+        } catch (DataAccessException e) {
+            log.warn("Writing a page of {} failed, retrying its {} rows one by one: {}", table.getTableName(),
+                    rows.size(), e.getMessage());
+        }
+        int written = 0;
+        int failed = 0;
+        for (Object[] row : rows) {
+            try {
+                written += write(table, columnNames, Collections.singletonList(row), toSecondary, overwrite);
+            } catch (DataAccessException e) {
+                failed++;
+                log.warn("Could not copy {} row {}: {}", table.getTableName(), row[0], e.getMessage());
+            }
+        }
+        return new int[] {written, failed};
+    }
+
+    private int write(SyncTable table, List<String> columnNames, List<Object[]> rows, boolean toSecondary, boolean overwrite) {
+        if (toSecondary) {
+            return overwrite
+                    ? batchWriter.upsertIntoSecondary(table.getTableName(), columnNames, rows)
+                    : batchWriter.insertMissingIntoSecondary(table.getTableName(), columnNames, rows);
+        }
+        return overwrite
+                ? batchWriter.upsertIntoPrimary(table.getTableName(), columnNames, rows)
+                : batchWriter.insertMissingIntoPrimary(table.getTableName(), columnNames, rows);
+    }
+
+    @FunctionalInterface
+    public interface PageListener {
+        /**
+         * Called once a page has been written; the write is committed unless the caller holds a transaction
+         * @param lastId Highest ID of the page, the checkpoint to continue after
+         * @param rowsRead Rows in the page
+         * @param rowsWritten Rows inserted or updated
+         * @param rowsFailed Rows that could not be written
+         * @return false to stop the copy after this page
+         */
+        boolean pageWritten(UUID lastId, int rowsRead, int rowsWritten, int rowsFailed);
+    }
+
+    /**
+     * Result of copying one table
+     */
+    public static class CopyResult {
+        public final String table;
+        public final String direction;
+        public final long rowsRead;
+        public final long rowsWritten;
+        public final long rowsFailed;
+        public final int pages;
+        public final long elapsedMs;
+        public final boolean completed;
+        public final LocalDateTime timestamp;
+
+        public CopyResult(String table, String direction, long rowsRead, long rowsWritten, long rowsFailed, int pages,
+                          long elapsedMs, boolean completed) {
+            this.table = table;
+            this.direction = direction;
+            this.rowsRead = rowsRead;
+            this.rowsWritten = rowsWritten;
+            this.rowsFailed = rowsFailed;
+            this.pages = pages;
+            this.elapsedMs = elapsedMs;
+            this.completed = completed;
+            this.timestamp = LocalDateTime.now();
+        }
+    }
+}
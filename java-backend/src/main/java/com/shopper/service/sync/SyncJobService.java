@@ -0,0 +1,362 @@
+package com.shopper.service.sync;
+
+import com.shopper.entity.primary.SyncJob;
+import com.shopper.repository.primary.PrimarySyncJobRepository;
+import com.shopper.service.DatabaseSyncService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background sync jobs: a request only records the job and returns its ID, a dedicated executor
+ * runs it. Copy jobs stream their tables in foreign key order and store a checkpoint after each written page,
+ * so a cancelled, failed or interrupted job continues after the last committed page instead of starting over.
+ * Bidirectional and incremental runs go through {@link DatabaseSyncService} without a checkpoint, so they
+ * can be neither cancelled nor resumed; a failed one is submitted again. Only one job of each kind is
+ * pending or running at a time, repeated requests are refused instead of piling up on the executor.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncJobService {
+
+    private static final List<SyncTable> TABLES = SyncPipeline.STAGES.stream().flatMap(List::stream).toList();
+    private static final List<SyncJob.Status> ACTIVE = List.of(SyncJob.Status.PENDING, SyncJob.Status.RUNNING);
+
+    private final PrimarySyncJobRepository jobRepository;
+    private final StreamingTableCopier streamingTableCopier;
+    private final RangeHashVerifier rangeHashVerifier;
+
+    @Autowired(required = false)
+    private DatabaseSyncService databaseSyncService;
+
+    @Value("${app.dual-database.sync.job-threads:1}")
+    private int jobThreads;
+
+    private ThreadPoolExecutor executor;
+    // Rows scanned and time when each running job was (re)started, for throughput of the current run
+    private final Map<Long, long[]> runBaselines = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sync-job-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isAvailable() {
+        return streamingTableCopier.isSecondaryAvailable();
+    }
+
+    /**
+     * @param kind What a job would sync
+     * @return Whether jobs of that kind can run
+     */
+    public boolean isAvailable(SyncJob.Kind kind) {
+        return isAvailable() && (isCopy(kind) || databaseSyncService != null);
+    }
+
+    /**
+     * Jobs left pending or running by a previous process continue from their checkpoint
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        if (!isAvailable()) {
+            return;
+        }
+        for (SyncJob job : jobRepository.findByStatusInOrderByIdAsc(ACTIVE)) {
+            log.info("Resuming sync job {} at {} after {}", job.getId(), job.getCheckpointTable(), job.getCheckpointId());
+            schedule(job.getId());
+        }
+    }
+
+    /**
+     * Record a full resync job and start it in the background
+     * @param toSecondary true to copy primary to secondary, false for the reverse
+     * @param overwrite true to update rows the target already has, false to only insert missing rows
+     * @return The recorded job
+     */
+    public SyncJob submit(boolean toSecondary, boolean overwrite) {
+        return submit(SyncJob.Kind.FULL_RESYNC, toSecondary, overwrite);
+    }
+
+    /**
+     * Record a sync job and start it in the background
+     * @param kind What the job syncs
+     * @param toSecondary true to copy primary to secondary, false for the reverse; ignored by runs in both directions
+     * @param overwrite true to update rows the target already has, false to only insert missing rows
+     * @return The recorded job
+     * @throws IllegalStateException if the secondary is not available or a job of the same kind is pending or running
+     */
+    public synchronized SyncJob submit(SyncJob.Kind kind, boolean toSecondary, boolean overwrite) {
+        if (!isAvailable(kind)) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        requireNoActiveJob(kind);
+        SyncJob job = jobRepository.save(SyncJob.builder()
+                .kind(kind)
+                .direction(isCopy(kind) ? direction(toSecondary) : "bidirectional")
+                .overwrite(overwrite)
+                .build());
+        schedule(job.getId());
+        log.info("Sync job {} submitted: {} {}, overwrite {}", job.getId(), kind, job.getDirection(), overwrite);
+        return job;
+    }
+
+    public Optional<SyncJob> getJob(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    public List<SyncJob> getRecentJobs() {
+        return jobRepository.findTop20ByOrderByIdDesc();
+    }
+
+    /**
+     * Stop a copy job after the page it is writing
+     * @param id Job ID
+     * @return false if the job does not exist, has already finished or runs without a checkpoint
+     */
+    public boolean cancel(Long id) {
+        Optional<SyncJob> job = jobRepository.findById(id);
+        if (job.isEmpty() || job.get().getStatus().isFinished() || !isCopy(kindOf(job.get()))) {
+            return false;
+        }
+        jobRepository.setCancelRequested(id, true);
+        return true;
+    }
+
+    /**
+     * Continue a failed or cancelled copy job from its checkpoint
+     * @param id Job ID
+     * @return false if the job does not exist, is not stopped, runs without a checkpoint or another job of
+     *         its kind is pending or running
+     */
+    public synchronized boolean resume(Long id) {
+        Optional<SyncJob> found = jobRepository.findById(id);
+        if (found.isEmpty() || !isAvailable()) {
+            return false;
+        }
+        SyncJob job = found.get();
+        if (job.getStatus() != SyncJob.Status.FAILED && job.getStatus() != SyncJob.Status.CANCELLED
+                || !isCopy(kindOf(job)) || findActiveJob(kindOf(job)).isPresent()) {
+            return false;
+        }
+        job.setStatus(SyncJob.Status.PENDING);
+        job.setFinishedAt(null);
+        jobRepository.save(job);
+        jobRepository.setCancelRequested(id, false);
+        schedule(id);
+        return true;
+    }
+
+    /**
+     * @param job Job to describe
+     * @return Job fields with throughput, progress and estimated time left
+     */
+    public Map<String, Object> describe(SyncJob job) {
+        Map<String, Object> description = new HashMap<>();
+        description.put("id", job.getId());
+        description.put("kind", kindOf(job));
+        description.put("direction", job.getDirection());
+        description.put("overwrite", job.getOverwrite());
+        description.put("status", job.getStatus());
+        description.put("checkpointTable", job.getCheckpointTable());
+        description.put("checkpointId", job.getCheckpointId());
+        description.put("totalRows", job.getTotalRows());
+        description.put("rowsScanned", job.getRowsScanned());
+        description.put("rowsCopied", job.getRowsCopied());
+        description.put("rowsFailed", job.getRowsFailed());
+        description.put("cancelRequested", Boolean.TRUE.equals(job.getCancelRequested()));
+        description.put("lastError", job.getLastError());
+        description.put("summary", job.getSummary());
+        description.put("createdAt", job.getCreatedAt());
+        description.put("startedAt", job.getStartedAt());
+        description.put("finishedAt", job.getFinishedAt());
+
+        long[] baseline = runBaselines.get(job.getId());
+        if (baseline != null && job.getStatus() == SyncJob.Status.RUNNING) {
+            long elapsedMs = System.currentTimeMillis() - baseline[1];
+            double rowsPerSecond = elapsedMs > 0 ? (job.getRowsScanned() - baseline[0]) * 1000.0 / elapsedMs : 0;
+            description.put("rowsPerSecond", rowsPerSecond);
+            if (job.getTotalRows() != null && rowsPerSecond > 0) {
+                long remaining = Math.max(0, job.getTotalRows() - job.getRowsScanned());
+                description.put("etaSeconds", (long) Math.ceil(remaining / rowsPerSecond));
+            }
+        } else if (job.getStartedAt() != null && job.getFinishedAt() != null) {
+            long elapsedMs = Math.max(1, Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis());
+            description.put("rowsPerSecond", job.getRowsScanned() * 1000.0 / elapsedMs);
+        }
+        if (job.getTotalRows() != null && job.getTotalRows() > 0) {
+            description.put("progressPercent", Math.min(100.0, job.getRowsScanned() * 100.0 / job.getTotalRows()));
+        }
+        return description;
+    }
+
+    /**
+     * @param kind What a job syncs
+     * @return The pending or running job of that kind, if any
+     */
+    public Optional<SyncJob> findActiveJob(SyncJob.Kind kind) {
+        return jobRepository.findByStatusInOrderByIdAsc(ACTIVE).stream()
+                .filter(job -> kindOf(job) == kind)
+                .findFirst();
+    }
+
+    private void requireNoActiveJob(SyncJob.Kind kind) {
+        findActiveJob(kind).ifPresent(job -> {
+            throw new IllegalStateException("Sync job " + job.getId() + " of kind " + kind + " is already "
+                    + job.getStatus().name().toLowerCase());
+        });
+    }
+
+    private void schedule(Long id) {
+        executor.execute(() -> run(id));
+    }
+
+    private void run(Long id) {
+        SyncJob job = jobRepository.findById(id).orElse(null);
+        if (job == null || job.getStatus().isFinished()) {
+            return;
+        }
+        if (jobRepository.isCancelRequested(id)) {
+            finish(job, SyncJob.Status.CANCELLED, null);
+            return;
+        }
+
+        job.setStatus(SyncJob.Status.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        try {
+            if (isCopy(kindOf(job))) {
+                copy(job);
+            } else {
+                jobRepository.save(job);
+                runBoth(job);
+            }
+        } catch (Exception e) {
+            log.error("Sync job {} failed at {} after {}: {}", id, job.getCheckpointTable(), job.getCheckpointId(),
+                    e.getMessage(), e);
+            finish(job, SyncJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Stream the tables of a copy job from its checkpoint on
+     */
+    private void copy(SyncJob job) {
+        Long id = job.getId();
+        List<SyncTable> tables = tables(kindOf(job));
+        boolean toSecondary = direction(true).equals(job.getDirection());
+        if (job.getTotalRows() == null) {
+            job.setTotalRows(tables.stream()
+                        .mapToLong(table -> toSecondary
+                                ? rangeHashVerifier.countPrimaryRows(table.getTableName())
+                                : rangeHashVerifier.countSecondaryRows(table.getTableName()))
+                    .sum());
+        }
+        jobRepository.save(job);
+        runBaselines.put(id, new long[] {job.getRowsScanned(), System.currentTimeMillis()});
+
+        int first = job.getCheckpointTable() != null
+                ? tables.indexOf(SyncTable.fromTableName(job.getCheckpointTable()))
+                : 0;
+        for (int i = first; i < tables.size(); i++) {
+            SyncTable table = tables.get(i);
+            UUID startAfter = i == first && job.getCheckpointId() != null ? UUID.fromString(job.getCheckpointId()) : null;
+            job.setCheckpointTable(table.getTableName());
+            job.setCheckpointId(startAfter != null ? startAfter.toString() : null);
+
+            StreamingTableCopier.CopyResult result = streamingTableCopier.copy(table, toSecondary, job.getOverwrite(),
+                    startAfter, (lastId, rowsRead, rowsWritten, rowsFailed) -> {
+                        job.setCheckpointId(lastId.toString());
+                        job.setRowsScanned(job.getRowsScanned() + rowsRead);
+                        job.setRowsCopied(job.getRowsCopied() + rowsWritten);
+                        job.setRowsFailed(job.getRowsFailed() + rowsFailed);
+                        jobRepository.save(job);
+                        return !jobRepository.isCancelRequested(id);
+                    });
+            if (!result.completed) {
+                finish(job, SyncJob.Status.CANCELLED, null);
+                return;
+            }
+        }
+        finish(job, SyncJob.Status.COMPLETED, null);
+    }
+
+    /**
+     * Run a sync in both directions; having no checkpoint, it reruns from the start after a restart
+     */
+    private void runBoth(SyncJob job) {
+        DatabaseSyncService.SyncResult result = kindOf(job) == SyncJob.Kind.BIDIRECTIONAL
+                ? databaseSyncService.performBidirectionalSync()
+                : databaseSyncService.performIncrementalSync();
+        long copied = (long) result.primaryToSecondaryCount + result.secondaryToPrimaryCount;
+        job.setRowsScanned(copied);
+        job.setRowsCopied(copied);
+        job.setSummary(result.message.length() > 1000 ? result.message.substring(0, 1000) : result.message);
+        finish(job, result.success ? SyncJob.Status.COMPLETED : SyncJob.Status.FAILED, result.success ? null : result.message);
+    }
+
+    private void finish(SyncJob job, SyncJob.Status status, String error) {
+        runBaselines.remove(job.getId());
+        job.setStatus(status);
+        job.setFinishedAt(LocalDateTime.now());
+        if (error != null) {
+            job.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        }
+        jobRepository.save(job);
+        log.info("Sync job {} {}: scanned {}, copied {}, failed {}", job.getId(), status, job.getRowsScanned(),
+                job.getRowsCopied(), job.getRowsFailed());
+    }
+
+    private static SyncJob.Kind kindOf(SyncJob job) {
+        // Jobs recorded before kinds existed were full resyncs
+        return job.getKind() != null ? job.getKind() : SyncJob.Kind.FULL_RESYNC;
+    }
+
+    private static boolean isCopy(SyncJob.Kind kind) {
+        return kind != SyncJob.Kind.BIDIRECTIONAL && kind != SyncJob.Kind.INCREMENTAL;
+    }
+
+    private static List<SyncTable> tables(SyncJob.Kind kind) {
+        return switch (kind) {
+            case PRODUCTS -> List.of(SyncTable.PRODUCTS);
+            case CART_ITEMS -> List.of(SyncTable.CART_ITEMS);
+            default -> TABLES;
+        };
+    }
+
+    private static String direction(boolean toSecondary) {
+        return toSecondary ? "primary-to-secondary" : "secondary-to-primary";
+    }
+}
@@ -0,0 +1,258 @@
+package com.shopper.service.sync;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bidirectional sync of every table in foreign key order. Tables of one stage do not reference each
+ * other and are copied in parallel, both directions at once, on a dedicated bounded executor; a stage
+ * starts only when the previous one has finished, and a failed stage stops the tables depending on it.
+ * Once a stage's missing rows are copied, rows present on both sides with different content are
+ * settled by the conflict resolver.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SyncPipeline {
+
+    /**
+     * Stages in dependency order, each table only references tables of earlier stages
+     */
+    static final List<List<SyncTable>> STAGES = List.of(
+        List.of(SyncTable.USERS, SyncTable.PRODUCTS),
+        List.of(SyncTable.CART_ITEMS, SyncTable.ORDERS),
+        List.of(SyncTable.ORDER_ITEMS)
+    );
+
+    private final StreamingTableCopier streamingTableCopier;
+    private final ConflictResolver conflictResolver;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.dual-database.sync.pipeline-threads:4}")
+    private int pipelineThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(pipelineThreads, pipelineThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sync-pipeline-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isAvailable() {
+        return streamingTableCopier.isSecondaryAvailable();
+    }
+
+    /**
+     * Copy the rows missing on either side and resolve conflicting rows for every table
+     * @return Per table and direction results
+     */
+    public PipelineResult run() {
+        return run(STAGES);
+    }
+
+    /**
+     * Copy the rows missing on either side and resolve conflicting rows for one table. Rows
+     * referencing parents that the other database lacks fail to insert there, so sync parents first.
+     * @param table Table to sync
+     * @return Results of both directions
+     */
+    public PipelineResult run(SyncTable table) {
+        return run(List.of(List.of(table)));
+    }
+
+    private PipelineResult run(List<List<SyncTable>> stages) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Secondary database is not available");
+        }
+        long start = System.currentTimeMillis();
+        List<TableResult> results = new ArrayList<>();
+        List<ConflictResolver.Resolution> conflicts = new ArrayList<>();
+        String failure = null;
+
+        for (int stage = 0; stage < stages.size() && failure == null; stage++) {
+            List<Future<TableResult>> futures = new ArrayList<>();
+            for (SyncTable table : stages.get(stage)) {
+                futures.add(executor.submit(() -> copy(table, true)));
+                futures.add(executor.submit(() -> copy(table, false)));
+            }
+            for (Future<TableResult> future : futures) {
+                try {
+                    TableResult result = future.get();
+                    results.add(result);
+                    if (result.error != null && failure == null) {
+                        failure = String.format("%s %s failed: %s", result.table, result.direction, result.error);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(pending -> pending.cancel(true));
+                    failure = "Interrupted";
+                    break;
+                } catch (ExecutionException e) {
+                    failure = e.getCause().getMessage();
+                }
+            }
+            if (failure == null) {
+                failure = resolveConflicts(stages.get(stage), conflicts);
+            }
+            log.info("Sync pipeline stage {} of {} finished", stage + 1, stages.size());
+        }
+
+        PipelineResult result = new PipelineResult(results, conflicts, failure, System.currentTimeMillis() - start);
+        if (failure != null) {
+            log.warn("Sync pipeline stopped: {}", failure);
+        } else {
+            log.info("Sync pipeline completed in {} ms", result.elapsedMs);
+        }
+        return result;
+    }
+
+    private TableResult copy(SyncTable table, boolean toSecondary) {
+        String direction = toSecondary ? "primary-to-secondary" : "secondary-to-primary";
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            StreamingTableCopier.CopyResult copy = streamingTableCopier.copyMissing(table, toSecondary);
+            sample.stop(stageTimer(table, direction, "success"));
+            rowsCounter(table, direction).increment(copy.rowsWritten);
+            return new TableResult(table.getTableName(), direction, copy.rowsRead, copy.rowsWritten, copy.elapsedMs, null);
+        } catch (Exception e) {
+            sample.stop(stageTimer(table, direction, "failure"));
+            log.error("Sync pipeline failed copying {} {}: {}", table.getTableName(), direction, e.getMessage(), e);
+            return new TableResult(table.getTableName(), direction, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * Resolve the conflicting rows of a stage's tables in parallel. A failed resolution is reported
+     * but does not stop later stages, their rows do not depend on the content of conflicting rows.
+     * @return null, or the failure if the pipeline was interrupted
+     */
+    private String resolveConflicts(List<SyncTable> tables, List<ConflictResolver.Resolution> conflicts) {
+        List<Future<ConflictResolver.Resolution>> futures = new ArrayList<>();
+        for (SyncTable table : tables) {
+            futures.add(executor.submit(() -> resolveConflicts(table)));
+        }
+        for (Future<ConflictResolver.Resolution> future : futures) {
+            try {
+                conflicts.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                return "Interrupted";
+            } catch (ExecutionException e) {
+                log.error("Sync pipeline failed resolving conflicts: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return null;
+    }
+
+    private ConflictResolver.Resolution resolveConflicts(SyncTable table) {
+        try {
+            return conflictResolver.resolve(table);
+        } catch (Exception e) {
+            log.error("Sync pipeline failed resolving conflicts in {}: {}", table.getTableName(), e.getMessage(), e);
+            return new ConflictResolver.Resolution(table.getTableName(), null, 0, 0, 0, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    private Timer stageTimer(SyncTable table, String direction, String outcome) {
+        return Timer.builder("shopper.sync.pipeline.duration")
+                .description("Time to copy the missing rows of one table in one direction")
+                .tag("table", table.getTableName())
+                .tag("direction", direction)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter rowsCounter(SyncTable table, String direction) {
+        return Counter.builder("shopper.sync.pipeline.rows")
+                .description("Rows copied by the sync pipeline")
+                .tag("table", table.getTableName())
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Result of copying one table in one direction
+     */
+    public static class TableResult {
+        public final String table;
+        public final String direction;
+        public final long missingRows;
+        public final long copiedRows;
+        public final long elapsedMs;
+        public final double rowsPerSecond;
+        public final String error;
+
+        public TableResult(String table, String direction, long missingRows, long copiedRows, long elapsedMs, String error) {
+            this.table = table;
+            this.direction = direction;
+            this.missingRows = missingRows;
+            this.copiedRows = copiedRows;
+            this.elapsedMs = elapsedMs;
+            this.rowsPerSecond = elapsedMs > 0 ? copiedRows * 1000.0 / elapsedMs : copiedRows;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Result of a pipeline run
+     */
+    public static class PipelineResult {
+        public final List<TableResult> tables;
+        public final List<ConflictResolver.Resolution> conflicts;
+        public final boolean success;
+        public final String failure;
+        public final long elapsedMs;
+        public final LocalDateTime timestamp;
+
+        public PipelineResult(List<TableResult> tables, List<ConflictResolver.Resolution> conflicts, String failure,
+                              long elapsedMs) {
+            this.tables = tables;
+            this.conflicts = conflicts;
+            this.success = failure == null;
+            this.failure = failure;
+            this.elapsedMs = elapsedMs;
+            this.timestamp = LocalDateTime.now();
+        }
+
+        public long copiedRows(String direction) {
+            return tables.stream()
+                    .filter(table -> table.direction.equals(direction))
+                    .mapToLong(table -> table.copiedRows)
+                    .sum();
+        }
+
+        public long resolvedConflicts() {
+            return conflicts.stream().mapToLong(resolution -> resolution.conflicts).sum();
+        }
+    }
+}
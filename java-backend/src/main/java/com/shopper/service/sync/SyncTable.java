@@ -0,0 +1,147 @@
+package com.shopper.service.sync;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tables kept in sync between the databases, with their columns in the order the batch writer
+ * binds them (ID first). Column types tell how to read a value through plain JDBC from either driver.
+ */
+public enum SyncTable {
+
+    USERS("users",
+        Column.of("id", ColumnType.UUID),
+        Column.of("username", ColumnType.TEXT),
+        Column.of("email", ColumnType.TEXT),
+        Column.of("password", ColumnType.TEXT),
+        Column.of("role", ColumnType.TEXT),
+        Column.of("created_at", ColumnType.TIMESTAMP),
+        Column.of("updated_at", ColumnType.TIMESTAMP)),
+
+    PRODUCTS("products",
+        Column.of("id", ColumnType.UUID),
+        Column.of("name", ColumnType.TEXT),
+        Column.of("description", ColumnType.TEXT),
+        Column.of("price", ColumnType.DECIMAL),
+        Column.of("image_url", ColumnType.TEXT),
+        Column.of("category", ColumnType.TEXT),
+        Column.of("stock_quantity", ColumnType.INTEGER),
+        Column.of("created_at", ColumnType.TIMESTAMP),
+        Column.of("updated_at", ColumnType.TIMESTAMP)),
+
+    CART_ITEMS("cart_items",
+        Column.of("id", ColumnType.UUID),
+        Column.of("user_id", ColumnType.UUID),
+        Column.of("product_id", ColumnType.UUID),
+        Column.of("quantity", ColumnType.INTEGER),
+        Column.of("created_at", ColumnType.TIMESTAMP),
+        Column.of("updated_at", ColumnType.TIMESTAMP)),
+
+    ORDERS("orders",
+        Column.of("id", ColumnType.UUID),
+        Column.of("user_id", ColumnType.UUID),
+        Column.of("total_amount", ColumnType.DECIMAL),
+        Column.of("status", ColumnType.TEXT),
+        Column.of("shipping_address", ColumnType.TEXT),
+        Column.of("card_number", ColumnType.TEXT),
+        Column.of("created_at", ColumnType.TIMESTAMP),
+        Column.of("updated_at", ColumnType.TIMESTAMP)),
+
+    ORDER_ITEMS("order_items",
+        Column.of("id", ColumnType.UUID),
+        Column.of("order_id", ColumnType.UUID),
+        Column.of("product_id", ColumnType.UUID),
+        Column.of("quantity", ColumnType.INTEGER),
+        Column.of("price", ColumnType.DECIMAL),
+        Column.of("created_at", ColumnType.TIMESTAMP),
+        Column.of("updated_at", ColumnType.TIMESTAMP));
+
+    private final String tableName;
+    private final List<Column> columns;
+
+    SyncTable(String tableName, Column... columns) {
+        this.tableName = tableName;
+        this.columns = List.of(columns);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public List<String> getColumnNames() {
+        return columns.stream().map(Column::name).toList();
+    }
+
+    /**
+     * @param tableName Table name as used in SQL
+     * @return The matching table
+     * @throws IllegalArgumentException if the table is not synced
+     */
+    public static SyncTable fromTableName(String tableName) {
+        return Arrays.stream(values())
+                .filter(table -> table.tableName.equalsIgnoreCase(tableName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown table: " + tableName));
+    }
+
+    public record Column(String name, ColumnType type) {
+        static Column of(String name, ColumnType type) {
+            return new Column(name, type);
+        }
+    }
+
+    public enum ColumnType {
+        UUID,
+        TEXT,
+        INTEGER,
+        DECIMAL,
+        TIMESTAMP;
+
+        /**
+         * Read a column value in the form the batch writer binds
+         * @param resultSet Current row
+         * @param index Column index, starting at 1
+         * @return Value, or null for SQL NULL
+         */
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            switch (this) {
+                case UUID -> {
+                    // SQLite keeps UUIDs as text, Postgres returns them as text too when asked for a string
+                    String value = resultSet.getString(index);
+                    return value != null ? java.util.UUID.fromString(value) : null;
+                }
+                case INTEGER -> {
+                    int value = resultSet.getInt(index);
+                    return resultSet.wasNull() ? null : value;
+                }
+                case DECIMAL -> {
+                    return resultSet.getBigDecimal(index);
+                }
+                case TIMESTAMP -> {
+                    Object value = resultSet.getObject(index);
+                    if (value instanceof Number millis) {
+                        // SQLite rows written by Hibernate
+                        return new Timestamp(millis.longValue()).toLocalDateTime();
+                    }
+                    if (value instanceof String text) {
+                        // SQLite rows of the original schema, "yyyy-MM-dd HH:mm:ss"
+                        return LocalDateTime.parse(text.trim().replace(' ', 'T'));
+                    }
+                    Timestamp timestamp = resultSet.getTimestamp(index);
+                    return timestamp != null ? timestamp.toLocalDateTime() : null;
+                }
+                default -> {
+                    return resultSet.getString(index);
+                }
+            }
+        }
+    }
+}
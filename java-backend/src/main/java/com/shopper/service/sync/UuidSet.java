@@ -0,0 +1,139 @@
+package com.shopper.service.sync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sorted, duplicate-free set of UUIDs stored as two longs each, so the ID sets of large tables
+ * can be held in memory and diffed with a single merge pass instead of per-row lookups.
+ * IDs are ordered by their unsigned bits, which matches the order of their lowercase text form.
+ */
+public final class UuidSet {
+
+    private static final Comparator<UUID> UNSIGNED_ORDER = (left, right) -> {
+        int compared = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return compared != 0 ? compared
+                : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    };
+
+    // Most and least significant bits of each ID, interleaved
+    private final long[] bits;
+    private final int size;
+
+    private UuidSet(long[] bits, int size) {
+        this.bits = bits;
+        this.size = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public UUID get(int index) {
+        return new UUID(bits[2 * index], bits[2 * index + 1]);
+    }
+
+    public boolean contains(UUID id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = compare(middle, id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merge-join this set against another one
+     * @param other IDs to leave out
+     * @return IDs of this set that the other set does not contain, in set order
+     */
+    public List<UUID> minus(UuidSet other) {
+        List<UUID> missing = new ArrayList<>();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            long msb = bits[2 * i];
+            long lsb = bits[2 * i + 1];
+            while (j < other.size && other.compare(j, msb, lsb) < 0) {
+                j++;
+            }
+            if (j == other.size || other.compare(j, msb, lsb) != 0) {
+                missing.add(new UUID(msb, lsb));
+            }
+        }
+        return missing;
+    }
+
+    private int compare(int index, long msb, long lsb) {
+        int compared = Long.compareUnsigned(bits[2 * index], msb);
+        return compared != 0 ? compared : Long.compareUnsigned(bits[2 * index + 1], lsb);
+    }
+
+    public static final class Builder {
+        private long[] bits = new long[64];
+        private int size;
+        private boolean sorted = true;
+
+        private Builder() {
+        }
+
+        public Builder add(UUID id) {
+            if (2 * size == bits.length) {
+                bits = Arrays.copyOf(bits, bits.length * 2);
+            }
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            if (sorted && size > 0) {
+                int compared = Long.compareUnsigned(bits[2 * size - 2], msb);
+                sorted = compared < 0 || (compared == 0 && Long.compareUnsigned(bits[2 * size - 1], lsb) <= 0);
+            }
+            bits[2 * size] = msb;
+            bits[2 * size + 1] = lsb;
+            size++;
+            return this;
+        }
+
+        public UuidSet build() {
+            if (!sorted) {
+                // Keyset reads arrive in order already, so only unordered input pays for boxing
+                UUID[] ids = new UUID[size];
+                for (int i = 0; i < size; i++) {
+                    ids[i] = new UUID(bits[2 * i], bits[2 * i + 1]);
+                }
+                Arrays.sort(ids, UNSIGNED_ORDER);
+                for (int i = 0; i < size; i++) {
+                    bits[2 * i] = ids[i].getMostSignificantBits();
+                    bits[2 * i + 1] = ids[i].getLeastSignificantBits();
+                }
+            }
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct > 0 && bits[2 * distinct - 2] == bits[2 * i] && bits[2 * distinct - 1] == bits[2 * i + 1]) {
+                    continue;
+                }
+                bits[2 * distinct] = bits[2 * i];
+                bits[2 * distinct + 1] = bits[2 * i + 1];
+                distinct++;
+            }
+            return new UuidSet(Arrays.copyOf(bits, 2 * distinct), distinct);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.shopper.controller;
+
+import com.shopper.entity.Product;
+import com.shopper.repository.ProductRepository;
+import com.shopper.service.FeatureFlagService;
+import com.shopper.service.ProductService;
+import com.shopper.service.catalog.ProductCatalogVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the conditional catalog reads of the product endpoints
+ */
+@DisplayName("ProductController Unit Tests")
+class ProductControllerTest {
+
+    private ProductService productService;
+    private FeatureFlagService featureFlagService;
+    private ProductCatalogVersion catalogVersion;
+    private ProductController controller;
+    private final Product lamp = Product.builder()
+            .id(UUID.randomUUID())
+            .name("Desk lamp")
+            .price(new BigDecimal("19.99"))
+            .category("home")
+            .stockQuantity(5)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        featureFlagService = mock(FeatureFlagService.class);
+        catalogVersion = new ProductCatalogVersion(new SimpleMeterRegistry(), mock(ProductRepository.class));
+        catalogVersion.init();
+        controller = new ProductController(productService, featureFlagService, catalogVersion);
+        when(productService.findAll(anyString())).thenReturn(List.of(lamp));
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private ResponseEntity<?> getAll(ServletWebRequest request) {
+        return controller.getAllProducts(null, null, null, null, null, null, null, null, request);
+    }
+
+    private static String etag(ServletWebRequest request) {
+        return request.getResponse().getHeader("ETag");
+    }
+
+    @Test
+    @DisplayName("Should answer the product list with its ETag and then 304 for the same ETag")
+    void testListNotModified() {
+        ServletWebRequest first = request(null);
+        ResponseEntity<?> response = getAll(first);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(etag(first)).isEqualTo(catalogVersion.etag(catalogVersion.current()));
+
+        assertThat(getAll(request(etag(first))).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(productService, times(1)).findAll(anyString());
+    }
+
+    @Test
+    @DisplayName("Should tag the in-stock list of the new flow apart from the full list")
+    void testNewFlowHasOwnEtag() {
+        String fullListEtag = catalogVersion.etag(catalogVersion.current());
+        when(featureFlagService.getBooleanValue(anyString(), eq("new-flow"), eq(false))).thenReturn(true);
+
+        ServletWebRequest request = request(fullListEtag);
+        ResponseEntity<?> response = getAll(request);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(etag(request)).isNotEqualTo(fullListEtag).endsWith("-in-stock\"");
+        assertThat(getAll(request(etag(request))).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid page parameters before checking the ETag")
+    void testInvalidPageRequest() {
+        ResponseEntity<?> response = controller.getAllProducts(0, null, null, null, null, null, null, null,
+                request(catalogVersion.etag(catalogVersion.current())));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isInstanceOf(Map.class);
+        verify(productService, never()).findPage(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should answer 304 for an unchanged product")
+    void testProductNotModified() {
+        when(productService.findById(eq(lamp.getId()), anyString())).thenReturn(Optional.of(lamp));
+        ServletWebRequest first = request(null);
+
+        assertThat(controller.getProductById(lamp.getId(), first).getBody()).isSameAs(lamp);
+        assertThat(controller.getProductById(lamp.getId(), request(etag(first))).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    @DisplayName("Should answer 404 for an unknown product even with a current ETag")
+    void testUnknownProductNotFound() {
+        UUID unknown = UUID.randomUUID();
+        when(productService.findById(eq(unknown), anyString())).thenReturn(Optional.empty());
+
+        ResponseEntity<Product> response = controller.getProductById(unknown,
+                request(catalogVersion.etag(catalogVersion.current())));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,75 @@
+package com.shopper.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the progress report of chunked bulk deletes
+ */
+@DisplayName("BulkDeleteMonitor Unit Tests")
+class BulkDeleteMonitorTest {
+
+    private final BulkDeleteMonitor monitor = new BulkDeleteMonitor();
+
+    @Test
+    @DisplayName("Should add up deleted rows and chunks per datasource and table")
+    void testCountsChunks() {
+        BulkDeleteMonitor.Progress progress = monitor.start("completeProductReplacement");
+        IntConsumer primaryProducts = progress.chunkListener("primary", "products");
+        IntConsumer secondaryProducts = progress.chunkListener("secondary", "products");
+
+        primaryProducts.accept(500);
+        primaryProducts.accept(120);
+        secondaryProducts.accept(620);
+
+        assertThat(progress.getDeleted("primary", "products")).isEqualTo(620);
+        assertThat(progress.getDeleted("secondary", "products")).isEqualTo(620);
+        assertThat(progress.getDeleted("primary", "cart_items")).isZero();
+        Map<String, Object> report = progress.toMap();
+        assertThat(report).containsEntry("chunks", 3L).containsEntry("status", "RUNNING");
+        assertThat(report.get("deleted")).isEqualTo(Map.of("primary.products", 620L, "secondary.products", 620L));
+    }
+
+    @Test
+    @DisplayName("Should share one counter between listeners of the same target")
+    void testSharedTarget() {
+        BulkDeleteMonitor.Progress progress = monitor.start("products");
+
+        progress.chunkListener("primary", "products").accept(3);
+        progress.chunkListener("primary", "products").accept(4);
+
+        assertThat(progress.getDeleted("primary", "products")).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should report finished and failed runs")
+    void testStatus() {
+        BulkDeleteMonitor.Progress finished = monitor.start("products");
+        finished.finish();
+        BulkDeleteMonitor.Progress failed = monitor.start("cart_items");
+        failed.fail(new IllegalStateException("database is locked"));
+
+        assertThat(finished.toMap()).containsEntry("status", "FINISHED").containsKey("finishedAt");
+        assertThat(failed.toMap()).containsEntry("status", "FAILED").containsEntry("error", "database is locked");
+    }
+
+    @Test
+    @DisplayName("Should keep only the most recent runs, newest first")
+    void testKeepsRecentRuns() {
+        for (int i = 0; i < 12; i++) {
+            monitor.start("run-" + i);
+        }
+
+        List<Map<String, Object>> report = monitor.getReport();
+
+        assertThat(report).hasSize(10);
+        assertThat(report.get(0)).containsEntry("operation", "run-11");
+        assertThat(report.get(9)).containsEntry("operation", "run-2");
+    }
+}
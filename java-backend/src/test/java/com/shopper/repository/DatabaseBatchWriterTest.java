@@ -0,0 +1,171 @@
+package com.shopper.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for chunked bulk deletes, conditional updates and secondary ID checks, run against an in-memory SQLite primary
+ * and a mocked secondary
+ */
+@DisplayName("DatabaseBatchWriter Unit Tests")
+class DatabaseBatchWriterTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DatabaseBatchWriter batchWriter;
+    private final List<Integer> chunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id TEXT PRIMARY KEY, name TEXT)");
+
+        batchWriter = new DatabaseBatchWriter();
+        ReflectionTestUtils.setField(batchWriter, "primaryDataSource", dataSource);
+        ReflectionTestUtils.setField(batchWriter, "primaryChunkSize", 3);
+        ReflectionTestUtils.setField(batchWriter, "secondaryChunkSize", 4);
+        batchWriter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    private void insertProducts(int count) {
+        for (int i = 0; i < count; i++) {
+            jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, ?)", UUID.randomUUID().toString(), "Product " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete every primary row in chunks of the configured size")
+    void testDeleteAllFromPrimaryInChunks() {
+        insertProducts(7);
+
+        long deleted = batchWriter.deleteAllFromPrimary("products", chunks::add);
+
+        assertThat(deleted).isEqualTo(7);
+        assertThat(chunks).containsExactly(3, 3, 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Integer.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should report no chunks for an empty primary table")
+    void testDeleteAllFromEmptyPrimary() {
+        assertThat(batchWriter.deleteAllFromPrimary("products", chunks::add)).isZero();
+        assertThat(chunks).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should stop the last chunk at the table's end when rows fill whole chunks")
+    void testDeleteAllFromPrimaryExactChunks() {
+        insertProducts(6);
+
+        assertThat(batchWriter.deleteAllFromPrimary("products", chunks::add)).isEqualTo(6);
+        assertThat(chunks).containsExactly(3, 3);
+    }
+
+    @Test
+    @DisplayName("Should delete secondary rows one chunk per statement until none are left")
+    void testDeleteAllFromSecondaryInChunks() {
+        JdbcTemplate secondary = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(batchWriter, "secondaryJdbcTemplate", secondary);
+        when(secondary.update(anyString(), eq(4))).thenReturn(4, 4, 2, 0);
+
+        long deleted = batchWriter.deleteAllFromSecondary("products", chunks::add);
+
+        assertThat(deleted).isEqualTo(10);
+        assertThat(chunks).containsExactly(4, 4, 2);
+        verify(secondary, times(4)).update(
+                eq("DELETE FROM products WHERE ctid = ANY(ARRAY(SELECT ctid FROM products LIMIT ?))"), eq(4));
+    }
+
+    @Test
+    @DisplayName("Should refuse secondary deletes without a secondary database")
+    void testDeleteAllFromSecondaryUnavailable() {
+        assertThatThrownBy(() -> batchWriter.deleteAllFromSecondary("products", chunks::add))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should update only rows that have not changed since they were read")
+    void testUpdateUnchangedInPrimary() {
+        jdbcTemplate.execute("CREATE TABLE items (id TEXT PRIMARY KEY, name TEXT, updated_at INTEGER)");
+        LocalDateTime seen = LocalDateTime.of(2026, 3, 1, 12, 0);
+        LocalDateTime newer = seen.plusMinutes(1);
+        UUID unchanged = UUID.randomUUID();
+        UUID changed = UUID.randomUUID();
+        UUID neverUpdated = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO items VALUES (?, 'old', ?)", unchanged.toString(), java.sql.Timestamp.valueOf(seen));
+        jdbcTemplate.update("INSERT INTO items VALUES (?, 'old', ?)", changed.toString(), java.sql.Timestamp.valueOf(newer));
+        jdbcTemplate.update("INSERT INTO items VALUES (?, 'old', NULL)", neverUpdated.toString());
+        List<String> columns = List.of("id", "name", "updated_at");
+
+        int written = batchWriter.updateUnchangedInPrimary("items", columns,
+                List.of(new Object[] {unchanged, "new", newer}, new Object[] {changed, "new", newer},
+                        new Object[] {neverUpdated, "new", newer}, new Object[] {deleted, "new", newer}),
+                Arrays.asList(seen, seen, null, seen));
+
+        assertThat(written).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM items WHERE name = 'new'", String.class))
+                .containsExactlyInAnyOrder(unchanged.toString(), neverUpdated.toString());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should remember a secondary table whose IDs are uuids")
+    void testSecondaryUuidIds() {
+        JdbcTemplate secondary = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(batchWriter, "secondaryJdbcTemplate", secondary);
+        when(secondary.queryForList(anyString(), eq(String.class), eq("products"))).thenReturn(List.of("uuid"));
+
+        assertThat(batchWriter.hasSecondaryUuidIds("products")).isTrue();
+        assertThat(batchWriter.hasSecondaryUuidIds("products")).isTrue();
+
+        verify(secondary, times(1)).queryForList(anyString(), eq(String.class), eq("products"));
+    }
+
+    @Test
+    @DisplayName("Should refuse keyset reads of a secondary table that still has varchar IDs")
+    void testSecondaryVarcharIds() {
+        JdbcTemplate secondary = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(batchWriter, "secondaryJdbcTemplate", secondary);
+        when(secondary.queryForList(anyString(), eq(String.class), eq("products"))).thenReturn(List.of("character varying"));
+
+        assertThat(batchWriter.hasSecondaryUuidIds("products")).isFalse();
+        assertThatThrownBy(() -> batchWriter.readSecondaryIds("products"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("fix-postgresql-schema");
+        // The negative answer is kept for a while instead of asked on every read
+        verify(secondary, times(1)).queryForList(anyString(), eq(String.class), eq("products"));
+        verify(secondary, never()).queryForList(anyString(), eq(String.class), eq(4));
+    }
+
+    @Test
+    @DisplayName("Should split lists into consecutive chunks")
+    void testChunks() {
+        assertThat(DatabaseBatchWriter.chunks(List.of(1, 2, 3, 4, 5), 2))
+                .containsExactly(List.of(1, 2), List.of(3, 4), List.of(5));
+        assertThat(DatabaseBatchWriter.chunks(List.of(), 2)).isEmpty();
+    }
+}
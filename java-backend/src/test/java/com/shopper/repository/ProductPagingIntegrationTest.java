@@ -0,0 +1,126 @@
+package com.shopper.repository;
+
+import com.shopper.BaseIntegrationTest;
+import com.shopper.entity.Product;
+import com.shopper.repository.primary.PrimaryProductRepository;
+import com.shopper.service.catalog.ProductPage;
+import com.shopper.service.catalog.ProductPageQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for keyset paging of the product listing, read from the primary database
+ * across products with equal sort keys
+ */
+@DisplayName("Product Paging Integration Tests")
+class ProductPagingIntegrationTest extends BaseIntegrationTest {
+
+    private static final String CATEGORY = "paging-test";
+    private static final int LIMIT = 2;
+
+    @Autowired
+    private PrimaryProductRepository primaryProductRepository;
+
+    @BeforeEach
+    void createProducts() {
+        // Three products share the lowest price and two the next, so page boundaries fall inside ties
+        for (String price : List.of("5.00", "5.00", "5.00", "7.50", "7.50", "9.99", "12.00")) {
+            primaryProductRepository.save(Product.builder()
+                    .name("Item at " + price)
+                    .price(new BigDecimal(price))
+                    .imageUrl("https://example.com/item.jpg")
+                    .category(CATEGORY)
+                    .stockQuantity(1)
+                    .build());
+        }
+    }
+
+    private List<Product> read(ProductPageQuery query) {
+        return primaryProductRepository.findBy(ProductRepository.pageSpecification(query),
+                q -> q.sortBy(query.sort()).limit(query.limit() + 1).all());
+    }
+
+    private ProductPage page(String direction, String cursor) {
+        ProductPageQuery query = ProductPageQuery.of("price", direction, cursor, CATEGORY, null, null, null, LIMIT);
+        return ProductPage.of(query, read(query));
+    }
+
+    /**
+     * Every page from the first to the last, following the next cursors
+     */
+    private List<ProductPage> pagesForward(String direction) {
+        List<ProductPage> pages = new ArrayList<>();
+        ProductPage page = page(direction, null);
+        pages.add(page);
+        while (page.nextCursor() != null) {
+            page = page(direction, page.nextCursor());
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * The whole listing in one read
+     */
+    private List<UUID> listing(String direction) {
+        ProductPageQuery query = ProductPageQuery.of("price", direction, null, CATEGORY, null, null, null,
+                ProductPageQuery.MAX_LIMIT);
+        return read(query).stream().map(Product::getId).toList();
+    }
+
+    private static List<UUID> ids(List<ProductPage> pages) {
+        return pages.stream().flatMap(page -> page.products().stream()).map(Product::getId).toList();
+    }
+
+    @Test
+    @DisplayName("Should page forward through ties without skipping or repeating a product")
+    void testPagesForwardAcrossTies() {
+        List<ProductPage> pages = pagesForward("asc");
+
+        assertThat(pages).hasSize(4);
+        assertThat(ids(pages)).hasSize(7).doesNotHaveDuplicates().containsExactlyElementsOf(listing("asc"));
+        assertThat(pages).allSatisfy(page -> assertThat(page.products()).hasSizeLessThanOrEqualTo(LIMIT));
+        assertThat(pages.get(0).previousCursor()).isNull();
+        assertThat(pages.get(pages.size() - 1).nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should page backward from the last page through the same pages in reverse")
+    void testPagesBackwardAcrossTies() {
+        List<ProductPage> forward = pagesForward("asc");
+
+        List<ProductPage> backward = new ArrayList<>();
+        ProductPage page = forward.get(forward.size() - 1);
+        while (page.previousCursor() != null) {
+            page = page("asc", page.previousCursor());
+            backward.add(page);
+        }
+        Collections.reverse(backward);
+
+        assertThat(backward).hasSize(forward.size() - 1);
+        for (int i = 0; i < backward.size(); i++) {
+            assertThat(backward.get(i).products()).extracting(Product::getId)
+                    .containsExactlyElementsOf(forward.get(i).products().stream().map(Product::getId).toList());
+        }
+        assertThat(backward.get(0).previousCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should list ties in reverse ID order when sorted descending")
+    void testPagesDescending() {
+        List<UUID> ascending = new ArrayList<>(listing("asc"));
+        Collections.reverse(ascending);
+
+        assertThat(ids(pagesForward("desc"))).containsExactlyElementsOf(ascending);
+    }
+}
@@ -0,0 +1,167 @@
+package com.shopper.service;
+
+import com.shopper.entity.Product;
+import com.shopper.entity.primary.SyncWatermark;
+import com.shopper.repository.CartItemRepository;
+import com.shopper.repository.ProductRepository;
+import com.shopper.repository.primary.PrimaryCartItemRepository;
+import com.shopper.repository.primary.PrimaryProductRepository;
+import com.shopper.repository.primary.PrimarySyncWatermarkRepository;
+import com.shopper.service.sync.ConflictResolver;
+import com.shopper.service.sync.StreamingTableCopier;
+import com.shopper.service.sync.SyncTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for watermark-driven incremental sync
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DatabaseSyncService Incremental Sync Unit Tests")
+class DatabaseSyncServiceTest {
+
+    private static final String WATERMARK = "products:primary-to-secondary";
+
+    @Mock
+    private PrimaryCartItemRepository primaryCartItemRepository;
+
+    @Mock
+    private PrimaryProductRepository primaryProductRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private DualDatabaseStrategy dualDatabaseStrategy;
+
+    @Mock
+    private PrimarySyncWatermarkRepository watermarkRepository;
+
+    @Mock
+    private StreamingTableCopier streamingTableCopier;
+
+    @Mock
+    private ConflictResolver conflictResolver;
+
+    @InjectMocks
+    private DatabaseSyncService databaseSyncService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(databaseSyncService, "incrementalOverlapMs", 5000L);
+    }
+
+    @Test
+    @DisplayName("Should walk every ID page by page on the first run and remember when it started")
+    void testFirstRunPagesAllIds() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(watermarkRepository.findById(WATERMARK)).thenReturn(Optional.empty());
+        when(streamingTableCopier.readIdPage(SyncTable.PRODUCTS, true, null)).thenReturn(List.of(first, second));
+        when(streamingTableCopier.readIdPage(SyncTable.PRODUCTS, true, second)).thenReturn(List.of(third));
+        when(streamingTableCopier.readIdPage(SyncTable.PRODUCTS, true, third)).thenReturn(List.of());
+        when(conflictResolver.reconcileChanged(SyncTable.PRODUCTS, List.of(first, second), true))
+                .thenReturn(resolution(0, 2));
+        when(conflictResolver.reconcileChanged(SyncTable.PRODUCTS, List.of(third), true))
+                .thenReturn(resolution(1, 0));
+        LocalDateTime before = LocalDateTime.now();
+
+        int synced = databaseSyncService.syncProductsToSecondaryIncremental();
+
+        assertThat(synced).isEqualTo(3);
+        verify(primaryProductRepository, never()).findChangedSince(any());
+        verify(primaryProductRepository, never()).findAll();
+        ArgumentCaptor<SyncWatermark> saved = ArgumentCaptor.forClass(SyncWatermark.class);
+        verify(watermarkRepository).save(saved.capture());
+        assertThat(saved.getValue().getHighWaterMark()).isBetween(before, LocalDateTime.now());
+        assertThat(saved.getValue().getLastRunRows()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should only read rows changed since the watermark, minus the overlap")
+    void testLaterRunReadsChangesOnly() {
+        LocalDateTime watermark = LocalDateTime.of(2025, 1, 2, 10, 0);
+        when(watermarkRepository.findById(WATERMARK)).thenReturn(Optional.of(
+                SyncWatermark.builder().name(WATERMARK).highWaterMark(watermark).build()));
+        when(primaryProductRepository.findChangedSince(watermark.minusSeconds(5))).thenReturn(List.of());
+
+        int synced = databaseSyncService.syncProductsToSecondaryIncremental();
+
+        assertThat(synced).isZero();
+        verifyNoInteractions(streamingTableCopier, conflictResolver);
+        ArgumentCaptor<SyncWatermark> saved = ArgumentCaptor.forClass(SyncWatermark.class);
+        verify(watermarkRepository).save(saved.capture());
+        assertThat(saved.getValue().getHighWaterMark()).isEqualTo(watermark);
+    }
+
+    @Test
+    @DisplayName("Should settle changed rows through the conflict resolver and advance to the newest change")
+    void testChangesGoThroughResolver() {
+        LocalDateTime watermark = LocalDateTime.of(2025, 1, 2, 10, 0);
+        Product older = product(watermark.plusMinutes(1));
+        Product newer = product(watermark.plusMinutes(2));
+        when(watermarkRepository.findById(WATERMARK)).thenReturn(Optional.of(
+                SyncWatermark.builder().name(WATERMARK).highWaterMark(watermark).build()));
+        when(primaryProductRepository.findChangedSince(any())).thenReturn(List.of(older, newer));
+        // The secondary had a newer version of one row, the resolver wrote it back to the primary
+        when(conflictResolver.reconcileChanged(SyncTable.PRODUCTS, List.of(older.getId(), newer.getId()), true))
+                .thenReturn(resolution(1, 1));
+
+        int synced = databaseSyncService.syncProductsToSecondaryIncremental();
+
+        assertThat(synced).isEqualTo(2);
+        ArgumentCaptor<SyncWatermark> saved = ArgumentCaptor.forClass(SyncWatermark.class);
+        verify(watermarkRepository).save(saved.capture());
+        assertThat(saved.getValue().getHighWaterMark()).isEqualTo(newer.getUpdatedAt());
+    }
+
+    @Test
+    @DisplayName("Should keep the watermark when the copy fails so the rows are retried")
+    void testFailedCopyKeepsWatermark() {
+        LocalDateTime watermark = LocalDateTime.of(2025, 1, 2, 10, 0);
+        Product changed = product(watermark.plusMinutes(1));
+        when(watermarkRepository.findById(WATERMARK)).thenReturn(Optional.of(
+                SyncWatermark.builder().name(WATERMARK).highWaterMark(watermark).build()));
+        when(primaryProductRepository.findChangedSince(any())).thenReturn(List.of(changed));
+        when(conflictResolver.reconcileChanged(SyncTable.PRODUCTS, List.of(changed.getId()), true))
+                .thenThrow(new RuntimeException("connection reset"));
+
+        assertThatThrownBy(() -> databaseSyncService.syncProductsToSecondaryIncremental())
+                .hasMessage("connection reset");
+        verify(watermarkRepository, never()).save(any());
+    }
+
+    private static ConflictResolver.Resolution resolution(long writtenToPrimary, long writtenToSecondary) {
+        return new ConflictResolver.Resolution("products", "last-writer-wins", writtenToPrimary, writtenToPrimary,
+                writtenToSecondary, 0, 0, 1, null);
+    }
+
+    private Product product(LocalDateTime updatedAt) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name("Product")
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
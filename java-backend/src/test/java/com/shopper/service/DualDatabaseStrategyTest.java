@@ -1,18 +1,32 @@
 package com.shopper.service;
 
+import com.dynatrace.oneagent.sdk.api.OneAgentSDK;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopper.service.replication.ReplicationConsistencyTracker;
+import com.shopper.service.replication.SecondaryWriteQueue;
+import com.shopper.service.routing.AdaptiveReadRouter;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import com.shopper.service.routing.HedgedReadExecutor;
+import com.shopper.service.routing.ShadowReadComparator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.Answers;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -28,7 +42,17 @@ class DualDatabaseStrategyTest {
     @Mock
     private FeatureFlagService featureFlagService;
 
-    @InjectMocks
+    @Mock
+    private SecondaryWriteQueue secondaryWriteQueue;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private OneAgentSDK oneAgentSDK;
+
+    @Spy
+    private RequestEvaluationContext requestEvaluationContext = new RequestEvaluationContext();
+
+    private DatasourceCircuitBreakers circuitBreakers;
+    private ReplicationConsistencyTracker consistencyTracker;
     private DualDatabaseStrategyImpl dualDatabaseStrategy;
 
     private static final String TEST_USER_ID = "test-user-123";
@@ -36,6 +60,16 @@ class DualDatabaseStrategyTest {
 
     @BeforeEach
     void setUp() {
+        // Real collaborators in their default, disabled configuration
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        circuitBreakers = new DatasourceCircuitBreakers(meterRegistry);
+        circuitBreakers.init();
+        consistencyTracker = new ReplicationConsistencyTracker(meterRegistry);
+        dualDatabaseStrategy = new DualDatabaseStrategyImpl(featureFlagService, requestEvaluationContext,
+                secondaryWriteQueue, new HedgedReadExecutor(meterRegistry), circuitBreakers,
+                new AdaptiveReadRouter(meterRegistry), consistencyTracker,
+                new ShadowReadComparator(new ObjectMapper(), meterRegistry), meterRegistry);
+        ReflectionTestUtils.setField(dualDatabaseStrategy, "oneAgentSDK", oneAgentSDK);
         // Set secondary database as enabled for testing
         ReflectionTestUtils.setField(dualDatabaseStrategy, "secondaryDatabaseEnabled", true);
     }
@@ -102,74 +136,126 @@ class DualDatabaseStrategyTest {
         verify(featureFlagService).getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false);
     }
 
+    @Test
+    @DisplayName("Should read an entity from the primary while a system write to it is pending")
+    void testEntityReadWaitsForSystemWrite() {
+        ReflectionTestUtils.setField(consistencyTracker, "enabled", true);
+        ReflectionTestUtils.setField(consistencyTracker, "maxHoldMs", 60_000L);
+        ReflectionTestUtils.setField(dualDatabaseStrategy, "writeBehindEnabled", true);
+        when(featureFlagService.getBooleanValue("system", USE_NEON_FLAG, false)).thenReturn(true);
+        // Queued, never applied
+        when(secondaryWriteQueue.submit(eq("products:1"), any())).thenReturn(true);
+
+        dualDatabaseStrategy.executeSecondaryWrite("system", "products:1", () -> { });
+
+        assertThat(dualDatabaseStrategy.executeEntityRead("system", "products:1", "ProductRepository.findById",
+                () -> "primary-result", () -> "secondary-result")).isEqualTo("primary-result");
+        assertThat(dualDatabaseStrategy.executeEntityRead("system", "products:2", "ProductRepository.findById",
+                () -> "primary-result", () -> "secondary-result")).isEqualTo("secondary-result");
+        assertThat(dualDatabaseStrategy.executeRead("system", () -> "primary-result", () -> "secondary-result"))
+                .isEqualTo("secondary-result");
+    }
+
     @Test
     @DisplayName("Should execute write operations on both databases")
     void testWriteToBothDatabases() {
-        when(featureFlagService.getBooleanValue("system", USE_NEON_FLAG, false))
-            .thenReturn(false);
-
+        AtomicBoolean secondaryWritten = new AtomicBoolean();
         Supplier<String> primaryOperation = () -> "primary-write-result";
-        Supplier<String> secondaryOperation = () -> "secondary-write-result";
+        Supplier<String> secondaryOperation = () -> {
+            secondaryWritten.set(true);
+            return "secondary-write-result";
+        };
 
         String result = dualDatabaseStrategy.executeWrite(primaryOperation, secondaryOperation);
 
         assertThat(result).isEqualTo("primary-write-result");
+        assertThat(secondaryWritten).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should write to the secondary only after the primary transaction commits")
+    void testSecondaryWriteWaitsForCommit() {
+        AtomicBoolean secondaryWritten = new AtomicBoolean();
+        Supplier<String> secondaryOperation = () -> {
+            secondaryWritten.set(true);
+            return "secondary-write-result";
+        };
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dualDatabaseStrategy.executeWrite(() -> "primary-write-result", secondaryOperation);
+            assertThat(secondaryWritten).isFalse();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(secondaryWritten).isTrue();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not write to the secondary when the primary transaction rolls back")
+    void testNoSecondaryWriteOnRollback() {
+        AtomicBoolean secondaryWritten = new AtomicBoolean();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dualDatabaseStrategy.executeWrite(() -> "primary-write-result", () -> {
+                secondaryWritten.set(true);
+                return "secondary-write-result";
+            });
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(secondaryWritten).isFalse();
     }
 
     @Test
     @DisplayName("Should execute write operations with user context")
     void testWriteWithUserContext() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(true);
-
         Supplier<String> primaryOperation = () -> "primary-write-result";
         Supplier<String> secondaryOperation = () -> "secondary-write-result";
 
         String result = dualDatabaseStrategy.executeWriteWithUser(TEST_USER_ID, primaryOperation, secondaryOperation);
 
-        // When feature flag is true, should return secondary result
-        assertThat(result).isEqualTo("secondary-write-result");
-        verify(featureFlagService).getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false);
+        // Writes return the primary result, the source of truth for IDs, whatever the read flag says
+        assertThat(result).isEqualTo("primary-write-result");
     }
 
     @Test
-    @DisplayName("Should return primary result when feature flag is false for writes")
+    @DisplayName("Should return primary result without evaluating the read flag for writes")
     void testWriteReturnsPrimaryWhenFeatureFlagFalse() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(false);
-
         Supplier<String> primaryOperation = () -> "primary-write-result";
         Supplier<String> secondaryOperation = () -> "secondary-write-result";
 
         String result = dualDatabaseStrategy.executeWriteWithUser(TEST_USER_ID, primaryOperation, secondaryOperation);
 
         assertThat(result).isEqualTo("primary-write-result");
-        verify(featureFlagService).getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false);
+        verifyNoInteractions(featureFlagService);
     }
 
     @Test
-    @DisplayName("Should handle primary write failure gracefully")
+    @DisplayName("Should fail a write the primary rejects without writing the secondary")
     void testHandlePrimaryWriteFailure() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(true);
-
+        AtomicBoolean secondaryWritten = new AtomicBoolean();
         Supplier<String> primaryOperation = () -> {
             throw new RuntimeException("Primary database write failed");
         };
-        Supplier<String> secondaryOperation = () -> "secondary-write-result";
-
-        String result = dualDatabaseStrategy.executeWriteWithUser(TEST_USER_ID, primaryOperation, secondaryOperation);
+        Supplier<String> secondaryOperation = () -> {
+            secondaryWritten.set(true);
+            return "secondary-write-result";
+        };
 
-        // Should still return secondary result even if primary fails
-        assertThat(result).isEqualTo("secondary-write-result");
+        assertThatThrownBy(() ->
+            dualDatabaseStrategy.executeWriteWithUser(TEST_USER_ID, primaryOperation, secondaryOperation)
+        ).hasMessageContaining("Primary database operation failed");
+        assertThat(secondaryWritten).isFalse();
     }
 
     @Test
-    @DisplayName("Should throw exception when primary write fails and feature flag is false")
+    @DisplayName("Should throw exception when primary write fails")
     void testThrowExceptionWhenPrimaryFailsAndFeatureFlagFalse() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(false);
-
         Supplier<String> primaryOperation = () -> {
             throw new RuntimeException("Primary database write failed");
         };
@@ -184,9 +270,6 @@ class DualDatabaseStrategyTest {
     @Test
     @DisplayName("Should handle secondary write failure gracefully")
     void testHandleSecondaryWriteFailure() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(false);
-
         Supplier<String> primaryOperation = () -> "primary-write-result";
         Supplier<String> secondaryOperation = () -> {
             throw new RuntimeException("Secondary database write failed");
@@ -194,16 +277,13 @@ class DualDatabaseStrategyTest {
 
         String result = dualDatabaseStrategy.executeWriteWithUser(TEST_USER_ID, primaryOperation, secondaryOperation);
 
-        // Should return primary result when feature flag is false
+        // The secondary never fails the write
         assertThat(result).isEqualTo("primary-write-result");
     }
 
     @Test
     @DisplayName("Should throw exception when both writes fail")
     void testThrowExceptionWhenBothWritesFail() {
-        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
-            .thenReturn(false);
-
         Supplier<String> primaryOperation = () -> {
             throw new RuntimeException("Primary database write failed");
         };
@@ -318,4 +398,33 @@ class DualDatabaseStrategyTest {
         verify(featureFlagService).getBooleanValue(user1, USE_NEON_FLAG, false);
         verify(featureFlagService).getBooleanValue(user2, USE_NEON_FLAG, false);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should read from primary while the secondary circuit is open")
+    void testPrimaryWhileSecondaryCircuitOpen() {
+        ReflectionTestUtils.setField(circuitBreakers, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreakers, "windowSize", 2);
+        ReflectionTestUtils.setField(circuitBreakers, "minimumCalls", 2);
+        ReflectionTestUtils.setField(circuitBreakers, "failureRateThreshold", 50.0);
+        ReflectionTestUtils.setField(circuitBreakers, "slowCallThresholdMs", 2000L);
+        ReflectionTestUtils.setField(circuitBreakers, "slowCallRateThreshold", 100.0);
+        ReflectionTestUtils.setField(circuitBreakers, "openDurationMs", 60_000L);
+        ReflectionTestUtils.setField(circuitBreakers, "halfOpenCalls", 1);
+        circuitBreakers.init();
+        when(featureFlagService.getBooleanValue(TEST_USER_ID, USE_NEON_FLAG, false))
+            .thenReturn(true);
+        AtomicBoolean secondaryCalled = new AtomicBoolean();
+        Supplier<String> failingSecondary = () -> {
+            secondaryCalled.set(true);
+            throw new RuntimeException("Secondary database connection failed");
+        };
+
+        dualDatabaseStrategy.executeRead(TEST_USER_ID, () -> "primary-result", failingSecondary);
+        dualDatabaseStrategy.executeRead(TEST_USER_ID, () -> "primary-result", failingSecondary);
+        secondaryCalled.set(false);
+        String result = dualDatabaseStrategy.executeRead(TEST_USER_ID, () -> "primary-result", failingSecondary);
+
+        assertThat(result).isEqualTo("primary-result");
+        assertThat(secondaryCalled).isFalse();
+    }
+}
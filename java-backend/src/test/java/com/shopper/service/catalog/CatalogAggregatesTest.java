@@ -0,0 +1,168 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the incrementally maintained catalog aggregates
+ */
+@DisplayName("CatalogAggregates Unit Tests")
+class CatalogAggregatesTest {
+
+    private final Product lamp = product("home", 4, "10.00");
+    private final Product chair = product("home", 0, "45.50");
+    private final Product spade = product("garden", 2, "12.25");
+
+    private ProductRepository productRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogAggregates aggregates;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findStockLevels()).thenReturn(rows(lamp, chair, spade));
+        meterRegistry = new SimpleMeterRegistry();
+        aggregates = new CatalogAggregates(productRepository, meterRegistry);
+        aggregates.init();
+        aggregates.rebuild();
+    }
+
+    private static Product product(String category, int stock, String price) {
+        return product(UUID.randomUUID(), category, stock, new BigDecimal(price));
+    }
+
+    private static Product product(UUID id, String category, int stock, BigDecimal price) {
+        return Product.builder()
+                .id(id)
+                .name("Item")
+                .category(category)
+                .stockQuantity(stock)
+                .price(price)
+                .build();
+    }
+
+    private static List<Object[]> rows(Product... products) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Product product : products) {
+            rows.add(new Object[] {product.getId(), product.getCategory(), product.getStockQuantity(), product.getPrice(),
+                    product.getUpdatedAt()});
+        }
+        return rows;
+    }
+
+    private static Product copy(Product product, String category, int stock) {
+        return product(product.getId(), category, stock, product.getPrice());
+    }
+
+    @Test
+    @DisplayName("Should compute counts, per-category counts and stock value")
+    void testComputesAggregates() {
+        CatalogAggregates.Stats stats = aggregates.current();
+
+        assertThat(stats.totalProducts()).isEqualTo(3);
+        assertThat(stats.inStockProducts()).isEqualTo(2);
+        assertThat(stats.outOfStockProducts()).isEqualTo(1);
+        assertThat(stats.stockValue()).isEqualByComparingTo("64.50");
+        assertThat(stats.categoryNames()).containsExactly("garden", "home");
+        assertThat(stats.categories().get("home")).isEqualTo(new CatalogAggregates.CategoryCounts(2, 1));
+        assertThat(meterRegistry.get("shopper.catalog.products").tag("stock", "out").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should apply stock decrements, moves and deletes without querying")
+    void testAppliesChanges() {
+        Product soldOut = copy(lamp, "home", 0);
+        Product moved = copy(chair, "garden", 3);
+
+        aggregates.onProductChanged(ProductChangedEvent.saved(List.of(soldOut, moved), List.of("home"), true));
+        aggregates.onProductChanged(ProductChangedEvent.removed(spade));
+
+        CatalogAggregates.Stats stats = aggregates.current();
+        assertThat(stats.totalProducts()).isEqualTo(2);
+        assertThat(stats.inStockProducts()).isEqualTo(1);
+        assertThat(stats.stockValue()).isEqualByComparingTo("136.50");
+        assertThat(stats.categories())
+                .containsEntry("garden", new CatalogAggregates.CategoryCounts(1, 1))
+                .containsEntry("home", new CatalogAggregates.CategoryCounts(1, 0));
+        verify(productRepository, times(1)).findStockLevels();
+    }
+
+    @Test
+    @DisplayName("Should give the same result when a change is applied twice")
+    void testChangesAreIdempotent() {
+        Product created = product("kitchen", 5, "2.00");
+        ProductChangedEvent event = ProductChangedEvent.saved(List.of(created, copy(spade, "garden", 1)), List.of(), true);
+
+        aggregates.onProductChanged(event);
+        aggregates.onProductChanged(event);
+
+        CatalogAggregates.Stats stats = aggregates.current();
+        assertThat(stats.totalProducts()).isEqualTo(4);
+        assertThat(stats.stockValue()).isEqualByComparingTo("62.25");
+    }
+
+    @Test
+    @DisplayName("Should ignore a late event that carries an older version of a product")
+    void testIgnoresOlderVersion() {
+        LocalDateTime updatedAt = LocalDateTime.of(2026, 3, 1, 12, 0);
+        Product restocked = copy(chair, "home", 2);
+        restocked.setUpdatedAt(updatedAt);
+        Product stale = copy(chair, "home", 0);
+        stale.setUpdatedAt(updatedAt.minusSeconds(1));
+
+        aggregates.onProductChanged(ProductChangedEvent.saved(List.of(restocked), List.of(), false));
+        aggregates.onProductChanged(ProductChangedEvent.saved(List.of(stale), List.of(), false));
+
+        CatalogAggregates.Stats stats = aggregates.current();
+        assertThat(stats.inStockProducts()).isEqualTo(3);
+        assertThat(stats.stockValue()).isEqualByComparingTo("155.50");
+    }
+
+    @Test
+    @DisplayName("Should keep changes committed while the catalog is being read")
+    void testChangesDuringRebuild() {
+        Product sold = copy(lamp, "home", 1);
+        when(productRepository.findStockLevels()).thenAnswer(invocation -> {
+            aggregates.onProductChanged(ProductChangedEvent.saved(List.of(sold), List.of(), false));
+            return rows(lamp, chair, spade);
+        });
+
+        aggregates.rebuild();
+
+        assertThat(aggregates.current().stockValue()).isEqualByComparingTo("34.50");
+    }
+
+    @Test
+    @DisplayName("Should recompute when the whole catalog is replaced")
+    void testCatalogReplaced() {
+        when(productRepository.findStockLevels()).thenReturn(rows(spade));
+
+        aggregates.onProductChanged(ProductChangedEvent.catalogReplaced());
+
+        assertThat(aggregates.current().totalProducts()).isEqualTo(1);
+        assertThat(aggregates.current().categoryNames()).containsExactly("garden");
+    }
+
+    @Test
+    @DisplayName("Should fail when the aggregates could never be computed")
+    void testUnavailable() {
+        CatalogAggregates unbuilt = new CatalogAggregates(productRepository, new SimpleMeterRegistry());
+        when(productRepository.findStockLevels()).thenThrow(new IllegalStateException("database is locked"));
+
+        assertThatThrownBy(unbuilt::current).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,81 @@
+package com.shopper.service.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopper.interceptor.CatalogAvailabilityInterceptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for turning catalog reads away while the catalog is replaced
+ */
+@DisplayName("CatalogAvailability Unit Tests")
+class CatalogAvailabilityTest {
+
+    private CatalogAvailability availability;
+    private CatalogAvailabilityInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        availability = new CatalogAvailability();
+        interceptor = new CatalogAvailabilityInterceptor(availability, new ObjectMapper().findAndRegisterModules());
+    }
+
+    private MockHttpServletResponse get() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean handled = interceptor.preHandle(new MockHttpServletRequest("GET", "/products"), response, null);
+        assertThat(handled).isEqualTo(response.getStatus() == 200);
+        return response;
+    }
+
+    @Test
+    @DisplayName("Should answer reads with 503 while a replacement runs and serve them once it succeeds")
+    void testUnavailableDuringReplacement() throws Exception {
+        assertThat(get().getStatus()).isEqualTo(200);
+
+        assertThat(availability.beginReplacement()).isTrue();
+        MockHttpServletResponse response = get();
+
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("5");
+        assertThat(response.getContentAsString()).contains("REPLACING");
+
+        availability.replacementSucceeded();
+        assertThat(get().getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should refuse a second replacement while one runs")
+    void testOneReplacementAtATime() {
+        assertThat(availability.beginReplacement()).isTrue();
+
+        assertThat(availability.beginReplacement()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep the catalog unavailable after a failed replacement until one succeeds")
+    void testUnavailableAfterFailure() throws Exception {
+        availability.beginReplacement();
+        availability.replacementFailed(new IllegalStateException("disk full"));
+
+        assertThat(get().getStatus()).isEqualTo(503);
+        assertThat(availability.getStatus()).containsEntry("state", "FAILED");
+
+        assertThat(availability.beginReplacement()).isTrue();
+        availability.replacementSucceeded();
+        assertThat(availability.isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should let writes through while the catalog is unavailable")
+    void testWritesPass() throws Exception {
+        availability.beginReplacement();
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("POST", "/products"),
+                new MockHttpServletResponse(), null)).isTrue();
+    }
+}
@@ -0,0 +1,188 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the product catalog cache
+ */
+@DisplayName("ProductCatalogCache Unit Tests")
+class ProductCatalogCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductCatalogCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProductCatalogCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 3);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        cache.init();
+    }
+
+    private static Product product(String category, int stock) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name("Lamp")
+                .price(new BigDecimal("19.99"))
+                .category(category)
+                .stockQuantity(stock)
+                .build();
+    }
+
+    private List<Product> load(Product... products) {
+        loads.incrementAndGet();
+        return List.of(products);
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
+
+    @Test
+    @DisplayName("Should load once and then serve hits")
+    void testHitsAfterFirstLoad() {
+        Product lamp = product("home", 5);
+
+        cache.getAllProducts(() -> load(lamp));
+        List<Product> cached = cache.getAllProducts(() -> load(lamp));
+
+        assertThat(cached).containsExactly(lamp);
+        assertThat(loads).hasValue(1);
+        assertThat(count("shopper.catalog.cache.requests", "result", "hit")).isEqualTo(1);
+        assertThat(count("shopper.catalog.cache.requests", "result", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entry when full")
+    void testEvictsLeastRecentlyUsed() {
+        cache.getProductsByCategory("home", () -> load());
+        cache.getProductsByCategory("garden", () -> load());
+        cache.getProductsByCategory("kitchen", () -> load());
+        cache.getProductsByCategory("home", () -> load());
+        cache.getCategories(() -> List.of("home", "garden", "kitchen", "office"));
+
+        cache.getProductsByCategory("home", () -> load());
+        cache.getProductsByCategory("garden", () -> load());
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(loads).hasValue(4);
+        assertThat(count("shopper.catalog.cache.evictions", "cause", "size")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should reload entries after they expire")
+    void testExpiry() {
+        ReflectionTestUtils.setField(cache, "ttlMs", -1L);
+
+        cache.getAllProducts(() -> load());
+        cache.getAllProducts(() -> load());
+
+        assertThat(loads).hasValue(2);
+        assertThat(count("shopper.catalog.cache.evictions", "cause", "expired")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should refresh the saved product and drop only the lists it appears in")
+    void testPreciseInvalidation() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        Product lamp = product("home", 5);
+        cache.getProduct(lamp.getId(), () -> Optional.of(lamp));
+        cache.getAllProducts(() -> load(lamp));
+        cache.getProductsByCategory("home", () -> load(lamp));
+        cache.getCategories(() -> List.of("home"));
+
+        Product sold = product("home", 4);
+        sold.setId(lamp.getId());
+        cache.onProductChanged(ProductChangedEvent.saved(List.of(sold), List.of(), false));
+
+        assertThat(cache.getProduct(lamp.getId(), Optional::empty)).contains(sold);
+        assertThat(cache.getCategories(() -> List.of("other"))).containsExactly("home");
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep the cached product when a late event carries an older version")
+    void testIgnoresOlderVersion() {
+        LocalDateTime updatedAt = LocalDateTime.of(2026, 3, 1, 12, 0);
+        Product newer = product("home", 4);
+        newer.setUpdatedAt(updatedAt);
+        Product older = product("home", 5);
+        older.setId(newer.getId());
+        older.setUpdatedAt(updatedAt.minusSeconds(1));
+
+        cache.onProductChanged(ProductChangedEvent.saved(List.of(newer), List.of(), false));
+        cache.onProductChanged(ProductChangedEvent.saved(List.of(older), List.of(), false));
+
+        assertThat(cache.getProduct(newer.getId(), Optional::empty)).contains(newer);
+    }
+
+    @Test
+    @DisplayName("Should not let callers change cached products through stored or returned instances")
+    void testCopiesProducts() {
+        Product lamp = product("home", 5);
+        cache.getProduct(lamp.getId(), () -> Optional.of(lamp));
+        cache.getAllProducts(() -> load(lamp));
+
+        lamp.setStockQuantity(0);
+        cache.getProduct(lamp.getId(), Optional::empty).orElseThrow().setPrice(BigDecimal.ONE);
+        cache.getAllProducts(() -> load()).get(0).setName("Changed");
+
+        Product cached = cache.getProduct(lamp.getId(), Optional::empty).orElseThrow();
+        assertThat(cached).isNotSameAs(cache.getProduct(lamp.getId(), Optional::empty).orElseThrow());
+        assertThat(cached.getStockQuantity()).isEqualTo(5);
+        assertThat(cached.getPrice()).isEqualTo(new BigDecimal("19.99"));
+        assertThat(cache.getAllProducts(() -> load()).get(0).getName()).isEqualTo("Lamp");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should not store a load that overlapped an invalidation")
+    void testDiscardsLoadRacingInvalidation() {
+        Product lamp = product("home", 5);
+
+        cache.getAllProducts(() -> {
+            cache.onProductChanged(ProductChangedEvent.removed(lamp));
+            return load(lamp);
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not cache absent products")
+    void testAbsentProductNotCached() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(cache.getProduct(id, Optional::empty)).isEmpty();
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop everything when the catalog is replaced")
+    void testCatalogReplaced() {
+        cache.getAllProducts(() -> load());
+        cache.getCategories(() -> List.of("home"));
+
+        cache.onProductChanged(ProductChangedEvent.catalogReplaced());
+
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,98 @@
+package com.shopper.service.catalog;
+
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the catalog version behind conditional catalog reads
+ */
+@DisplayName("ProductCatalogVersion Unit Tests")
+class ProductCatalogVersionTest {
+
+    private ProductRepository productRepository;
+    private ProductCatalogVersion catalogVersion;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        catalogVersion = new ProductCatalogVersion(new SimpleMeterRegistry(), productRepository);
+        catalogVersion.init();
+    }
+
+    private boolean notModified(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        request.addHeader("If-None-Match", ifNoneMatch);
+        ProductCatalogVersion.Snapshot version = catalogVersion.current();
+        return new ServletWebRequest(request, new MockHttpServletResponse())
+                .checkNotModified(catalogVersion.etag(version), version.changedAt());
+    }
+
+    @Test
+    @DisplayName("Should keep the same strong ETag while the catalog is unchanged")
+    void testStableWhileUnchanged() {
+        String etag = catalogVersion.etag(catalogVersion.current());
+
+        assertThat(etag).matches("\"[0-9a-z]+-1\"");
+        assertThat(catalogVersion.etag(catalogVersion.current())).isEqualTo(etag);
+        assertThat(notModified(etag)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should move on with every product change")
+    void testAdvancesOnProductChange() {
+        String etag = catalogVersion.etag(catalogVersion.current());
+
+        catalogVersion.onProductChanged(ProductChangedEvent.catalogReplaced());
+
+        assertThat(catalogVersion.current().version()).isEqualTo(2);
+        assertThat(notModified(etag)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep the version through bypass checks that find the catalog unchanged")
+    void testStableThroughUnchangedChecks() {
+        String etag = catalogVersion.etag(catalogVersion.current());
+        when(productRepository.readChangeFingerprint()).thenReturn("3@2026-03-01T12:00");
+
+        catalogVersion.checkForBypassWrites();
+        catalogVersion.checkForBypassWrites();
+
+        assertThat(catalogVersion.current().version()).isEqualTo(1);
+        assertThat(notModified(etag)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should move on when a bypass check finds products changed without an event")
+    void testAdvancesOnBypassWrite() {
+        ProductCatalogVersion.Snapshot first = catalogVersion.current();
+        when(productRepository.readChangeFingerprint()).thenReturn("3@2026-03-01T12:00", "2@2026-03-01T12:00");
+
+        catalogVersion.checkForBypassWrites();
+        catalogVersion.checkForBypassWrites();
+
+        ProductCatalogVersion.Snapshot second = catalogVersion.current();
+        assertThat(second.version()).isEqualTo(first.version() + 1);
+        assertThat(second.changedAt()).isGreaterThanOrEqualTo(first.changedAt());
+    }
+
+    @Test
+    @DisplayName("Should not reuse versions of an earlier run")
+    void testEpochDiffersAcrossInstances() throws InterruptedException {
+        String etag = catalogVersion.etag(catalogVersion.current());
+        Thread.sleep(2);
+
+        ProductCatalogVersion restarted = new ProductCatalogVersion(new SimpleMeterRegistry(), productRepository);
+
+        assertThat(restarted.etag(restarted.current())).isNotEqualTo(etag);
+    }
+}
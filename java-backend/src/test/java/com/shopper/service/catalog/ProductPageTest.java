@@ -0,0 +1,112 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for product listing pages and their cursors
+ */
+@DisplayName("ProductPage Unit Tests")
+class ProductPageTest {
+
+    private final Product a = product("Armchair: oak", "49.99");
+    private final Product b = product("Bookshelf", "89.00");
+    private final Product c = product("Chair", "19.99");
+
+    private static Product product(String name, String price) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .price(new BigDecimal(price))
+                .category("home")
+                .createdAt(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should round trip cursors for every sort key")
+    void testCursorRoundTrip() {
+        for (ProductPageQuery.SortKey key : ProductPageQuery.SortKey.values()) {
+            ProductPageQuery query = new ProductPageQuery(key, Sort.Direction.DESC, null, null, null, false, 2, null);
+            ProductCursor cursor = ProductCursor.before(query, a);
+
+            ProductCursor decoded = ProductCursor.decode(cursor.encode());
+
+            assertThat(decoded).isEqualTo(cursor);
+            assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+        }
+    }
+
+    @Test
+    @DisplayName("Should offer only a next cursor on the first page")
+    void testFirstPage() {
+        ProductPageQuery query = ProductPageQuery.of(null, null, null, null, null, null, null, 2);
+
+        ProductPage page = ProductPage.of(query, List.of(a, b, c));
+
+        assertThat(page.products()).containsExactly(a, b);
+        assertThat(page.previousCursor()).isNull();
+        ProductCursor next = ProductCursor.decode(page.nextCursor());
+        assertThat(next.id()).isEqualTo(b.getId());
+        assertThat(next.value()).isEqualTo("Bookshelf");
+        assertThat(next.backward()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep the sort of the cursor and stop at the last page")
+    void testLastPage() {
+        String cursor = ProductCursor.after(ProductPageQuery.of("price", "desc", null, null, null, null, null, 2), b).encode();
+        ProductPageQuery query = ProductPageQuery.of(null, null, cursor, null, null, null, null, 2);
+
+        ProductPage page = ProductPage.of(query, List.of(a, c));
+
+        assertThat(query.sortKey()).isEqualTo(ProductPageQuery.SortKey.PRICE);
+        assertThat(query.sort().getOrderFor("price").isDescending()).isTrue();
+        assertThat(page.products()).containsExactly(a, c);
+        assertThat(page.nextCursor()).isNull();
+        assertThat(ProductCursor.decode(page.previousCursor()).id()).isEqualTo(a.getId());
+    }
+
+    @Test
+    @DisplayName("Should read backward pages in reverse and return them in the requested order")
+    void testBackwardPage() {
+        String cursor = ProductCursor.before(ProductPageQuery.of(null, null, null, null, null, null, null, 2), c).encode();
+        ProductPageQuery query = ProductPageQuery.of(null, null, cursor, null, null, null, null, 1);
+
+        ProductPage page = ProductPage.of(query, List.of(b, a));
+
+        assertThat(query.sort().getOrderFor("name").isDescending()).isTrue();
+        assertThat(query.sort().getOrderFor("id").isDescending()).isTrue();
+        assertThat(page.products()).containsExactly(b);
+        assertThat(ProductCursor.decode(page.previousCursor()).id()).isEqualTo(b.getId());
+        assertThat(ProductCursor.decode(page.nextCursor()).id()).isEqualTo(b.getId());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid cursors and parameters")
+    void testValidation() {
+        String nameCursor = ProductCursor.after(ProductPageQuery.of("name", null, null, null, null, null, null, 2), a).encode();
+
+        assertThatThrownBy(() -> ProductPageQuery.of("price", null, nameCursor, null, null, null, null, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("different sort");
+        assertThatThrownBy(() -> ProductPageQuery.of(null, null, "not-a-cursor", null, null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductPageQuery.of("stock", null, null, null, null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductPageQuery.of(null, null, null, null, BigDecimal.TEN, BigDecimal.ONE, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductPageQuery.of(null, null, null, null, null, null, null, ProductPageQuery.MAX_LIMIT + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,131 @@
+package com.shopper.service.catalog;
+
+import com.shopper.entity.Product;
+import com.shopper.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the product search index
+ */
+@DisplayName("ProductSearchIndex Unit Tests")
+class ProductSearchIndexTest {
+
+    private final Product deskLamp = product("Desk Lamp", "Adjustable LED lamp for the home office");
+    private final Product floorLamp = product("Floor lamp", "Tall lamp with a linen shade");
+    private final Product desk = product("Standing desk", "Electric desk, lamp not included");
+    private final Product cafe = product("Café table", "Round bistro table");
+
+    private ProductRepository productRepository;
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findAll()).thenReturn(List.of(deskLamp, floorLamp, desk, cafe));
+        index = new ProductSearchIndex(productRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "nameWeight", 3.0);
+        ReflectionTestUtils.setField(index, "maxResults", 50);
+        index.init();
+        index.rebuild();
+    }
+
+    private static Product product(String name, String description) {
+        return Product.builder().id(UUID.randomUUID()).name(name).description(description).category("home").build();
+    }
+
+    @Test
+    @DisplayName("Should rank name matches above description matches")
+    void testRanksNameMatchesFirst() {
+        List<Product> results = index.search("lamp", ProductSearchIndex.Field.ALL);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.subList(0, 2)).containsExactlyInAnyOrder(deskLamp, floorLamp);
+        assertThat(results.get(2)).isEqualTo(desk);
+    }
+
+    @Test
+    @DisplayName("Should require every word and match word prefixes")
+    void testAllWordsWithPrefixes() {
+        assertThat(index.search("lam des", ProductSearchIndex.Field.NAME)).containsExactly(deskLamp);
+        assertThat(index.search("stand", ProductSearchIndex.Field.NAME)).containsExactly(desk);
+        assertThat(index.search("lamp sofa", ProductSearchIndex.Field.ALL)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should search only the requested field")
+    void testFieldRestriction() {
+        assertThat(index.search("linen", ProductSearchIndex.Field.NAME)).isEmpty();
+        assertThat(index.search("linen", ProductSearchIndex.Field.DESCRIPTION)).containsExactly(floorLamp);
+    }
+
+    @Test
+    @DisplayName("Should ignore case and accents")
+    void testNormalization() {
+        assertThat(index.search("CAFE", ProductSearchIndex.Field.NAME)).containsExactly(cafe);
+        assertThat(ProductSearchIndex.tokenize("Café-Table, LED")).containsExactly("cafe", "table", "led");
+    }
+
+    @Test
+    @DisplayName("Should apply product changes incrementally")
+    void testIncrementalUpdates() {
+        Product renamed = product("Reading light", "Clip-on light");
+        renamed.setId(floorLamp.getId());
+        Product sofa = product("Linen sofa", "Three seats");
+
+        index.onProductChanged(ProductChangedEvent.saved(List.of(renamed, sofa), List.of(), true));
+        index.onProductChanged(ProductChangedEvent.removed(cafe));
+
+        assertThat(index.search("lamp", ProductSearchIndex.Field.NAME)).containsExactly(deskLamp);
+        assertThat(index.search("light", ProductSearchIndex.Field.NAME)).containsExactly(renamed);
+        assertThat(index.search("linen", ProductSearchIndex.Field.ALL)).containsExactly(sofa);
+        assertThat(index.search("table", ProductSearchIndex.Field.ALL)).isEmpty();
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should keep changes committed while the catalog is being read")
+    void testChangesDuringRebuild() {
+        Product sofa = product("Linen sofa", "Three seats");
+        when(productRepository.findAll()).thenAnswer(invocation -> {
+            index.onProductChanged(ProductChangedEvent.saved(List.of(sofa), List.of(), true));
+            index.onProductChanged(ProductChangedEvent.removed(cafe));
+            return List.of(deskLamp, floorLamp, desk, cafe);
+        });
+
+        index.rebuild();
+
+        assertThat(index.search("sofa", ProductSearchIndex.Field.NAME)).containsExactly(sofa);
+        assertThat(index.search("table", ProductSearchIndex.Field.ALL)).isEmpty();
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should not replace a product with an older version from a late event")
+    void testIgnoresOlderVersion() {
+        LocalDateTime updatedAt = LocalDateTime.of(2026, 3, 1, 12, 0);
+        Product renamed = product("Reading light", "Clip-on light");
+        renamed.setId(floorLamp.getId());
+        renamed.setUpdatedAt(updatedAt);
+        Product stale = product("Floor lamp", "Tall lamp with a linen shade");
+        stale.setId(floorLamp.getId());
+        stale.setUpdatedAt(updatedAt.minusSeconds(1));
+
+        index.onProductChanged(ProductChangedEvent.saved(List.of(renamed), List.of(), false));
+        index.onProductChanged(ProductChangedEvent.saved(List.of(stale), List.of(), false));
+
+        assertThat(index.search("light", ProductSearchIndex.Field.NAME)).containsExactly(renamed);
+    }
+}
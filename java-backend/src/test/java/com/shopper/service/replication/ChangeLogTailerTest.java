@@ -0,0 +1,223 @@
+package com.shopper.service.replication;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import com.shopper.service.DualDatabaseStrategy;
+import com.shopper.service.routing.DatasourceCircuitBreaker;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import com.shopper.service.sync.StreamingTableCopier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the change data capture triggers and for applying the change log to a mocked secondary,
+ * run against an in-memory SQLite primary
+ */
+@DisplayName("ChangeLogTailer Unit Tests")
+class ChangeLogTailerTest {
+
+    private static final String FIRST_ID = "00000000-0000-0000-0000-000000000001";
+    private static final String SECOND_ID = "00000000-0000-0000-0000-000000000002";
+    private static final String THIRD_ID = "00000000-0000-0000-0000-000000000003";
+
+    private SingleConnectionDataSource dataSource;
+    private SingleConnectionDataSource secondaryDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DatabaseBatchWriter batchWriter;
+    private ChangeLogTailer tailer;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        secondaryDataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id TEXT PRIMARY KEY, username TEXT, email TEXT UNIQUE, password TEXT,"
+                + " role TEXT, created_at INTEGER, updated_at INTEGER)");
+        jdbcTemplate.execute("CREATE TABLE products (id TEXT PRIMARY KEY, name TEXT, description TEXT, price REAL,"
+                + " image_url TEXT, category TEXT, stock_quantity INTEGER, created_at INTEGER, updated_at INTEGER)");
+
+        StreamingTableCopier copier = new StreamingTableCopier();
+        batchWriter = mock(DatabaseBatchWriter.class);
+        ReflectionTestUtils.setField(copier, "primaryDataSource", dataSource);
+        ReflectionTestUtils.setField(copier, "secondaryDataSource", secondaryDataSource);
+        ReflectionTestUtils.setField(copier, "batchWriter", batchWriter);
+        ReflectionTestUtils.setField(copier, "pageSize", 100);
+        copier.init();
+
+        DualDatabaseStrategy dualDatabaseStrategy = mock(DualDatabaseStrategy.class);
+        when(dualDatabaseStrategy.isSecondaryDatabaseEnabled()).thenReturn(true);
+        DatasourceCircuitBreakers circuitBreakers = mock(DatasourceCircuitBreakers.class);
+        when(circuitBreakers.secondary()).thenReturn(
+                new DatasourceCircuitBreaker("secondary", false, 10, 5, 50, 1000, 100, 1000, 1, state -> { }));
+
+        tailer = new ChangeLogTailer();
+        ReflectionTestUtils.setField(tailer, "primaryDataSource", dataSource);
+        ReflectionTestUtils.setField(tailer, "streamingTableCopier", copier);
+        ReflectionTestUtils.setField(tailer, "batchWriter", batchWriter);
+        ReflectionTestUtils.setField(tailer, "dualDatabaseStrategy", dualDatabaseStrategy);
+        ReflectionTestUtils.setField(tailer, "circuitBreakers", circuitBreakers);
+        ReflectionTestUtils.setField(tailer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tailer, "cdcEnabled", true);
+        ReflectionTestUtils.setField(tailer, "batchSize", 500);
+        tailer.init();
+        tailer.installTriggers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+        secondaryDataSource.destroy();
+    }
+
+    private List<Map<String, Object>> changes() {
+        return jdbcTemplate.queryForList("SELECT table_name, row_id, operation FROM change_log ORDER BY seq");
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private void insertUser(String id, String email) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, role) VALUES (?, ?, ?, 'USER')", id, email, email);
+    }
+
+    private static List<Object[]> rowsWithId(String id) {
+        return argThat(rows -> rows != null && rows.stream().anyMatch(row -> UUID.fromString(id).equals(row[0])));
+    }
+
+    @Test
+    @DisplayName("Should log inserts, updates and deletes in order")
+    void shouldLogChangesInOrder() {
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Lamp')", FIRST_ID);
+        jdbcTemplate.update("UPDATE products SET name = 'Desk lamp' WHERE id = ?", FIRST_ID);
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", FIRST_ID);
+
+        assertThat(changes()).extracting(row -> row.get("operation"))
+                .containsExactly("INSERT", "UPDATE", "DELETE");
+        assertThat(changes()).allSatisfy(row -> {
+            assertThat(row.get("table_name")).isEqualTo("products");
+            assertThat(row.get("row_id")).isEqualTo(FIRST_ID);
+        });
+    }
+
+    @Test
+    @DisplayName("Should log the old ID as deleted when an update changes the ID")
+    void shouldLogOldIdWhenIdChanges() {
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Lamp')", FIRST_ID);
+        jdbcTemplate.update("UPDATE products SET id = ? WHERE id = ?", SECOND_ID, FIRST_ID);
+
+        List<Map<String, Object>> changes = changes();
+        assertThat(changes).hasSize(3);
+        assertThat(changes.get(1)).containsEntry("row_id", SECOND_ID).containsEntry("operation", "UPDATE");
+        assertThat(changes.get(2)).containsEntry("row_id", FIRST_ID).containsEntry("operation", "DELETE");
+    }
+
+    @Test
+    @DisplayName("Should keep increasing sequence numbers after the log is pruned")
+    void shouldKeepSequenceAfterPrune() {
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Lamp')", FIRST_ID);
+        Long firstSeq = jdbcTemplate.queryForObject("SELECT MAX(seq) FROM change_log", Long.class);
+        jdbcTemplate.update("DELETE FROM change_log WHERE seq <= ?", firstSeq);
+
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Chair')", SECOND_ID);
+
+        Long nextSeq = jdbcTemplate.queryForObject("SELECT MAX(seq) FROM change_log", Long.class);
+        assertThat(nextSeq).isGreaterThan(firstSeq);
+    }
+
+    @Test
+    @DisplayName("Should delete a removed row before upserting the row that took over its unique email")
+    void shouldDeleteBeforeUpsert() {
+        insertUser(FIRST_ID, "alice@example.com");
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", FIRST_ID);
+        insertUser(SECOND_ID, "alice@example.com");
+
+        tailer.tail();
+
+        InOrder inOrder = inOrder(batchWriter);
+        inOrder.verify(batchWriter).deleteByIdsFromSecondary("users", List.of(UUID.fromString(FIRST_ID)));
+        inOrder.verify(batchWriter).upsertIntoSecondary(eq("users"), anyList(), rowsWithId(SECOND_ID));
+        assertThat(count("change_log")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should delete children before parents and upsert parents before children")
+    void shouldOrderTables() {
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Lamp')", FIRST_ID);
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", FIRST_ID);
+        insertUser(SECOND_ID, "bob@example.com");
+        jdbcTemplate.update("INSERT INTO products (id, name) VALUES (?, 'Chair')", THIRD_ID);
+
+        tailer.tail();
+
+        InOrder inOrder = inOrder(batchWriter);
+        inOrder.verify(batchWriter).deleteByIdsFromSecondary("products", List.of(UUID.fromString(FIRST_ID)));
+        inOrder.verify(batchWriter).upsertIntoSecondary(eq("users"), anyList(), rowsWithId(SECOND_ID));
+        inOrder.verify(batchWriter).upsertIntoSecondary(eq("products"), anyList(), rowsWithId(THIRD_ID));
+    }
+
+    @Test
+    @DisplayName("Should set aside the entries of a refused row and apply the rest of the batch")
+    void shouldDeadLetterRefusedRow() {
+        insertUser(FIRST_ID, "alice@example.com");
+        insertUser(SECOND_ID, "bob@example.com");
+        jdbcTemplate.update("UPDATE users SET username = 'robert' WHERE id = ?", SECOND_ID);
+        when(batchWriter.upsertIntoSecondary(eq("users"), anyList(), rowsWithId(SECOND_ID)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        tailer.tail();
+
+        verify(batchWriter).upsertIntoSecondary(eq("users"), anyList(),
+                argThat(rows -> rows.size() == 1 && UUID.fromString(FIRST_ID).equals(rows.get(0)[0])));
+        assertThat(count("change_log")).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT row_id, operation FROM change_log_dead ORDER BY seq"))
+                .extracting(row -> row.get("row_id") + " " + row.get("operation"))
+                .containsExactly(SECOND_ID + " INSERT", SECOND_ID + " UPDATE");
+        assertThat(tailer.getStatus()).containsEntry("dead", 2L).containsEntry("pending", 0L);
+    }
+
+    @Test
+    @DisplayName("Should keep the batch in the log while the secondary cannot be reached")
+    void shouldRetryBatchOnOutage() {
+        insertUser(FIRST_ID, "alice@example.com");
+        when(batchWriter.upsertIntoSecondary(eq("users"), anyList(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        tailer.tail();
+
+        assertThat(count("change_log")).isEqualTo(1);
+        assertThat(count("change_log_dead")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should put dead-lettered entries back into the log")
+    void shouldRequeueDeadEntries() {
+        insertUser(FIRST_ID, "alice@example.com");
+        when(batchWriter.upsertIntoSecondary(eq("users"), anyList(), anyList()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+        tailer.tail();
+
+        assertThat(tailer.requeueDeadEntries()).isEqualTo(1);
+
+        assertThat(changes()).extracting(row -> row.get("row_id")).containsExactly(FIRST_ID);
+        assertThat(count("change_log_dead")).isZero();
+    }
+}
@@ -0,0 +1,173 @@
+package com.shopper.service.replication;
+
+import com.shopper.entity.primary.OutboxEvent;
+import com.shopper.repository.primary.PrimaryOutboxRepository;
+import com.shopper.service.DualDatabaseStrategy;
+import com.shopper.service.routing.DatasourceCircuitBreakers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the relay applying outbox events to the secondary database
+ */
+@DisplayName("OutboxRelay Unit Tests")
+class OutboxRelayTest {
+
+    private PrimaryOutboxRepository outboxRepository;
+    private ReplicationTarget products;
+    private ReplicationConsistencyTracker consistencyTracker;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxRepository = mock(PrimaryOutboxRepository.class);
+        products = mock(ReplicationTarget.class);
+        when(products.getAggregateType()).thenReturn("products");
+        ObjectProvider<ReplicationTarget> targets = mock(ObjectProvider.class);
+        when(targets.orderedStream()).thenAnswer(invocation -> Stream.of(products));
+        DualDatabaseStrategy dualDatabaseStrategy = mock(DualDatabaseStrategy.class);
+        when(dualDatabaseStrategy.isSecondaryDatabaseEnabled()).thenReturn(true);
+        consistencyTracker = mock(ReplicationConsistencyTracker.class);
+        meterRegistry = new SimpleMeterRegistry();
+        DatasourceCircuitBreakers circuitBreakers = new DatasourceCircuitBreakers(meterRegistry);
+        circuitBreakers.init();
+
+        relay = new OutboxRelay(outboxRepository, targets, dualDatabaseStrategy, meterRegistry, circuitBreakers,
+                consistencyTracker);
+        ReflectionTestUtils.setField(relay, "outboxEnabled", true);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 5);
+        ReflectionTestUtils.setField(relay, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(relay, "maxRetryBackoffMs", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.shutdown();
+    }
+
+    private static OutboxEvent event(long id, String aggregateType, String aggregateId, int attempts) {
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .operation(OutboxEvent.Operation.UPSERT)
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+
+    private void due(OutboxEvent... events) {
+        when(outboxRepository.findDue(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(events));
+    }
+
+    @Test
+    @DisplayName("Should collapse events for the same row into one secondary write")
+    void testCollapsesEventsPerRow() {
+        OutboxEvent first = event(1, "products", "a", 0);
+        OutboxEvent other = event(2, "products", "b", 0);
+        OutboxEvent second = event(3, "products", "a", 0);
+        due(first, other, second);
+
+        relay.drain();
+
+        verify(products, times(1)).replicateToSecondary("a");
+        verify(products, times(1)).replicateToSecondary("b");
+        verify(outboxRepository).deleteAllInBatch(List.of(first, second, other));
+        verify(consistencyTracker).completeOutboxEvent(1L);
+        verify(consistencyTracker).completeOutboxEvent(2L);
+        verify(consistencyTracker).completeOutboxEvent(3L);
+        assertThat(meterRegistry.get("shopper.outbox.events").tag("outcome", "applied").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should keep a failed event pending and retry it after a backoff")
+    void testRetriesWithBackoff() {
+        OutboxEvent failing = event(1, "products", "a", 0);
+        OutboxEvent applied = event(2, "products", "b", 0);
+        due(failing, applied);
+        doThrow(new IllegalStateException("Neon unavailable")).when(products).replicateToSecondary("a");
+
+        relay.drain();
+
+        assertThat(failing.getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+        assertThat(failing.getAttempts()).isEqualTo(1);
+        assertThat(failing.getLastError()).isEqualTo("Neon unavailable");
+        assertThat(failing.getNextAttemptAt()).isCloseTo(LocalDateTime.now().plusSeconds(1), within(500, ChronoUnit.MILLIS));
+        verify(outboxRepository).saveAll(List.of(failing));
+        verify(outboxRepository).deleteAllInBatch(List.of(applied));
+        verify(consistencyTracker, never()).completeOutboxEvent(1L);
+        verify(consistencyTracker, never()).failOutboxEvent(1L);
+    }
+
+    @Test
+    @DisplayName("Should double the backoff with every attempt up to the maximum")
+    void testBackoffIsCapped() {
+        OutboxEvent third = event(1, "products", "a", 2);
+        OutboxEvent later = event(2, "products", "b", 3);
+        due(third, later);
+        doThrow(new IllegalStateException("Neon unavailable")).when(products).replicateToSecondary(any());
+
+        relay.drain();
+
+        assertThat(third.getNextAttemptAt()).isCloseTo(LocalDateTime.now().plusSeconds(4), within(500, ChronoUnit.MILLIS));
+        assertThat(later.getNextAttemptAt()).isCloseTo(LocalDateTime.now().plusSeconds(5), within(500, ChronoUnit.MILLIS));
+    }
+
+    @Test
+    @DisplayName("Should dead-letter an event once it used up its attempts")
+    void testDeadLetters() {
+        OutboxEvent lastAttempt = event(1, "products", "a", 4);
+        due(lastAttempt);
+        doThrow(new IllegalStateException("constraint violated")).when(products).replicateToSecondary("a");
+
+        relay.drain();
+
+        assertThat(lastAttempt.getStatus()).isEqualTo(OutboxEvent.Status.DEAD);
+        assertThat(lastAttempt.getAttempts()).isEqualTo(5);
+        verify(outboxRepository).saveAll(List.of(lastAttempt));
+        verify(consistencyTracker).failOutboxEvent(1L);
+        assertThat(meterRegistry.get("shopper.outbox.events").tag("outcome", "dead").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should fail events of a table without a replication target")
+    void testUnknownAggregateType() {
+        OutboxEvent unknown = event(1, "wishlists", "a", 0);
+        due(unknown);
+
+        relay.drain();
+
+        assertThat(unknown.getAttempts()).isEqualTo(1);
+        assertThat(unknown.getLastError()).contains("wishlists");
+        verify(outboxRepository, never()).deleteAllInBatch(any());
+    }
+
+    @Test
+    @DisplayName("Should not relay while the outbox is disabled")
+    void testDisabled() {
+        ReflectionTestUtils.setField(relay, "outboxEnabled", false);
+
+        relay.drain();
+
+        verifyNoInteractions(outboxRepository);
+    }
+}
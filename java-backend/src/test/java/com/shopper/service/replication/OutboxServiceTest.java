@@ -0,0 +1,127 @@
+package com.shopper.service.replication;
+
+import com.shopper.entity.primary.OutboxEvent;
+import com.shopper.repository.primary.PrimaryOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for recording replication events in the outbox
+ */
+@DisplayName("OutboxService Unit Tests")
+class OutboxServiceTest {
+
+    private PrimaryOutboxRepository outboxRepository;
+    private OutboxRelay outboxRelay;
+    private ReplicationConsistencyTracker consistencyTracker;
+    private OutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = mock(PrimaryOutboxRepository.class);
+        AtomicLong ids = new AtomicLong();
+        when(outboxRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<OutboxEvent> events = invocation.getArgument(0);
+            events.forEach(event -> event.setId(ids.incrementAndGet()));
+            return events;
+        });
+        outboxRelay = mock(OutboxRelay.class);
+        consistencyTracker = mock(ReplicationConsistencyTracker.class);
+        when(consistencyTracker.begin(any(), any())).thenReturn(7L);
+
+        outboxService = new OutboxService(outboxRepository, outboxRelay, consistencyTracker);
+        ReflectionTestUtils.setField(outboxService, "outboxEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    @Test
+    @DisplayName("Should store one pending event per changed row and bind it to the user's write")
+    void testRecordAll() {
+        List<OutboxEvent> events = outboxService.recordAll("products", List.of("a", "b"), OutboxEvent.Operation.UPSERT, "user-1");
+
+        assertThat(events).extracting(OutboxEvent::getAggregateId).containsExactly("a", "b");
+        assertThat(events).allSatisfy(event -> {
+            assertThat(event.getAggregateType()).isEqualTo("products");
+            assertThat(event.getUserId()).isEqualTo("user-1");
+            assertThat(event.getNextAttemptAt()).isBeforeOrEqualTo(LocalDateTime.now());
+        });
+        verify(consistencyTracker).begin("user-1", "products:a");
+        verify(consistencyTracker).begin("user-1", "products:b");
+        verify(consistencyTracker).bindOutboxEvent(1L, 7L);
+        verify(consistencyTracker).bindOutboxEvent(2L, 7L);
+    }
+
+    @Test
+    @DisplayName("Should not touch the outbox when no rows changed")
+    void testRecordNothing() {
+        assertThat(outboxService.recordAll("products", List.of(), OutboxEvent.Operation.DELETE, "user-1")).isEmpty();
+
+        verifyNoInteractions(outboxRepository, consistencyTracker);
+    }
+
+    @Test
+    @DisplayName("Should wake the relay once the surrounding transaction commits")
+    void testDrainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        outboxService.record("products", "a", OutboxEvent.Operation.UPSERT, "user-1");
+
+        verify(outboxRelay, never()).requestDrain();
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        verify(outboxRelay).requestDrain();
+        verify(consistencyTracker, never()).completeOutboxEvent(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should release the user's pending writes when the surrounding transaction rolls back")
+    void testRollbackReleasesWatermark() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        outboxService.recordAll("products", List.of("a", "b"), OutboxEvent.Operation.UPSERT, "user-1");
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(outboxRelay, never()).requestDrain();
+        verify(consistencyTracker).completeOutboxEvent(1L);
+        verify(consistencyTracker).completeOutboxEvent(2L);
+    }
+
+    @Test
+    @DisplayName("Should drain after requeueing dead events only when there were any")
+    void testRequeueDeadEvents() {
+        when(outboxRepository.requeueDead(any(LocalDateTime.class))).thenReturn(0, 3);
+
+        assertThat(outboxService.requeueDeadEvents()).isZero();
+        verify(outboxRelay, never()).requestDrain();
+
+        assertThat(outboxService.requeueDeadEvents()).isEqualTo(3);
+        verify(outboxRelay).requestDrain();
+    }
+}
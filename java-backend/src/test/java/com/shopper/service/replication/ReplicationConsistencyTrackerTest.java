@@ -0,0 +1,163 @@
+package com.shopper.service.replication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for read-your-writes tracking of asynchronous secondary writes
+ */
+@DisplayName("ReplicationConsistencyTracker Unit Tests")
+class ReplicationConsistencyTrackerTest {
+
+    private ReplicationConsistencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ReplicationConsistencyTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "pinOnFailureMs", 60_000L);
+        ReflectionTestUtils.setField(tracker, "maxHoldMs", 60_000L);
+        tracker.registerMetrics();
+    }
+
+    @Test
+    @DisplayName("Should hold a user's reads back until their write is applied")
+    void testHoldsUntilApplied() {
+        long write = tracker.begin("alice");
+
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+
+        tracker.complete(write);
+
+        assertThat(tracker.isCaughtUp("alice")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should not hold other users back behind a pending write")
+    void testOtherUsersUnaffected() {
+        long aliceWrite = tracker.begin("alice");
+        long bobWrite = tracker.begin("bob");
+
+        tracker.complete(bobWrite);
+
+        assertThat(tracker.isCaughtUp("bob")).isTrue();
+        assertThat(tracker.isCaughtUp("carol")).isTrue();
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+        assertThat(tracker.getWatermark()).isEqualTo(aliceWrite - 1);
+    }
+
+    @Test
+    @DisplayName("Should wait for every pending write of the user")
+    void testWaitsForAllWritesOfUser() {
+        long first = tracker.begin("alice");
+        long second = tracker.begin("alice");
+
+        tracker.complete(second);
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+
+        tracker.complete(first);
+        assertThat(tracker.isCaughtUp("alice")).isTrue();
+        assertThat(tracker.getWatermark()).isEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("Should pin a user to the primary when their write fails")
+    void testPinsOnFailure() {
+        long write = tracker.begin("alice");
+
+        tracker.fail(write);
+
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+        assertThat(tracker.getStatus()).containsEntry("usersPinned", 1).containsEntry("usersWaiting", 0);
+    }
+
+    @Test
+    @DisplayName("Should release the user once the pin expires")
+    void testPinExpires() {
+        ReflectionTestUtils.setField(tracker, "pinOnFailureMs", 0L);
+        tracker.fail(tracker.begin("alice"));
+
+        assertThat(tracker.isCaughtUp("alice")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should stop waiting for a write pending past the maximum hold")
+    void testMaximumHold() {
+        ReflectionTestUtils.setField(tracker, "maxHoldMs", 0L);
+        tracker.begin("alice");
+
+        // The overdue write pins the user like a failed one instead of holding them indefinitely
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+        assertThat(tracker.getStatus()).containsEntry("pendingWrites", 0).containsEntry("usersPinned", 1);
+    }
+
+    @Test
+    @DisplayName("Should expire overdue writes of users who stopped reading")
+    void testSweepExpiresOverdueWrites() {
+        long overdue = tracker.begin("alice");
+        tracker.begin("bob");
+        ReflectionTestUtils.setField(tracker, "maxHoldMs", 0L);
+
+        tracker.expireOverdueWrites();
+
+        assertThat(tracker.getWatermark()).isGreaterThan(overdue);
+        assertThat(tracker.getStatus())
+                .containsEntry("pendingWrites", 0)
+                .containsEntry("usersWaiting", 0)
+                .containsEntry("usersPinned", 2);
+    }
+
+    @Test
+    @DisplayName("Should scope system writes to the entity they change")
+    void testSystemWritesScopedToEntity() {
+        long write = tracker.begin(ReplicationConsistencyTracker.SYSTEM_USER, "products:1");
+
+        assertThat(tracker.isCaughtUp(ReplicationConsistencyTracker.SYSTEM_USER)).isTrue();
+        assertThat(tracker.isCaughtUp("products:2")).isTrue();
+        assertThat(tracker.isCaughtUp("products:1")).isFalse();
+
+        tracker.fail(write);
+
+        // A failed system write pins only its entity
+        assertThat(tracker.isCaughtUp(ReplicationConsistencyTracker.SYSTEM_USER)).isTrue();
+        assertThat(tracker.isCaughtUp("products:1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should scope a user's writes to the user whatever entity they change")
+    void testUserWritesScopedToUser() {
+        tracker.begin("alice", "products:1");
+
+        assertThat(tracker.isCaughtUp("alice")).isFalse();
+        assertThat(tracker.isCaughtUp("products:1")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should release outbox-bound writes through their event")
+    void testOutboxEvents() {
+        tracker.bindOutboxEvent(10L, tracker.begin("alice"));
+        tracker.bindOutboxEvent(11L, tracker.begin("bob"));
+
+        tracker.completeOutboxEvent(10L);
+        tracker.failOutboxEvent(11L);
+
+        assertThat(tracker.isCaughtUp("alice")).isTrue();
+        assertThat(tracker.isCaughtUp("bob")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should treat every user as caught up when disabled")
+    void testDisabled() {
+        ReflectionTestUtils.setField(tracker, "enabled", false);
+
+        tracker.begin("alice");
+
+        assertThat(tracker.isCaughtUp("alice")).isTrue();
+        assertThat(tracker.getStatus()).containsEntry("pendingWrites", 0);
+    }
+}
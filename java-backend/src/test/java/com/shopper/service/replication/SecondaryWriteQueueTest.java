@@ -0,0 +1,137 @@
+package com.shopper.service.replication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the write-behind queue used for secondary database writes
+ */
+@DisplayName("SecondaryWriteQueue Unit Tests")
+class SecondaryWriteQueueTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SecondaryWriteQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new SecondaryWriteQueue(meterRegistry);
+        ReflectionTestUtils.setField(queue, "workers", 2);
+        ReflectionTestUtils.setField(queue, "queueCapacity", 2);
+        ReflectionTestUtils.setField(queue, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 1000L);
+        queue.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should apply writes with the same ordering key in submission order")
+    void testPerKeyOrdering() throws Exception {
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            while (!queue.submit("product:1", () -> applied.add(value))) {
+                Thread.sleep(1);
+            }
+        }
+        queue.submit("product:1", done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(applied).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+    }
+
+    @Test
+    @DisplayName("Should reject writes when the lane stays full")
+    void testBackpressureRejectsWhenFull() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        queue.submit("cart:1", () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Wait until the worker has taken the blocking task off the queue
+        while (queue.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+
+        assertThat(queue.submit("cart:1", () -> { })).isTrue();
+        boolean accepted = queue.submit("cart:1", () -> { });
+        blocker.countDown();
+
+        assertThat(accepted).isFalse();
+        assertThat(meterRegistry.get("shopper.replication.tasks").tag("outcome", "rejected").counter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should count failed writes without stopping the lane")
+    void testFailedWriteDoesNotStopLane() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        queue.submit("user:1", () -> {
+            throw new RuntimeException("Neon unavailable");
+        });
+        queue.submit("user:1", done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(queue.getStats().get("failed")).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should group a batch by lane so each group stays ordered with single writes to its items")
+    void testGroupByLane() throws Exception {
+        List<String> keys = IntStream.range(0, 10).mapToObj(i -> "product:" + i).toList();
+
+        Collection<List<String>> groups = queue.groupByLane(keys, key -> key);
+
+        assertThat(groups).hasSizeLessThanOrEqualTo(2);
+        assertThat(groups.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(keys);
+        for (List<String> group : groups) {
+            List<String> applied = new CopyOnWriteArrayList<>();
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            // A single write to the group's last item, then the batch under the key of its first
+            queue.submit(group.get(group.size() - 1), () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                applied.add("single");
+            });
+            while (queue.getQueueDepth() > 0) {
+                Thread.sleep(1);
+            }
+            queue.submit(group.get(0), () -> {
+                applied.add("batch");
+                done.countDown();
+            });
+            release.countDown();
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(applied).containsExactly("single", "batch");
+        }
+    }
+}
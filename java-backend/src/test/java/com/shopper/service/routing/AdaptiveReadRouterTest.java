@@ -0,0 +1,84 @@
+package com.shopper.service.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for latency-adaptive read routing
+ */
+@DisplayName("AdaptiveReadRouter Unit Tests")
+class AdaptiveReadRouterTest {
+
+    private static final String OPERATION = "ProductRepository.findByCategory";
+
+    private AdaptiveReadRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new AdaptiveReadRouter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "alpha", 0.5);
+        ReflectionTestUtils.setField(router, "errorPenalty", 10.0);
+        ReflectionTestUtils.setField(router, "minSamples", 3);
+        ReflectionTestUtils.setField(router, "minImprovement", 0.2);
+        ReflectionTestUtils.setField(router, "exploreRate", 0.0);
+        ReflectionTestUtils.setField(router, "staleAfterMs", 60000L);
+    }
+
+    @Test
+    @DisplayName("Should keep the flag decision when nothing is known about the other database")
+    void testKeepsFlagWithoutEstimates() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(router.routeToSecondary(OPERATION, false, 1.0)).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should shift no more than the flag-bounded share to the faster database")
+    void testShiftIsBounded() {
+        for (int i = 0; i < 5; i++) {
+            router.record("primary", OPERATION, 500, false);
+            router.record("secondary", OPERATION, 10, false);
+        }
+
+        int shifted = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (router.routeToSecondary(OPERATION, false, 0.25)) {
+                shifted++;
+            }
+        }
+
+        assertThat(shifted).isBetween(300, 700);
+    }
+
+    @Test
+    @DisplayName("Should not shift reads to a database that is failing")
+    void testErrorsOutweighLatency() {
+        for (int i = 0; i < 5; i++) {
+            router.record("primary", OPERATION, 100, false);
+            router.record("secondary", OPERATION, 10, true);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(router.routeToSecondary(OPERATION, false, 1.0)).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should follow the flag when the maximum shift is zero")
+    void testZeroShiftDisables() {
+        for (int i = 0; i < 5; i++) {
+            router.record("primary", OPERATION, 500, false);
+            router.record("secondary", OPERATION, 10, false);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(router.routeToSecondary(OPERATION, false, 0.0)).isFalse();
+        }
+    }
+}
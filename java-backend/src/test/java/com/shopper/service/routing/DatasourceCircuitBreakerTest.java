@@ -0,0 +1,168 @@
+package com.shopper.service.routing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the per-datasource circuit breaker state machine
+ */
+@DisplayName("DatasourceCircuitBreaker Unit Tests")
+class DatasourceCircuitBreakerTest {
+
+    private final List<DatasourceCircuitBreaker.State> transitions = new ArrayList<>();
+
+    private DatasourceCircuitBreaker breaker(long openDurationMs) {
+        // Window of 4 calls, opens at 50% failures or 75% slow calls, 2 trial calls when half-open
+        return new DatasourceCircuitBreaker("secondary", true, 4, 4, 50, 100, 75, openDurationMs, 2, transitions::add);
+    }
+
+    private static void open(DatasourceCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should stay closed until the window holds the minimum number of calls")
+    void testMinimumCalls() {
+        DatasourceCircuitBreaker breaker = breaker(60_000);
+
+        breaker.onError(1);
+        breaker.onError(1);
+        breaker.onError(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+
+        breaker.onSuccess(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.OPEN);
+        assertThat(transitions).containsExactly(DatasourceCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Should open on the share of slow calls and reject calls while open")
+    void testOpensOnSlowCalls() {
+        DatasourceCircuitBreaker breaker = breaker(60_000);
+
+        breaker.onSuccess(1);
+        breaker.onSuccess(150);
+        breaker.onSuccess(150);
+        breaker.onSuccess(150);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.isCallPermitted()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should slide the window so old failures age out")
+    void testWindowSlides() {
+        DatasourceCircuitBreaker breaker = breaker(60_000);
+
+        breaker.onError(1);
+        for (int i = 0; i < 6; i++) {
+            breaker.onSuccess(1);
+        }
+        breaker.onError(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isEqualTo(25.0);
+    }
+
+    @Test
+    @DisplayName("Should hand out a limited number of trial calls once the open wait is over")
+    void testHalfOpenPermits() {
+        DatasourceCircuitBreaker breaker = breaker(0);
+        open(breaker);
+
+        assertThat(breaker.isCallPermitted()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.isCallPermitted()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should close when the trial calls succeed")
+    void testHalfOpenCloses() {
+        DatasourceCircuitBreaker breaker = breaker(0);
+        open(breaker);
+        breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+
+        breaker.onSuccess(1);
+        breaker.onSuccess(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isZero();
+        assertThat(transitions).containsExactly(DatasourceCircuitBreaker.State.OPEN,
+                DatasourceCircuitBreaker.State.HALF_OPEN, DatasourceCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Should open again when the trial calls fail")
+    void testHalfOpenReopens() {
+        DatasourceCircuitBreaker breaker = breaker(0);
+        open(breaker);
+        breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+
+        breaker.onSuccess(1);
+        breaker.onError(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.OPEN);
+        assertThat(transitions).containsExactly(DatasourceCircuitBreaker.State.OPEN,
+                DatasourceCircuitBreaker.State.HALF_OPEN, DatasourceCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Should give back a trial call that ended without an outcome")
+    void testReleasePermission() {
+        DatasourceCircuitBreaker breaker = breaker(0);
+        open(breaker);
+        breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+
+        breaker.releasePermission();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        breaker.onSuccess(1);
+        breaker.releasePermission();
+        breaker.releasePermission();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should ignore outcomes of calls that started before the breaker opened")
+    void testIgnoresOutcomesWhileOpen() {
+        DatasourceCircuitBreaker breaker = breaker(60_000);
+        open(breaker);
+
+        breaker.onSuccess(1);
+        breaker.onSuccess(1);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Should permit every call when disabled")
+    void testDisabled() {
+        DatasourceCircuitBreaker breaker = new DatasourceCircuitBreaker("primary", false, 4, 4, 50, 100, 75, 60_000, 2, null);
+
+        open(breaker);
+
+        assertThat(breaker.getState()).isEqualTo(DatasourceCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+}
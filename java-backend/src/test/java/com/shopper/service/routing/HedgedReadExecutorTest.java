@@ -0,0 +1,211 @@
+package com.shopper.service.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for hedged reads across the primary and secondary databases
+ */
+@DisplayName("HedgedReadExecutor Unit Tests")
+class HedgedReadExecutorTest {
+
+    private static final String OPERATION = "ProductRepository.findByCategory";
+    private static final BooleanSupplier PERMITTED = () -> true;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HedgedReadExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new HedgedReadExecutor(meterRegistry);
+        ReflectionTestUtils.setField(executor, "enabled", true);
+        ReflectionTestUtils.setField(executor, "percentile", 95.0);
+        ReflectionTestUtils.setField(executor, "defaultDelayMs", 20L);
+        ReflectionTestUtils.setField(executor, "minDelayMs", 1L);
+        ReflectionTestUtils.setField(executor, "maxDelayMs", 1000L);
+        ReflectionTestUtils.setField(executor, "minSamples", 5);
+        ReflectionTestUtils.setField(executor, "windowSize", 16);
+        ReflectionTestUtils.setField(executor, "poolSize", 4);
+        executor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should return the preferred result without hedging when it answers in time")
+    void testNoHedgeWhenFast() {
+        String result = executor.execute(OPERATION, "secondary", () -> "secondary-result", "primary", () -> "primary-result", PERMITTED);
+
+        assertThat(result).isEqualTo("secondary-result");
+        assertThat(meterRegistry.find("shopper.read.hedges").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should run the preferred read off the calling thread")
+    void testPreferredRunsOffCaller() {
+        Thread caller = Thread.currentThread();
+
+        Thread reader = executor.execute(OPERATION, "primary", Thread::currentThread, "secondary", Thread::currentThread, PERMITTED);
+
+        assertThat(reader).isNotSameAs(caller);
+    }
+
+    @Test
+    @DisplayName("Should read on the calling thread without a hedge when the pool is full")
+    void testUnhedgedWhenPoolFull() throws Exception {
+        executor.shutdown();
+        ReflectionTestUtils.setField(executor, "poolSize", 1);
+        executor.start();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch reading = new CountDownLatch(1);
+        Thread busy = new Thread(() -> executor.execute(OPERATION, "primary", () -> {
+            reading.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "primary-result";
+        }, "secondary", () -> "secondary-result", () -> false));
+        busy.start();
+        assertThat(reading.await(1, TimeUnit.SECONDS)).isTrue();
+
+        Thread reader = executor.execute(OPERATION, "primary", Thread::currentThread, "secondary", Thread::currentThread, PERMITTED);
+
+        assertThat(reader).isSameAs(Thread.currentThread());
+        release.countDown();
+        busy.join(1000);
+    }
+
+    @Test
+    @DisplayName("Should answer with the hedge and let the slow read finish without interrupting it")
+    void testHedgeWinsWhenPreferredIsSlow() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        Supplier<String> slow = () -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return "secondary-result";
+        };
+
+        String result = executor.execute(OPERATION, "secondary", slow, "primary", () -> "primary-result", PERMITTED);
+
+        assertThat(result).isEqualTo("primary-result");
+        assertThat(finished.getCount()).isEqualTo(1);
+        assertThat(finished.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(interrupted).isFalse();
+        assertThat(meterRegistry.get("shopper.read.hedges").tag("operation", OPERATION).counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("shopper.read.hedge.wins").tag("winner", "primary").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should answer with the preferred read when it beats a pending hedge")
+    void testPreferredWinsAfterHedge() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch hedgeFinished = new CountDownLatch(1);
+        Supplier<String> slowHedge = () -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            hedgeFinished.countDown();
+            return "primary-result";
+        };
+        Supplier<String> late = () -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "secondary-result";
+        };
+
+        String result = executor.execute(OPERATION, "secondary", late, "primary", slowHedge, PERMITTED);
+
+        assertThat(result).isEqualTo("secondary-result");
+        assertThat(hedgeFinished.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(interrupted).isFalse();
+        assertThat(meterRegistry.get("shopper.read.hedge.wins").tag("winner", "secondary").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the other database on the calling thread when the preferred read fails")
+    void testFallbackOnFailure() {
+        Thread caller = Thread.currentThread();
+
+        Thread reader = executor.execute(OPERATION, "secondary", () -> {
+            throw new RuntimeException("Neon unavailable");
+        }, "primary", Thread::currentThread, PERMITTED);
+
+        assertThat(reader).isSameAs(caller);
+    }
+
+    @Test
+    @DisplayName("Should leave the read to the preferred database when the other may not be called")
+    void testNoHedgeWithoutPermission() {
+        Supplier<String> slow = () -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "secondary-result";
+        };
+
+        String result = executor.execute(OPERATION, "secondary", slow, "primary", () -> "primary-result", () -> false);
+
+        assertThat(result).isEqualTo("secondary-result");
+        assertThat(meterRegistry.find("shopper.read.hedges").counter()).isNull();
+        assertThatThrownBy(() -> executor.execute(OPERATION, "secondary", () -> {
+            throw new IllegalStateException("Neon unavailable");
+        }, "primary", () -> "primary-result", () -> false))
+                .hasMessage("Neon unavailable");
+    }
+
+    @Test
+    @DisplayName("Should rethrow when both databases fail")
+    void testBothFail() {
+        assertThatThrownBy(() -> executor.execute(OPERATION,
+                "primary", () -> {
+                    throw new IllegalStateException("primary down");
+                },
+                "secondary", () -> {
+                    throw new IllegalStateException("secondary down");
+                }, PERMITTED))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should derive the hedge delay from the recorded latency percentile")
+    void testDelayFollowsPercentile() {
+        assertThat(executor.hedgeDelayMs(OPERATION, "primary")).isEqualTo(20L);
+
+        for (int i = 0; i < 10; i++) {
+            executor.execute(OPERATION, "primary", () -> "primary-result", "secondary", () -> "secondary-result", PERMITTED);
+        }
+
+        assertThat(executor.hedgeDelayMs(OPERATION, "primary")).isLessThan(20L);
+    }
+}
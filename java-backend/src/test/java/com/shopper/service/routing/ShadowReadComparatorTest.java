@@ -0,0 +1,155 @@
+package com.shopper.service.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for comparing shadow reads on the secondary with the primary result
+ */
+@DisplayName("ShadowReadComparator Unit Tests")
+class ShadowReadComparatorTest {
+
+    private static final String OPERATION = "ProductRepository.findAll";
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShadowReadComparator comparator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        comparator = new ShadowReadComparator(new ObjectMapper(), meterRegistry);
+        ReflectionTestUtils.setField(comparator, "enabled", true);
+        ReflectionTestUtils.setField(comparator, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(comparator, "poolSize", 1);
+        ReflectionTestUtils.setField(comparator, "queueCapacity", 10);
+        comparator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        comparator.shutdown();
+    }
+
+    private static Map<String, Object> row(String id, String name, Object price) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        row.put("price", price);
+        return row;
+    }
+
+    private String compare(Object primaryResult, Supplier<?> secondaryOperation) throws InterruptedException {
+        comparator.submit(OPERATION, primaryResult, 1, secondaryOperation);
+        return awaitOutcome();
+    }
+
+    private String awaitOutcome() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            for (String outcome : List.of("match", "mismatch", "error", "skipped")) {
+                Counter counter = meterRegistry.find("shopper.shadow.reads").tag("outcome", outcome).counter();
+                if (counter != null && counter.count() > 0) {
+                    return outcome;
+                }
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Shadow read was not compared");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> fieldDiffs() {
+        Map<String, Object> operations = (Map<String, Object>) comparator.getReport().get("operations");
+        return (Map<String, Long>) ((Map<String, Object>) operations.get(OPERATION)).get("fieldDiffs");
+    }
+
+    @Test
+    @DisplayName("Should ignore the order of rows")
+    void testIgnoresRowOrder() throws InterruptedException {
+        List<Map<String, Object>> primary = List.of(row("a", "Apple", 1), row("b", "Banana", 2));
+        List<Map<String, Object>> secondary = List.of(row("b", "Banana", 2), row("a", "Apple", 1));
+
+        assertThat(compare(primary, () -> secondary)).isEqualTo("match");
+    }
+
+    @Test
+    @DisplayName("Should compare numbers by value and timestamps to the millisecond")
+    void testNormalizesNumbersAndTimestamps() throws InterruptedException {
+        Map<String, Object> primary = row("a", "Apple", new BigDecimal("1.50"));
+        primary.put("updatedAt", "2026-01-01T10:00:00.123");
+        Map<String, Object> secondary = row("a", "Apple", 1.5);
+        secondary.put("updatedAt", "2026-01-01T10:00:00.123456");
+
+        assertThat(compare(primary, () -> secondary)).isEqualTo("match");
+    }
+
+    @Test
+    @DisplayName("Should treat a null column and a missing one alike")
+    void testNullAndMissingAlike() throws InterruptedException {
+        Map<String, Object> primary = row("a", "Apple", null);
+        Map<String, Object> secondary = new HashMap<>(Map.of("id", "a", "name", "Apple"));
+
+        assertThat(compare(primary, () -> secondary)).isEqualTo("match");
+    }
+
+    @Test
+    @DisplayName("Should report differing fields by path without row indexes")
+    void testReportsFieldPaths() throws InterruptedException {
+        List<Map<String, Object>> primary = List.of(row("a", "Apple", 1), row("b", "Banana", 2), row("c", "Cherry", 3));
+        List<Map<String, Object>> secondary = List.of(row("a", "Apple", 1), row("b", "Plantain", 2));
+
+        assertThat(compare(primary, () -> secondary)).isEqualTo("mismatch");
+        assertThat(fieldDiffs()).containsOnlyKeys("$.length", "$[].name");
+    }
+
+    @Test
+    @DisplayName("Should compare against the primary result as it was when the read returned")
+    void testSnapshotsPrimaryResultOnCaller() throws InterruptedException {
+        List<Map<String, Object>> primary = new ArrayList<>(List.of(row("a", "Apple", 1)));
+        CountDownLatch callerDone = new CountDownLatch(1);
+        Supplier<?> secondary = () -> {
+            try {
+                callerDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(row("a", "Apple", 1));
+        };
+
+        comparator.submit(OPERATION, primary, 1, secondary);
+        // The caller goes on to change what it read, as a service does with managed entities
+        primary.get(0).put("name", "Changed");
+        primary.add(row("b", "Banana", 2));
+        callerDone.countDown();
+
+        assertThat(awaitOutcome()).isEqualTo("match");
+    }
+
+    @Test
+    @DisplayName("Should count a failing secondary read as an error")
+    void testSecondaryError() throws InterruptedException {
+        String outcome = compare(List.of(), () -> {
+            throw new IllegalStateException("Neon unavailable");
+        });
+
+        assertThat(outcome).isEqualTo("error");
+        assertThat(comparator.getReport()).containsKey("operations");
+    }
+}
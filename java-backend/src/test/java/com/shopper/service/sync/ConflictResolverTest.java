@@ -0,0 +1,199 @@
+package com.shopper.service.sync;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import com.shopper.repository.primary.PrimarySyncConflictRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the conflict resolution policies and for writing the winning versions back
+ * to mocked databases
+ */
+@DisplayName("ConflictResolver Unit Tests")
+class ConflictResolverTest {
+
+    private static final UUID ID = UUID.fromString("6f1c2a9e-0000-4000-8000-000000000001");
+    private static final LocalDateTime EARLIER = LocalDateTime.of(2024, 5, 1, 10, 0);
+    private static final LocalDateTime LATER = EARLIER.plusMinutes(5);
+
+    private static final UUID OTHER_ID = UUID.fromString("6f1c2a9e-0000-4000-8000-000000000002");
+
+    private final RangeHashVerifier rangeHashVerifier = mock(RangeHashVerifier.class);
+    private final StreamingTableCopier streamingTableCopier = mock(StreamingTableCopier.class);
+    private final DatabaseBatchWriter batchWriter = mock(DatabaseBatchWriter.class);
+    private final PrimarySyncConflictRepository conflictRepository = mock(PrimarySyncConflictRepository.class);
+
+    // Columns: id, name, description, price, image_url, category, stock_quantity, created_at, updated_at
+    private static Object[] product(String price, int stock, LocalDateTime updatedAt) {
+        return product(ID, price, stock, updatedAt);
+    }
+
+    private static Object[] product(UUID id, String price, int stock, LocalDateTime updatedAt) {
+        return new Object[] {id, "Desk lamp", "LED", new BigDecimal(price), null, "home", stock, EARLIER, updatedAt};
+    }
+
+    private ConflictResolver resolver(Map<UUID, Object[]> primaryRows, Map<UUID, Object[]> secondaryRows) {
+        List<String> mismatched = primaryRows.keySet().stream().map(UUID::toString).toList();
+        when(rangeHashVerifier.verify("products")).thenReturn(new RangeHashVerifier.TableReport("products",
+                primaryRows.size(), secondaryRows.size(), mismatched.size(), List.of(), List.of(), mismatched, 2, 2, 1));
+        when(streamingTableCopier.readRows(eq(SyncTable.PRODUCTS), anyList(), eq(true))).thenReturn(primaryRows);
+        when(streamingTableCopier.readRows(eq(SyncTable.PRODUCTS), anyList(), eq(false))).thenReturn(secondaryRows);
+
+        ConflictResolver resolver = new ConflictResolver(rangeHashVerifier, streamingTableCopier, batchWriter,
+                conflictRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(resolver, "conflictPolicy", "last-writer-wins");
+        ReflectionTestUtils.setField(resolver, "batchSize", 1000);
+        return resolver;
+    }
+
+    @Test
+    @DisplayName("Should let the later update win under last-writer-wins")
+    void testLastWriterWins() {
+        Object[] primary = product("19.99", 10, EARLIER);
+        Object[] secondary = product("24.99", 10, LATER);
+
+        ConflictResolver.Decision decision = ConflictResolver.decide(SyncTable.PRODUCTS, ConflictPolicy.LAST_WRITER_WINS,
+                primary, secondary);
+
+        assertThat(decision.winner()).isEqualTo("secondary");
+        assertThat(decision.differingColumns()).containsExactly("price");
+        assertThat(decision.primaryRow()[3]).isEqualTo(new BigDecimal("24.99"));
+        assertThat(decision.secondaryRow()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep the primary version on equal timestamps")
+    void testTieKeepsPrimary() {
+        ConflictResolver.Decision decision = ConflictResolver.decide(SyncTable.PRODUCTS, ConflictPolicy.LAST_WRITER_WINS,
+                product("19.99", 10, LATER), product("24.99", 10, LATER));
+
+        assertThat(decision.winner()).isEqualTo("primary");
+        assertThat(decision.primaryRow()).isNull();
+        assertThat(decision.secondaryRow()[3]).isEqualTo(new BigDecimal("19.99"));
+    }
+
+    @Test
+    @DisplayName("Should keep the primary version under primary-wins even if the secondary is newer")
+    void testPrimaryWins() {
+        ConflictResolver.Decision decision = ConflictResolver.decide(SyncTable.PRODUCTS, ConflictPolicy.PRIMARY_WINS,
+                product("19.99", 10, EARLIER), product("24.99", 10, LATER));
+
+        assertThat(decision.winner()).isEqualTo("primary");
+        assertThat(decision.secondaryRow()[3]).isEqualTo(new BigDecimal("19.99"));
+    }
+
+    @Test
+    @DisplayName("Should take the newer fields and the lower stock under merge-stock, writing both sides")
+    void testMergeStock() {
+        Object[] primary = product("19.99", 4, EARLIER);
+        Object[] secondary = product("24.99", 7, LATER);
+
+        ConflictResolver.Decision decision = ConflictResolver.decide(SyncTable.PRODUCTS, ConflictPolicy.MERGE_STOCK,
+                primary, secondary);
+
+        assertThat(decision.winner()).isEqualTo("merged");
+        assertThat(decision.differingColumns()).containsExactly("price", "stock_quantity");
+        assertThat(decision.primaryRow()[3]).isEqualTo(new BigDecimal("24.99"));
+        assertThat(decision.primaryRow()[6]).isEqualTo(4);
+        assertThat(decision.secondaryRow()).isSameAs(decision.primaryRow());
+        assertThat(secondary[6]).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should report no conflict when only timestamps or price precision differ")
+    void testNoConflict() {
+        ConflictResolver.Decision decision = ConflictResolver.decide(SyncTable.PRODUCTS, ConflictPolicy.LAST_WRITER_WINS,
+                product("19.99", 10, EARLIER), product("19.990000000000002", 10, LATER));
+
+        assertThat(decision).isNull();
+    }
+
+    @Test
+    @DisplayName("Should parse configured policy names")
+    void testPolicyNames() {
+        assertThat(ConflictPolicy.fromName("last-writer-wins")).isEqualTo(ConflictPolicy.LAST_WRITER_WINS);
+        assertThat(ConflictPolicy.fromName("PRIMARY_WINS")).isEqualTo(ConflictPolicy.PRIMARY_WINS);
+        assertThat(ConflictPolicy.fromName(" merge-stock ")).isEqualTo(ConflictPolicy.MERGE_STOCK);
+    }
+
+    @Test
+    @DisplayName("Should write each winner only over the version it was compared with and count the rest as skipped")
+    void testResolveWritesUnchangedRowsOnly() {
+        // The secondary has the newer version of the first row, the primary of the second
+        ConflictResolver resolver = resolver(
+                Map.of(ID, product(ID, "19.99", 10, EARLIER), OTHER_ID, product(OTHER_ID, "9.99", 3, LATER)),
+                Map.of(ID, product(ID, "24.99", 10, LATER), OTHER_ID, product(OTHER_ID, "8.99", 3, EARLIER)));
+        // The primary's row was updated again after it was read
+        when(batchWriter.updateUnchangedInPrimary(eq("products"), anyList(), anyList(), any())).thenReturn(0);
+        when(batchWriter.updateUnchangedInSecondary(eq("products"), anyList(), anyList(), any())).thenReturn(1);
+
+        ConflictResolver.Resolution resolution = resolver.resolve(SyncTable.PRODUCTS);
+
+        assertThat(resolution.conflicts).isEqualTo(2);
+        assertThat(resolution.writtenToPrimary).isZero();
+        assertThat(resolution.writtenToSecondary).isEqualTo(1);
+        assertThat(resolution.skipped).isEqualTo(1);
+        verify(batchWriter).updateUnchangedInPrimary(eq("products"), eq(SyncTable.PRODUCTS.getColumnNames()),
+                argThat(rows -> rows.size() == 1 && ID.equals(rows.get(0)[0])), eq(List.of(EARLIER)));
+        verify(batchWriter).updateUnchangedInSecondary(eq("products"), eq(SyncTable.PRODUCTS.getColumnNames()),
+                argThat(rows -> rows.size() == 1 && OTHER_ID.equals(rows.get(0)[0])), eq(List.of(EARLIER)));
+        verify(batchWriter, never()).upsertIntoPrimary(any(), any(), any());
+        verify(batchWriter, never()).upsertIntoSecondary(any(), any(), any());
+        verify(conflictRepository).saveAll(argThat(records -> records.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Should leave a row deleted since the verification to the copy")
+    void testResolveSkipsDeletedRow() {
+        ConflictResolver resolver = resolver(Map.of(ID, product("19.99", 10, EARLIER)), Map.of());
+
+        ConflictResolver.Resolution resolution = resolver.resolve(SyncTable.PRODUCTS);
+
+        assertThat(resolution.conflicts).isZero();
+        assertThat(resolution.skipped).isZero();
+        verifyNoInteractions(batchWriter);
+    }
+
+    @Test
+    @DisplayName("Should insert changed rows the target lacks and settle the rest, recording only lost changes")
+    void testReconcileChanged() {
+        UUID newerId = UUID.fromString("6f1c2a9e-0000-4000-8000-000000000003");
+        // The first row is new, the second was changed on the secondary after the primary, the third only on the primary
+        ConflictResolver resolver = resolver(
+                Map.of(ID, product(ID, "19.99", 10, LATER), OTHER_ID, product(OTHER_ID, "9.99", 3, EARLIER),
+                        newerId, product(newerId, "5.99", 1, LATER)),
+                Map.of(OTHER_ID, product(OTHER_ID, "8.99", 3, LATER), newerId, product(newerId, "6.99", 1, EARLIER)));
+        when(batchWriter.insertMissingIntoSecondary(eq("products"), anyList(), anyList())).thenReturn(1);
+        when(batchWriter.updateUnchangedInPrimary(eq("products"), anyList(), anyList(), any())).thenReturn(1);
+        when(batchWriter.updateUnchangedInSecondary(eq("products"), anyList(), anyList(), any())).thenReturn(1);
+
+        ConflictResolver.Resolution resolution = resolver.reconcileChanged(SyncTable.PRODUCTS,
+                List.of(ID, OTHER_ID, newerId), true);
+
+        assertThat(resolution.conflicts).isEqualTo(1);
+        assertThat(resolution.writtenToPrimary).isEqualTo(1);
+        assertThat(resolution.writtenToSecondary).isEqualTo(2);
+        verify(batchWriter).insertMissingIntoSecondary(eq("products"), eq(SyncTable.PRODUCTS.getColumnNames()),
+                argThat(rows -> rows.size() == 1 && ID.equals(rows.get(0)[0])));
+        verify(batchWriter).updateUnchangedInPrimary(eq("products"), eq(SyncTable.PRODUCTS.getColumnNames()),
+                argThat(rows -> rows.size() == 1 && OTHER_ID.equals(rows.get(0)[0])), eq(List.of(EARLIER)));
+        verify(batchWriter).updateUnchangedInSecondary(eq("products"), eq(SyncTable.PRODUCTS.getColumnNames()),
+                argThat(rows -> rows.size() == 1 && newerId.equals(rows.get(0)[0])), eq(List.of(EARLIER)));
+        verify(batchWriter, never()).upsertIntoSecondary(any(), any(), any());
+        verify(conflictRepository).saveAll(argThat(records -> records.size() == 1));
+    }
+}
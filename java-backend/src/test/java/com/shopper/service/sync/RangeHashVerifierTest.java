@@ -0,0 +1,208 @@
+package com.shopper.service.sync;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the row hash shared by both databases and for narrowing divergent ID ranges,
+ * run against two in-memory SQLite databases
+ */
+@DisplayName("RangeHashVerifier Unit Tests")
+class RangeHashVerifierTest {
+
+    private static final String HASH = "row_hash(COALESCE(name, '') || '|' || COALESCE(CAST(stock AS text), ''))";
+
+    private final List<SingleConnectionDataSource> dataSources = new ArrayList<>();
+    private JdbcTemplate left;
+    private JdbcTemplate right;
+    private RangeHashVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        left = database();
+        right = database();
+        verifier = new RangeHashVerifier();
+        ReflectionTestUtils.setField(verifier, "leafSize", 4);
+        ReflectionTestUtils.setField(verifier, "maxReportedRows", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSources.forEach(SingleConnectionDataSource::destroy);
+    }
+
+    private JdbcTemplate database() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Function.create(connection.unwrap(SQLiteConnection.class), "row_hash", new RangeHashVerifier.RowHashFunction());
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(connection, true);
+        dataSources.add(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id TEXT PRIMARY KEY, name TEXT, stock INTEGER)");
+        return jdbcTemplate;
+    }
+
+    private List<String> insertBoth(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = UUID.randomUUID().toString();
+            ids.add(id);
+            for (JdbcTemplate side : List.of(left, right)) {
+                side.update("INSERT INTO products (id, name, stock) VALUES (?, ?, ?)", id, "Product " + i, i);
+            }
+        }
+        return ids;
+    }
+
+    private RangeHashVerifier.TableReport compare() {
+        return verifier.compare("products",
+                new RangeHashVerifier.Side(left, "id", HASH, true),
+                new RangeHashVerifier.Side(right, "id", HASH, true));
+    }
+
+    @Test
+    @DisplayName("Should match the first 32 bits of the Postgres md5() of the row text")
+    void testRowHashMatchesPostgresMd5Prefix() {
+        // SELECT CAST(CAST('x' || substr(md5('abc'), 1, 8) AS bit(32)) AS bigint) returns 2416005272
+        assertThat(RangeHashVerifier.rowHash("abc")).isEqualTo(0x90015098L);
+    }
+
+    @Test
+    @DisplayName("Should hash as an unsigned value so per-range sums cannot cancel out")
+    void testRowHashIsUnsigned() {
+        for (int i = 0; i < 1000; i++) {
+            assertThat(RangeHashVerifier.rowHash("row-" + i)).isBetween(0L, 0xFFFFFFFFL);
+        }
+    }
+
+    @Test
+    @DisplayName("Should step over the dashes of the UUID text when narrowing a prefix")
+    void testChildPrefixSkipsDashes() {
+        assertThat(RangeHashVerifier.childPrefix("", 'a')).isEqualTo("a");
+        assertThat(RangeHashVerifier.childPrefix("0123456", '7')).isEqualTo("01234567-");
+        assertThat(RangeHashVerifier.childPrefix("01234567-", 'a')).isEqualTo("01234567-a");
+        assertThat(RangeHashVerifier.childPrefix("01234567-89ab-cdef-0123-45678901234", 'f'))
+                .isEqualTo("01234567-89ab-cdef-0123-45678901234f");
+    }
+
+    @Test
+    @DisplayName("Should bound a prefix by the lowest and highest UUIDs that start with it")
+    void testRangeBounds() {
+        assertThat(RangeHashVerifier.lowerBound("")).isEqualTo("00000000-0000-0000-0000-000000000000");
+        assertThat(RangeHashVerifier.upperBound("")).isEqualTo("ffffffff-ffff-ffff-ffff-ffffffffffff");
+        assertThat(RangeHashVerifier.lowerBound("01234567-")).isEqualTo("01234567-0000-0000-0000-000000000000");
+        assertThat(RangeHashVerifier.upperBound("0123")).isEqualTo("0123ffff-ffff-ffff-ffff-ffffffffffff");
+        assertThat(RangeHashVerifier.upperBound("01234567-8")).isEqualTo("01234567-8fff-ffff-ffff-ffffffffffff");
+        // Both bounds are bound as uuids on the secondary
+        assertThat(UUID.fromString(RangeHashVerifier.upperBound("01234567-8")).toString())
+                .isEqualTo("01234567-8fff-ffff-ffff-ffffffffffff");
+    }
+
+    @Test
+    @DisplayName("Should settle identical tables with one digest query per side")
+    void testConsistentTables() {
+        insertBoth(200);
+
+        RangeHashVerifier.TableReport report = compare();
+
+        assertThat(report.isConsistent).isTrue();
+        assertThat(report.primaryCount).isEqualTo(200);
+        assertThat(report.secondaryCount).isEqualTo(200);
+        assertThat(report.rangeQueries).isEqualTo(2);
+        assertThat(report.rowsCompared).isZero();
+    }
+
+    @Test
+    @DisplayName("Should narrow a changed row down to a leaf range and compare only its rows")
+    void testNarrowsToChangedRow() {
+        List<String> ids = insertBoth(1000);
+        String changed = ids.get(17);
+        right.update("UPDATE products SET stock = stock + 1 WHERE id = ?", changed);
+
+        RangeHashVerifier.TableReport report = compare();
+
+        assertThat(report.contentMismatch).containsExactly(changed);
+        assertThat(report.missingInPrimary).isEmpty();
+        assertThat(report.missingInSecondary).isEmpty();
+        assertThat(report.divergentRows).isEqualTo(1);
+        // 1000 rows over 16 first characters need more levels before the ranges fit a leaf
+        assertThat(report.rangeQueries).isGreaterThan(4);
+        assertThat(report.rowsCompared).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should report rows missing on either side")
+    void testMissingRows() {
+        List<String> ids = insertBoth(50);
+        left.update("DELETE FROM products WHERE id = ?", ids.get(3));
+        right.update("DELETE FROM products WHERE id = ?", ids.get(30));
+
+        RangeHashVerifier.TableReport report = compare();
+
+        assertThat(report.missingInPrimary).containsExactly(ids.get(3));
+        assertThat(report.missingInSecondary).containsExactly(ids.get(30));
+        assertThat(report.primaryCount).isEqualTo(49);
+        assertThat(report.secondaryCount).isEqualTo(49);
+        assertThat(report.divergentRows).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should count every divergent row but list only up to the reporting limit")
+    void testReportedRowsCapped() {
+        ReflectionTestUtils.setField(verifier, "maxReportedRows", 3);
+        List<String> ids = insertBoth(20);
+        right.update("DELETE FROM products");
+
+        RangeHashVerifier.TableReport report = compare();
+
+        assertThat(report.divergentRows).isEqualTo(20);
+        assertThat(report.missingInSecondary).hasSize(3).isSubsetOf(ids);
+        assertThat(report.isConsistent).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should refuse to verify before reading when the secondary still has varchar IDs")
+    void testVerifyRequiresUuidIds() {
+        DatabaseBatchWriter batchWriter = mock(DatabaseBatchWriter.class);
+        doThrow(new IllegalStateException("products.id is not a uuid on the secondary"))
+                .when(batchWriter).requireSecondaryUuidIds("products");
+        ReflectionTestUtils.setField(verifier, "primaryDataSource", dataSources.get(0));
+        ReflectionTestUtils.setField(verifier, "secondaryDataSource", dataSources.get(1));
+        ReflectionTestUtils.setField(verifier, "batchWriter", batchWriter);
+        verifier.init();
+
+        assertThatThrownBy(() -> verifier.verify("products"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("uuid");
+        verify(batchWriter).requireSecondaryUuidIds("products");
+    }
+
+    @Test
+    @DisplayName("Should refuse to verify without a secondary database")
+    void testVerifyWithoutSecondary() {
+        ReflectionTestUtils.setField(verifier, "primaryDataSource", dataSources.get(0));
+        ReflectionTestUtils.setField(verifier, "batchWriter", mock(DatabaseBatchWriter.class));
+        verifier.init();
+
+        assertThat(verifier.isSecondaryAvailable()).isFalse();
+        assertThatThrownBy(() -> verifier.verify("products")).isInstanceOf(IllegalStateException.class);
+    }
+}
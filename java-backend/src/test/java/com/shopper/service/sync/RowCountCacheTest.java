@@ -0,0 +1,130 @@
+package com.shopper.service.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the cached row counts behind the admin statistics
+ */
+@DisplayName("RowCountCache Unit Tests")
+class RowCountCacheTest {
+
+    private RangeHashVerifier verifier;
+    private RowCountCache cache;
+    private final AtomicLong primaryRows = new AtomicLong(3);
+
+    @BeforeEach
+    void setUp() {
+        verifier = mock(RangeHashVerifier.class);
+        when(verifier.isSecondaryAvailable()).thenReturn(true);
+        when(verifier.countPrimaryRows(anyString())).thenAnswer(invocation -> primaryRows.get());
+        when(verifier.countSecondaryRows(anyString())).thenReturn(2L);
+        cache = new RowCountCache(verifier);
+        ReflectionTestUtils.setField(cache, "threads", 2);
+        ReflectionTestUtils.setField(cache, "freshMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "staleMs", 120_000L);
+        cache.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should count every table in both databases once while fresh")
+    void testCountsBothDatabasesOnce() {
+        RowCountCache.Snapshot first = cache.get();
+        RowCountCache.Snapshot second = cache.get();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.primary).hasSize(5).containsEntry("order_items", 3L);
+        assertThat(first.secondary).hasSize(5).containsEntry("users", 2L);
+        assertThat(first.secondaryAvailable).isTrue();
+        verify(verifier, times(5)).countPrimaryRows(anyString());
+        verify(verifier, times(5)).countSecondaryRows(anyString());
+    }
+
+    @Test
+    @DisplayName("Should serve stale counts while refreshing them in the background")
+    void testServesStaleWhileRevalidating() {
+        RowCountCache.Snapshot first = cache.get();
+        ReflectionTestUtils.setField(cache, "freshMs", -1L);
+        primaryRows.set(7);
+
+        RowCountCache.Snapshot stale = cache.get();
+
+        assertThat(stale).isSameAs(first);
+        verify(verifier, timeout(2000).times(10)).countPrimaryRows(anyString());
+        ReflectionTestUtils.setField(cache, "freshMs", 60_000L);
+        await(() -> cache.get().primary.get("users") == 7L);
+    }
+
+    @Test
+    @DisplayName("Should leave out secondary counts that fail")
+    void testSecondaryFailureKeepsPrimaryCounts() {
+        when(verifier.countSecondaryRows("orders")).thenThrow(new IllegalStateException("connection refused"));
+
+        RowCountCache.Snapshot snapshot = cache.get();
+
+        assertThat(snapshot.primary).hasSize(5);
+        assertThat(snapshot.secondary).hasSize(4).doesNotContainKey("orders");
+        assertThat(snapshot.secondaryAvailable).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should count again after invalidation")
+    void testInvalidate() {
+        cache.get();
+        primaryRows.set(9);
+        cache.invalidate();
+
+        assertThat(cache.get().primary.get("products")).isEqualTo(9L);
+    }
+
+    @Test
+    @DisplayName("Should not cache counts from a refresh that started before an invalidation")
+    void testInvalidateDuringRefresh() throws Exception {
+        CountDownLatch counting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(verifier.countPrimaryRows(anyString())).thenAnswer(invocation -> {
+            long rows = primaryRows.get();
+            if ("users".equals(invocation.getArgument(0))) {
+                counting.countDown();
+            }
+            release.await(2, TimeUnit.SECONDS);
+            return rows;
+        });
+        CompletableFuture<RowCountCache.Snapshot> before = CompletableFuture.supplyAsync(cache::get);
+        assertThat(counting.await(2, TimeUnit.SECONDS)).isTrue();
+
+        primaryRows.set(9);
+        cache.invalidate();
+        release.countDown();
+
+        // The users count was taken before the invalidation
+        assertThat(before.get(2, TimeUnit.SECONDS).primary.get("users")).isEqualTo(3L);
+        assertThat(cache.get().primary.get("users")).isEqualTo(9L);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.shopper.service.sync;
+
+import com.shopper.repository.DatabaseBatchWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for keyset-paged table copies, read from an in-memory SQLite primary into a mocked batch writer
+ */
+@DisplayName("StreamingTableCopier Unit Tests")
+class StreamingTableCopierTest {
+
+    private SingleConnectionDataSource primaryDataSource;
+    private SingleConnectionDataSource secondaryDataSource;
+    private JdbcTemplate primary;
+    private DatabaseBatchWriter batchWriter;
+    private StreamingTableCopier copier;
+    private List<UUID> ids;
+    /** Every page handed to the batch writer, as passed */
+    private final List<List<Object[]>> pages = new ArrayList<>();
+    /** IDs of the rows of every page, captured when written */
+    private final List<List<UUID>> pageIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        primaryDataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        secondaryDataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        primary = new JdbcTemplate(primaryDataSource);
+        primary.execute("CREATE TABLE products (id TEXT PRIMARY KEY, name TEXT, description TEXT, price REAL,"
+                + " image_url TEXT, category TEXT, stock_quantity INTEGER, created_at INTEGER, updated_at INTEGER)");
+        ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            primary.update("INSERT INTO products VALUES (?, ?, NULL, ?, NULL, 'Fruit', ?, ?, ?)",
+                    id.toString(), "Product " + i, 1.5 + i, i, 1_700_000_000_000L, 1_700_000_000_000L);
+        }
+        // In the order of the primary's text keys
+        ids.sort(Comparator.comparing(UUID::toString));
+
+        batchWriter = mock(DatabaseBatchWriter.class);
+        when(batchWriter.upsertIntoSecondary(eq("products"), anyList(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(2);
+            pages.add(rows);
+            pageIds.add(rows.stream().map(row -> (UUID) row[0]).toList());
+            return rows.size();
+        });
+
+        copier = new StreamingTableCopier();
+        ReflectionTestUtils.setField(copier, "primaryDataSource", primaryDataSource);
+        ReflectionTestUtils.setField(copier, "secondaryDataSource", secondaryDataSource);
+        ReflectionTestUtils.setField(copier, "batchWriter", batchWriter);
+        ReflectionTestUtils.setField(copier, "pageSize", 3);
+        copier.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        primaryDataSource.destroy();
+        secondaryDataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("Should copy every row once, in ID order, one keyset page at a time")
+    void testCopyPagesByKeyset() {
+        StreamingTableCopier.CopyResult result = copier.copy(SyncTable.PRODUCTS, true, true);
+
+        assertThat(pageIds).containsExactly(ids.subList(0, 3), ids.subList(3, 6), ids.subList(6, 7));
+        assertThat(result.rowsRead).isEqualTo(7);
+        assertThat(result.rowsWritten).isEqualTo(7);
+        assertThat(result.pages).isEqualTo(3);
+        assertThat(result.completed).isTrue();
+        verify(batchWriter).requireSecondaryUuidIds("products");
+    }
+
+    @Test
+    @DisplayName("Should read every page into the same row buffers")
+    void testReusesPageBuffer() {
+        copier.copy(SyncTable.PRODUCTS, true, true);
+
+        assertThat(pages.get(1).get(0)).isSameAs(pages.get(0).get(0));
+        assertThat(pages.get(2).get(0)).isSameAs(pages.get(0).get(0));
+    }
+
+    @Test
+    @DisplayName("Should continue after a checkpoint and stop when the listener asks to")
+    void testCheckpointAndStop() {
+        List<UUID> checkpoints = new ArrayList<>();
+
+        StreamingTableCopier.CopyResult result = copier.copy(SyncTable.PRODUCTS, true, true, ids.get(1),
+                (lastId, rowsRead, rowsWritten, rowsFailed) -> {
+                    checkpoints.add(lastId);
+                    return false;
+                });
+
+        assertThat(pageIds).containsExactly(ids.subList(2, 5));
+        assertThat(checkpoints).containsExactly(ids.get(4));
+        assertThat(result.completed).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should retry a failed page row by row and count only the bad row as failed")
+    void testIsolatesFailingRow() {
+        UUID bad = ids.get(4);
+        when(batchWriter.upsertIntoSecondary(eq("products"), anyList(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(2);
+            if (rows.stream().anyMatch(row -> bad.equals(row[0]))) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return rows.size();
+        });
+
+        StreamingTableCopier.CopyResult result = copier.copy(SyncTable.PRODUCTS, true, true);
+
+        assertThat(result.rowsRead).isEqualTo(7);
+        assertThat(result.rowsWritten).isEqualTo(6);
+        assertThat(result.rowsFailed).isEqualTo(1);
+        assertThat(result.completed).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should hand out rows copied out of the page buffer")
+    void testReadRowsCopiesOutOfBuffer() {
+        Map<UUID, Object[]> rows = copier.readRows(SyncTable.PRODUCTS, ids, true);
+
+        assertThat(rows).containsOnlyKeys(ids);
+        rows.forEach((id, row) -> assertThat(row[0]).isEqualTo(id));
+        // Reading the primary needs no check of the secondary's ID type
+        verify(batchWriter, never()).requireSecondaryUuidIds(anyString());
+    }
+
+    @Test
+    @DisplayName("Should return the IDs the source no longer has")
+    void testUpsertByIdsReportsVanishedRows() {
+        UUID vanished = UUID.randomUUID();
+
+        List<UUID> absent = copier.upsertByIds(SyncTable.PRODUCTS, List.of(ids.get(0), vanished, ids.get(5)), true);
+
+        assertThat(absent).containsExactly(vanished);
+        assertThat(pageIds).hasSize(1);
+        assertThat(pageIds.get(0)).containsExactlyInAnyOrder(ids.get(0), ids.get(5));
+    }
+
+    @Test
+    @DisplayName("Should read each column with its type")
+    void testReadsColumnTypes() {
+        UUID id = UUID.fromString(primary.queryForObject("SELECT id FROM products WHERE name = 'Product 2'", String.class));
+
+        Object[] row = copier.readRows(SyncTable.PRODUCTS, List.of(id), true).get(id);
+
+        assertThat(row[0]).isEqualTo(id);
+        assertThat(row[1]).isEqualTo("Product 2");
+        assertThat(row[2]).isNull();
+        assertThat((BigDecimal) row[3]).isEqualByComparingTo("3.5");
+        assertThat(row[6]).isEqualTo(2);
+        assertThat(row[7]).isInstanceOf(LocalDateTime.class);
+    }
+}
@@ -0,0 +1,209 @@
+package com.shopper.service.sync;
+
+import com.shopper.entity.primary.SyncJob;
+import com.shopper.repository.primary.PrimarySyncJobRepository;
+import com.shopper.service.DatabaseSyncService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for checkpointed sync jobs
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SyncJobService Unit Tests")
+class SyncJobServiceTest {
+
+    @Mock
+    private PrimarySyncJobRepository jobRepository;
+
+    @Mock
+    private StreamingTableCopier streamingTableCopier;
+
+    @Mock
+    private RangeHashVerifier rangeHashVerifier;
+
+    @Mock
+    private DatabaseSyncService databaseSyncService;
+
+    @InjectMocks
+    private SyncJobService syncJobService;
+
+    @Test
+    @DisplayName("Should continue after the checkpoint and skip tables already copied")
+    void testResumesFromCheckpoint() {
+        UUID checkpoint = UUID.randomUUID();
+        SyncJob job = SyncJob.builder()
+                .id(7L)
+                .direction("primary-to-secondary")
+                .status(SyncJob.Status.RUNNING)
+                .checkpointTable("cart_items")
+                .checkpointId(checkpoint.toString())
+                .totalRows(100L)
+                .build();
+        when(jobRepository.findById(7L)).thenReturn(Optional.of(job));
+        when(streamingTableCopier.copy(any(), anyBoolean(), anyBoolean(), any(), any()))
+                .thenReturn(new StreamingTableCopier.CopyResult("table", "primary-to-secondary", 0, 0, 0, 0, 0, true));
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 7L);
+
+        verify(streamingTableCopier, never()).copy(eq(SyncTable.USERS), anyBoolean(), anyBoolean(), any(), any());
+        verify(streamingTableCopier, never()).copy(eq(SyncTable.PRODUCTS), anyBoolean(), anyBoolean(), any(), any());
+        verify(streamingTableCopier).copy(eq(SyncTable.CART_ITEMS), eq(true), eq(true), eq(checkpoint), any());
+        verify(streamingTableCopier).copy(eq(SyncTable.ORDERS), eq(true), eq(true), isNull(), any());
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.COMPLETED);
+    }
+
+    @Test
+    @DisplayName("Should record the last written page and stop when cancelled")
+    void testCancelStopsAfterPage() {
+        UUID lastId = UUID.randomUUID();
+        SyncJob job = SyncJob.builder().id(8L).direction("primary-to-secondary").totalRows(10L).build();
+        AtomicBoolean cancelRequested = new AtomicBoolean();
+        when(jobRepository.findById(8L)).thenReturn(Optional.of(job));
+        when(jobRepository.setCancelRequested(8L, true)).thenAnswer(invocation -> {
+            cancelRequested.set(true);
+            return 1;
+        });
+        when(jobRepository.isCancelRequested(8L)).thenAnswer(invocation -> cancelRequested.get());
+        when(streamingTableCopier.copy(eq(SyncTable.USERS), anyBoolean(), anyBoolean(), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    StreamingTableCopier.PageListener listener = invocation.getArgument(4);
+                    syncJobService.cancel(8L);
+                    boolean keepGoing = listener.pageWritten(lastId, 5, 4, 1);
+                    return new StreamingTableCopier.CopyResult("users", "primary-to-secondary", 5, 4, 1, 1, 1, keepGoing);
+                });
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 8L);
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.CANCELLED);
+        assertThat(job.getCheckpointTable()).isEqualTo("users");
+        assertThat(job.getCheckpointId()).isEqualTo(lastId.toString());
+        assertThat(job.getRowsScanned()).isEqualTo(5);
+        assertThat(job.getRowsCopied()).isEqualTo(4);
+        assertThat(job.getRowsFailed()).isEqualTo(1);
+        verify(streamingTableCopier, never()).copy(eq(SyncTable.PRODUCTS), anyBoolean(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should honor a cancel request stored before the job was picked up again")
+    void testStoredCancelRequest() {
+        SyncJob job = SyncJob.builder().id(9L).direction("primary-to-secondary").status(SyncJob.Status.RUNNING).build();
+        when(jobRepository.findById(9L)).thenReturn(Optional.of(job));
+        when(jobRepository.isCancelRequested(9L)).thenReturn(true);
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 9L);
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.CANCELLED);
+        verifyNoInteractions(streamingTableCopier);
+    }
+
+    @Test
+    @DisplayName("Should copy only the missing products for a products job")
+    void testProductsJob() {
+        SyncJob job = SyncJob.builder().id(10L).kind(SyncJob.Kind.PRODUCTS).direction("primary-to-secondary")
+                .overwrite(false).build();
+        when(jobRepository.findById(10L)).thenReturn(Optional.of(job));
+        when(rangeHashVerifier.countPrimaryRows("products")).thenReturn(42L);
+        when(streamingTableCopier.copy(eq(SyncTable.PRODUCTS), eq(true), eq(false), isNull(), any()))
+                .thenReturn(new StreamingTableCopier.CopyResult("products", "primary-to-secondary", 42, 3, 0, 1, 1, true));
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 10L);
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.COMPLETED);
+        assertThat(job.getTotalRows()).isEqualTo(42);
+        verify(streamingTableCopier, times(1)).copy(any(), anyBoolean(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should run a bidirectional job through the sync service and keep its summary")
+    void testBidirectionalJob() {
+        ReflectionTestUtils.setField(syncJobService, "databaseSyncService", databaseSyncService);
+        SyncJob job = SyncJob.builder().id(11L).kind(SyncJob.Kind.BIDIRECTIONAL).direction("bidirectional").build();
+        when(jobRepository.findById(11L)).thenReturn(Optional.of(job));
+        when(databaseSyncService.performBidirectionalSync())
+                .thenReturn(new DatabaseSyncService.SyncResult(3, 2, true, "Sync completed successfully"));
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 11L);
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.COMPLETED);
+        assertThat(job.getRowsCopied()).isEqualTo(5);
+        assertThat(job.getSummary()).isEqualTo("Sync completed successfully");
+        verifyNoInteractions(streamingTableCopier);
+    }
+
+    @Test
+    @DisplayName("Should fail an incremental job whose sync reports a failure")
+    void testIncrementalJobFailure() {
+        ReflectionTestUtils.setField(syncJobService, "databaseSyncService", databaseSyncService);
+        SyncJob job = SyncJob.builder().id(12L).kind(SyncJob.Kind.INCREMENTAL).direction("bidirectional").build();
+        when(jobRepository.findById(12L)).thenReturn(Optional.of(job));
+        when(databaseSyncService.performIncrementalSync())
+                .thenReturn(new DatabaseSyncService.SyncResult(0, 0, false, "Incremental sync failed: timeout"));
+
+        ReflectionTestUtils.invokeMethod(syncJobService, "run", 12L);
+
+        assertThat(job.getStatus()).isEqualTo(SyncJob.Status.FAILED);
+        assertThat(job.getLastError()).isEqualTo("Incremental sync failed: timeout");
+    }
+
+    @Test
+    @DisplayName("Should store the cancel request on the job row")
+    void testCancelIsPersisted() {
+        SyncJob job = SyncJob.builder().id(13L).direction("primary-to-secondary").status(SyncJob.Status.RUNNING).build();
+        when(jobRepository.findById(13L)).thenReturn(Optional.of(job));
+
+        assertThat(syncJobService.cancel(13L)).isTrue();
+
+        verify(jobRepository).setCancelRequested(13L, true);
+    }
+
+    @Test
+    @DisplayName("Should refuse to cancel or resume a run without a checkpoint")
+    void testNoCancelOrResumeWithoutCheckpoint() {
+        when(jobRepository.findById(14L)).thenReturn(Optional.of(SyncJob.builder().id(14L)
+                .kind(SyncJob.Kind.INCREMENTAL).direction("bidirectional").status(SyncJob.Status.RUNNING).build()));
+        when(jobRepository.findById(15L)).thenReturn(Optional.of(SyncJob.builder().id(15L)
+                .kind(SyncJob.Kind.BIDIRECTIONAL).direction("bidirectional").status(SyncJob.Status.FAILED).build()));
+        when(streamingTableCopier.isSecondaryAvailable()).thenReturn(true);
+
+        assertThat(syncJobService.cancel(14L)).isFalse();
+        assertThat(syncJobService.resume(15L)).isFalse();
+
+        verify(jobRepository, never()).setCancelRequested(any(), anyBoolean());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should refuse a new job while one of the same kind is pending")
+    void testOneActiveJobPerKind() {
+        ReflectionTestUtils.setField(syncJobService, "databaseSyncService", databaseSyncService);
+        when(streamingTableCopier.isSecondaryAvailable()).thenReturn(true);
+        // Recorded before kinds existed, so a full resync
+        when(jobRepository.findByStatusInOrderByIdAsc(any())).thenReturn(List.of(
+                SyncJob.builder().id(16L).direction("primary-to-secondary").status(SyncJob.Status.PENDING).build()));
+
+        assertThatThrownBy(() -> syncJobService.submit(true, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("16");
+        assertThat(syncJobService.findActiveJob(SyncJob.Kind.INCREMENTAL)).isEmpty();
+        verify(jobRepository, never()).save(any());
+    }
+}
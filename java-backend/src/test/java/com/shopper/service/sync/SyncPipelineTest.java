@@ -0,0 +1,97 @@
+package com.shopper.service.sync;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the dependency-ordered sync pipeline
+ */
+@DisplayName("SyncPipeline Unit Tests")
+class SyncPipelineTest {
+
+    private StreamingTableCopier copier;
+    private ConflictResolver conflictResolver;
+    private SimpleMeterRegistry meterRegistry;
+    private SyncPipeline pipeline;
+    private final List<SyncTable> copied = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        copier = mock(StreamingTableCopier.class);
+        meterRegistry = new SimpleMeterRegistry();
+        conflictResolver = mock(ConflictResolver.class);
+        pipeline = new SyncPipeline(copier, conflictResolver, meterRegistry);
+        ReflectionTestUtils.setField(pipeline, "pipelineThreads", 2);
+        pipeline.start();
+        when(copier.isSecondaryAvailable()).thenReturn(true);
+        when(copier.copyMissing(any(), anyBoolean())).thenAnswer(invocation -> {
+            SyncTable table = invocation.getArgument(0);
+            copied.add(table);
+            return new StreamingTableCopier.CopyResult(table.getTableName(), "direction", 2, 2, 0, 1, 10, true);
+        });
+        when(conflictResolver.resolve(any())).thenAnswer(invocation -> {
+            SyncTable table = invocation.getArgument(0);
+            return new ConflictResolver.Resolution(table.getTableName(), "last-writer-wins", 1, 1, 0, 0, 0, 5, null);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should copy every table in both directions, parents before children")
+    void testRunsStagesInDependencyOrder() {
+        SyncPipeline.PipelineResult result = pipeline.run();
+
+        assertThat(result.success).isTrue();
+        assertThat(result.tables).hasSize(10);
+        assertThat(result.copiedRows("primary-to-secondary")).isEqualTo(10);
+        assertThat(copied.indexOf(SyncTable.ORDERS)).isGreaterThan(copied.lastIndexOf(SyncTable.USERS));
+        assertThat(copied.indexOf(SyncTable.CART_ITEMS)).isGreaterThan(copied.lastIndexOf(SyncTable.PRODUCTS));
+        assertThat(copied.indexOf(SyncTable.ORDER_ITEMS)).isGreaterThan(copied.lastIndexOf(SyncTable.ORDERS));
+        assertThat(meterRegistry.get("shopper.sync.pipeline.rows").tag("table", "orders").counters()).hasSize(2);
+        assertThat(result.conflicts).hasSize(5);
+        assertThat(result.resolvedConflicts()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should continue with later stages when resolving conflicts fails")
+    void testContinuesAfterFailedConflictResolution() {
+        when(conflictResolver.resolve(SyncTable.PRODUCTS)).thenThrow(new IllegalStateException("verifier timed out"));
+
+        SyncPipeline.PipelineResult result = pipeline.run();
+
+        assertThat(result.success).isTrue();
+        assertThat(copied).contains(SyncTable.ORDER_ITEMS);
+        assertThat(result.conflicts).filteredOn(resolution -> resolution.error != null)
+                .extracting(resolution -> resolution.table)
+                .containsExactly("products");
+    }
+
+    @Test
+    @DisplayName("Should not start tables that depend on a failed stage")
+    void testStopsAfterFailedStage() {
+        when(copier.copyMissing(eq(SyncTable.USERS), eq(true))).thenThrow(new IllegalStateException("duplicate email"));
+
+        SyncPipeline.PipelineResult result = pipeline.run();
+
+        assertThat(result.success).isFalse();
+        assertThat(result.failure).contains("users").contains("duplicate email");
+        assertThat(copied).doesNotContain(SyncTable.CART_ITEMS, SyncTable.ORDERS, SyncTable.ORDER_ITEMS);
+        verify(conflictResolver, never()).resolve(any());
+    }
+}
@@ -0,0 +1,106 @@
+package com.shopper.service.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the synced table definitions and their per-type column readers, run against in-memory SQLite
+ */
+@DisplayName("SyncTable Unit Tests")
+class SyncTableTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    private Object read(SyncTable.ColumnType type, String expression) {
+        List<Object> values = new ArrayList<>();
+        jdbcTemplate.query("SELECT " + expression, resultSet -> {
+            values.add(type.read(resultSet, 1));
+        });
+        return values.get(0);
+    }
+
+    @Test
+    @DisplayName("Should list the ID column first for every table")
+    void testIdColumnFirst() {
+        for (SyncTable table : SyncTable.values()) {
+            assertThat(table.getColumns().get(0)).isEqualTo(new SyncTable.Column("id", SyncTable.ColumnType.UUID));
+            assertThat(table.getColumnNames()).hasSameSizeAs(table.getColumns());
+        }
+    }
+
+    @Test
+    @DisplayName("Should find tables by name regardless of case and reject unknown ones")
+    void testFromTableName() {
+        assertThat(SyncTable.fromTableName("CART_ITEMS")).isEqualTo(SyncTable.CART_ITEMS);
+        assertThatThrownBy(() -> SyncTable.fromTableName("sync_jobs"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("sync_jobs");
+    }
+
+    @Test
+    @DisplayName("Should read UUIDs from their text form")
+    void testReadsUuid() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(read(SyncTable.ColumnType.UUID, "'" + id + "'")).isEqualTo(id);
+        assertThat(read(SyncTable.ColumnType.UUID, "NULL")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep a NULL integer apart from zero")
+    void testReadsInteger() {
+        assertThat(read(SyncTable.ColumnType.INTEGER, "0")).isEqualTo(0);
+        assertThat(read(SyncTable.ColumnType.INTEGER, "NULL")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should read decimals as BigDecimal")
+    void testReadsDecimal() {
+        assertThat((BigDecimal) read(SyncTable.ColumnType.DECIMAL, "19.99")).isEqualByComparingTo("19.99");
+        assertThat(read(SyncTable.ColumnType.DECIMAL, "NULL")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should read timestamps stored as epoch millis or as text")
+    void testReadsTimestamp() {
+        LocalDateTime text = (LocalDateTime) read(SyncTable.ColumnType.TIMESTAMP, "'2026-03-01 12:30:45'");
+        LocalDateTime millis = (LocalDateTime) read(SyncTable.ColumnType.TIMESTAMP,
+                String.valueOf(java.sql.Timestamp.valueOf(text).getTime()));
+
+        assertThat(text).isEqualTo(LocalDateTime.of(2026, 3, 1, 12, 30, 45));
+        assertThat(millis).isEqualTo(text);
+        assertThat(read(SyncTable.ColumnType.TIMESTAMP, "NULL")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should read text columns as strings")
+    void testReadsText() {
+        assertThat(read(SyncTable.ColumnType.TEXT, "'Fruit'")).isEqualTo("Fruit");
+        assertThat(read(SyncTable.ColumnType.TEXT, "NULL")).isNull();
+    }
+}
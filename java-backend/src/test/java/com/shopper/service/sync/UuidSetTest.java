@@ -0,0 +1,60 @@
+package com.shopper.service.sync;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the compact UUID set used by sync diffs
+ */
+@DisplayName("UuidSet Unit Tests")
+class UuidSetTest {
+
+    private static final UUID LOW = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID MIDDLE = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+    private static final UUID HIGH = UUID.fromString("ffffffff-0000-0000-0000-000000000000");
+
+    @Test
+    @DisplayName("Should order IDs like their text form and drop duplicates")
+    void testOrdersUnsignedAndDeduplicates() {
+        UuidSet set = UuidSet.builder().add(HIGH).add(LOW).add(MIDDLE).add(HIGH).build();
+
+        assertThat(set.size()).isEqualTo(3);
+        assertThat(List.of(set.get(0), set.get(1), set.get(2))).containsExactly(LOW, MIDDLE, HIGH);
+        assertThat(set.contains(MIDDLE)).isTrue();
+        assertThat(set.contains(UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should return only the IDs missing from the other set")
+    void testMinus() {
+        UuidSet source = UuidSet.builder().add(LOW).add(MIDDLE).add(HIGH).build();
+        UuidSet target = UuidSet.builder().add(MIDDLE).build();
+
+        assertThat(source.minus(target)).containsExactly(LOW, HIGH);
+        assertThat(target.minus(source)).isEmpty();
+        assertThat(source.minus(UuidSet.builder().build())).containsExactly(LOW, MIDDLE, HIGH);
+    }
+
+    @Test
+    @DisplayName("Should diff large sets built out of order")
+    void testLargeUnorderedSets() {
+        UuidSet.Builder sourceBuilder = UuidSet.builder();
+        UuidSet.Builder targetBuilder = UuidSet.builder();
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            sourceBuilder.add(id);
+            if (i % 10 != 0) {
+                targetBuilder.add(id);
+            }
+        }
+
+        List<UUID> missing = sourceBuilder.build().minus(targetBuilder.build());
+
+        assertThat(missing).hasSize(1_000);
+    }
+}